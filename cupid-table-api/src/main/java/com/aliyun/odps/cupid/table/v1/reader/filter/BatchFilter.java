@@ -0,0 +1,707 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.reader.filter;
+
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Validator;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoParser;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Evaluates {@link FilterExpression}s on {@link ColDataBatch}es. The expressions are compiled
+ * into operations narrowing a selection vector, the ascending row ids of a batch for which all
+ * filters are true. Predicates follow sql three-valued logic: a comparison with null is unknown,
+ * and so is its negation.
+ *
+ * <p>Filters are dropped when they reference a column which is not in the batch, or compare a
+ * column with a literal of another kind, so the selected rows are a superset of the matching
+ * ones. A filter is not thread safe.
+ */
+public final class BatchFilter {
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = -1;
+
+    // the result of a comparison which is unknown, e.g. with NaN
+    private static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+    private final List<FilterExpression> filters;
+    private final List<Attribute> columns;
+    private final Node root;
+
+    private BatchFilter(List<FilterExpression> filters, List<Attribute> columns, Node root) {
+        this.filters = filters;
+        this.columns = columns;
+        this.root = root;
+    }
+
+    /**
+     * Compiles the filters for batches of the given columns, returns null if no filter applies.
+     */
+    public static BatchFilter create(List<FilterExpression> filters, List<Attribute> columns) {
+        Validator.checkNotNull(columns, "columns");
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        List<FilterExpression> applicable = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        boolean[] referenced = new boolean[columns.size()];
+        for (FilterExpression filter : filters) {
+            boolean[] filterColumns = new boolean[columns.size()];
+            Node node = compile(filter, columns, filterColumns);
+            if (node != null) {
+                applicable.add(filter);
+                nodes.add(node);
+                for (int i = 0; i < referenced.length; i++) {
+                    referenced[i] |= filterColumns[i];
+                }
+            }
+        }
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        List<Attribute> referencedColumns = new ArrayList<>();
+        for (int i = 0; i < referenced.length; i++) {
+            if (referenced[i]) {
+                referencedColumns.add(columns.get(i));
+            }
+        }
+        Node root = nodes.size() == 1 ? nodes.get(0) : new And(nodes.toArray(new Node[0]));
+        return new BatchFilter(Collections.unmodifiableList(applicable),
+                Collections.unmodifiableList(referencedColumns), root);
+    }
+
+    /**
+     * The filters which are evaluated.
+     */
+    public List<FilterExpression> getFilters() {
+        return filters;
+    }
+
+    /**
+     * The columns referenced by the evaluated filters, in the order of the batch.
+     */
+    public List<Attribute> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Selects the rows of the batch for which all filters are true.
+     *
+     * @param selection receives the selected row ids, at least as long as the batch
+     * @return the number of selected rows
+     */
+    public int filter(ColDataBatch batch, int[] selection) {
+        int rowCount = batch.getRowCount();
+        for (int i = 0; i < rowCount; i++) {
+            selection[i] = i;
+        }
+        return filter(batch, selection, rowCount);
+    }
+
+    /**
+     * Narrows the selection to the rows for which all filters are true.
+     *
+     * @param selection ascending row ids of the batch, narrowed in place
+     * @param size      the number of row ids in the selection
+     * @return the number of selected rows
+     */
+    public int filter(ColDataBatch batch, int[] selection, int size) {
+        if (size == 0) {
+            return 0;
+        }
+        return root.select(batch.getVectors(), selection, size, selection, true);
+    }
+
+    @Override
+    public String toString() {
+        return filters.toString();
+    }
+
+    private static Node compile(FilterExpression filter, List<Attribute> columns, boolean[] referenced) {
+        FilterExpression[] children = filter.getChildren();
+        switch (filter.getType()) {
+            case AND:
+            case OR:
+            case NOT: {
+                Node[] nodes = new Node[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    nodes[i] = compile(children[i], columns, referenced);
+                    if (nodes[i] == null) {
+                        return null;
+                    }
+                }
+                if (filter.getType() == FilterType.NOT) {
+                    return new Not(nodes[0]);
+                }
+                return filter.getType() == FilterType.AND ? new And(nodes) : new Or(nodes);
+            }
+            default:
+                break;
+        }
+
+        int column = indexOf(columns, filter.getAttribute());
+        if (column < 0) {
+            return null;
+        }
+        referenced[column] = true;
+        TypeInfo typeInfo = TypeInfoParser.getTypeInfoFromTypeString(columns.get(column).getType());
+        Object literal = normalize(filter.getLiteral());
+        switch (filter.getType()) {
+            case IS_NULL:
+                return new IsNull(column, false);
+            case IS_NOT_NULL:
+                return new IsNull(column, true);
+            case EQUAL_NULL_SAFE: {
+                if (literal == null) {
+                    return new IsNull(column, false);
+                }
+                Comparator comparator = comparator(typeInfo, literal);
+                return comparator == null ? null : new Comparison(column, comparator, false, true, false, FALSE);
+            }
+            case EQUAL_TO:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUAL: {
+                if (literal == null) {
+                    return new Constant(UNKNOWN);
+                }
+                Comparator comparator = comparator(typeInfo, literal);
+                if (comparator == null) {
+                    return null;
+                }
+                FilterType type = filter.getType();
+                return new Comparison(column, comparator,
+                        type == FilterType.LESS_THAN || type == FilterType.LESS_THAN_OR_EQUAL,
+                        type != FilterType.LESS_THAN && type != FilterType.GREATER_THAN,
+                        type == FilterType.GREATER_THAN || type == FilterType.GREATER_THAN_OR_EQUAL,
+                        UNKNOWN);
+            }
+            case IN:
+                return compileIn(column, typeInfo, (Object[]) filter.getLiteral());
+            case STRING_STARTS_WITH:
+            case STRING_ENDS_WITH:
+            case STRING_CONTAINS:
+                if (!isString(typeInfo.getOdpsType()) || !(literal instanceof String)) {
+                    return null;
+                }
+                return new StringMatch(column, filter.getType(), ((String) literal).getBytes(StandardCharsets.UTF_8));
+            default:
+                throw new UnsupportedOperationException("Unsupported filter: " + filter);
+        }
+    }
+
+    private static Node compileIn(int column, TypeInfo typeInfo, Object[] literals) {
+        boolean integral = isIntegral(typeInfo.getOdpsType());
+        boolean hasNull = false;
+        List<Comparator> comparators = new ArrayList<>();
+        for (Object literal : literals) {
+            literal = normalize(literal);
+            if (literal == null) {
+                hasNull = true;
+                continue;
+            }
+            integral &= isIntegral(literal);
+            Comparator comparator = comparator(typeInfo, literal);
+            if (comparator == null) {
+                return null;
+            }
+            comparators.add(comparator);
+        }
+        if (integral) {
+            long[] values = new long[literals.length];
+            int size = 0;
+            for (Object literal : literals) {
+                if (literal != null) {
+                    values[size++] = ((Number) literal).longValue();
+                }
+            }
+            values = Arrays.copyOf(values, size);
+            Arrays.sort(values);
+            return new LongIn(column, longReader(typeInfo.getOdpsType()), values, hasNull);
+        }
+        return new In(column, comparators.toArray(new Comparator[0]), hasNull);
+    }
+
+    private static int indexOf(List<Attribute> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object normalize(Object literal) {
+        if (literal instanceof byte[]) {
+            return new String((byte[]) literal, StandardCharsets.UTF_8);
+        } else if (literal instanceof AbstractChar) {
+            return ((AbstractChar) literal).getValue();
+        }
+        return literal;
+    }
+
+    /**
+     * Compiles the comparison of the column with the literal, null if they are of different kinds.
+     */
+    private static Comparator comparator(TypeInfo typeInfo, Object literal) {
+        OdpsType type = typeInfo.getOdpsType();
+        if (isIntegral(type) && literal instanceof Number) {
+            LongReader reader = longReader(type);
+            if (isIntegral(literal)) {
+                long value = ((Number) literal).longValue();
+                return (vector, row) -> Long.compare(reader.read(vector, row), value);
+            } else if (literal instanceof BigDecimal) {
+                BigDecimal value = (BigDecimal) literal;
+                return (vector, row) -> BigDecimal.valueOf(reader.read(vector, row)).compareTo(value);
+            }
+            double value = ((Number) literal).doubleValue();
+            return (vector, row) -> compare(reader.read(vector, row), value);
+        }
+        if ((type == OdpsType.DOUBLE || type == OdpsType.FLOAT) && literal instanceof Number) {
+            boolean isFloat = type == OdpsType.FLOAT;
+            if (literal instanceof BigDecimal) {
+                BigDecimal value = (BigDecimal) literal;
+                return (vector, row) -> {
+                    double d = isFloat ? vector.getFloat(row) : vector.getDouble(row);
+                    return Double.isNaN(d) || Double.isInfinite(d) ? INCOMPARABLE : BigDecimal.valueOf(d).compareTo(value);
+                };
+            }
+            double value = ((Number) literal).doubleValue();
+            return (vector, row) -> compare(isFloat ? vector.getFloat(row) : vector.getDouble(row), value);
+        }
+        if (type == OdpsType.DECIMAL && literal instanceof Number) {
+            BigDecimal value;
+            if (literal instanceof BigDecimal) {
+                value = (BigDecimal) literal;
+            } else if (isIntegral(literal)) {
+                value = BigDecimal.valueOf(((Number) literal).longValue());
+            } else {
+                double d = ((Number) literal).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return (vector, row) -> INCOMPARABLE;
+                }
+                value = BigDecimal.valueOf(d);
+            }
+            return (vector, row) -> vector.getDecimal(row).compareTo(value);
+        }
+        if (isString(type) && literal instanceof String) {
+            byte[] value = ((String) literal).getBytes(StandardCharsets.UTF_8);
+            return (vector, row) -> compareBytes(vector.getDeepBuf(), vector.getBinaryOffset(row),
+                    vector.getBinaryLength(row), value);
+        }
+        if (type == OdpsType.BOOLEAN && literal instanceof Boolean) {
+            boolean value = (Boolean) literal;
+            return (vector, row) -> Boolean.compare(vector.getBoolean(row), value);
+        }
+        return null;
+    }
+
+    private static LongReader longReader(OdpsType type) {
+        switch (type) {
+            case TINYINT:
+                return ColDataVector::getByte;
+            case SMALLINT:
+                return ColDataVector::getShort;
+            case INT:
+                return ColDataVector::getInt;
+            default:
+                return ColDataVector::getLong;
+        }
+    }
+
+    private static int compare(double left, double right) {
+        if (left < right) {
+            return -1;
+        } else if (left > right) {
+            return 1;
+        } else if (left == right) {
+            return 0;
+        }
+        return INCOMPARABLE;
+    }
+
+    /**
+     * Compares as unsigned bytes, the order of the code points of utf-8 strings.
+     */
+    private static int compareBytes(byte[] buf, int offset, int length, byte[] value) {
+        int len = Math.min(length, value.length);
+        for (int i = 0; i < len; i++) {
+            int res = (buf[offset + i] & 0xFF) - (value[i] & 0xFF);
+            if (res != 0) {
+                return res;
+            }
+        }
+        return length - value.length;
+    }
+
+    private static boolean isIntegral(OdpsType type) {
+        return type == OdpsType.TINYINT || type == OdpsType.SMALLINT
+                || type == OdpsType.INT || type == OdpsType.BIGINT;
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer
+                || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isString(OdpsType type) {
+        return type == OdpsType.STRING || type == OdpsType.VARCHAR
+                || type == OdpsType.CHAR || type == OdpsType.BINARY;
+    }
+
+    @FunctionalInterface
+    private interface LongReader {
+        long read(ColDataVector vector, int row);
+    }
+
+    /**
+     * Compares a non null value of a column with a literal, returns {@link #INCOMPARABLE} when
+     * the result is unknown.
+     */
+    @FunctionalInterface
+    private interface Comparator {
+        int compare(ColDataVector vector, int row);
+    }
+
+    private abstract static class Node {
+
+        /**
+         * Writes the rows for which the node evaluates to the result to out, in ascending order.
+         * The rows may be narrowed in place, out being the rows.
+         *
+         * @return the number of rows written
+         */
+        abstract int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result);
+    }
+
+    private static final class Constant extends Node {
+
+        private final int value;
+
+        Constant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            if (value != (result ? TRUE : FALSE)) {
+                return 0;
+            }
+            if (out != rows) {
+                System.arraycopy(rows, 0, out, 0, size);
+            }
+            return size;
+        }
+    }
+
+    /** A predicate on a column, evaluated row by row. */
+    private abstract static class Predicate extends Node {
+
+        private final int column;
+        private final int nullValue;
+
+        Predicate(int column, int nullValue) {
+            this.column = column;
+            this.nullValue = nullValue;
+        }
+
+        /**
+         * Evaluates the predicate on a non null row to true, false or unknown.
+         */
+        abstract int evaluate(ColDataVector vector, int row);
+
+        @Override
+        final int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            ColDataVector vector = vectors[column];
+            int expected = result ? TRUE : FALSE;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                int value = vector.isNullAt(row) ? nullValue : evaluate(vector, row);
+                if (value == expected) {
+                    out[n++] = row;
+                }
+            }
+            return n;
+        }
+    }
+
+    private static final class IsNull extends Predicate {
+
+        private final int nonNullValue;
+
+        IsNull(int column, boolean negated) {
+            super(column, negated ? FALSE : TRUE);
+            this.nonNullValue = negated ? TRUE : FALSE;
+        }
+
+        @Override
+        int evaluate(ColDataVector vector, int row) {
+            return nonNullValue;
+        }
+    }
+
+    private static final class Comparison extends Predicate {
+
+        private final Comparator comparator;
+        private final int less;
+        private final int equal;
+        private final int greater;
+        private final int incomparable;
+
+        /**
+         * @param incomparable the result for nulls and incomparable values, false for the null
+         *                     safe equality and unknown for the others
+         */
+        Comparison(int column, Comparator comparator, boolean less, boolean equal, boolean greater,
+                   int incomparable) {
+            super(column, incomparable);
+            this.comparator = comparator;
+            this.less = less ? TRUE : FALSE;
+            this.equal = equal ? TRUE : FALSE;
+            this.greater = greater ? TRUE : FALSE;
+            this.incomparable = incomparable;
+        }
+
+        @Override
+        int evaluate(ColDataVector vector, int row) {
+            int result = comparator.compare(vector, row);
+            if (result == INCOMPARABLE) {
+                return incomparable;
+            }
+            return result < 0 ? less : result == 0 ? equal : greater;
+        }
+    }
+
+    private static final class In extends Predicate {
+
+        private final Comparator[] comparators;
+        private final int notFound;
+
+        In(int column, Comparator[] comparators, boolean hasNull) {
+            super(column, UNKNOWN);
+            this.comparators = comparators;
+            // x IN (..., null) is unknown rather than false
+            this.notFound = hasNull ? UNKNOWN : FALSE;
+        }
+
+        @Override
+        int evaluate(ColDataVector vector, int row) {
+            int value = notFound;
+            for (Comparator comparator : comparators) {
+                int result = comparator.compare(vector, row);
+                if (result == 0) {
+                    return TRUE;
+                } else if (result == INCOMPARABLE) {
+                    value = UNKNOWN;
+                }
+            }
+            return value;
+        }
+    }
+
+    private static final class LongIn extends Predicate {
+
+        private final LongReader reader;
+        private final long[] values;
+        private final int notFound;
+
+        LongIn(int column, LongReader reader, long[] values, boolean hasNull) {
+            super(column, UNKNOWN);
+            this.reader = reader;
+            this.values = values;
+            this.notFound = hasNull ? UNKNOWN : FALSE;
+        }
+
+        @Override
+        int evaluate(ColDataVector vector, int row) {
+            return Arrays.binarySearch(values, reader.read(vector, row)) >= 0 ? TRUE : notFound;
+        }
+    }
+
+    /** Matches the utf-8 bytes of strings, which match as the strings do. */
+    private static final class StringMatch extends Predicate {
+
+        private final FilterType type;
+        private final byte[] value;
+
+        StringMatch(int column, FilterType type, byte[] value) {
+            super(column, UNKNOWN);
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        int evaluate(ColDataVector vector, int row) {
+            byte[] buf = vector.getDeepBuf();
+            int offset = vector.getBinaryOffset(row);
+            int length = vector.getBinaryLength(row);
+            switch (type) {
+                case STRING_STARTS_WITH:
+                    return matches(buf, offset, length) ? TRUE : FALSE;
+                case STRING_ENDS_WITH:
+                    return matches(buf, offset + length - value.length, length) ? TRUE : FALSE;
+                default:
+                    for (int start = offset; start + value.length <= offset + length; start++) {
+                        if (matches(buf, start, value.length)) {
+                            return TRUE;
+                        }
+                    }
+                    return FALSE;
+            }
+        }
+
+        private boolean matches(byte[] buf, int start, int length) {
+            if (length < value.length) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (buf[start + i] != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** A connective, evaluated child by child on the rows left undecided. */
+    private abstract static class Connective extends Node {
+
+        private final Node[] children;
+        private int[] remaining = new int[0];
+        private int[] hits = new int[0];
+
+        Connective(Node[] children) {
+            this.children = children;
+        }
+
+        /**
+         * The rows for which all children evaluate to the result, narrowed child by child.
+         */
+        final int selectAll(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            if (out != rows) {
+                System.arraycopy(rows, 0, out, 0, size);
+            }
+            int n = size;
+            for (Node child : children) {
+                if (n == 0) {
+                    break;
+                }
+                n = child.select(vectors, out, n, out, result);
+            }
+            return n;
+        }
+
+        /**
+         * The rows for which any child evaluates to the result, each child evaluating the rows
+         * not selected by the previous ones.
+         */
+        final int selectAny(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            if (remaining.length < size) {
+                remaining = new int[Math.max(size, remaining.length * 2)];
+                hits = new int[remaining.length];
+            }
+            System.arraycopy(rows, 0, remaining, 0, size);
+            int left = size;
+            for (Node child : children) {
+                if (left == 0) {
+                    break;
+                }
+                int numHits = child.select(vectors, remaining, left, hits, result);
+                if (numHits > 0) {
+                    left = subtract(remaining, left, hits, numHits, remaining);
+                }
+            }
+            // the rows hit by a child are the rows not remaining
+            return subtract(rows, size, remaining, left, out);
+        }
+
+        /**
+         * Writes the rows not in the ascending subset to out, which may be the rows.
+         */
+        private static int subtract(int[] rows, int size, int[] subset, int subsetSize, int[] out) {
+            int n = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                if (j < subsetSize && subset[j] == row) {
+                    j++;
+                } else {
+                    out[n++] = row;
+                }
+            }
+            return n;
+        }
+    }
+
+    private static final class And extends Connective {
+
+        And(Node[] children) {
+            super(children);
+        }
+
+        @Override
+        int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            // false if any child is false
+            return result ? selectAll(vectors, rows, size, out, true) : selectAny(vectors, rows, size, out, false);
+        }
+    }
+
+    private static final class Or extends Connective {
+
+        Or(Node[] children) {
+            super(children);
+        }
+
+        @Override
+        int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            // false if all children are false
+            return result ? selectAny(vectors, rows, size, out, true) : selectAll(vectors, rows, size, out, false);
+        }
+    }
+
+    private static final class Not extends Node {
+
+        private final Node child;
+
+        Not(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        int select(ColDataVector[] vectors, int[] rows, int size, int[] out, boolean result) {
+            return child.select(vectors, rows, size, out, !result);
+        }
+    }
+}
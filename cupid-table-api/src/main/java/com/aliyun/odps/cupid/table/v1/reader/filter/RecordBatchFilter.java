@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.reader.filter;
+
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Validator;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatchBuilder;
+import com.aliyun.odps.data.Record;
+
+import java.util.List;
+
+/**
+ * Selects records with a {@link BatchFilter}. The columns referenced by the filters are copied
+ * into a batch, up to batchSize records at a time.
+ */
+public final class RecordBatchFilter {
+
+    private final BatchFilter filter;
+    private final ColDataBatchBuilder builder;
+    private final int[] selection;
+
+    private RecordBatchFilter(BatchFilter filter, ColDataBatchBuilder builder, int batchSize) {
+        this.filter = filter;
+        this.builder = builder;
+        this.selection = new int[batchSize];
+    }
+
+    /**
+     * Compiles the filters for records of the given columns, returns null if no filter applies.
+     */
+    public static RecordBatchFilter create(List<FilterExpression> filters,
+                                           List<Attribute> recordColumns,
+                                           int batchSize) {
+        Validator.checkInteger(batchSize, 1, "batchSize");
+        BatchFilter recordFilter = BatchFilter.create(filters, recordColumns);
+        if (recordFilter == null) {
+            return null;
+        }
+        List<Attribute> columns = recordFilter.getColumns();
+        int[] recordIndexes = new int[columns.size()];
+        for (int i = 0; i < recordIndexes.length; i++) {
+            recordIndexes[i] = recordColumns.indexOf(columns.get(i));
+        }
+        return new RecordBatchFilter(BatchFilter.create(recordFilter.getFilters(), columns),
+                new ColDataBatchBuilder(columns, recordIndexes, batchSize), batchSize);
+    }
+
+    public int getBatchSize() {
+        return selection.length;
+    }
+
+    public BatchFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Selects the records of records[offset, offset + size) for which all filters are true.
+     *
+     * @param size      the number of records, at most batchSize
+     * @param selection receives the indexes of the selected records in records
+     * @return the number of selected records
+     */
+    public int filter(Record[] records, int offset, int size, int[] selection) {
+        if (size > this.selection.length) {
+            throw new IllegalArgumentException("Expect at most " + this.selection.length
+                    + " records, got: " + size);
+        }
+        builder.reset();
+        for (int i = 0; i < size; i++) {
+            builder.append(records[offset + i]);
+        }
+        int n = filter.filter(builder.build(), this.selection);
+        for (int i = 0; i < n; i++) {
+            selection[i] = offset + this.selection[i];
+        }
+        return n;
+    }
+}
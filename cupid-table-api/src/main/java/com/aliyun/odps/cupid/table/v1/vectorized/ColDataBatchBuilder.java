@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.vectorized;
+
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Platform;
+import com.aliyun.odps.cupid.table.v1.util.Validator;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.type.DecimalTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoParser;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copies {@link ArrayRecord}s into a batch of column vectors, in the layout read by
+ * {@link ColDataVector}. The buffers are reused: a built batch is valid until the builder is
+ * reset or more records are appended. Complex types are not supported.
+ */
+public final class ColDataBatchBuilder {
+
+    private final int batchSize;
+    private final int[] recordIndexes;
+    private final ColumnBuffer[] columns;
+    private int rowCount;
+
+    /**
+     * Creates a builder of the given columns, the i-th column is read from the i-th column of
+     * the records.
+     */
+    public ColDataBatchBuilder(List<Attribute> columns, int batchSize) {
+        this(columns, null, batchSize);
+    }
+
+    /**
+     * Creates a builder of the given columns, the i-th column is read from the column
+     * recordIndexes[i] of the records.
+     */
+    public ColDataBatchBuilder(List<Attribute> columns, int[] recordIndexes, int batchSize) {
+        Validator.checkNotNull(columns, "columns");
+        Validator.checkInteger(batchSize, 1, "batchSize");
+        if (recordIndexes == null) {
+            recordIndexes = new int[columns.size()];
+            for (int i = 0; i < recordIndexes.length; i++) {
+                recordIndexes[i] = i;
+            }
+        } else if (recordIndexes.length != columns.size()) {
+            throw new IllegalArgumentException("Expect " + columns.size()
+                    + " record indexes, got: " + recordIndexes.length);
+        }
+        this.batchSize = batchSize;
+        this.recordIndexes = recordIndexes;
+        this.columns = new ColumnBuffer[columns.size()];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = ColumnBuffer.create(columns.get(i), batchSize);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isFull() {
+        return rowCount == batchSize;
+    }
+
+    public void append(Record record) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full: " + batchSize + " rows");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].put(record, recordIndexes[i], rowCount);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Keeps the given rows, in ascending order, and drops the others.
+     */
+    public void select(int[] selection, int size) {
+        if (size == rowCount) {
+            return;
+        }
+        for (ColumnBuffer column : columns) {
+            column.select(selection, size, rowCount);
+        }
+        rowCount = size;
+    }
+
+    public ColDataBatch build() {
+        ColDataVector[] vectors = new ColDataVector[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            vectors[i] = columns[i].toVector(rowCount);
+        }
+        ColDataBatch batch = new ColDataBatch(vectors);
+        batch.setRowCount(rowCount);
+        return batch;
+    }
+
+    public void reset() {
+        for (ColumnBuffer column : columns) {
+            column.reset();
+        }
+        rowCount = 0;
+    }
+
+    /** The buffers of a column, filled by a writer compiled for the type of the column. */
+    private static final class ColumnBuffer {
+
+        private final Attribute column;
+        private final int width;
+        private final ValueWriter writer;
+        private final byte[] dataBuf;
+        private final byte[] nulls;
+        private byte[] deepBuf;
+        private int deepBufSize;
+        // the string layout, a long length in a slot of 16 bytes, or the int length of old decimals
+        private final boolean hasLongLength;
+
+        private ColumnBuffer(Attribute column, int width, ValueWriter writer, boolean hasDeepBuf, int batchSize) {
+            this.column = column;
+            this.width = width;
+            this.writer = writer;
+            this.dataBuf = new byte[width * batchSize];
+            this.nulls = new byte[batchSize];
+            this.deepBuf = hasDeepBuf ? new byte[16 * batchSize] : null;
+            this.hasLongLength = width == 16;
+        }
+
+        static ColumnBuffer create(Attribute column, int batchSize) {
+            TypeInfo typeInfo = TypeInfoParser.getTypeInfoFromTypeString(column.getType());
+            switch (typeInfo.getOdpsType()) {
+                case BOOLEAN:
+                    return new ColumnBuffer(column, 1, (buffer, record, col, row) ->
+                            Platform.putBoolean(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row,
+                                    record.getBoolean(col)), false, batchSize);
+                case TINYINT:
+                    return new ColumnBuffer(column, 1, (buffer, record, col, row) ->
+                            buffer.dataBuf[row] = ((ArrayRecord) record).getTinyint(col), false, batchSize);
+                case SMALLINT:
+                    return new ColumnBuffer(column, 2, (buffer, record, col, row) ->
+                            Platform.putShort(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 2L,
+                                    ((ArrayRecord) record).getSmallint(col)), false, batchSize);
+                case INT:
+                    return new ColumnBuffer(column, 4, (buffer, record, col, row) ->
+                            Platform.putInt(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 4L,
+                                    ((ArrayRecord) record).getInt(col)), false, batchSize);
+                case BIGINT:
+                    return new ColumnBuffer(column, 8, (buffer, record, col, row) ->
+                            Platform.putLong(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 8L,
+                                    record.getBigint(col)), false, batchSize);
+                case FLOAT:
+                    return new ColumnBuffer(column, 4, (buffer, record, col, row) ->
+                            Platform.putFloat(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 4L,
+                                    ((ArrayRecord) record).getFloat(col)), false, batchSize);
+                case DOUBLE:
+                    return new ColumnBuffer(column, 8, (buffer, record, col, row) ->
+                            Platform.putDouble(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 8L,
+                                    record.getDouble(col)), false, batchSize);
+                case DATE:
+                    return new ColumnBuffer(column, 8, (buffer, record, col, row) ->
+                            Platform.putLong(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 8L,
+                                    DateUtils.getDayOffset(((ArrayRecord) record).getDate(col))), false, batchSize);
+                case DATETIME:
+                    return new ColumnBuffer(column, 8, (buffer, record, col, row) ->
+                            Platform.putLong(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 8L,
+                                    record.getDatetime(col).getTime()), false, batchSize);
+                case TIMESTAMP:
+                    return new ColumnBuffer(column, 12, (buffer, record, col, row) -> {
+                        Timestamp timestamp = ((ArrayRecord) record).getTimestamp(col);
+                        long offset = Platform.BYTE_ARRAY_OFFSET + row * 12L;
+                        Platform.putLong(buffer.dataBuf, offset, Math.floorDiv(timestamp.getTime(), 1000));
+                        Platform.putInt(buffer.dataBuf, offset + 8, timestamp.getNanos());
+                    }, false, batchSize);
+                case STRING:
+                case BINARY:
+                    return new ColumnBuffer(column, 16, (buffer, record, col, row) ->
+                            buffer.putBinary(row, record.getBytes(col)), true, batchSize);
+                case CHAR:
+                    return new ColumnBuffer(column, 16, (buffer, record, col, row) ->
+                            buffer.putBinary(row, ((ArrayRecord) record).getChar(col).getValue()
+                                    .getBytes(StandardCharsets.UTF_8)), true, batchSize);
+                case VARCHAR:
+                    return new ColumnBuffer(column, 16, (buffer, record, col, row) ->
+                            buffer.putBinary(row, ((ArrayRecord) record).getVarchar(col).getValue()
+                                    .getBytes(StandardCharsets.UTF_8)), true, batchSize);
+                case DECIMAL:
+                    return createDecimal(column, (DecimalTypeInfo) typeInfo, batchSize);
+                default:
+                    throw new UnsupportedOperationException("Unsupported type " + column.getType()
+                            + " of column " + column.getName() + " by col data batch builder");
+            }
+        }
+
+        private static ColumnBuffer createDecimal(Attribute column, DecimalTypeInfo typeInfo, int batchSize) {
+            int precision = typeInfo.getPrecision();
+            int scale = typeInfo.getScale();
+            if (precision == 54 && scale == 18) {
+                // the decimal of odps 1.0, as its string
+                return new ColumnBuffer(column, 4, (buffer, record, col, row) -> {
+                    byte[] bytes = record.getDecimal(col).toPlainString().getBytes(StandardCharsets.UTF_8);
+                    Platform.putInt(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 4L, bytes.length);
+                    buffer.appendDeepBuf(bytes);
+                }, true, batchSize);
+            } else if (precision > 18) {
+                return new ColumnBuffer(column, 16, (buffer, record, col, row) -> {
+                    byte[] bytes = unscaledValue(record.getDecimal(col), scale).toByteArray();
+                    if (bytes.length > 16) {
+                        throw new ArithmeticException("Decimal overflows " + column.getType());
+                    }
+                    byte signExtension = bytes[0] < 0 ? (byte) -1 : 0;
+                    int offset = row * 16;
+                    // little endian
+                    for (int i = 0; i < 16; i++) {
+                        buffer.dataBuf[offset + i] = i < bytes.length ? bytes[bytes.length - 1 - i] : signExtension;
+                    }
+                }, false, batchSize);
+            } else if (precision > 9) {
+                return new ColumnBuffer(column, 8, (buffer, record, col, row) ->
+                        Platform.putLong(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 8L,
+                                unscaledValue(record.getDecimal(col), scale).longValueExact()), false, batchSize);
+            } else if (precision > 4) {
+                return new ColumnBuffer(column, 4, (buffer, record, col, row) ->
+                        Platform.putInt(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 4L,
+                                unscaledValue(record.getDecimal(col), scale).intValueExact()), false, batchSize);
+            } else {
+                return new ColumnBuffer(column, 2, (buffer, record, col, row) ->
+                        Platform.putShort(buffer.dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 2L,
+                                unscaledValue(record.getDecimal(col), scale).shortValueExact()), false, batchSize);
+            }
+        }
+
+        private static BigInteger unscaledValue(BigDecimal decimal, int scale) {
+            return decimal.setScale(scale, RoundingMode.HALF_UP).unscaledValue();
+        }
+
+        void reset() {
+            deepBufSize = 0;
+        }
+
+        void put(Record record, int col, int row) {
+            if (record.isNull(col)) {
+                nulls[row] = 1;
+                // a null value has no bytes in the deep buffer
+                Arrays.fill(dataBuf, row * width, (row + 1) * width, (byte) 0);
+            } else {
+                nulls[row] = 0;
+                writer.write(this, record, col, row);
+            }
+        }
+
+        /**
+         * Moves the selected rows to the front, the bytes of the deep buffer as well.
+         */
+        void select(int[] selection, int size, int rowCount) {
+            if (deepBuf == null) {
+                for (int i = 0; i < size; i++) {
+                    int row = selection[i];
+                    if (row != i) {
+                        System.arraycopy(dataBuf, row * width, dataBuf, i * width, width);
+                        nulls[i] = nulls[row];
+                    }
+                }
+                return;
+            }
+            int srcOffset = 0;
+            int dstOffset = 0;
+            int next = 0;
+            for (int row = 0; row < rowCount && next < size; row++) {
+                int length = getLength(row);
+                if (selection[next] == row) {
+                    System.arraycopy(deepBuf, srcOffset, deepBuf, dstOffset, length);
+                    if (row != next) {
+                        System.arraycopy(dataBuf, row * width, dataBuf, next * width, width);
+                        nulls[next] = nulls[row];
+                    }
+                    dstOffset += length;
+                    next++;
+                }
+                srcOffset += length;
+            }
+            deepBufSize = dstOffset;
+        }
+
+        private int getLength(int row) {
+            return hasLongLength ? (int) Platform.getLong(dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 16L)
+                    : Platform.getInt(dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 4L);
+        }
+
+        private void putBinary(int row, byte[] bytes) {
+            Platform.putLong(dataBuf, Platform.BYTE_ARRAY_OFFSET + row * 16L, bytes.length);
+            appendDeepBuf(bytes);
+        }
+
+        private void appendDeepBuf(byte[] bytes) {
+            if (deepBufSize + bytes.length > deepBuf.length) {
+                byte[] newArray = new byte[(deepBuf.length + bytes.length) * 2];
+                System.arraycopy(deepBuf, 0, newArray, 0, deepBufSize);
+                deepBuf = newArray;
+            }
+            System.arraycopy(bytes, 0, deepBuf, deepBufSize, bytes.length);
+            deepBufSize += bytes.length;
+        }
+
+        ColDataVector toVector(int numRows) {
+            return new ColDataVector(column, dataBuf, numRows * width, nulls, deepBuf);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(ColumnBuffer buffer, Record record, int col, int row);
+    }
+}
@@ -63,6 +63,7 @@ public final class ColDataVector {
         this.deepBuf = deepBuf;
         this.odpsTypeInfo = getTypeInfoFromString(column.getType());
         this.odpsType = this.odpsTypeInfo.getOdpsType();
+        this.isOldDecimal = isOldDecimal(this.odpsTypeInfo);
         this.numNulls = -1;
         this.binaryOffsets = null;
     }
@@ -186,9 +187,9 @@ public final class ColDataVector {
         } else if (precision > 9) {
             return new BigDecimal(new BigInteger(String.valueOf(Platform.getLong(dataBuf, Platform.BYTE_ARRAY_OFFSET + rowId * 8))), scale);
         } else if (precision > 4) {
-            return new BigDecimal(new BigInteger(String.valueOf(Platform.getLong(dataBuf, Platform.BYTE_ARRAY_OFFSET + rowId * 4))), scale);
+            return BigDecimal.valueOf(Platform.getInt(dataBuf, Platform.BYTE_ARRAY_OFFSET + rowId * 4), scale);
         } else {
-            return new BigDecimal(new BigInteger(String.valueOf(Platform.getLong(dataBuf, Platform.BYTE_ARRAY_OFFSET + rowId * 2))), scale);
+            return BigDecimal.valueOf(Platform.getShort(dataBuf, Platform.BYTE_ARRAY_OFFSET + rowId * 2), scale);
         }
     }
 
@@ -198,8 +199,7 @@ public final class ColDataVector {
     }
 
     public byte[] getBinary(int rowId) {
-        setBinaryOffsets(this.numRows);
-        int offset = binaryOffsets[rowId];
+        int offset = getBinaryOffset(rowId);
         int numBytes = getBinaryLength(rowId);
         byte[] binary = new byte[numBytes];
         System.arraycopy(deepBuf, offset, binary, 0, numBytes);
@@ -222,7 +222,15 @@ public final class ColDataVector {
         return new java.util.Date(getLong(rowId));
     }
 
-    private int getBinaryLength(int rowId) {
+    /**
+     * Returns the offset in the deep buffer of the bytes of a string, binary or old decimal row.
+     */
+    public int getBinaryOffset(int rowId) {
+        setBinaryOffsets(this.numRows);
+        return binaryOffsets[rowId];
+    }
+
+    public int getBinaryLength(int rowId) {
         if (isOldDecimal) {
             return getInt(rowId);
         }
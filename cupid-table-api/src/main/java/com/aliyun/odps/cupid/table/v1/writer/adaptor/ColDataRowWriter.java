@@ -33,31 +33,43 @@ import com.aliyun.odps.type.DecimalTypeInfo;
 import com.aliyun.odps.type.TypeInfo;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Buffers rows into batches of column vectors and writes them to a {@link FileWriter}. The
+ * buffers are allocated once and reused by every batch, the variable length values grow their
+ * buffers geometrically. Without a batch size, as many rows as fit in
+ * {@link #TARGET_BATCH_BYTES} are buffered, at most {@link #MAX_BATCH_SIZE}.
+ */
 public class ColDataRowWriter {
 
+    public static final int MAX_BATCH_SIZE = 4096;
+    public static final int MIN_BATCH_SIZE = 64;
+    public static final int TARGET_BATCH_BYTES = 4 * 1024 * 1024;
+    // the assumed size of a string value when sizing the batch
+    private static final int ESTIMATED_VALUE_BYTES = 32;
+
     private FileWriter<ColDataBatch> writer;
     private Column[] cols;
 
     private int batchSize;
     private int rowCount;
 
-    private Map<Integer, Integer> stringColSizeMap = new HashMap<>(4);
+    private TypeInfo[] typeInfos;
+    private int[] columnSizes;
+    private boolean[] isVariableLength;
     private byte[][] dataBuf;
     private int[] dataBufSize;
     private byte[][] nulls;
     private byte[][] deepBuf;
+    private int[] deepBufSize;
     private ColDataVector[] vectors;
 
     ColDataBatch colDataBatch;
 
     public ColDataRowWriter(Column[] cols, FileWriter<ColDataBatch> writer) {
-        this(cols, writer, 4096);
+        this(cols, writer, getDefaultBatchSize(cols));
     }
 
     public ColDataRowWriter(Column[] cols, FileWriter<ColDataBatch> writer, int batchSize) {
@@ -70,27 +82,53 @@ public class ColDataRowWriter {
         this.init();
     }
 
+    /**
+     * Returns the number of rows of the given columns which fit in {@link #TARGET_BATCH_BYTES},
+     * between {@link #MIN_BATCH_SIZE} and {@link #MAX_BATCH_SIZE}.
+     */
+    public static int getDefaultBatchSize(Column[] cols) {
+        Validator.checkNotNull(cols, "columns");
+        long rowBytes = 0;
+        for (Column col : cols) {
+            TypeInfo odpsTypeInfo = col.getTypeInfo();
+            // the value and its null flag
+            rowBytes += getColumnSize(odpsTypeInfo) + 1;
+            if (isVariableLength(odpsTypeInfo)) {
+                rowBytes += ESTIMATED_VALUE_BYTES;
+            }
+        }
+        long batchSize = TARGET_BATCH_BYTES / Math.max(rowBytes, 1);
+        return (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, batchSize));
+    }
+
     public void init() {
         vectors = new ColDataVector[cols.length];
         rowCount = 0;
+        typeInfos = new TypeInfo[cols.length];
+        columnSizes = new int[cols.length];
+        isVariableLength = new boolean[cols.length];
         dataBuf = new byte[cols.length][];
         dataBufSize = new int[cols.length];
         nulls = new byte[cols.length][];
         deepBuf = new byte[cols.length][];
+        deepBufSize = new int[cols.length];
         initColData();
         colDataBatch = new ColDataBatch(this.vectors);
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     public void insert(Row row) throws IOException {
         for (int i = 0; i < dataBuf.length; ++i) {
-            TypeInfo odpsTypeInfo = cols[i].getTypeInfo();
             if ((row).isNullAt(i)) {
                 nulls[i][rowCount] = 1;
             } else {
-                trans(odpsTypeInfo, row, i, rowCount);
+                trans(typeInfos[i], row, i, rowCount);
                 nulls[i][rowCount] = 0;
             }
-            dataBufSize[i] += getColumnSize(odpsTypeInfo);
+            dataBufSize[i] += columnSizes[i];
         }
         rowCount++;
         if (rowCount == batchSize) {
@@ -102,6 +140,10 @@ public class ColDataRowWriter {
         if (rowCount > 0) {
             for (int i = 0; i < dataBuf.length; i++) {
                 this.vectors[i].setDataBufSize(dataBufSize[i]);
+                if (isVariableLength[i]) {
+                    // the buffer may have grown
+                    this.vectors[i].setDeepBuf(deepBuf[i]);
+                }
             }
             colDataBatch.setRowCount(rowCount);
             writer.write(colDataBatch);
@@ -111,11 +153,10 @@ public class ColDataRowWriter {
 
     private void reset() {
         for (int i = 0; i < dataBufSize.length; ++i) {
+            // the values of null rows are not written, clear what this batch used
+            Platform.setMemory(dataBuf[i], Platform.BYTE_ARRAY_OFFSET, dataBufSize[i], (byte) 0);
             dataBufSize[i] = 0;
-            if (stringColSizeMap.containsKey(i)) {
-                stringColSizeMap.put(i, 0);
-            }
-            Platform.setMemory(dataBuf[i], Platform.BYTE_ARRAY_OFFSET, dataBuf[i].length, (byte) 0);
+            deepBufSize[i] = 0;
         }
         rowCount = 0;
     }
@@ -143,14 +184,17 @@ public class ColDataRowWriter {
     private void initColData() {
         for (int i = 0; i < cols.length; ++i) {
             TypeInfo odpsTypeInfo = cols[i].getTypeInfo();
-            dataBuf[i] = new byte[getColumnSize(odpsTypeInfo) * batchSize];
-            if (isString(odpsTypeInfo.getOdpsType()) || isOldDecimal(odpsTypeInfo)) {
-                stringColSizeMap.put(i, 0);
+            typeInfos[i] = odpsTypeInfo;
+            columnSizes[i] = getColumnSize(odpsTypeInfo);
+            isVariableLength[i] = isVariableLength(odpsTypeInfo);
+            dataBuf[i] = new byte[columnSizes[i] * batchSize];
+            if (isVariableLength[i]) {
                 deepBuf[i] = new byte[8 * batchSize];
             } else {
                 deepBuf[i] = null;
             }
             dataBufSize[i] = 0;
+            deepBufSize[i] = 0;
             nulls[i] = new byte[batchSize];
             vectors[i] = new ColDataVector(
                     new Attribute(cols[i].getName(), cols[i].getTypeInfo().getTypeName()),
@@ -161,7 +205,7 @@ public class ColDataRowWriter {
         }
     }
 
-    private int getColumnSize(TypeInfo odpsTypeInfo) throws RuntimeException {
+    private static int getColumnSize(TypeInfo odpsTypeInfo) throws RuntimeException {
         switch (odpsTypeInfo.getOdpsType()) {
             case BOOLEAN:
             case TINYINT:
@@ -189,7 +233,7 @@ public class ColDataRowWriter {
         }
     }
 
-    private int getDecimalSize(DecimalTypeInfo decimalInfo) {
+    private static int getDecimalSize(DecimalTypeInfo decimalInfo) {
         if (decimalInfo.getPrecision() > 38) {
             return 4;
         } else if (decimalInfo.getPrecision() > 18) {
@@ -203,22 +247,26 @@ public class ColDataRowWriter {
         }
     }
 
-    private boolean isString(OdpsType odpsType) {
-        return odpsType == OdpsType.STRING || odpsType == OdpsType.VARCHAR ||
-                odpsType == OdpsType.BINARY || odpsType == OdpsType.CHAR;
+    /**
+     * Strings and the decimals of more than 38 digits keep their bytes in the deep buffer.
+     */
+    private static boolean isVariableLength(TypeInfo odpsTypeInfo) {
+        return isString(odpsTypeInfo.getOdpsType()) || (odpsTypeInfo.getOdpsType() == OdpsType.DECIMAL
+                && ((DecimalTypeInfo) odpsTypeInfo).getPrecision() > 38);
     }
 
-    private boolean isOldDecimal(TypeInfo odpsTypeInfo) {
-        return odpsTypeInfo.getOdpsType() == OdpsType.DECIMAL &&
-                ((DecimalTypeInfo) odpsTypeInfo).getPrecision() == 54 &&
-                ((DecimalTypeInfo) odpsTypeInfo).getScale() == 18;
+    private static boolean isString(OdpsType odpsType) {
+        return odpsType == OdpsType.STRING || odpsType == OdpsType.VARCHAR ||
+                odpsType == OdpsType.BINARY || odpsType == OdpsType.CHAR;
     }
 
-    private void trans(TypeInfo odpsTypeInfo, Row rec, int ind, int rCnt) throws UnsupportedEncodingException {
+    private void trans(TypeInfo odpsTypeInfo, Row rec, int ind, int rCnt) {
         if (isString(odpsTypeInfo.getOdpsType())) {
-            byte[] utf8bytes = null;
+            int numBytes;
             if (odpsTypeInfo.getOdpsType() == OdpsType.BINARY) {
-                utf8bytes = rec.getBytes(ind);
+                byte[] bytes = rec.getBytes(ind);
+                appendDeepBuf(ind, bytes);
+                numBytes = bytes.length;
             } else {
                 String utf8String = null;
                 switch (odpsTypeInfo.getOdpsType()) {
@@ -232,25 +280,14 @@ public class ColDataRowWriter {
                         utf8String = rec.getString(ind);
                         break;
                 }
+                int length = utf8String.length();
                 if (odpsTypeInfo.getOdpsType() == OdpsType.CHAR
                         || odpsTypeInfo.getOdpsType() == OdpsType.VARCHAR) {
                     AbstractCharTypeInfo ti = (AbstractCharTypeInfo) odpsTypeInfo;
-                    int maxLength = ti.getLength();
-                    if (utf8String.length() > maxLength) {
-                        utf8String = utf8String.substring(0, maxLength);
-                    }
+                    length = Math.min(length, ti.getLength());
                 }
-                utf8bytes = utf8String.getBytes("utf-8");
+                numBytes = appendUtf8(ind, utf8String, length);
             }
-            int numBytes = utf8bytes.length;
-            if (stringColSizeMap.get(ind) + numBytes > deepBuf[ind].length) {
-                byte[] newArray = new byte[(deepBuf[ind].length + numBytes) * 2];
-                System.arraycopy(deepBuf[ind], 0, newArray, 0, stringColSizeMap.get(ind));
-                deepBuf[ind] = newArray;
-            }
-            Platform.copyMemory(utf8bytes, Platform.BYTE_ARRAY_OFFSET,
-                    deepBuf[ind], Platform.BYTE_ARRAY_OFFSET + stringColSizeMap.get(ind), numBytes);
-            stringColSizeMap.put(ind, stringColSizeMap.get(ind) + numBytes);
             Platform.putInt(dataBuf[ind], Platform.BYTE_ARRAY_OFFSET + rCnt * 4, numBytes);
         } else {
             switch (odpsTypeInfo.getOdpsType()) {
@@ -293,15 +330,8 @@ public class ColDataRowWriter {
                     BigDecimal decimal = rec.getDecimal(ind);
                     if (decimalInfo.getPrecision() > 38) {
                         byte[] decimalBytes = decimal.toString().getBytes();
-                        int numBytes = decimalBytes.length;
-                        if (stringColSizeMap.get(ind) + numBytes > deepBuf[ind].length) {
-                            byte[] newArray = new byte[(deepBuf[ind].length + numBytes) * 2];
-                            System.arraycopy(deepBuf[ind], 0, newArray, 0, stringColSizeMap.get(ind));
-                            deepBuf[ind] = newArray;
-                        }
-                        System.arraycopy(decimalBytes, 0, deepBuf[ind], stringColSizeMap.get(ind), numBytes);
-                        stringColSizeMap.put(ind, stringColSizeMap.get(ind) + numBytes);
-                        Platform.putInt(dataBuf[ind], Platform.BYTE_ARRAY_OFFSET + rCnt * 4, numBytes);
+                        appendDeepBuf(ind, decimalBytes);
+                        Platform.putInt(dataBuf[ind], Platform.BYTE_ARRAY_OFFSET + rCnt * 4, decimalBytes.length);
                     } else if (decimalInfo.getPrecision() > 18) {
                         byte[] byteArray = decimal.unscaledValue().toByteArray();
                         int length = byteArray.length;
@@ -329,4 +359,58 @@ public class ColDataRowWriter {
             }
         }
     }
+
+    private void appendDeepBuf(int ind, byte[] bytes) {
+        ensureDeepBuf(ind, bytes.length);
+        System.arraycopy(bytes, 0, deepBuf[ind], deepBufSize[ind], bytes.length);
+        deepBufSize[ind] += bytes.length;
+    }
+
+    /**
+     * Encodes the first length chars of the string as UTF-8 into the deep buffer, the same bytes
+     * as {@link String#getBytes(java.nio.charset.Charset)} without allocating them.
+     */
+    private int appendUtf8(int ind, String str, int length) {
+        // at most 3 bytes per char, a surrogate pair takes 4 bytes for 2 chars
+        ensureDeepBuf(ind, length * 3);
+        byte[] buf = deepBuf[ind];
+        int start = deepBufSize[ind];
+        int pos = start;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                    buf[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    // malformed, replaced like the charset encoder does
+                    buf[pos++] = (byte) '?';
+                }
+            } else {
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        deepBufSize[ind] = pos;
+        return pos - start;
+    }
+
+    private void ensureDeepBuf(int ind, int numBytes) {
+        int size = deepBufSize[ind];
+        if (size + numBytes > deepBuf[ind].length) {
+            byte[] newArray = new byte[Math.max(deepBuf[ind].length * 2, size + numBytes)];
+            System.arraycopy(deepBuf[ind], 0, newArray, 0, size);
+            deepBuf[ind] = newArray;
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package demo.memory;
+
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.BatchFilter;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatchBuilder;
+import com.aliyun.odps.data.ArrayRecord;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Copies the records of a file into batches of the read columns. The rows for which the filters
+ * of the split are not true are dropped, a batch is only empty at the end of the file.
+ */
+class MemoryColDataReader implements SplitReader<ColDataBatch> {
+
+    private final ColDataBatchBuilder builder;
+    private final BatchFilter filter;
+    private final int[] selection;
+
+    private ArrayRecord[] file;
+    private int cursor;
+
+    MemoryColDataReader(MemoryStore.IndexSplit split, int batchSize) {
+        this.file = MemoryStore.getTable(split.getProject(), split.getTable()).read(split.getIndex());
+        List<Attribute> readDataColumns = split.getReadDataColumns();
+        List<Attribute> recordColumns = Utils.getRecordColumns(file, readDataColumns);
+        int[] recordIndexes = new int[readDataColumns.size()];
+        for (int i = 0; i < recordIndexes.length; i++) {
+            recordIndexes[i] = indexOf(recordColumns, readDataColumns.get(i).getName());
+        }
+        this.builder = new ColDataBatchBuilder(readDataColumns, recordIndexes, batchSize);
+        this.filter = BatchFilter.create(split.getFilterExpressions(), readDataColumns);
+        this.selection = new int[batchSize];
+    }
+
+    private static int indexOf(List<Attribute> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column " + name + " not found");
+    }
+
+    @Override
+    public void close() throws IOException {
+        file = null;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return -1;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < file.length;
+    }
+
+    @Override
+    public ColDataBatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        builder.reset();
+        while (builder.getRowCount() == 0 && cursor < file.length) {
+            while (!builder.isFull() && cursor < file.length) {
+                builder.append(file[cursor++]);
+            }
+            if (filter != null) {
+                builder.select(selection, filter.filter(builder.build(), selection));
+            }
+        }
+        return builder.build();
+    }
+}
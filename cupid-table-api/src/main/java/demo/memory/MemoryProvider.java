@@ -63,12 +63,14 @@ public class MemoryProvider implements TableProvider {
     @Override
     public SplitReader<ArrayRecord> createRecordReader(InputSplit inputSplit) {
         MemoryStore.IndexSplit memSplit = (MemoryStore.IndexSplit) inputSplit;
-        return new MemoryReader(memSplit.getProject(), memSplit.getTable(), memSplit.getIndex());
+        return new MemoryReader(memSplit.getProject(), memSplit.getTable(), memSplit.getIndex(),
+                memSplit.getFilterExpressions());
     }
 
     @Override
     public SplitReader<ColDataBatch> createColDataReader(InputSplit inputSplit, int batchSize) {
-        throw new UnsupportedOperationException();
+        MemoryStore.IndexSplit memSplit = (MemoryStore.IndexSplit) inputSplit;
+        return new MemoryColDataReader(memSplit, batchSize);
     }
 
     @Override
@@ -88,7 +90,7 @@ public class MemoryProvider implements TableProvider {
 
     @Override
     public ReadCapabilities getReadCapabilities() {
-        return new ReadCapabilities(false, false, false);
+        return new ReadCapabilities(false, true, false);
     }
 
     @Override
@@ -23,6 +23,7 @@ import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
 import com.aliyun.odps.cupid.table.v1.reader.RequiredSchema;
 import com.aliyun.odps.cupid.table.v1.reader.TableReadSession;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -32,6 +33,7 @@ import java.util.Map;
 class MemoryReadSession extends TableReadSession {
 
     private InputSplit[] inputSplits;
+    private List<FilterExpression> filterExpressions = Collections.emptyList();
 
     MemoryReadSession(String project,
                       String table,
@@ -52,17 +54,24 @@ class MemoryReadSession extends TableReadSession {
             MemoryStore.Table memTable = MemoryStore.getTable(project, table);
             inputSplits = new InputSplit[memTable.getFileCount()];
             for (int i = 0; i < inputSplits.length; i++) {
-                inputSplits[i] = new MemoryStore.IndexSplit(project, table,
+                MemoryStore.IndexSplit split = new MemoryStore.IndexSplit(project, table,
                         Utils.toAttributes(tableSchema.getColumns()),
                         Utils.toAttributes(tableSchema.getPartitionColumns()),
                         readDataColumns.toList(), emptyPartSpec, i);
+                split.setFilterExpressions(filterExpressions);
+                inputSplits[i] = split;
             }
         }
         return inputSplits;
     }
 
+    @Override
+    protected void setFilterExpressions(List<FilterExpression> filterExpressions) {
+        this.filterExpressions = filterExpressions;
+    }
+
     @Override
     public InputSplit[] getOrCreateInputSplits() throws IOException {
-        throw new UnsupportedOperationException();
+        return getOrCreateInputSplits(splitSizeInMB);
     }
 }
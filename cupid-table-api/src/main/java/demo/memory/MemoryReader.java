@@ -20,24 +20,40 @@
 package demo.memory;
 
 import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.reader.filter.RecordBatchFilter;
 import com.aliyun.odps.data.ArrayRecord;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 class MemoryReader implements SplitReader<ArrayRecord> {
 
+    static final int FILTER_BATCH_SIZE = 1024;
+
     private final String project;
     private final String table;
     private final int index;
+    private final RecordBatchFilter filter;
 
     private ArrayRecord[] file;
     private int cursor;
+    private int[] selection;
+    private int position;
+    private int selected;
 
-    MemoryReader(String project, String table, int index) {
+    MemoryReader(String project, String table, int index, List<FilterExpression> filters) {
         this.project = project;
         this.table = table;
         this.index = index;
         file = MemoryStore.getTable(project, table).read(index);
+        this.filter = RecordBatchFilter.create(filters,
+                Utils.getRecordColumns(file, Collections.emptyList()), FILTER_BATCH_SIZE);
+        if (filter != null) {
+            selection = new int[FILTER_BATCH_SIZE];
+        }
     }
 
     @Override
@@ -57,11 +73,26 @@ class MemoryReader implements SplitReader<ArrayRecord> {
 
     @Override
     public boolean hasNext() {
-        return cursor < file.length;
+        if (filter == null) {
+            return cursor < file.length;
+        }
+        while (position == selected && cursor < file.length) {
+            int size = Math.min(FILTER_BATCH_SIZE, file.length - cursor);
+            selected = filter.filter(file, cursor, size, selection);
+            position = 0;
+            cursor += size;
+        }
+        return position < selected;
     }
 
     @Override
     public ArrayRecord next() {
-        return file[cursor++];
+        if (filter == null) {
+            return file[cursor++];
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return file[selection[position++]];
     }
 }
@@ -21,6 +21,7 @@ package demo.memory;
 
 import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import com.aliyun.odps.data.ArrayRecord;
 
 import java.util.ArrayList;
@@ -53,6 +54,7 @@ public class MemoryStore {
 
     static class IndexSplit extends InputSplit {
         private int index;
+        private List<FilterExpression> filterExpressions = Collections.emptyList();
 
         protected IndexSplit(String project,
                              String table,
@@ -73,6 +75,15 @@ public class MemoryStore {
         int getIndex() {
             return index;
         }
+
+        @Override
+        protected List<FilterExpression> getFilterExpressions() {
+            return filterExpressions;
+        }
+
+        void setFilterExpressions(List<FilterExpression> filterExpressions) {
+            this.filterExpressions = filterExpressions;
+        }
     }
 
     static class Table {
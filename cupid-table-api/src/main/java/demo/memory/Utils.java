@@ -21,8 +21,10 @@ package demo.memory;
 
 import com.aliyun.odps.Column;
 import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.data.ArrayRecord;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Utils {
@@ -34,4 +36,11 @@ public class Utils {
         }
         return attributes;
     }
+
+    /**
+     * The columns of the records of a file, which are written with the schema of the writer.
+     */
+    static List<Attribute> getRecordColumns(ArrayRecord[] file, List<Attribute> defaultColumns) {
+        return file.length == 0 ? defaultColumns : toAttributes(Arrays.asList(file[0].getColumns()));
+    }
 }
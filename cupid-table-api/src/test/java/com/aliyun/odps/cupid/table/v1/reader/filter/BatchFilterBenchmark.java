@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.reader.filter;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatchBuilder;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.type.TypeInfoParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression.*;
+
+/**
+ * Measures the throughput, CPU time and allocated bytes per row of {@link BatchFilter} on batches
+ * of random values, for filters selecting about 1%, 10%, 50% and 90% of the rows.
+ *
+ * <p>Usage: {@code BatchFilterBenchmark [numRows] [iterations] [batchSize]}
+ */
+public class BatchFilterBenchmark {
+
+    private static final List<Attribute> columns = Arrays.asList(
+            new Attribute("c_bigint", "bigint"),
+            new Attribute("c_string", "string"),
+            new Attribute("c_double", "double"));
+
+    public static void main(String[] args) {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        System.out.printf("%-28s %8s %8s %12s %10s %10s%n",
+                "filter", "target", "selected", "rows/s", "ns/row", "B/row");
+        for (int percent : new int[]{1, 10, 50, 90}) {
+            ColDataBatch batch = createBatch(batchSize, percent);
+            int bound = percent * 10;
+            run("bigint <", percent, batch, LessThan("c_bigint", bound), numRows, iterations);
+            run("double >=", percent, batch, GreaterThanOrEqual("c_double", 1000 - bound), numRows, iterations);
+            run("bigint in", percent, batch, In("c_bigint", createValues(bound)), numRows, iterations);
+            run("string starts with", percent, batch, StringStartsWith("c_string", "apricot"),
+                    numRows, iterations);
+            run("string < and not null", percent, batch,
+                    And(LessThan("c_string", "b"), IsNotNull("c_string")), numRows, iterations);
+            run("bigint < or >=", percent, batch,
+                    Or(LessThan("c_bigint", bound / 2), GreaterThanOrEqual("c_bigint", 1000 - (bound + 1) / 2)),
+                    numRows, iterations);
+            run("not (bigint >= and double <)", percent, batch,
+                    Not(And(GreaterThanOrEqual("c_bigint", bound), LessThan("c_double", 1000))),
+                    numRows, iterations);
+        }
+    }
+
+    private static void run(String name,
+                            int percent,
+                            ColDataBatch batch,
+                            FilterExpression expression,
+                            int numRows,
+                            int iterations) {
+        BatchFilter filter = BatchFilter.create(Collections.singletonList(expression), columns);
+        int[] selection = new int[batch.getRowCount()];
+        int numBatches = numRows / batch.getRowCount();
+        double[] result = new double[2];
+        long elapsed = 0;
+        long selected = 0;
+        for (int i = 0; i < iterations; i++) {
+            Meter meter = new Meter(numBatches * batch.getRowCount());
+            long start = System.nanoTime();
+            selected = 0;
+            for (int n = 0; n < numBatches; n++) {
+                selected += filter.filter(batch, selection);
+            }
+            // the first iteration warms up
+            if (i > 0) {
+                elapsed += System.nanoTime() - start;
+            }
+            meter.next(result, 0);
+        }
+        System.out.printf("%-28s %7d%% %7.1f%% %12.0f %10.2f %10.3f%n", name, percent,
+                100.0 * selected / numBatches / batch.getRowCount(),
+                (double) numBatches * batch.getRowCount() * (iterations - 1) / elapsed * 1e9,
+                result[0], result[1]);
+    }
+
+    /**
+     * Rows of a bigint and a double in [0, 1000) and of a string which starts with "apricot" for the
+     * given percent of the rows, one in 20 strings is null.
+     */
+    private static ColDataBatch createBatch(int batchSize, int percent) {
+        Column[] recordColumns = new Column[columns.size()];
+        for (int i = 0; i < recordColumns.length; i++) {
+            recordColumns[i] = new Column(columns.get(i).getName(),
+                    TypeInfoParser.getTypeInfoFromTypeString(columns.get(i).getType()));
+        }
+        ColDataBatchBuilder builder = new ColDataBatchBuilder(columns, batchSize);
+        ArrayRecord record = new ArrayRecord(recordColumns);
+        Random random = new Random(42);
+        for (int i = 0; i < batchSize; i++) {
+            long value = random.nextInt(1000);
+            record.set(0, value);
+            record.set(1, i % 20 == 0 ? null :
+                    (random.nextInt(100) < percent ? "apricot_" : "banana_") + value);
+            record.set(2, random.nextDouble() * 1000);
+            builder.append(record);
+        }
+        return builder.build();
+    }
+
+    private static Object[] createValues(int size) {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (long) i;
+        }
+        return values;
+    }
+
+    /** CPU time and allocated bytes per row of the current thread since the last measurement. */
+    private static class Meter {
+
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+        private final int numRows;
+        private long cpu;
+        private long bytes;
+
+        private Meter(int numRows) {
+            this.numRows = numRows;
+            this.cpu = threadMXBean.getCurrentThreadCpuTime();
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+
+        private void next(double[] result, int offset) {
+            long nowCpu = threadMXBean.getCurrentThreadCpuTime();
+            long nowBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            result[offset] = (double) (nowCpu - cpu) / numRows;
+            result[offset + 1] = (double) (nowBytes - bytes) / numRows;
+            this.cpu = nowCpu;
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
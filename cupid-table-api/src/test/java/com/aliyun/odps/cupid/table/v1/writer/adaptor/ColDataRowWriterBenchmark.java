@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.writer.adaptor;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Measures the throughput, CPU time and allocated bytes per row of {@link ColDataRowWriter} on
+ * wide schemas of mostly string columns, with the default batch size and with batches of 4096
+ * rows.
+ *
+ * <p>Usage: {@code ColDataRowWriterBenchmark [numRows] [iterations]}
+ */
+public class ColDataRowWriterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%-36s %10s %12s %10s %10s%n", "schema", "batch", "rows/s", "ns/row", "B/row");
+        for (int numStrings : new int[]{16, 64, 256}) {
+            for (int stringLength : new int[]{8, 64}) {
+                Column[] cols = createColumns(numStrings);
+                BenchmarkRow[] rows = createRows(cols, 1024, stringLength);
+                String schema = numStrings + " strings of " + stringLength + "B + 8 fixed";
+                run(schema, cols, rows, numRows, iterations, 0);
+                run(schema, cols, rows, numRows, iterations, 4096);
+            }
+        }
+    }
+
+    private static void run(String schema,
+                            Column[] cols,
+                            BenchmarkRow[] rows,
+                            int numRows,
+                            int iterations,
+                            int batchSize) throws Exception {
+        double[] result = new double[2];
+        long elapsed = 0;
+        for (int i = 0; i < iterations; i++) {
+            CountingWriter writer = new CountingWriter();
+            Meter meter = new Meter(numRows);
+            long start = System.nanoTime();
+            ColDataRowWriter rowWriter = batchSize > 0 ?
+                    new ColDataRowWriter(cols, writer, batchSize) : new ColDataRowWriter(cols, writer);
+            for (int n = 0; n < numRows; n++) {
+                rowWriter.insert(rows[n & (rows.length - 1)]);
+            }
+            rowWriter.close();
+            // the first iteration warms up
+            if (i > 0) {
+                elapsed += System.nanoTime() - start;
+            }
+            meter.next(result, 0);
+            if (writer.rows != numRows) {
+                throw new IllegalStateException("Wrote " + writer.rows + " rows");
+            }
+        }
+        System.out.printf("%-36s %10s %12.0f %10.1f %10.1f%n", schema,
+                batchSize > 0 ? String.valueOf(batchSize) : "default",
+                (double) numRows * (iterations - 1) / elapsed * 1e9, result[0], result[1]);
+    }
+
+    private static Column[] createColumns(int numStrings) {
+        List<Column> cols = new ArrayList<>();
+        for (int i = 0; i < numStrings; i++) {
+            cols.add(new Column("s" + i, TypeInfoFactory.STRING));
+        }
+        for (int i = 0; i < 4; i++) {
+            cols.add(new Column("l" + i, TypeInfoFactory.BIGINT));
+            cols.add(new Column("d" + i, TypeInfoFactory.DOUBLE));
+        }
+        return cols.toArray(new Column[0]);
+    }
+
+    private static BenchmarkRow[] createRows(Column[] cols, int numRows, int stringLength) {
+        BenchmarkRow[] rows = new BenchmarkRow[numRows];
+        StringBuilder builder = new StringBuilder();
+        for (int r = 0; r < numRows; r++) {
+            Object[] values = new Object[cols.length];
+            for (int c = 0; c < cols.length; c++) {
+                switch (cols[c].getTypeInfo().getOdpsType()) {
+                    case STRING:
+                        builder.setLength(0);
+                        // lengths vary around the given one
+                        int length = stringLength / 2 + (r * 31 + c * 17) % (stringLength + 1);
+                        for (int i = 0; i < length; i++) {
+                            builder.append((char) ('a' + (r + c + i) % 26));
+                        }
+                        values[c] = (r + c) % 10 == 0 ? null : builder.toString();
+                        break;
+                    case BIGINT:
+                        values[c] = (long) r * c;
+                        break;
+                    default:
+                        values[c] = r * 0.5 + c;
+                        break;
+                }
+            }
+            rows[r] = new BenchmarkRow(values);
+        }
+        return rows;
+    }
+
+    /** A row of the given values. */
+    private static final class BenchmarkRow implements Row {
+
+        private final Object[] values;
+
+        private BenchmarkRow(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean isNullAt(int idx) {
+            return values[idx] == null;
+        }
+
+        @Override
+        public boolean getBoolean(int idx) {
+            return (Boolean) values[idx];
+        }
+
+        @Override
+        public byte getByte(int idx) {
+            return (Byte) values[idx];
+        }
+
+        @Override
+        public short getShort(int idx) {
+            return (Short) values[idx];
+        }
+
+        @Override
+        public int getInt(int idx) {
+            return (Integer) values[idx];
+        }
+
+        @Override
+        public long getLong(int idx) {
+            return (Long) values[idx];
+        }
+
+        @Override
+        public float getFloat(int idx) {
+            return (Float) values[idx];
+        }
+
+        @Override
+        public double getDouble(int idx) {
+            return (Double) values[idx];
+        }
+
+        @Override
+        public Date getDatetime(int idx) {
+            return (Date) values[idx];
+        }
+
+        @Override
+        public java.sql.Date getDate(int idx) {
+            return (java.sql.Date) values[idx];
+        }
+
+        @Override
+        public Timestamp getTimeStamp(int idx) {
+            return (Timestamp) values[idx];
+        }
+
+        @Override
+        public BigDecimal getDecimal(int idx) {
+            return (BigDecimal) values[idx];
+        }
+
+        @Override
+        public String getString(int idx) {
+            return (String) values[idx];
+        }
+
+        @Override
+        public Char getChar(int idx) {
+            return (Char) values[idx];
+        }
+
+        @Override
+        public Varchar getVarchar(int idx) {
+            return (Varchar) values[idx];
+        }
+
+        @Override
+        public byte[] getBytes(int idx) {
+            return ((String) values[idx]).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Counts the rows of the batches. */
+    private static final class CountingWriter implements FileWriter<ColDataBatch> {
+
+        private long rows;
+
+        @Override
+        public void write(ColDataBatch data) {
+            rows += data.getRowCount();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return -1;
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return rows;
+        }
+    }
+
+    /** CPU time and allocated bytes per row of the current thread since the last measurement. */
+    private static class Meter {
+
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+        private final int numRows;
+        private long cpu;
+        private long bytes;
+
+        private Meter(int numRows) {
+            this.numRows = numRows;
+            this.cpu = threadMXBean.getCurrentThreadCpuTime();
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+
+        private void next(double[] result, int offset) {
+            long nowCpu = threadMXBean.getCurrentThreadCpuTime();
+            long nowBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            result[offset] = (double) (nowCpu - cpu) / numRows;
+            result[offset + 1] = (double) (nowBytes - bytes) / numRows;
+            this.cpu = nowCpu;
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class OdpsCatalog extends AbstractCatalog {
 
     private LoadingCache<String, Optional<Project>> projectCache;
     private LoadingCache<ObjectPath, Optional<Table>> tableCache;
+    private OdpsMetaDataProvider metaDataProvider;
 
     private static final List<String> allProject = new ArrayList<>();
     private Odps odps;
@@ -83,9 +84,9 @@ public class OdpsCatalog extends AbstractCatalog {
     }
 
     private void initMetaCache() {
-        OdpsMetaDataProvider odpsMetaDataProvider = new OdpsMetaDataProvider(this.odps);
-        this.projectCache = odpsMetaDataProvider.projectCache;
-        this.tableCache = odpsMetaDataProvider.tableCache;
+        this.metaDataProvider = new OdpsMetaDataProvider(this.odps);
+        this.projectCache = metaDataProvider.projectCache;
+        this.tableCache = metaDataProvider.tableCache;
     }
 
     @Override
@@ -693,23 +694,29 @@ public class OdpsCatalog extends AbstractCatalog {
 
     @Override
     public CatalogTableStatistics getTableStatistics(ObjectPath tablePath) throws CatalogException {
-        Table table = odps.tables().get(tablePath.getDatabaseName(), tablePath.getObjectName());
-        return new CatalogTableStatistics(table.getSize(),
-                (int) table.getFileNum(), table.getPhysicalSize(), table.getSize());
+        checkNotNull(tablePath, "Table path cannot be null");
+        try {
+            return metaDataProvider.getTableStatistics(tablePath.getDatabaseName(), tablePath.getObjectName());
+        } catch (Exception e) {
+            throw new CatalogException(
+                    String.format("Failed to get table stats of table %s", tablePath.getFullName()), e);
+        }
     }
 
     @Override
     public CatalogColumnStatistics getTableColumnStatistics(ObjectPath tablePath) throws CatalogException {
-        return null;
+        // odps meta data carries no column statistics
+        return CatalogColumnStatistics.UNKNOWN;
     }
 
     @Override
     public CatalogTableStatistics getPartitionStatistics(ObjectPath tablePath, CatalogPartitionSpec partitionSpec)
             throws CatalogException {
+        checkNotNull(tablePath, "Table path cannot be null");
+        checkNotNull(partitionSpec, "CatalogPartitionSpec cannot be null");
         try {
-            Partition partition = getOdpsPartition(tablePath, partitionSpec);
-            return new CatalogTableStatistics(partition.getSize(),
-                    (int) partition.getFileNum(), partition.getPhysicalSize(), partition.getSize());
+            return metaDataProvider.getPartitionStatistics(tablePath.getDatabaseName(), tablePath.getObjectName(),
+                    createOdpsPartitionSpec(partitionSpec).toString());
         } catch (Exception e) {
             throw new CatalogException(
                     String.format(
@@ -723,7 +730,7 @@ public class OdpsCatalog extends AbstractCatalog {
     public CatalogColumnStatistics getPartitionColumnStatistics(
             ObjectPath tablePath, CatalogPartitionSpec partitionSpec)
             throws CatalogException {
-        return null;
+        return CatalogColumnStatistics.UNKNOWN;
     }
 
     @Override
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input;
+
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.odps.input.lookup.OdpsLookupCache;
+import org.apache.flink.odps.input.lookup.OdpsLookupTableReader;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.functions.AsyncTableFunction;
+import org.apache.flink.table.functions.FunctionContext;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Async variant of {@link OdpsLookupFunction}. Cache hits complete immediately, missing keys
+ * of the LRU cache are loaded by a pool of {@code lookup.cache.load-threads} threads and
+ * concurrent lookups of the same key share one load. Keys which miss while the load threads
+ * are busy are read together with one read session, up to {@link #MAX_KEYS_PER_LOAD}.
+ */
+public class OdpsAsyncLookupFunction extends AsyncTableFunction<RowData> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_KEYS_PER_LOAD = 64;
+
+    private final OdpsInputFormat<RowData> inputFormat;
+    private final OdpsLookupOptions options;
+    private final RowType rowType;
+    private final int[] lookupCols;
+
+    private transient OdpsLookupCache cache;
+    private transient ExecutorService loadExecutor;
+    private transient Map<RowData, CompletableFuture<Collection<RowData>>> pendingLoads;
+    private transient Queue<RowData> missingKeys;
+
+    public OdpsAsyncLookupFunction(
+            OdpsInputFormat<RowData> inputFormat,
+            OdpsLookupOptions options,
+            int[] lookupKeys,
+            RowType rowType) {
+        this.inputFormat = inputFormat;
+        this.options = options;
+        this.lookupCols = lookupKeys;
+        this.rowType = rowType;
+    }
+
+    @Override
+    public void open(FunctionContext context) throws Exception {
+        super.open(context);
+        MetricGroup metricGroup = context == null ? new UnregisteredMetricsGroup() : context.getMetricGroup();
+        cache = OdpsLookupCache.create(createTableReader(), options);
+        cache.open(metricGroup);
+        loadExecutor = Executors.newFixedThreadPool(Math.max(1, options.getLoadThreads()),
+                new ExecutorThreadFactory("odps-async-lookup"));
+        pendingLoads = new ConcurrentHashMap<>();
+        missingKeys = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Creates the reader of the lookup table when the function is opened.
+     */
+    protected OdpsLookupTableReader createTableReader() {
+        return new OdpsLookupTableReader(inputFormat, rowType, lookupCols, options.getMaxRetryTimes());
+    }
+
+    public void eval(CompletableFuture<Collection<RowData>> future, Object... values) {
+        Preconditions.checkArgument(values.length == lookupCols.length,
+                "Number of values and lookup keys mismatch");
+        RowData lookupKey = GenericRowData.of(values);
+        Collection<RowData> matchedRows = cache.getIfPresent(lookupKey);
+        if (matchedRows != null) {
+            future.complete(matchedRows);
+            return;
+        }
+        CompletableFuture<Collection<RowData>> load = pendingLoads.get(lookupKey);
+        if (load == null) {
+            CompletableFuture<Collection<RowData>> newLoad = new CompletableFuture<>();
+            load = pendingLoads.putIfAbsent(lookupKey, newLoad);
+            if (load == null) {
+                load = newLoad;
+                missingKeys.add(lookupKey);
+                loadExecutor.execute(this::loadMissingKeys);
+            }
+        }
+        load.whenComplete((rows, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t);
+            } else {
+                future.complete(rows);
+            }
+        });
+    }
+
+    /**
+     * Loads the keys queued so far, a task finding the queue empty had its key loaded by an
+     * earlier task.
+     */
+    private void loadMissingKeys() {
+        List<RowData> keys = new ArrayList<>();
+        RowData key;
+        while (keys.size() < MAX_KEYS_PER_LOAD && (key = missingKeys.poll()) != null) {
+            keys.add(key);
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<RowData, Collection<RowData>> rowsByKey;
+        try {
+            rowsByKey = cache.load(keys);
+        } catch (Throwable t) {
+            for (RowData lookupKey : keys) {
+                pendingLoads.remove(lookupKey).completeExceptionally(t);
+            }
+            return;
+        }
+        for (RowData lookupKey : keys) {
+            // later lookups of the key are served by the cache
+            pendingLoads.remove(lookupKey).complete(rowsByKey.get(lookupKey));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+            loadExecutor = null;
+        }
+        if (cache != null) {
+            cache.close();
+            cache = null;
+        }
+        super.close();
+    }
+}
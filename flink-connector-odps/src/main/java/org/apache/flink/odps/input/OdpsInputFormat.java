@@ -21,7 +21,7 @@ package org.apache.flink.odps.input;
 import com.aliyun.odps.*;
 import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.*;
-import com.aliyun.odps.cupid.table.v1.util.Options;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import org.apache.flink.annotation.Public;
 import org.apache.flink.api.common.io.DefaultInputSplitAssigner;
 import org.apache.flink.api.common.io.RichInputFormat;
@@ -36,10 +36,13 @@ import org.apache.flink.core.io.InputSplitAssigner;
 import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.odps.input.reader.CupidBatchIterator;
 import org.apache.flink.odps.input.reader.NextIterator;
+import org.apache.flink.odps.input.reader.RecordFilter;
 import org.apache.flink.odps.input.reader.RecordIterator;
 import org.apache.flink.odps.schema.OdpsColumn;
 import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
 import org.apache.flink.odps.util.*;
+import org.apache.flink.table.catalog.stats.CatalogTableStatistics;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
 import org.apache.flink.table.types.DataType;
@@ -48,15 +51,17 @@ import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.apache.flink.odps.util.Constants.*;
 import static org.apache.flink.odps.util.OdpsUtils.RecordType;
-import static org.apache.flink.odps.util.OdpsUtils.getPartitionSpecKVMap;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 @Public
@@ -200,49 +205,58 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
 
     @Override
     public BaseStatistics getStatistics(BaseStatistics cachedStatistics) throws IOException {
-        return null;
+        try {
+            CatalogTableStatistics statistics = getTableMetaProvider()
+                    .getTableStatistics(projectName, tableName, isPartitioned ? partitions : null);
+            return new OdpsBaseStatistics(statistics.getRawDataSize(), statistics.getRowCount());
+        } catch (Exception e) {
+            LOG.warn("Cannot get statistics of odps table {}.{}", projectName, tableName, e);
+            return cachedStatistics;
+        }
+    }
+
+    private OdpsMetaDataProvider getTableMetaProvider() {
+        if (tableMetaProvider == null) {
+            tableMetaProvider = new OdpsMetaDataProvider(getOdps());
+        }
+        return tableMetaProvider;
     }
 
     @Override
     public OdpsInputSplit[] createInputSplits(final int minNumSplits) throws IOException {
+        return createInputSplits(Collections.emptyList());
+    }
+
+    /**
+     * Creates the splits of a read session which only returns the rows matching the filters,
+     * the provider has to support it, see {@link #supportsFilterPushDown()}. Filters are
+     * best-effort, rows are still to be checked after they are read. Plans with filters are
+     * not cached.
+     */
+    public OdpsInputSplit[] createInputSplits(List<FilterExpression> filters) throws IOException {
         if (isPartitioned && partitions.length == 0) {
             return new OdpsInputSplit[0];
         }
-        TableReadSession tableReadSession;
         InputSplit[] inputSplits;
         OdpsInputSplit[] odpsInputSplits;
-        try {
-            List<Attribute> reqColumns = Arrays.stream(selectedColumns)
-                    .filter(columnName -> columnName != null && !odpsTableSchema.isPartitionColumn(columnName))
-                    .map(odpsTableSchema::getColumn)
-                    .map(col -> new Attribute(col.getName(), col.getTypeName()))
-                    .collect(Collectors.toList());
-            // tunnel request 0 column default
-            if (reqColumns.size() == 0) {
-                OdpsColumn odpsColumn = odpsTableSchema.getColumns().get(0);
-                reqColumns.add(0, new Attribute(odpsColumn.getName(), odpsColumn.getTypeName()));
-            }
-            RequiredSchema requiredSchema = RequiredSchema.columns(reqColumns);
-            Options options = OdpsUtils.getOdpsOptions(odpsConf);
-            if (partitions.length > 0) {
-                List<PartitionSpecWithBucketFilter> partitionSpecWithBucketFilterList = Arrays.stream(partitions)
-                        .map(e -> new PartitionSpecWithBucketFilter(getPartitionSpecKVMap(new PartitionSpec(e))))
-                        .collect(Collectors.toList());
-                tableReadSession = new TableReadSessionBuilder(tableApiProvider, projectName, tableName)
-                        .readPartitions(partitionSpecWithBucketFilterList)
-                        .readDataColumns(requiredSchema)
-                        .options(options)
-                        .build();
-            } else {
-                tableReadSession = new TableReadSessionBuilder(tableApiProvider, projectName, tableName)
-                        .readDataColumns(requiredSchema)
-                        .options(options)
-                        .build();
-            }
-            inputSplits = tableReadSession.getOrCreateInputSplits(splitSize);
-        } catch (Exception e) {
-            throw new IOException("create table read session failed", e);
+        List<Attribute> reqColumns = Arrays.stream(selectedColumns)
+                .filter(columnName -> columnName != null && !odpsTableSchema.isPartitionColumn(columnName))
+                .map(odpsTableSchema::getColumn)
+                .map(col -> new Attribute(col.getName(), col.getTypeName()))
+                .collect(Collectors.toList());
+        // tunnel request 0 column default
+        if (reqColumns.size() == 0) {
+            OdpsColumn odpsColumn = odpsTableSchema.getColumns().get(0);
+            reqColumns.add(0, new Attribute(odpsColumn.getName(), odpsColumn.getTypeName()));
         }
+        long cacheTtlMs = filters.isEmpty() ?
+                odpsConf.getPropertyOrDefault(ODPS_INPUT_SPLIT_PLAN_CACHE_TTL, DEFAULT_ODPS_INPUT_SPLIT_PLAN_CACHE_TTL) * 1000L : 0;
+        OdpsInputSplitPlanner splitPlanner = new OdpsInputSplitPlanner(
+                new OdpsSplitPlanner(odpsConf, tableApiProvider, projectName, tableName, reqColumns, filters, splitSize),
+                odpsConf.getPropertyOrDefault(ODPS_INPUT_SPLIT_PLAN_THREADS, DEFAULT_ODPS_INPUT_SPLIT_PLAN_THREADS),
+                odpsConf.getPropertyOrDefault(ODPS_INPUT_SPLIT_PLAN_TIMEOUT, DEFAULT_ODPS_INPUT_SPLIT_PLAN_TIMEOUT) * 1000L,
+                cacheTtlMs);
+        inputSplits = splitPlanner.planSplits(Arrays.asList(partitions), cacheTtlMs > 0 ? getLastDataModifiedTime() : -1);
         odpsInputSplits = new OdpsInputSplit[inputSplits.length];
         for (int i = 0; i < odpsInputSplits.length; i++) {
             InputSplit split = inputSplits[i];
@@ -252,6 +266,36 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
         return odpsInputSplits;
     }
 
+    /**
+     * Whether the table api provider evaluates the filters of {@link #createInputSplits(List)}.
+     */
+    public boolean supportsFilterPushDown() {
+        try {
+            return TableReadSessionBuilder.getProviderCapabilities(tableApiProvider).supportPushDownFilters();
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Cannot get capabilities of table api provider {}", tableApiProvider, e);
+            return false;
+        }
+    }
+
+    public boolean isPartitionColumn(String columnName) {
+        return odpsTableSchema.isPartitionColumn(columnName);
+    }
+
+    /**
+     * The last data modified time of the cached table metadata to validate cached split plans,
+     * -1 if unknown.
+     */
+    private long getLastDataModifiedTime() {
+        try {
+            Date modifiedTime = getTableMetaProvider().getTable(projectName, tableName).getLastDataModifiedTime();
+            return modifiedTime == null ? -1 : modifiedTime.getTime();
+        } catch (Exception e) {
+            LOG.warn("Cannot get last modified time of odps table {}.{}", projectName, tableName, e);
+            return -1;
+        }
+    }
+
     @Override
     public InputSplitAssigner getInputSplitAssigner(OdpsInputSplit[] odpsInputSplits) {
         return new DefaultInputSplitAssigner(odpsInputSplits);
@@ -259,6 +303,13 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
 
     @Override
     public void open(OdpsInputSplit split) throws IOException {
+        open(split, null);
+    }
+
+    /**
+     * Opens the split, records rejected by the filter are skipped before they are converted.
+     */
+    public void open(OdpsInputSplit split, @Nullable RecordFilter recordFilter) throws IOException {
         if (split == null) {
             return;
         }
@@ -271,13 +322,15 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
                 rowIterator = new RecordIterator<>(split,
                         odpsTableSchema,
                         selectedColumns,
-                        recordType);
+                        recordType,
+                        recordFilter);
             } else {
                 rowIterator = new CupidBatchIterator<>(split,
                         odpsTableSchema,
                         selectedColumns,
                         recordType,
-                        odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_BATCH_SIZE, DEFAULT_ODPS_VECTORIZED_BATCH_SIZE));
+                        odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_BATCH_SIZE, DEFAULT_ODPS_VECTORIZED_BATCH_SIZE),
+                        recordFilter);
             }
         } catch (Exception e) {
             throw new IOException("create table reader failed", e);
@@ -307,6 +360,10 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
         LOG.info("close odpsInputFormat");
     }
 
+    public String[] getSelectedColumns() {
+        return selectedColumns;
+    }
+
     @Override
     public TypeInformation<T> getProducedType() {
         if (this.resultType == null) {
@@ -373,8 +430,7 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
         if (isPartitioned) {
             if (this.partitions == null) {
                 // when not specific partition, get all
-                Table t = this.tableMetaProvider.getTable(projectName, tableName);
-                List<Partition> partitionList = t.getPartitions();
+                List<Partition> partitionList = this.tableMetaProvider.getPartitions(projectName, tableName);
                 this.partitions = OdpsUtils.createPartitionSpec(partitionList);
             }
         } else {
@@ -384,15 +440,10 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
     }
 
     private void checkPartitions() {
-        Table t = this.tableMetaProvider.getTable(projectName, tableName);
+        // answered by one listing of the table partitions
         for (String p : partitions) {
-            PartitionSpec partitionSpec = new PartitionSpec(p);
-            try {
-                if (!t.hasPartition(partitionSpec)) {
-                    throw new FlinkOdpsException("partition not exist. " + partitionSpec.toString());
-                }
-            } catch (OdpsException e) {
-                throw new FlinkOdpsException("check partition failed!", e);
+            if (this.tableMetaProvider.getPartition(projectName, tableName, p) == null) {
+                throw new FlinkOdpsException("partition not exist. " + new PartitionSpec(p));
             }
         }
     }
@@ -433,27 +484,7 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
         if (isLocal || !odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_READ_ENABLE, false)) {
             return false;
         }
-        for (String columnName : selectedColumns) {
-            OdpsColumn column = tableSchema.getColumn(columnName);
-            if (!column.getType().equals(OdpsType.BOOLEAN) &&
-                    !column.getType().equals(OdpsType.STRING) &&
-                    !column.getType().equals(OdpsType.CHAR) &&
-                    !column.getType().equals(OdpsType.VARCHAR) &&
-                    !column.getType().equals(OdpsType.BINARY) &&
-                    !column.getType().equals(OdpsType.DECIMAL) &&
-                    !column.getType().equals(OdpsType.DATETIME) &&
-                    !column.getType().equals(OdpsType.DATE) &&
-                    !column.getType().equals(OdpsType.TIMESTAMP) &&
-                    !column.getType().equals(OdpsType.DOUBLE) &&
-                    !column.getType().equals(OdpsType.FLOAT) &&
-                    !column.getType().equals(OdpsType.BIGINT) &&
-                    !column.getType().equals(OdpsType.INT) &&
-                    !column.getType().equals(OdpsType.TINYINT) &&
-                    !column.getType().equals(OdpsType.SMALLINT)) {
-                return false;
-            }
-        }
-        return true;
+        return OdpsTableUtil.supportColumnarRead(tableSchema, selectedColumns);
     }
 
     /**
@@ -513,5 +544,33 @@ public class OdpsInputFormat<T> extends RichInputFormat<T, OdpsInputSplit>
             );
         }
     }
-}
 
+    private static class OdpsBaseStatistics implements BaseStatistics {
+
+        private final long totalInputSize;
+        private final long numberOfRecords;
+
+        private OdpsBaseStatistics(long totalInputSize, long numberOfRecords) {
+            this.totalInputSize = totalInputSize < 0 ? SIZE_UNKNOWN : totalInputSize;
+            this.numberOfRecords = numberOfRecords < 0 ? NUM_RECORDS_UNKNOWN : numberOfRecords;
+        }
+
+        @Override
+        public long getTotalInputSize() {
+            return totalInputSize;
+        }
+
+        @Override
+        public long getNumberOfRecords() {
+            return numberOfRecords;
+        }
+
+        @Override
+        public float getAverageRecordWidth() {
+            if (totalInputSize == SIZE_UNKNOWN || numberOfRecords == NUM_RECORDS_UNKNOWN || numberOfRecords == 0) {
+                return AVG_RECORD_BYTES_UNKNOWN;
+            }
+            return totalInputSize / (float) numberOfRecords;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input;
+
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Plans the input splits of {@link OdpsInputFormat}. The partitions are divided into at most
+ * {@code odps.input.split.plan.threads} groups, every group is planned by its own read session
+ * and the groups are planned in parallel. The threads belong to one planning, inputs planned
+ * at the same time use their own threads each. A group has to be planned within
+ * {@code odps.input.split.plan.timeout} seconds per partition.
+ *
+ * <p>If {@code odps.input.split.plan.cache.ttl} is positive, plans are cached in the JVM by
+ * table, partitions, columns, split size and the last data modified time of the table, so
+ * repeated bounded queries reuse them until the table is modified or the ttl has passed. The
+ * modified time comes from the cached table metadata, a modification is only seen once the
+ * metadata is refreshed. The cache is disabled by default.
+ */
+public class OdpsInputSplitPlanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsInputSplitPlanner.class);
+
+    private static final Cache<PlanKey, CachedPlan> PLAN_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    private final OdpsSplitPlanner planner;
+    private final int threads;
+    private final long timeoutPerPartitionMs;
+    private final long cacheTtlMs;
+
+    public OdpsInputSplitPlanner(OdpsSplitPlanner planner,
+                                 int threads,
+                                 long timeoutPerPartitionMs,
+                                 long cacheTtlMs) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(timeoutPerPartitionMs > 0, "timeout must be positive");
+        this.planner = Preconditions.checkNotNull(planner);
+        this.threads = threads;
+        this.timeoutPerPartitionMs = timeoutPerPartitionMs;
+        this.cacheTtlMs = cacheTtlMs;
+    }
+
+    /**
+     * Plans the splits of the given partitions, an empty list stands for the whole
+     * non-partitioned table. A non-positive modified time disables the cache.
+     */
+    public InputSplit[] planSplits(List<String> partitions, long lastModifiedTime) throws IOException {
+        PlanKey key = cacheTtlMs > 0 && lastModifiedTime > 0 ? new PlanKey(planner, partitions, lastModifiedTime) : null;
+        if (key != null) {
+            CachedPlan cachedPlan = PLAN_CACHE.getIfPresent(key);
+            if (cachedPlan != null && System.currentTimeMillis() - cachedPlan.createTime <= cacheTtlMs) {
+                LOG.info("Reuse {} cached input splits of {}.{}", cachedPlan.splits.length,
+                        planner.getProjectName(), planner.getTableName());
+                return cachedPlan.splits.clone();
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        InputSplit[] splits = planInParallel(partitions);
+        LOG.info("Planned {} input splits of {} partition(s) in {} ms", splits.length, partitions.size(),
+                System.currentTimeMillis() - startTime);
+        if (key != null) {
+            PLAN_CACHE.put(key, new CachedPlan(splits.clone(), System.currentTimeMillis()));
+        }
+        return splits;
+    }
+
+    private InputSplit[] planInParallel(List<String> partitions) throws IOException {
+        int numGroups = Math.max(1, Math.min(threads, partitions.size()));
+        int groupSize = Math.max(1, (partitions.size() + numGroups - 1) / numGroups);
+        List<List<String>> groups = new ArrayList<>(numGroups);
+        for (int start = 0; start < partitions.size(); start += groupSize) {
+            groups.add(new ArrayList<>(partitions.subList(start, Math.min(partitions.size(), start + groupSize))));
+        }
+        if (groups.isEmpty()) {
+            groups.add(new ArrayList<>());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(groups.size(),
+                new ExecutorThreadFactory("odps-split-planner"));
+        try {
+            List<Future<List<InputSplit>>> futures = new ArrayList<>(groups.size());
+            for (List<String> group : groups) {
+                futures.add(executor.submit(() -> planner.planSplits(group)));
+            }
+            List<InputSplit> splits = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                splits.addAll(waitFor(futures.get(i), groups.get(i)));
+            }
+            return splits.toArray(new InputSplit[0]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<InputSplit> waitFor(Future<List<InputSplit>> future, List<String> group) throws IOException {
+        long timeoutMs = timeoutPerPartitionMs * Math.max(1, group.size());
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException(String.format("Planning splits of %d partition(s) timed out after %d ms, partitions: %s",
+                    group.size(), timeoutMs, group), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while planning input splits", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("create table read session failed", e.getCause());
+        }
+    }
+
+    @VisibleForTesting
+    public static void clearCache() {
+        PLAN_CACHE.invalidateAll();
+    }
+
+    private static class CachedPlan {
+
+        private final InputSplit[] splits;
+        private final long createTime;
+
+        private CachedPlan(InputSplit[] splits, long createTime) {
+            this.splits = splits;
+            this.createTime = createTime;
+        }
+    }
+
+    private static class PlanKey {
+
+        private final String provider;
+        private final String project;
+        private final String table;
+        private final List<String> partitions;
+        private final List<String> columns;
+        private final String filters;
+        private final int splitSize;
+        private final long lastModifiedTime;
+
+        private PlanKey(OdpsSplitPlanner planner, List<String> partitions, long lastModifiedTime) {
+            this.provider = planner.getTableApiProvider();
+            this.project = planner.getProjectName();
+            this.table = planner.getTableName();
+            this.partitions = new ArrayList<>(partitions);
+            this.columns = planner.getRequiredColumns().stream()
+                    .map(column -> column.getName() + ":" + column.getType())
+                    .collect(Collectors.toList());
+            this.filters = planner.getFilters().toString();
+            this.splitSize = planner.getSplitSize();
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PlanKey planKey = (PlanKey) o;
+            return splitSize == planKey.splitSize &&
+                    lastModifiedTime == planKey.lastModifiedTime &&
+                    provider.equals(planKey.provider) &&
+                    project.equals(planKey.project) &&
+                    table.equals(planKey.table) &&
+                    partitions.equals(planKey.partitions) &&
+                    columns.equals(planKey.columns) &&
+                    filters.equals(planKey.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(provider, project, table, partitions, columns, filters, splitSize, lastModifiedTime);
+        }
+    }
+}
@@ -21,15 +21,60 @@ package org.apache.flink.odps.input;
 import java.io.Serializable;
 import java.util.Objects;
 
-/** Options for the JDBC lookup. */
+/** Options for the Odps lookup. */
 public class OdpsLookupOptions implements Serializable {
 
+    /** How the lookup table is cached. */
+    public enum CacheType {
+        /** Cache the whole table, reloaded in the background when the ttl expires. */
+        ALL,
+        /** Cache the recently looked up keys, loaded on cache miss. */
+        LRU
+    }
+
+    /** Where the whole table cache keeps its rows. */
+    public enum CacheStorage {
+        /** Row objects on the heap. */
+        HEAP,
+        /** Serialized rows in off-heap pages, spilled to memory-mapped files over budget. */
+        OFF_HEAP
+    }
+
     private final long cacheExpireMs;
     private final int maxRetryTimes;
+    private final CacheType cacheType;
+    private final long cacheMaxRows;
+    private final long cacheMaxBytes;
+    private final int loadThreads;
+    private final boolean async;
+    private final CacheStorage cacheStorage;
+    private final long offHeapMemory;
+    private final String spillDir;
 
     public OdpsLookupOptions(long cacheExpireMs, int maxRetryTimes) {
+        this(cacheExpireMs, maxRetryTimes, CacheType.ALL, 0, 0, 1, false, CacheStorage.HEAP, 0, null);
+    }
+
+    public OdpsLookupOptions(long cacheExpireMs,
+                             int maxRetryTimes,
+                             CacheType cacheType,
+                             long cacheMaxRows,
+                             long cacheMaxBytes,
+                             int loadThreads,
+                             boolean async,
+                             CacheStorage cacheStorage,
+                             long offHeapMemory,
+                             String spillDir) {
         this.cacheExpireMs = cacheExpireMs;
         this.maxRetryTimes = maxRetryTimes;
+        this.cacheType = cacheType;
+        this.cacheMaxRows = cacheMaxRows;
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.loadThreads = loadThreads;
+        this.async = async;
+        this.cacheStorage = cacheStorage;
+        this.offHeapMemory = offHeapMemory;
+        this.spillDir = spillDir;
     }
 
     public long getCacheExpireMs() {
@@ -40,6 +85,38 @@ public class OdpsLookupOptions implements Serializable {
         return maxRetryTimes;
     }
 
+    public CacheType getCacheType() {
+        return cacheType;
+    }
+
+    public long getCacheMaxRows() {
+        return cacheMaxRows;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public CacheStorage getCacheStorage() {
+        return cacheStorage;
+    }
+
+    public long getOffHeapMemory() {
+        return offHeapMemory;
+    }
+
+    public String getSpillDir() {
+        return spillDir;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -49,16 +126,38 @@ public class OdpsLookupOptions implements Serializable {
         if (o instanceof OdpsLookupOptions) {
             OdpsLookupOptions options = (OdpsLookupOptions) o;
             return Objects.equals(cacheExpireMs, options.cacheExpireMs)
-                    && Objects.equals(maxRetryTimes, options.maxRetryTimes);
+                    && Objects.equals(maxRetryTimes, options.maxRetryTimes)
+                    && Objects.equals(cacheType, options.cacheType)
+                    && Objects.equals(cacheMaxRows, options.cacheMaxRows)
+                    && Objects.equals(cacheMaxBytes, options.cacheMaxBytes)
+                    && Objects.equals(loadThreads, options.loadThreads)
+                    && Objects.equals(async, options.async)
+                    && Objects.equals(cacheStorage, options.cacheStorage)
+                    && Objects.equals(offHeapMemory, options.offHeapMemory)
+                    && Objects.equals(spillDir, options.spillDir);
         } else {
             return false;
         }
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(cacheExpireMs, maxRetryTimes, cacheType, cacheMaxRows, cacheMaxBytes, loadThreads, async,
+                cacheStorage, offHeapMemory, spillDir);
+    }
+
     /** Builder of {@link OdpsLookupOptions}. */
     public static class Builder {
         private long cacheExpireMs = 300 * 1000L;
         private int maxRetryTimes = 3;
+        private CacheType cacheType = CacheType.ALL;
+        private long cacheMaxRows = 100000L;
+        private long cacheMaxBytes = 0L;
+        private int loadThreads = 4;
+        private boolean async = false;
+        private CacheStorage cacheStorage = CacheStorage.HEAP;
+        private long offHeapMemory = 0L;
+        private String spillDir;
 
         /** optional, lookup cache expire mills, over this time, the old data will expire. */
         public Builder setCacheExpireMs(long cacheExpireMs) {
@@ -72,8 +171,58 @@ public class OdpsLookupOptions implements Serializable {
             return this;
         }
 
+        /** optional, cache the whole table or only the recently looked up keys. */
+        public Builder setCacheType(CacheType cacheType) {
+            this.cacheType = cacheType;
+            return this;
+        }
+
+        /** optional, max rows kept by the LRU cache. */
+        public Builder setCacheMaxRows(long cacheMaxRows) {
+            this.cacheMaxRows = cacheMaxRows;
+            return this;
+        }
+
+        /** optional, max bytes kept by the LRU cache, takes precedence over max rows if positive. */
+        public Builder setCacheMaxBytes(long cacheMaxBytes) {
+            this.cacheMaxBytes = cacheMaxBytes;
+            return this;
+        }
+
+        /** optional, threads reading splits when loading the cache. */
+        public Builder setLoadThreads(int loadThreads) {
+            this.loadThreads = loadThreads;
+            return this;
+        }
+
+        /** optional, use an async lookup function. */
+        public Builder setAsync(boolean async) {
+            this.async = async;
+            return this;
+        }
+
+        /** optional, keep the whole table cache on the heap or in off-heap pages. */
+        public Builder setCacheStorage(CacheStorage cacheStorage) {
+            this.cacheStorage = cacheStorage;
+            return this;
+        }
+
+        /** optional, off-heap bytes of the whole table cache before spilling, unbounded if not positive. */
+        public Builder setOffHeapMemory(long offHeapMemory) {
+            this.offHeapMemory = offHeapMemory;
+            return this;
+        }
+
+        /** optional, directory of the spill files, the java temp dir by default. */
+        public Builder setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+            return this;
+        }
+
         public OdpsLookupOptions build() {
-            return new OdpsLookupOptions(cacheExpireMs, maxRetryTimes);
+            return new OdpsLookupOptions(cacheExpireMs, maxRetryTimes, cacheType,
+                    cacheMaxRows, cacheMaxBytes, loadThreads, async,
+                    cacheStorage, offHeapMemory, spillDir);
         }
     }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the whole lookup table. The first load happens in {@link #open}, afterwards the table
+ * is reloaded in the background every ttl and the new snapshot replaces the old one atomically,
+ * so lookups never wait for a reload. A failed reload keeps the previous snapshot.
+ *
+ * <p>The rows are kept on the heap or off-heap depending on {@code lookup.cache.storage},
+ * see {@link LookupSnapshot}.
+ */
+public class FullLookupCache extends OdpsLookupCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FullLookupCache.class);
+
+    private final long cacheExpireMs;
+    private final int loadThreads;
+
+    private final OdpsLookupOptions options;
+
+    private volatile LookupSnapshot snapshot;
+    private ExecutorService loadExecutor;
+    private ScheduledExecutorService reloadScheduler;
+
+    public FullLookupCache(OdpsLookupTableReader tableReader, OdpsLookupOptions options) {
+        super(tableReader);
+        this.cacheExpireMs = options.getCacheExpireMs();
+        this.loadThreads = Math.max(1, options.getLoadThreads());
+        this.options = options;
+    }
+
+    @Override
+    public void open(MetricGroup metricGroup) throws IOException {
+        super.open(metricGroup);
+        loadExecutor = Executors.newFixedThreadPool(loadThreads,
+                new ExecutorThreadFactory("odps-lookup-loader"));
+        LOG.info("Populating lookup join cache");
+        reload();
+        if (cacheExpireMs > 0) {
+            reloadScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ExecutorThreadFactory("odps-lookup-reloader"));
+            reloadScheduler.scheduleWithFixedDelay(
+                    this::reloadQuietly, cacheExpireMs, cacheExpireMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Collection<RowData> getIfPresent(RowData key) {
+        LookupSnapshot current = snapshot;
+        List<RowData> rows = current.get(key);
+        while (rows == null && current != snapshot) {
+            // replaced and maybe closed by a reload in between, look into the new snapshot
+            current = snapshot;
+            rows = current.get(key);
+        }
+        if (rows == null) {
+            recordMiss();
+            return Collections.emptyList();
+        }
+        recordHit();
+        return rows;
+    }
+
+    @Override
+    public Collection<RowData> load(RowData key) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long size() {
+        LookupSnapshot current = snapshot;
+        return current == null ? 0 : current.size();
+    }
+
+    private void reload() throws IOException {
+        long startTime = System.currentTimeMillis();
+        LookupSnapshot newSnapshot;
+        try {
+            newSnapshot = tableReader.loadAll(loadExecutor, loadThreads, () ->
+                    LookupSnapshot.create(options, tableReader.getRowType(), tableReader.getKeyType()));
+        } catch (IOException e) {
+            recordLoad(startTime, false);
+            throw e;
+        }
+        LookupSnapshot oldSnapshot = snapshot;
+        snapshot = newSnapshot;
+        if (oldSnapshot != null) {
+            oldSnapshot.close();
+        }
+        recordLoad(startTime, true);
+        LOG.info("Loaded {} row(s) into lookup join cache in {} ms",
+                newSnapshot.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void reloadQuietly() {
+        LOG.info("Lookup join cache has expired, reloading");
+        try {
+            reload();
+        } catch (Throwable t) {
+            LOG.error("Failed to reload lookup join cache, keep serving the previous snapshot", t);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reloadScheduler != null) {
+            reloadScheduler.shutdownNow();
+            reloadScheduler = null;
+        }
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+            loadExecutor = null;
+        }
+        if (snapshot != null) {
+            snapshot.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.apache.flink.table.types.logical.RowType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Keeps copies of the rows in a hash map on the heap. */
+public class HeapLookupSnapshot extends LookupSnapshot {
+
+    private final RowType rowType;
+    private final Map<RowData, List<RowData>> rows = new ConcurrentHashMap<>();
+    private final AtomicLong numRows = new AtomicLong();
+
+    public HeapLookupSnapshot(RowType rowType) {
+        this.rowType = rowType;
+    }
+
+    @Override
+    public Writer createWriter() {
+        RowDataSerializer serializer = new RowDataSerializer(rowType);
+        return (key, row) -> {
+            rows.compute(key, (k, v) -> {
+                List<RowData> values = v == null ? new ArrayList<>(1) : v;
+                values.add(serializer.copy(row));
+                return values;
+            });
+            numRows.incrementAndGet();
+        };
+    }
+
+    @Override
+    public List<RowData> get(RowData key) {
+        return rows.get(key);
+    }
+
+    @Override
+    public long size() {
+        return numRows.get();
+    }
+}
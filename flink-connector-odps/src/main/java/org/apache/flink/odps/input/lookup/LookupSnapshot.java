@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Rows of the whole lookup table grouped by lookup key. A snapshot is filled once by the
+ * loading threads, each through its own {@link Writer}, and is read-only afterwards.
+ */
+public abstract class LookupSnapshot implements Closeable {
+
+    public static LookupSnapshot create(OdpsLookupOptions options, RowType rowType, RowType keyType) {
+        switch (options.getCacheStorage()) {
+            case OFF_HEAP:
+                return new OffHeapLookupSnapshot(rowType, keyType, options.getOffHeapMemory(), options.getSpillDir());
+            case HEAP:
+            default:
+                return new HeapLookupSnapshot(rowType);
+        }
+    }
+
+    /** Creates a writer for one loading thread, writers of the same snapshot run concurrently. */
+    public abstract Writer createWriter();
+
+    /** Returns the rows of the key, null if there are none. */
+    @Nullable
+    public abstract List<RowData> get(RowData key);
+
+    /** Number of rows. */
+    public abstract long size();
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Adds rows to a snapshot, the given row may be reused by the caller after the call. The
+     * rows may only be visible to {@link #get} once the writer is flushed.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void add(RowData key, RowData row) throws IOException;
+
+        default void flush() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.table.data.RowData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the lookup table rows by lookup key, shared by the sync and async lookup functions.
+ *
+ * <p>Registers the metrics {@code hitCount}, {@code missCount}, {@code loadCount},
+ * {@code numLoadFailures}, {@code latestLoadTime} (ms) and {@code numCachedRecords}.
+ */
+public abstract class OdpsLookupCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsLookupCache.class);
+
+    protected final OdpsLookupTableReader tableReader;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter loadCounter;
+    private Counter loadFailureCounter;
+    private volatile long latestLoadTime;
+
+    protected OdpsLookupCache(OdpsLookupTableReader tableReader) {
+        this.tableReader = tableReader;
+    }
+
+    /**
+     * Creates the cache of the configured type. The LRU cache loads a missing key with a read
+     * session filtered by the key, it falls back to the full cache if the key cannot be filtered
+     * there, because every miss would read the whole table.
+     */
+    public static OdpsLookupCache create(OdpsLookupTableReader tableReader, OdpsLookupOptions options) {
+        switch (options.getCacheType()) {
+            case LRU:
+                if (tableReader.supportsKeyFilters()) {
+                    return new PartialLookupCache(tableReader, options);
+                }
+                LOG.warn("Lookup keys cannot be pushed down to the table api provider, use the ALL cache instead of LRU");
+                return new FullLookupCache(tableReader, options);
+            case ALL:
+            default:
+                return new FullLookupCache(tableReader, options);
+        }
+    }
+
+    public void open(MetricGroup metricGroup) throws IOException {
+        hitCounter = metricGroup.counter("hitCount");
+        missCounter = metricGroup.counter("missCount");
+        loadCounter = metricGroup.counter("loadCount");
+        loadFailureCounter = metricGroup.counter("numLoadFailures");
+        metricGroup.gauge("latestLoadTime", (Gauge<Long>) () -> latestLoadTime);
+        metricGroup.gauge("numCachedRecords", (Gauge<Long>) this::size);
+    }
+
+    /**
+     * Returns the cached rows of the key, null if the key has to be loaded by {@link #load}.
+     */
+    @Nullable
+    public abstract Collection<RowData> getIfPresent(RowData key);
+
+    /**
+     * Loads the rows of a key missing in the cache. May block, async callers should run it
+     * outside of the task thread.
+     */
+    public abstract Collection<RowData> load(RowData key) throws IOException;
+
+    /**
+     * Loads the rows of several keys missing in the cache, by default one after another.
+     */
+    public Map<RowData, Collection<RowData>> load(Collection<RowData> keys) throws IOException {
+        Map<RowData, Collection<RowData>> rowsByKey = new HashMap<>();
+        for (RowData key : keys) {
+            rowsByKey.put(key, load(key));
+        }
+        return rowsByKey;
+    }
+
+    /** Number of cached rows. */
+    public abstract long size();
+
+    protected void recordHit() {
+        hitCounter.inc();
+    }
+
+    protected void recordMiss() {
+        missCounter.inc();
+    }
+
+    protected void recordLoad(long startTime, boolean success) {
+        latestLoadTime = System.currentTimeMillis() - startTime;
+        loadCounter.inc();
+        if (!success) {
+            loadFailureCounter.inc();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
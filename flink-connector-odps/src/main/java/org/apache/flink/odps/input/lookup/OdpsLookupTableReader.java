@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import org.apache.flink.odps.input.OdpsInputFormat;
+import org.apache.flink.odps.input.OdpsInputSplit;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.table.data.*;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.InstantiationUtil;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Reads the lookup table through {@link OdpsInputFormat}, either completely with several
+ * split readers in parallel or only the rows of a single lookup key.
+ */
+public class OdpsLookupTableReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsLookupTableReader.class);
+
+    private static final Duration RETRY_INTERVAL = Duration.ofSeconds(10);
+
+    @Nullable
+    private final OdpsInputFormat<RowData> inputFormat;
+    private final RowType rowType;
+    private final RowData.FieldGetter[] lookupFieldGetters;
+    private final RowData.FieldGetter[] keyFieldGetters;
+    private final String[] lookupKeyNames;
+    private final boolean[] filterableKeys;
+    private final RowType keyType;
+    private final int maxRetryTimes;
+
+    public OdpsLookupTableReader(OdpsInputFormat<RowData> inputFormat,
+                                 RowType rowType,
+                                 int[] lookupKeys,
+                                 int maxRetryTimes) {
+        this(Preconditions.checkNotNull(inputFormat), rowType, inputFormat.getSelectedColumns(),
+                lookupKeys, maxRetryTimes);
+    }
+
+    /**
+     * Creates a reader without an input format, for subclasses which read the rows of the
+     * lookup keys from elsewhere, see {@link #read}. Such a reader cannot load the whole table.
+     */
+    protected OdpsLookupTableReader(RowType rowType,
+                                    String[] columnNames,
+                                    int[] lookupKeys,
+                                    int maxRetryTimes) {
+        this(null, rowType, columnNames, lookupKeys, maxRetryTimes);
+    }
+
+    private OdpsLookupTableReader(@Nullable OdpsInputFormat<RowData> inputFormat,
+                                  RowType rowType,
+                                  String[] columnNames,
+                                  int[] lookupKeys,
+                                  int maxRetryTimes) {
+        this.inputFormat = inputFormat;
+        this.rowType = Preconditions.checkNotNull(rowType);
+        this.maxRetryTimes = maxRetryTimes;
+        this.lookupFieldGetters = new RowData.FieldGetter[lookupKeys.length];
+        this.keyFieldGetters = new RowData.FieldGetter[lookupKeys.length];
+        this.lookupKeyNames = new String[lookupKeys.length];
+        this.filterableKeys = new boolean[lookupKeys.length];
+        LogicalType[] keyTypes = new LogicalType[lookupKeys.length];
+        for (int i = 0; i < lookupKeys.length; i++) {
+            lookupFieldGetters[i] =
+                    RowData.createFieldGetter(rowType.getTypeAt(lookupKeys[i]), lookupKeys[i]);
+            keyFieldGetters[i] = RowData.createFieldGetter(rowType.getTypeAt(lookupKeys[i]), i);
+            lookupKeyNames[i] = columnNames[lookupKeys[i]];
+            keyTypes[i] = rowType.getTypeAt(lookupKeys[i]);
+            // the read session filters data columns only
+            filterableKeys[i] = isFilterable(keyTypes[i])
+                    && (inputFormat == null || !inputFormat.isPartitionColumn(lookupKeyNames[i]));
+        }
+        this.keyType = RowType.of(keyTypes);
+    }
+
+    public RowType getRowType() {
+        return rowType;
+    }
+
+    public RowType getKeyType() {
+        return keyType;
+    }
+
+    public RowData extractLookupKey(RowData row) {
+        GenericRowData key = new GenericRowData(lookupFieldGetters.length);
+        for (int i = 0; i < lookupFieldGetters.length; i++) {
+            key.setField(i, lookupFieldGetters[i].getFieldOrNull(row));
+        }
+        return key;
+    }
+
+    /**
+     * Reads the whole table into a new snapshot, the splits are read by up to
+     * {@code parallelism} tasks of the given executor. Every attempt starts from a new snapshot.
+     */
+    public LookupSnapshot loadAll(ExecutorService executor,
+                                  int parallelism,
+                                  Supplier<LookupSnapshot> snapshotFactory) throws IOException {
+        Preconditions.checkState(inputFormat != null, "the whole table is read by an input format");
+        return withRetry(() -> {
+            OdpsInputSplit[] inputSplits = inputFormat.createInputSplits(1);
+            Queue<OdpsInputSplit> pendingSplits = new ConcurrentLinkedQueue<>(Arrays.asList(inputSplits));
+            LookupSnapshot snapshot = snapshotFactory.get();
+            List<Future<Void>> futures = new ArrayList<>();
+            try {
+                for (int i = 0; i < Math.min(parallelism, inputSplits.length); i++) {
+                    futures.add(executor.submit(() -> {
+                        OdpsInputFormat<RowData> format = copyInputFormat();
+                        LookupSnapshot.Writer writer = snapshot.createWriter();
+                        OdpsInputSplit split;
+                        while ((split = pendingSplits.poll()) != null) {
+                            readSplit(format, split, null, writer);
+                        }
+                        writer.flush();
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    waitFor(future);
+                }
+                return snapshot;
+            } catch (Exception e) {
+                futures.forEach(future -> future.cancel(true));
+                IOUtils.closeQuietly(snapshot);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Whether {@link #load} only reads the rows of the key: the provider evaluates filters of
+     * the read session and at least one key column can be expressed as a filter.
+     */
+    public boolean supportsKeyFilters() {
+        if (inputFormat == null) {
+            return false;
+        }
+        for (boolean filterable : filterableKeys) {
+            if (filterable) {
+                return inputFormat.supportsFilterPushDown();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the rows of one lookup key, see {@link #load(Collection)}.
+     */
+    public List<RowData> load(RowData lookupKey) throws IOException {
+        return load(Collections.singletonList(lookupKey)).get(lookupKey);
+    }
+
+    /**
+     * Reads the rows of several lookup keys with one read session. The key columns are pushed
+     * to the read session as filters if the provider supports it, see
+     * {@link #supportsKeyFilters()}, otherwise the whole table is read and the filters only
+     * skip the conversion of other rows. A key with a null column matches no rows and is not
+     * read, like in a join.
+     */
+    public Map<RowData, List<RowData>> load(Collection<RowData> lookupKeys) throws IOException {
+        Map<RowData, List<RowData>> rowsByKey = new HashMap<>();
+        Set<RowData> keysToRead = new HashSet<>();
+        List<FilterExpression> keyFilters = new ArrayList<>();
+        for (RowData lookupKey : lookupKeys) {
+            if (hasNullColumn(lookupKey)) {
+                rowsByKey.put(lookupKey, Collections.emptyList());
+            } else if (keysToRead.add(lookupKey)) {
+                FilterExpression keyFilter = createKeyFilter(lookupKey);
+                if (keyFilter != null) {
+                    keyFilters.add(keyFilter);
+                }
+            }
+        }
+        if (keysToRead.isEmpty()) {
+            return rowsByKey;
+        }
+        // every key of a filterable type has a filter, either all keys are filtered or none
+        List<FilterExpression> filters = keyFilters.isEmpty() ?
+                Collections.emptyList() :
+                Collections.singletonList(keyFilters.size() == 1 ?
+                        keyFilters.get(0) :
+                        FilterExpression.Or(keyFilters.toArray(new FilterExpression[0])));
+        Map<RowData, List<RowData>> loaded = withRetry(() -> read(keysToRead, filters));
+        for (RowData key : keysToRead) {
+            rowsByKey.put(key, loaded.getOrDefault(key, new ArrayList<>()));
+        }
+        return rowsByKey;
+    }
+
+    /**
+     * Reads the rows of the lookup keys with one read session, keys without rows may be left
+     * out. The filters, if any, match exactly the rows of the keys.
+     */
+    protected Map<RowData, List<RowData>> read(Set<RowData> lookupKeys,
+                                               List<FilterExpression> filters) throws IOException {
+        Preconditions.checkState(inputFormat != null, "the rows are read by an input format");
+        boolean pushDown = !filters.isEmpty() && inputFormat.supportsFilterPushDown();
+        RecordFilter recordFilter = pushDown ? null : RecordFilter.create(filters, inputFormat.getSelectedColumns());
+        OdpsInputFormat<RowData> format = copyInputFormat();
+        RowDataSerializer serializer = new RowDataSerializer(rowType);
+        Map<RowData, List<RowData>> rows = new HashMap<>();
+        OdpsInputSplit[] splits = format.createInputSplits(pushDown ? filters : Collections.emptyList());
+        for (OdpsInputSplit split : splits) {
+            readSplit(format, split, recordFilter, (key, row) -> {
+                if (lookupKeys.contains(key)) {
+                    rows.computeIfAbsent(key, k -> new ArrayList<>()).add(serializer.copy(row));
+                }
+            });
+        }
+        return rows;
+    }
+
+    private boolean hasNullColumn(RowData lookupKey) {
+        for (int i = 0; i < lookupKeyNames.length; i++) {
+            if (lookupKey.isNullAt(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private FilterExpression createKeyFilter(RowData lookupKey) {
+        List<FilterExpression> filters = new ArrayList<>();
+        for (int i = 0; i < lookupKeyNames.length; i++) {
+            Object value = filterableKeys[i] ? toOdpsValue(lookupKey, i) : null;
+            if (value != null) {
+                filters.add(FilterExpression.EqualTo(lookupKeyNames[i], value));
+            }
+        }
+        if (filters.isEmpty()) {
+            return null;
+        }
+        return filters.size() == 1 ? filters.get(0) : FilterExpression.And(filters.toArray(new FilterExpression[0]));
+    }
+
+    private void readSplit(OdpsInputFormat<RowData> format,
+                           OdpsInputSplit split,
+                           RecordFilter recordFilter,
+                           LookupSnapshot.Writer consumer) throws IOException {
+        format.open(split, recordFilter);
+        try {
+            GenericRowData reuse = new GenericRowData(rowType.getFieldCount());
+            while (!format.reachedEnd()) {
+                RowData row = format.nextRecord(reuse);
+                consumer.add(extractLookupKey(row), row);
+            }
+        } finally {
+            format.close();
+        }
+    }
+
+    private OdpsInputFormat<RowData> copyInputFormat() throws IOException {
+        try {
+            // input formats keep the reader of the opened split, every reader needs its own
+            return InstantiationUtil.clone(inputFormat, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot copy odps input format", e);
+        }
+    }
+
+    private Object toOdpsValue(RowData lookupKey, int pos) {
+        Object value = keyFieldGetters[pos].getFieldOrNull(lookupKey);
+        if (value instanceof StringData) {
+            return value.toString();
+        } else if (value instanceof DecimalData) {
+            return ((DecimalData) value).toBigDecimal();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        // compared after conversion
+        return null;
+    }
+
+    private static boolean isFilterable(LogicalType type) {
+        switch (type.getTypeRoot()) {
+            case CHAR:
+            case VARCHAR:
+            case BOOLEAN:
+            case DECIMAL:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void waitFor(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading lookup table", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private <T> T withRetry(Callable<T> loader) throws IOException {
+        int numRetry = 0;
+        while (true) {
+            try {
+                return loader.call();
+            } catch (Exception e) {
+                if (numRetry >= maxRetryTimes) {
+                    throw new IOException(
+                            String.format("Failed to load lookup table after %d retries", numRetry), e);
+                }
+                numRetry++;
+                long toSleep = numRetry * RETRY_INTERVAL.toMillis();
+                LOG.warn(String.format("Failed to load lookup table, will retry in %d seconds", toSleep / 1000), e);
+                try {
+                    Thread.sleep(toSleep);
+                } catch (InterruptedException ex) {
+                    LOG.warn("Interrupted while waiting to retry failed lookup load, aborting");
+                    Thread.currentThread().interrupt();
+                    throw new FlinkRuntimeException(ex);
+                }
+            }
+        }
+    }
+}
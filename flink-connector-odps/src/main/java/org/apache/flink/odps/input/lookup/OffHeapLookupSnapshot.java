@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.data.binary.BinarySegmentUtils;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the rows serialized in off-heap pages, so that a large table costs about its binary
+ * size and adds nothing for the garbage collector to trace. Entries are appended to the pages
+ * as {@code [next entry of the key: long][key length: int][row length: int][key][row]} and
+ * found through an open addressing hash table of the key bytes, which points to the latest
+ * entry of each key. Once the pages exceed the off-heap memory, new pages are memory-mapped
+ * from a spill file, so the page cache of the OS holds the rest of the table.
+ *
+ * <p>Every writer appends to a page of its own without locking. The entries of a page are
+ * linked into the shared hash table under the lock when the writer takes its next page or is
+ * flushed, so loading threads only wait for each other once per page.
+ *
+ * <p>Looked up rows are returned as {@link BinaryRowData} copies on the heap.
+ */
+public class OffHeapLookupSnapshot extends LookupSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapLookupSnapshot.class);
+
+    public static final int PAGE_SIZE = 4 * 1024 * 1024;
+
+    private static final int ENTRY_HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_ENTRY = -1L;
+
+    private final RowType rowType;
+    private final RowType keyType;
+    private final long memoryBudget;
+    private final String spillDir;
+    private final ThreadLocal<RowDataSerializer> lookupKeySerializer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<MemorySegment> pages = new ArrayList<>();
+    private final List<PageWriter> writers = new ArrayList<>();
+    private long offHeapBytes;
+    private long spilledBytes;
+    private File spillFile;
+    private RandomAccessFile spillAccess;
+
+    private long[] slots;
+    private int[] hashes;
+    private int numKeys;
+    private volatile long numRows;
+    private volatile boolean closed;
+
+    public OffHeapLookupSnapshot(RowType rowType, RowType keyType, long memoryBudget, String spillDir) {
+        this.rowType = rowType;
+        this.keyType = keyType;
+        this.memoryBudget = memoryBudget;
+        this.spillDir = spillDir;
+        this.lookupKeySerializer = ThreadLocal.withInitial(() -> new RowDataSerializer(keyType));
+        this.slots = new long[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        Arrays.fill(slots, NO_ENTRY);
+    }
+
+    @Override
+    public Writer createWriter() {
+        PageWriter writer = new PageWriter();
+        lock.writeLock().lock();
+        try {
+            writers.add(writer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return writer;
+    }
+
+    /**
+     * Links the entries of a page between the two offsets into the hash table, the caller holds
+     * the write lock. Until then the entry header holds the hash of the key instead of the
+     * pointer to the previous entry of the key.
+     */
+    private void index(MemorySegment page, int pageIndex, int startOffset, int endOffset) {
+        BinaryRowData key = new BinaryRowData(keyType.getFieldCount());
+        int offset = startOffset;
+        while (offset < endOffset) {
+            int keySize = page.getInt(offset + 8);
+            int rowSize = page.getInt(offset + 12);
+            int hash = (int) page.getLong(offset);
+            key.pointTo(page, offset + ENTRY_HEADER_SIZE, keySize);
+            int slot = findSlot(key, hash);
+            page.putLong(offset, slots[slot]);
+
+            boolean newKey = slots[slot] == NO_ENTRY;
+            slots[slot] = ((long) pageIndex << 32) | offset;
+            hashes[slot] = hash;
+            numRows++;
+            if (newKey && ++numKeys * 2 > slots.length) {
+                rehash();
+            }
+            offset += entrySize(keySize, rowSize);
+        }
+    }
+
+    private static int entrySize(int keySize, int rowSize) {
+        return (ENTRY_HEADER_SIZE + keySize + rowSize + 7) & ~7;
+    }
+
+    @Override
+    public List<RowData> get(RowData key) {
+        BinaryRowData binaryKey = lookupKeySerializer.get().toBinaryRow(key);
+        int hash = binaryKey.hashCode();
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            long pointer = slots[findSlot(binaryKey, hash)];
+            if (pointer == NO_ENTRY) {
+                return null;
+            }
+            List<RowData> rows = new ArrayList<>(1);
+            while (pointer != NO_ENTRY) {
+                MemorySegment page = pages.get((int) (pointer >>> 32));
+                int offset = (int) pointer;
+                int keySize = page.getInt(offset + 8);
+                int rowSize = page.getInt(offset + 12);
+                byte[] bytes = new byte[rowSize];
+                page.get(offset + ENTRY_HEADER_SIZE + keySize, bytes);
+                BinaryRowData row = new BinaryRowData(rowType.getFieldCount());
+                row.pointTo(MemorySegmentFactory.wrap(bytes), 0, rowSize);
+                rows.add(row);
+                pointer = page.getLong(offset);
+            }
+            // entries of a key are linked from the latest one
+            Collections.reverse(rows);
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return numRows;
+    }
+
+    /** Returns the slot of the key, or the empty slot where it would be inserted. */
+    private int findSlot(BinaryRowData key, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != NO_ENTRY) {
+            if (hashes[slot] == hash && keyEquals(slots[slot], key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(long pointer, BinaryRowData key) {
+        MemorySegment page = pages.get((int) (pointer >>> 32));
+        int offset = (int) pointer;
+        int keySize = page.getInt(offset + 8);
+        return keySize == key.getSizeInBytes()
+                && BinarySegmentUtils.equals(
+                        new MemorySegment[]{page}, offset + ENTRY_HEADER_SIZE,
+                        key.getSegments(), key.getOffset(), keySize);
+    }
+
+    private void rehash() {
+        long[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new long[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        Arrays.fill(slots, NO_ENTRY);
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != NO_ENTRY) {
+                int slot = oldHashes[i] & mask;
+                while (slots[slot] != NO_ENTRY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private MemorySegment allocatePage(int size) throws IOException {
+        if (memoryBudget <= 0 || offHeapBytes + size <= memoryBudget) {
+            offHeapBytes += size;
+            return MemorySegmentFactory.allocateOffHeapUnsafeMemory(size);
+        }
+        if (spillAccess == null) {
+            File dir = new File(spillDir == null ? System.getProperty("java.io.tmpdir") : spillDir);
+            spillFile = File.createTempFile("odps-lookup-", ".spill", dir);
+            spillFile.deleteOnExit();
+            spillAccess = new RandomAccessFile(spillFile, "rw");
+            LOG.info("Lookup cache exceeds {} bytes of off-heap memory, spilling to {}", memoryBudget, spillFile);
+        }
+        MappedByteBuffer buffer = spillAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, spilledBytes, size);
+        spilledBytes += size;
+        return MemorySegmentFactory.wrapOffHeapMemory(buffer);
+    }
+
+    private static void copy(BinaryRowData row, MemorySegment target, int offset) {
+        MemorySegment[] segments = row.getSegments();
+        if (segments.length == 1) {
+            segments[0].copyTo(row.getOffset(), target, offset, row.getSizeInBytes());
+        } else {
+            target.put(offset, BinarySegmentUtils.copyToBytes(segments, row.getOffset(), row.getSizeInBytes()));
+        }
+    }
+
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<PageWriter> openWriters;
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openWriters = new ArrayList<>(writers);
+            writers.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // wait for the entries being appended, writers see the snapshot closed afterwards
+        for (PageWriter writer : openWriters) {
+            synchronized (writer) {
+                writer.page = null;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            // mapped pages are unmapped once they are garbage collected
+            pages.forEach(MemorySegment::free);
+            pages.clear();
+            slots = new long[0];
+            hashes = new int[0];
+            if (spillAccess != null) {
+                IOUtils.closeQuietly(spillAccess);
+                if (!spillFile.delete()) {
+                    LOG.warn("Failed to delete lookup cache spill file {}", spillFile);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Appends the rows of one loading thread to its own page. */
+    private final class PageWriter implements Writer {
+
+        private final RowDataSerializer keySerializer = new RowDataSerializer(keyType);
+        private final RowDataSerializer rowSerializer = new RowDataSerializer(rowType);
+
+        private MemorySegment page;
+        private int pageIndex;
+        private int pageOffset;
+        private int indexedOffset;
+
+        @Override
+        public synchronized void add(RowData key, RowData row) throws IOException {
+            if (closed) {
+                throw new IOException("Lookup snapshot is closed");
+            }
+            BinaryRowData binaryKey = keySerializer.toBinaryRow(key);
+            BinaryRowData binaryRow = rowSerializer.toBinaryRow(row);
+            int keySize = binaryKey.getSizeInBytes();
+            int rowSize = binaryRow.getSizeInBytes();
+            int entrySize = entrySize(keySize, rowSize);
+            if (page == null || page.size() - pageOffset < entrySize) {
+                nextPage(Math.max(PAGE_SIZE, entrySize));
+            }
+            page.putLong(pageOffset, binaryKey.hashCode());
+            page.putInt(pageOffset + 8, keySize);
+            page.putInt(pageOffset + 12, rowSize);
+            copy(binaryKey, page, pageOffset + ENTRY_HEADER_SIZE);
+            copy(binaryRow, page, pageOffset + ENTRY_HEADER_SIZE + keySize);
+            pageOffset += entrySize;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                indexPage();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void nextPage(int size) throws IOException {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                indexPage();
+                page = allocatePage(size);
+                pages.add(page);
+                pageIndex = pages.size() - 1;
+                pageOffset = 0;
+                indexedOffset = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void indexPage() {
+            if (page != null) {
+                index(page, pageIndex, indexedOffset, pageOffset);
+                indexedOffset = pageOffset;
+            }
+        }
+
+        private void checkOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Lookup snapshot is closed");
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.lookup;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the rows of recently looked up keys, keys without rows included. The cache is
+ * bounded by bytes if {@code lookup.cache.max-size} is set, otherwise by rows, and evicts the
+ * least recently used keys. Entries expire ttl after they were loaded.
+ */
+public class PartialLookupCache extends OdpsLookupCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartialLookupCache.class);
+
+    private final long cacheExpireMs;
+    private final long cacheMaxRows;
+    private final long cacheMaxBytes;
+    private final AtomicLong numRows = new AtomicLong();
+    // serializers reuse their binary row, keys are loaded by several threads
+    private final ThreadLocal<RowDataSerializer> serializers;
+
+    private Cache<RowData, CachedRows> cache;
+
+    public PartialLookupCache(OdpsLookupTableReader tableReader, OdpsLookupOptions options) {
+        super(tableReader);
+        this.cacheExpireMs = options.getCacheExpireMs();
+        this.cacheMaxRows = options.getCacheMaxRows();
+        this.cacheMaxBytes = options.getCacheMaxBytes();
+        this.serializers = ThreadLocal.withInitial(() -> new RowDataSerializer(tableReader.getRowType()));
+    }
+
+    @Override
+    public void open(MetricGroup metricGroup) throws IOException {
+        super.open(metricGroup);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (cacheExpireMs > 0) {
+            builder.expireAfterWrite(cacheExpireMs, TimeUnit.MILLISECONDS);
+        }
+        Weigher<RowData, CachedRows> weigher;
+        if (cacheMaxBytes > 0) {
+            builder.maximumWeight(cacheMaxBytes);
+            weigher = (key, value) -> value.bytes;
+        } else {
+            builder.maximumWeight(cacheMaxRows);
+            // keys without rows still take a slot
+            weigher = (key, value) -> Math.max(1, value.rows.size());
+        }
+        cache = builder.weigher(weigher)
+                .removalListener((RemovalListener<RowData, CachedRows>) notification ->
+                        numRows.addAndGet(-notification.getValue().rows.size()))
+                .build();
+        LOG.info("Open lookup cache, maxRows:{}, maxBytes:{}, ttl:{}ms", cacheMaxRows, cacheMaxBytes, cacheExpireMs);
+    }
+
+    @Nullable
+    @Override
+    public Collection<RowData> getIfPresent(RowData key) {
+        CachedRows cached = cache.getIfPresent(key);
+        if (cached == null) {
+            recordMiss();
+            return null;
+        }
+        recordHit();
+        return cached.rows;
+    }
+
+    @Override
+    public Collection<RowData> load(RowData key) throws IOException {
+        return load(Collections.singletonList(key)).get(key);
+    }
+
+    /**
+     * Loads the keys with one read session of the table reader.
+     */
+    @Override
+    public Map<RowData, Collection<RowData>> load(Collection<RowData> keys) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Map<RowData, List<RowData>> rowsByKey;
+        try {
+            rowsByKey = tableReader.load(keys);
+        } catch (IOException e) {
+            recordLoad(startTime, false);
+            throw e;
+        }
+        Map<RowData, Collection<RowData>> loaded = new HashMap<>();
+        for (Map.Entry<RowData, List<RowData>> entry : rowsByKey.entrySet()) {
+            List<RowData> rows = entry.getValue();
+            numRows.addAndGet(rows.size());
+            cache.put(entry.getKey(), new CachedRows(rows, cacheMaxBytes > 0 ? sizeInBytes(rows) : 0));
+            loaded.put(entry.getKey(), rows);
+        }
+        recordLoad(startTime, true);
+        return loaded;
+    }
+
+    private int sizeInBytes(List<RowData> rows) {
+        RowDataSerializer serializer = serializers.get();
+        long bytes = 0;
+        for (RowData row : rows) {
+            bytes += serializer.toBinaryRow(row).getSizeInBytes();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    @Override
+    public long size() {
+        return numRows.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private static class CachedRows {
+
+        private final List<RowData> rows;
+        private final int bytes;
+
+        private CachedRows(List<RowData> rows, int bytes) {
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+}
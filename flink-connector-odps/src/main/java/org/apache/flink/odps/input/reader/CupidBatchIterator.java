@@ -31,8 +31,10 @@ import org.apache.flink.odps.vectorized.ColumnarReadBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 
 public class CupidBatchIterator<T> implements NextIterator<T> {
@@ -43,8 +45,11 @@ public class CupidBatchIterator<T> implements NextIterator<T> {
     private final Column[] fullColumns;
     private final OdpsTypeConverter[] typeConverters;
     private final RecordType recordType;
+    @Nullable
+    private final RecordFilter recordFilter;
     private SplitReader<ColDataBatch> splitReader;
     private Iterator<Record> currentRowIterator;
+    private Record nextRecord;
     private T reuse;
 
     public CupidBatchIterator(OdpsInputSplit split,
@@ -52,6 +57,15 @@ public class CupidBatchIterator<T> implements NextIterator<T> {
                               String[] selectedColumns,
                               RecordType recordType,
                               int batchSize) throws Exception {
+        this(split, odpsTableSchema, selectedColumns, recordType, batchSize, null);
+    }
+
+    public CupidBatchIterator(OdpsInputSplit split,
+                              OdpsTableSchema odpsTableSchema,
+                              String[] selectedColumns,
+                              RecordType recordType,
+                              int batchSize,
+                              @Nullable RecordFilter recordFilter) throws Exception {
         try {
             splitReader = new SplitReaderBuilder(split.inputSplit)
                     .buildColDataReader(batchSize);
@@ -69,7 +83,8 @@ public class CupidBatchIterator<T> implements NextIterator<T> {
         }
         this.currentBatch = new ColumnarReadBatch(fullColumns, split.inputSplit.getPartitionSpec());
         this.recordType = recordType;
-        LOG.info("use batch iterator");
+        this.recordFilter = recordFilter;
+        LOG.info("use batch iterator, filter: {}", recordFilter);
     }
 
     @Override
@@ -79,10 +94,25 @@ public class CupidBatchIterator<T> implements NextIterator<T> {
         }
         splitReader = null;
         currentRowIterator = null;
+        nextRecord = null;
     }
 
     @Override
     public boolean hasNext() {
+        if (recordFilter == null) {
+            return hasNextRow();
+        }
+        // skip filtered rows before they are converted
+        while (nextRecord == null && hasNextRow()) {
+            Record record = currentRowIterator.next();
+            if (recordFilter.test(record)) {
+                nextRecord = record;
+            }
+        }
+        return nextRecord != null;
+    }
+
+    private boolean hasNextRow() {
         if (currentRowIterator != null && currentRowIterator.hasNext()) {
             return true;
         }
@@ -96,7 +126,15 @@ public class CupidBatchIterator<T> implements NextIterator<T> {
 
     @Override
     public T next() {
-        return buildReturnType(currentRowIterator.next());
+        if (recordFilter == null) {
+            return buildReturnType(currentRowIterator.next());
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record record = nextRecord;
+        nextRecord = null;
+        return buildReturnType(record);
     }
 
     private T buildReturnType(Record record) {
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.reader;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReaderBuilder;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import org.apache.flink.odps.input.OdpsInputSplit;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.vectorized.ColumnarRowDataBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads a split batch by batch. Unlike {@link CupidBatchIterator}, which builds a record for
+ * every row, the batches are handed out as {@link ColumnarRowDataBatch} views over the cupid
+ * vectors.
+ *
+ * <p>The split reader may reuse the buffers of a batch, the rows of the current batch must not
+ * be used after {@link #nextBatch()} is called again.
+ */
+public class CupidColumnarBatchReader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CupidColumnarBatchReader.class);
+
+    private final ColumnarRowDataBatch currentBatch;
+    private SplitReader<ColDataBatch> splitReader;
+
+    public CupidColumnarBatchReader(OdpsInputSplit split,
+                                    OdpsTableSchema odpsTableSchema,
+                                    String[] selectedColumns,
+                                    int batchSize) throws Exception {
+        try {
+            splitReader = new SplitReaderBuilder(split.inputSplit)
+                    .buildColDataReader(batchSize);
+        } catch (Throwable throwable) {
+            throw new Exception(throwable);
+        }
+        Column[] fullColumns = new Column[selectedColumns.length];
+        for (int i = 0; i < fullColumns.length; ++i) {
+            fullColumns[i] = new Column(odpsTableSchema.getColumn(selectedColumns[i]).getName(),
+                    odpsTableSchema.getColumn(selectedColumns[i]).getTypeInfo());
+        }
+        this.currentBatch = new ColumnarRowDataBatch(fullColumns, split.inputSplit.getPartitionSpec());
+        LOG.info("use columnar batch reader, batch size: {}", batchSize);
+    }
+
+    /**
+     * Moves to the next batch of the split, returns false if the split is finished.
+     */
+    public boolean nextBatch() {
+        if (!splitReader.hasNext()) {
+            return false;
+        }
+        currentBatch.updateColumnBatch(splitReader.next());
+        return true;
+    }
+
+    public ColumnarRowDataBatch getCurrentBatch() {
+        return currentBatch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (splitReader != null) {
+            splitReader.close();
+        }
+        splitReader = null;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.input.reader;
+
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.data.Record;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Evaluates cupid {@link FilterExpression}s against odps records, for table api providers
+ * which cannot push filters down. Predicates follow sql three-valued logic, a record is only
+ * accepted when all filters evaluate to true.
+ */
+public class RecordFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<FilterExpression> filters;
+
+    private RecordFilter(List<FilterExpression> filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * Creates a filter for records containing the given columns. Filters referencing other
+     * columns are dropped, returns null if no filter is left.
+     */
+    @Nullable
+    public static RecordFilter create(@Nullable List<FilterExpression> filters, String[] columns) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        Set<String> columnNames = new HashSet<>(Arrays.asList(columns));
+        List<FilterExpression> applicable = new ArrayList<>();
+        for (FilterExpression filter : filters) {
+            if (referencesOnly(filter, columnNames)) {
+                applicable.add(filter);
+            }
+        }
+        return applicable.isEmpty() ? null : new RecordFilter(applicable);
+    }
+
+    public boolean test(Record record) {
+        for (FilterExpression filter : filters) {
+            if (!Boolean.TRUE.equals(evaluate(filter, record))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<FilterExpression> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Returns the result of the expression, null for unknown.
+     */
+    @Nullable
+    static Boolean evaluate(FilterExpression filter, Record record) {
+        switch (filter.getType()) {
+            case AND: {
+                boolean unknown = false;
+                for (FilterExpression child : filter.getChildren()) {
+                    Boolean result = evaluate(child, record);
+                    if (result == null) {
+                        unknown = true;
+                    } else if (!result) {
+                        return false;
+                    }
+                }
+                return unknown ? null : true;
+            }
+            case OR: {
+                boolean unknown = false;
+                for (FilterExpression child : filter.getChildren()) {
+                    Boolean result = evaluate(child, record);
+                    if (result == null) {
+                        unknown = true;
+                    } else if (result) {
+                        return true;
+                    }
+                }
+                return unknown ? null : false;
+            }
+            case NOT: {
+                Boolean result = evaluate(filter.getChildren()[0], record);
+                return result == null ? null : !result;
+            }
+            default:
+                break;
+        }
+
+        Object value = normalize(record.get(filter.getAttribute()));
+        switch (filter.getType()) {
+            case IS_NULL:
+                return value == null;
+            case IS_NOT_NULL:
+                return value != null;
+            case EQUAL_NULL_SAFE:
+                if (value == null || filter.getLiteral() == null) {
+                    return value == null && filter.getLiteral() == null;
+                }
+                return Integer.valueOf(0).equals(compare(value, filter.getLiteral()));
+            case IN: {
+                if (value == null) {
+                    return null;
+                }
+                boolean unknown = false;
+                for (Object literal : (Object[]) filter.getLiteral()) {
+                    Integer result = compare(value, literal);
+                    if (result == null) {
+                        unknown = true;
+                    } else if (result == 0) {
+                        return true;
+                    }
+                }
+                return unknown ? null : false;
+            }
+            default:
+                break;
+        }
+
+        if (value == null || filter.getLiteral() == null) {
+            return null;
+        }
+        switch (filter.getType()) {
+            case STRING_STARTS_WITH:
+                return value.toString().startsWith(filter.getLiteral().toString());
+            case STRING_ENDS_WITH:
+                return value.toString().endsWith(filter.getLiteral().toString());
+            case STRING_CONTAINS:
+                return value.toString().contains(filter.getLiteral().toString());
+            default:
+                break;
+        }
+
+        Integer result = compare(value, filter.getLiteral());
+        if (result == null) {
+            return null;
+        }
+        switch (filter.getType()) {
+            case EQUAL_TO:
+                return result == 0;
+            case GREATER_THAN:
+                return result > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return result >= 0;
+            case LESS_THAN:
+                return result < 0;
+            case LESS_THAN_OR_EQUAL:
+                return result <= 0;
+            default:
+                throw new UnsupportedOperationException("Unsupported filter: " + filter);
+        }
+    }
+
+    private static boolean referencesOnly(FilterExpression filter, Set<String> columnNames) {
+        if (filter.getChildren() != null) {
+            for (FilterExpression child : filter.getChildren()) {
+                if (!referencesOnly(child, columnNames)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return columnNames.contains(filter.getAttribute());
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        } else if (value instanceof AbstractChar) {
+            return ((AbstractChar) value).getValue();
+        }
+        return value;
+    }
+
+    /**
+     * Compares a record value with a literal, returns null when they are not comparable
+     * (e.g. NaN) so that the predicate evaluates to unknown.
+     */
+    @Nullable
+    private static Integer compare(Object value, Object literal) {
+        literal = normalize(literal);
+        if (value instanceof Number && literal instanceof Number) {
+            if (value instanceof BigDecimal || literal instanceof BigDecimal) {
+                if (!isFinite((Number) value) || !isFinite((Number) literal)) {
+                    return null;
+                }
+                return toBigDecimal((Number) value).compareTo(toBigDecimal((Number) literal));
+            }
+            if (isIntegral(value) && isIntegral(literal)) {
+                return Long.compare(((Number) value).longValue(), ((Number) literal).longValue());
+            }
+            double left = ((Number) value).doubleValue();
+            double right = ((Number) literal).doubleValue();
+            if (left < right) {
+                return -1;
+            } else if (left > right) {
+                return 1;
+            } else if (left == right) {
+                return 0;
+            }
+            return null;
+        }
+        if (value instanceof String && literal instanceof String) {
+            // same ordering as flink's binary strings
+            return compareBytes(((String) value).getBytes(StandardCharsets.UTF_8),
+                    ((String) literal).getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Boolean && literal instanceof Boolean) {
+            return Boolean.compare((Boolean) value, (Boolean) literal);
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer
+                || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isFinite(Number number) {
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            return !Double.isNaN(value) && !Double.isInfinite(value);
+        }
+        return true;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        return isIntegral(number) ? BigDecimal.valueOf(number.longValue()) : BigDecimal.valueOf(number.doubleValue());
+    }
+
+    private static int compareBytes(byte[] left, byte[] right) {
+        int len = Math.min(left.length, right.length);
+        for (int i = 0; i < len; i++) {
+            int res = (left[i] & 0xFF) - (right[i] & 0xFF);
+            if (res != 0) {
+                return res;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    @Override
+    public String toString() {
+        return filters.toString();
+    }
+}
@@ -23,102 +23,271 @@ import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
 import com.aliyun.odps.cupid.table.v1.reader.SplitReaderBuilder;
 import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
+import com.aliyun.odps.type.TypeInfo;
+import org.apache.flink.api.java.tuple.Tuple;
+import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.odps.input.OdpsInputSplit;
 import org.apache.flink.odps.schema.OdpsColumn;
 import org.apache.flink.odps.schema.OdpsTableSchema;
-import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.OdpsFieldConverter;
 import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.utils.JoinedRowData;
+import org.apache.flink.types.Row;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
+/**
+ * Reads the records of a split and converts them to the requested record type.
+ *
+ * <p>Everything that is constant for the split is prepared once: the positions of the selected
+ * columns in the records of the split reader are resolved from the first record, the converters
+ * are bound per column, and the partition values are converted when the iterator is created.
+ * When the partition columns are the last selected columns, {@link RowData} records are joined
+ * with a constant row of the partition values instead of copying them into every record.
+ */
 public class RecordIterator<T> implements NextIterator<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecordIterator.class);
 
     private final Column[] fullColumns;
-    private final OdpsTypeConverter[] typeConverters;
+    private final OdpsFieldConverter[] typeConverters;
+    private final TypeInfo[] typeInfos;
     private final Record fullRecord;
-    private final OdpsTableSchema odpsTableSchema;
     private final RecordType recordType;
-    private final Map<String, String> partitionSpec;
+    @Nullable
+    private final RecordFilter recordFilter;
+
+    // null if the split has no partition values
+    @Nullable
+    private final boolean[] isPartitionColumn;
+    private final Object[] partitionFields;
+    private final Object[] partitionDataFields;
+    // fields of the RowData records before the constant partition suffix
+    private final int rowDataArity;
+    @Nullable
+    private final RowData partitionSuffix;
+
+    // positions of the selected columns in the records of the split reader, -1 for partitions
+    private int[] recordPositions;
     private SplitReader<ArrayRecord> splitReader;
+    private ArrayRecord nextRecord;
     private T reuse;
 
     public RecordIterator(OdpsInputSplit split,
                           OdpsTableSchema odpsTableSchema,
                           String[] selectedColumns,
                           RecordType recordType) throws Exception {
-        this.odpsTableSchema = odpsTableSchema;
-        this.partitionSpec = split.inputSplit.getPartitionSpec();
+        this(split, odpsTableSchema, selectedColumns, recordType, null);
+    }
+
+    public RecordIterator(OdpsInputSplit split,
+                          OdpsTableSchema odpsTableSchema,
+                          String[] selectedColumns,
+                          RecordType recordType,
+                          @Nullable RecordFilter recordFilter) throws Exception {
+        Map<String, String> partitionSpec = split.inputSplit.getPartitionSpec();
         this.fullColumns = new Column[selectedColumns.length];
-        this.typeConverters = new OdpsTypeConverter[selectedColumns.length];
+        this.typeConverters = new OdpsFieldConverter[selectedColumns.length];
+        this.typeInfos = new TypeInfo[selectedColumns.length];
         this.recordType = recordType;
+        this.recordFilter = recordFilter;
+        boolean hasPartitionValues = partitionSpec != null && partitionSpec.size() > 0;
+        this.isPartitionColumn = hasPartitionValues ? new boolean[selectedColumns.length] : null;
         for (int i = 0; i < fullColumns.length; ++i) {
-            this.fullColumns[i] = new Column(odpsTableSchema.getColumn(selectedColumns[i]).getName(),
-                    odpsTableSchema.getColumn(selectedColumns[i]).getTypeInfo());
-            this.typeConverters[i] = OdpsTypeConverter.valueOf(this.fullColumns[i].getType().name());
+            OdpsColumn column = odpsTableSchema.getColumn(selectedColumns[i]);
+            this.fullColumns[i] = new Column(column.getName(), column.getTypeInfo());
+            this.typeInfos[i] = this.fullColumns[i].getTypeInfo();
+            this.typeConverters[i] = OdpsFieldConverter.create(typeInfos[i]);
+            if (hasPartitionValues) {
+                this.isPartitionColumn[i] = column.isPartition();
+            }
         }
         this.fullRecord = new ArrayRecord(fullColumns);
+
+        this.partitionFields = new Object[fullColumns.length];
+        this.partitionDataFields = new Object[fullColumns.length];
+        int firstPartitionColumn = fullColumns.length;
+        if (hasPartitionValues) {
+            for (int i = fullColumns.length - 1; i >= 0; i--) {
+                if (!isPartitionColumn[i]) {
+                    continue;
+                }
+                String name = fullColumns[i].getName();
+                fullRecord.set(i, OdpsUtils.convertPartitionColumn(partitionSpec.get(name), typeInfos[i]));
+                partitionFields[i] = typeConverters[i].toFlinkField(fullRecord, i);
+                partitionDataFields[i] = typeConverters[i].toFlinkDataField(fullRecord, i);
+                if (firstPartitionColumn == i + 1) {
+                    firstPartitionColumn = i;
+                }
+            }
+        }
+        if (firstPartitionColumn < fullColumns.length && !hasPartitionColumnBefore(firstPartitionColumn)) {
+            GenericRowData suffix = new GenericRowData(fullColumns.length - firstPartitionColumn);
+            for (int i = firstPartitionColumn; i < fullColumns.length; i++) {
+                suffix.setField(i - firstPartitionColumn, partitionDataFields[i]);
+            }
+            this.partitionSuffix = suffix;
+            this.rowDataArity = firstPartitionColumn;
+        } else {
+            this.partitionSuffix = null;
+            this.rowDataArity = fullColumns.length;
+        }
         try {
             this.splitReader = new SplitReaderBuilder(split.inputSplit)
                     .buildRecordReader();
         } catch (Throwable throwable) {
             throw new Exception(throwable);
         }
-        LOG.info("use record iterator");
+        LOG.info("use record iterator, filter: {}", recordFilter);
+    }
+
+    private boolean hasPartitionColumnBefore(int end) {
+        for (int i = 0; i < end; i++) {
+            if (isPartitionColumn[i]) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public boolean hasNext() {
-        return splitReader.hasNext();
+        if (recordFilter == null) {
+            return splitReader.hasNext();
+        }
+        // skip filtered records before they are converted
+        while (nextRecord == null && splitReader.hasNext()) {
+            ArrayRecord record = splitReader.next();
+            if (recordFilter.test(toFullRecord(record))) {
+                nextRecord = record;
+            }
+        }
+        return nextRecord != null;
     }
 
     @Override
     public T next() {
-        ArrayRecord record = splitReader.next();
-        if (partitionSpec != null && partitionSpec.size() > 0) {
-            for (Column fullColumn : fullColumns) {
-                OdpsColumn column = odpsTableSchema.getColumn(fullColumn.getName());
-                if (column.isPartition()) {
-                    fullRecord.set(column.getName(),
-                            OdpsUtils.convertPartitionColumn(partitionSpec.get(column.getName()), column.getTypeInfo()));
-                } else {
-                    fullRecord.set(column.getName(), record.get(column.getName()));
+        if (recordFilter == null) {
+            return buildReturnType(splitReader.next());
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ArrayRecord record = nextRecord;
+        nextRecord = null;
+        return buildReturnType(record);
+    }
+
+    private void resolvePositions(ArrayRecord record) {
+        Map<String, Integer> positions = new HashMap<>();
+        Column[] columns = record.getColumns();
+        for (int i = 0; i < columns.length; i++) {
+            positions.put(columns[i].getName().toLowerCase(), i);
+        }
+        recordPositions = new int[fullColumns.length];
+        for (int i = 0; i < fullColumns.length; i++) {
+            if (isPartitionColumn != null && isPartitionColumn[i]) {
+                recordPositions[i] = -1;
+                continue;
+            }
+            Integer position = positions.get(fullColumns[i].getName().toLowerCase());
+            if (position == null) {
+                throw new FlinkOdpsException("Column " + fullColumns[i].getName() + " is not read by the split");
+            }
+            recordPositions[i] = position;
+        }
+    }
+
+    private Record toFullRecord(ArrayRecord record) {
+        if (isPartitionColumn != null) {
+            if (recordPositions == null) {
+                resolvePositions(record);
+            }
+            // partition values have been set once
+            for (int i = 0; i < fullColumns.length; i++) {
+                if (recordPositions[i] >= 0) {
+                    fullRecord.set(i, record.get(recordPositions[i]));
                 }
             }
-            return buildReturnType(fullRecord);
+            return fullRecord;
         }
-        return buildReturnType(record);
+        return record;
     }
 
-    private T buildReturnType(Record record) {
+    private T buildReturnType(ArrayRecord record) {
         // TODO:record may be null in cluster mode
+        if (recordPositions == null) {
+            resolvePositions(record);
+        }
         switch (recordType) {
             case FLINK_ROW_DATA:
-                return (T) buildFlinkRowData(record, fullColumns, typeConverters);
+                return (T) buildRowData(record);
             case FLINK_TUPLE:
-                return (T) buildFlinkTuple(reuse, record, fullColumns, typeConverters);
+                return (T) buildTuple(record);
             case FLINK_ROW:
-                return (T) buildFlinkRow(reuse, record, fullColumns, typeConverters);
+                return (T) buildRow(record);
             default:
-                return (T) buildFlinkPojo(reuse, record, fullColumns);
+                return (T) buildFlinkPojo(reuse, toFullRecord(record), fullColumns);
         }
     }
 
+    private RowData buildRowData(ArrayRecord record) {
+        GenericRowData row = new GenericRowData(rowDataArity);
+        for (int i = 0; i < rowDataArity; i++) {
+            int position = recordPositions[i];
+            row.setField(i, position < 0 ? partitionDataFields[i] :
+                    typeConverters[i].toFlinkDataField(record, position));
+        }
+        return partitionSuffix == null ? row : new JoinedRowData(row, partitionSuffix);
+    }
+
+    private Row buildRow(ArrayRecord record) {
+        Row row = (Row) reuse;
+        if (row.getArity() > fullColumns.length) {
+            throw new FlinkOdpsException("Row arity cannot greater than record length");
+        }
+        for (int i = 0; i < row.getArity(); i++) {
+            row.setField(i, toFlinkField(record, i));
+        }
+        return row;
+    }
+
+    private Tuple buildTuple(ArrayRecord record) {
+        Tuple tuple = (Tuple) reuse;
+        if (tuple.getArity() > fullColumns.length) {
+            throw new FlinkOdpsException("Tuple arity cannot greater than record length");
+        }
+        for (int i = 0; i < tuple.getArity(); i++) {
+            tuple.setField(toFlinkField(record, i), i);
+        }
+        return tuple;
+    }
+
+    private Object toFlinkField(ArrayRecord record, int i) {
+        int position = recordPositions[i];
+        return position < 0 ? partitionFields[i] : typeConverters[i].toFlinkField(record, position);
+    }
+
     @Override
     public void close() throws IOException {
         if (splitReader != null) {
             splitReader.close();
         }
         splitReader = null;
+        nextRecord = null;
     }
 
     @Override
     public void setReuse(T reuse) {
         this.reuse = reuse;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.output;
+
+import org.apache.flink.annotation.Public;
+import org.apache.flink.odps.output.stream.TableSelector;
+import org.apache.flink.odps.output.writer.OdpsStreamWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.stream.MultiTableOdpsStreamWrite;
+import org.apache.flink.odps.util.OdpsConf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Sink writing the records of many tables, e.g. the change data captured from the tables of a
+ * database, with one pool of writers, write sessions and flush threads, see
+ * {@link MultiTableOdpsStreamWrite}. Each record is written to the table returned by the
+ * {@link TableSelector}.
+ */
+@Public
+public class OdpsMultiTableSinkFunction<T> extends OdpsSinkFunction<T> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsMultiTableSinkFunction.class);
+
+    public static final int DEFAULT_MAX_OPEN_WRITERS = 64;
+
+    private final String projectName;
+    private final TableSelector<T> tableSelector;
+    private final Map<String, OdpsWriteOptions> tableWriteOptions;
+    private final int maxOpenWriters;
+
+    public OdpsMultiTableSinkFunction(OdpsConf odpsConf,
+                                      String projectName,
+                                      TableSelector<T> tableSelector,
+                                      OdpsWriteOptions writeOptions,
+                                      Map<String, OdpsWriteOptions> tableWriteOptions,
+                                      int maxOpenWriters) {
+        super(odpsConf, writeOptions);
+        this.projectName = checkNotNull(projectName, "project cannot be null");
+        this.tableSelector = checkNotNull(tableSelector, "table selector cannot be null");
+        this.tableWriteOptions = new HashMap<>(tableWriteOptions);
+        checkArgument(maxOpenWriters > 0, "maxOpenWriters must be positive");
+        this.maxOpenWriters = maxOpenWriters;
+        LOG.info("Create odps multi-table sink, project:{}, maxOpenWriters:{}, writeOptions:{}, tableWriteOptions:{}",
+                projectName, maxOpenWriters, getWriteOptions(), tableWriteOptions);
+    }
+
+    @Override
+    protected OdpsStreamWrite<T> createOdpsStreamWrite() {
+        return new MultiTableOdpsStreamWrite<>(
+                getOdpsConf(),
+                projectName,
+                tableSelector,
+                getWriteOptions(),
+                tableWriteOptions,
+                maxOpenWriters);
+    }
+
+    /**
+     * Builder to build {@link OdpsMultiTableSinkFunction}.
+     */
+    public static class OdpsMultiTableSinkBuilder<T> {
+        private OdpsConf odpsConf;
+        private String projectName;
+        private TableSelector<T> tableSelector;
+        private OdpsWriteOptions writeOptions;
+        private final Map<String, OdpsWriteOptions> tableWriteOptions = new HashMap<>();
+        private int maxOpenWriters = DEFAULT_MAX_OPEN_WRITERS;
+
+        public OdpsMultiTableSinkBuilder(OdpsConf odpsConf,
+                                         String projectName,
+                                         TableSelector<T> tableSelector) {
+            this.odpsConf = odpsConf;
+            this.projectName = projectName;
+            this.tableSelector = tableSelector;
+        }
+
+        public OdpsMultiTableSinkBuilder<T> setOdpsConf(OdpsConf odpsConf) {
+            this.odpsConf = odpsConf;
+            return this;
+        }
+
+        public OdpsMultiTableSinkBuilder<T> setProjectName(String projectName) {
+            this.projectName = projectName;
+            return this;
+        }
+
+        public OdpsMultiTableSinkBuilder<T> setTableSelector(TableSelector<T> tableSelector) {
+            this.tableSelector = tableSelector;
+            return this;
+        }
+
+        /**
+         * Sets the options of the tables without options of their own. The flush threads and
+         * the flush interval of these options are shared by all tables.
+         */
+        public OdpsMultiTableSinkBuilder<T> setWriteOptions(OdpsWriteOptions writeOptions) {
+            this.writeOptions = writeOptions;
+            return this;
+        }
+
+        /**
+         * Sets the options of one table, e.g. its buffer sizes and partition limit, by the name
+         * returned by the table selector.
+         */
+        public OdpsMultiTableSinkBuilder<T> setTableWriteOptions(String tableName, OdpsWriteOptions writeOptions) {
+            this.tableWriteOptions.put(tableName, writeOptions);
+            return this;
+        }
+
+        /**
+         * Sets the number of partition writers open over all tables.
+         */
+        public OdpsMultiTableSinkBuilder<T> setMaxOpenWriters(int maxOpenWriters) {
+            this.maxOpenWriters = maxOpenWriters;
+            return this;
+        }
+
+        public OdpsMultiTableSinkFunction<T> build() {
+            checkNotNull(projectName, "projectName should not be null");
+            checkNotNull(tableSelector, "tableSelector should not be null");
+            return new OdpsMultiTableSinkFunction<>(
+                    odpsConf,
+                    projectName,
+                    tableSelector,
+                    writeOptions,
+                    tableWriteOptions,
+                    maxOpenWriters);
+        }
+    }
+}
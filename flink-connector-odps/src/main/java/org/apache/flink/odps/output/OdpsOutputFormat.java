@@ -27,8 +27,11 @@ import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.odps.output.writer.OdpsTableWrite;
 import org.apache.flink.odps.output.writer.OdpsWriteFactory;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.file.StaticOdpsPartitionWrite;
 import org.apache.flink.odps.util.OdpsConf;
 import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,7 @@ public class OdpsOutputFormat<T> extends RichOutputFormat<T> implements Initiali
 
     private final OdpsTableWrite<T> odpsWrite;
     private final OdpsWriteOptions writeOptions;
+    private RowType rowType;
 
     public OdpsOutputFormat(String projectName,
                             String tableName,
@@ -169,11 +173,25 @@ public class OdpsOutputFormat<T> extends RichOutputFormat<T> implements Initiali
             builder.setSupportPartitionGrouping(supportsGrouping);
             builder.setPartition(partition);
             builder.setWriteOptions(writeOptions);
+            builder.setRowType(rowType);
             return builder.build();
         }
         return this;
     }
 
+    /**
+     * Declares the records to be {@link RowData} of the given type, which vectorized writes copy
+     * into column vectors directly.
+     */
+    @SuppressWarnings("unchecked")
+    public OdpsOutputFormat<T> setRowType(RowType rowType) {
+        Preconditions.checkState(odpsWrite instanceof StaticOdpsPartitionWrite,
+                "Row type can only be set for static partition writes");
+        this.rowType = rowType;
+        ((StaticOdpsPartitionWrite<T>) odpsWrite).setRowType(rowType);
+        return this;
+    }
+
     @Override
     public void configure(Configuration parameters) {
     }
@@ -221,6 +239,7 @@ public class OdpsOutputFormat<T> extends RichOutputFormat<T> implements Initiali
         private boolean isDynamicPartition;
         private boolean supportPartitionGrouping;
         private OdpsWriteOptions writeOptions;
+        private RowType rowType;
 
         public OutputFormatBuilder(String projectName, String tableName) {
             this(null, projectName, tableName);
@@ -277,10 +296,15 @@ public class OdpsOutputFormat<T> extends RichOutputFormat<T> implements Initiali
             return this;
         }
 
+        public OutputFormatBuilder<T> setRowType(RowType rowType) {
+            this.rowType = rowType;
+            return this;
+        }
+
         public OdpsOutputFormat<T> build() {
             checkNotNull(projectName, "projectName should not be null");
             checkNotNull(tableName, "tableName should not be null");
-            return new OdpsOutputFormat<T>(
+            OdpsOutputFormat<T> outputFormat = new OdpsOutputFormat<T>(
                     odpsConf,
                     projectName,
                     tableName,
@@ -290,6 +314,10 @@ public class OdpsOutputFormat<T> extends RichOutputFormat<T> implements Initiali
                     supportPartitionGrouping,
                     writeOptions
             );
+            if (rowType != null) {
+                outputFormat.setRowType(rowType);
+            }
+            return outputFormat;
         }
     }
 }
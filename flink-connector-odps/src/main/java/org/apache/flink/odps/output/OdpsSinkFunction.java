@@ -19,12 +19,14 @@
 package org.apache.flink.odps.output;
 
 import org.apache.flink.annotation.Public;
+import org.apache.flink.api.common.eventtime.Watermark;
 import org.apache.flink.api.common.functions.RuntimeContext;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.odps.output.stream.PartitionAssigner;
 import org.apache.flink.odps.output.writer.OdpsStreamWrite;
 import org.apache.flink.odps.output.writer.OdpsWriteFactory;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.sink.OdpsSink;
 import org.apache.flink.odps.util.OdpsConf;
 import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.runtime.state.FunctionInitializationContext;
@@ -132,6 +134,26 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
                 projectName, tableName, partition, isDynamicPartition, supportsGrouping, writeOptions);
     }
 
+    /**
+     * For sinks writing to the tables of the {@link OdpsStreamWrite} created by
+     * {@link #createOdpsStreamWrite()} instead of one table.
+     */
+    protected OdpsSinkFunction(OdpsConf odpsConf, OdpsWriteOptions writeOptions) {
+        this.odpsConf = odpsConf == null ? OdpsUtils.getOdpsConf() : odpsConf;
+        Preconditions.checkNotNull(this.odpsConf, "odps conf cannot be null");
+        if (this.odpsConf.isClusterMode()) {
+            throw new IllegalStateException("Odps sink function cannot support overwrite in cluster mode.");
+        }
+        this.projectName = null;
+        this.tableName = null;
+        this.partition = null;
+        this.isDynamicPartition = false;
+        this.supportsGrouping = false;
+        this.writeOptions = writeOptions == null ?
+                OdpsWriteOptions.builder().build() : writeOptions;
+        this.partitionAssigner = null;
+    }
+
     @Override
     public void initializeState(FunctionInitializationContext context) throws Exception {
     }
@@ -152,16 +174,9 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
     @Override
     public void open(Configuration configuration) throws Exception {
         super.open(configuration);
-        this.odpsStreamWrite = OdpsWriteFactory.createOdpsStreamWrite(
-                odpsConf,
-                projectName,
-                tableName,
-                partition,
-                isDynamicPartition,
-                supportsGrouping,
-                writeOptions,
-                partitionAssigner);
+        this.odpsStreamWrite = createOdpsStreamWrite();
         RuntimeContext ctx = getRuntimeContext();
+        odpsStreamWrite.registerMetrics(ctx.getMetricGroup());
         this.closed = false;
         odpsStreamWrite.initWriteSession();
         odpsStreamWrite.open(ctx.getIndexOfThisSubtask(), ctx.getNumberOfParallelSubtasks());
@@ -189,6 +204,26 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
         LOG.info("Open odps sink function");
     }
 
+    protected OdpsStreamWrite<T> createOdpsStreamWrite() {
+        return OdpsWriteFactory.createOdpsStreamWrite(
+                odpsConf,
+                projectName,
+                tableName,
+                partition,
+                isDynamicPartition,
+                supportsGrouping,
+                writeOptions,
+                partitionAssigner);
+    }
+
+    protected OdpsConf getOdpsConf() {
+        return odpsConf;
+    }
+
+    protected OdpsWriteOptions getWriteOptions() {
+        return writeOptions;
+    }
+
     @Override
     public final void invoke(
             T value, Context context) throws Exception {
@@ -203,6 +238,18 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
         }
     }
 
+    @Override
+    public void writeWatermark(Watermark watermark) throws Exception {
+        synchronized (this) {
+            checkFlushException();
+            try {
+                odpsStreamWrite.commitPartitions(watermark.getTimestamp());
+            } catch (Exception e) {
+                throw new IOException("Committing partitions to Odps failed.", e);
+            }
+        }
+    }
+
     @Override
     public void close() throws Exception {
         super.close();
@@ -215,7 +262,7 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
                 }
                 if (odpsStreamWrite != null) {
                     try {
-                        odpsStreamWrite.flush();
+                        odpsStreamWrite.close();
                     } catch (Exception e) {
                         flushException = e;
                     }
@@ -317,5 +364,29 @@ public class OdpsSinkFunction<T> extends RichSinkFunction<T> implements Checkpoi
                     writeOptions,
                     partitionAssigner);
         }
+
+        /** Builds an exactly-once sink committing the written data on checkpoints. */
+        public OdpsTransactionalSinkFunction<T> buildTransactional() {
+            checkNotNull(projectName, "projectName should not be null");
+            checkNotNull(tableName, "tableName should not be null");
+            return new OdpsTransactionalSinkFunction<>(
+                    odpsConf,
+                    projectName,
+                    tableName,
+                    partition,
+                    isDynamicPartition,
+                    writeOptions,
+                    partitionAssigner);
+        }
+
+        /** Builds an exactly-once {@link OdpsSink} committing the written data on checkpoints. */
+        public OdpsSink<T> buildSink() {
+            return OdpsSink.<T>builder(odpsConf, projectName, tableName)
+                    .setPartition(partition)
+                    .setDynamicPartition(isDynamicPartition)
+                    .setWriteOptions(writeOptions)
+                    .setPartitionAssigner(partitionAssigner)
+                    .build();
+        }
     }
 }
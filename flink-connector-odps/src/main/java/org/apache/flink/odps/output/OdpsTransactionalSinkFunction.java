@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output;
+
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionCommitter;
+import org.apache.flink.odps.output.transaction.OdpsTransactionTypeSerializer;
+import org.apache.flink.odps.output.transaction.OdpsTransactionWriter;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.WriterContext;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.streaming.api.functions.sink.TwoPhaseCommitSinkFunction;
+import org.apache.flink.streaming.api.operators.StreamingRuntimeContext;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Exactly-once variant of {@link OdpsSinkFunction}. Every checkpoint interval each subtask
+ * writes into new write sessions, one per partition. The blocks are closed when the
+ * checkpoint is taken and the sessions are committed together when it completes, so rows
+ * become visible once per checkpoint. Sessions of a restored checkpoint are rebuilt from
+ * their ids and committed again, sessions written after it are dropped.
+ *
+ * <p>This is the variant for {@code DataStream#addSink}. The table sink and
+ * {@code DataStream#sinkTo} use {@link org.apache.flink.odps.sink.OdpsSink}, which commits the
+ * sessions of all subtasks in one global committer.
+ */
+public class OdpsTransactionalSinkFunction<T> extends TwoPhaseCommitSinkFunction<T, OdpsTransaction, Void> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsTransactionalSinkFunction.class);
+
+    /** Tunnel upload sessions expire after 24 hours. */
+    private static final long SESSION_TIMEOUT_MS = 24 * 60 * 60 * 1000L;
+
+    private final OdpsConf odpsConf;
+    private final String projectName;
+    private final String tableName;
+    private final String partition;
+    private final boolean isDynamicPartition;
+    private final OdpsWriteOptions writeOptions;
+    private final PartitionAssigner<T> partitionAssigner;
+
+    private final OdpsTransactionWriter<T> transactionWriter;
+    private final OdpsTransactionCommitter transactionCommitter;
+
+    private transient WriterContext writerContext;
+
+    public OdpsTransactionalSinkFunction(
+            OdpsConf odpsConf,
+            String projectName,
+            String tableName,
+            String partition,
+            boolean isDynamicPartition,
+            OdpsWriteOptions writeOptions,
+            PartitionAssigner<T> partitionAssigner) {
+        super(OdpsTransactionTypeSerializer.INSTANCE, VoidSerializer.INSTANCE);
+        if (odpsConf == null) {
+            this.odpsConf = OdpsUtils.getOdpsConf();
+        } else {
+            this.odpsConf = odpsConf;
+        }
+        Preconditions.checkNotNull(this.odpsConf, "odps conf cannot be null");
+        if (this.odpsConf.isClusterMode()) {
+            throw new IllegalStateException("Transactional odps sink function cannot support cluster mode.");
+        }
+        this.projectName = Preconditions.checkNotNull(projectName, "project cannot be null");
+        this.tableName = Preconditions.checkNotNull(tableName, "table cannot be null");
+        this.partition = partition == null ? "" : partition;
+        this.isDynamicPartition = isDynamicPartition;
+        Preconditions.checkArgument(!isDynamicPartition || partitionAssigner != null,
+                "partition assigner cannot be null with dynamic partition");
+        this.writeOptions = writeOptions == null ?
+                OdpsWriteOptions.builder().build() : writeOptions;
+        this.partitionAssigner = partitionAssigner;
+        this.transactionWriter =
+                new OdpsTransactionWriter<>(this.odpsConf, projectName, tableName, this.writeOptions);
+        this.transactionCommitter = new OdpsTransactionCommitter(this.odpsConf, projectName, tableName);
+        setTransactionTimeout(SESSION_TIMEOUT_MS);
+        enableTransactionTimeoutWarnings(0.8);
+        LOG.info("Create transactional odps sink, table:{}.{}, partition:{},isDynamicPartition:{},writeOptions:{}",
+                projectName, tableName, partition, isDynamicPartition, writeOptions);
+    }
+
+    @Override
+    public void open(Configuration parameters) throws Exception {
+        super.open(parameters);
+        if (!((StreamingRuntimeContext) getRuntimeContext()).isCheckpointingEnabled()) {
+            throw new IllegalStateException(
+                    "Exactly-once odps sink commits data on checkpoints, checkpointing must be enabled.");
+        }
+        this.writerContext = new WriterContext(partition);
+    }
+
+    @Override
+    protected OdpsTransaction beginTransaction() {
+        return new OdpsTransaction();
+    }
+
+    @Override
+    protected void invoke(OdpsTransaction transaction, T value, Context context) throws Exception {
+        writerContext.update(context.timestamp(), context.currentWatermark(), context.currentProcessingTime());
+        String partitionSpec = isDynamicPartition ?
+                partitionAssigner.getPartitionSpec(value, writerContext) : partition;
+        transactionWriter.write(transaction, partitionSpec, value);
+    }
+
+    @Override
+    protected void preCommit(OdpsTransaction transaction) throws Exception {
+        transaction.closeBlocks();
+        LOG.info("Pre-commit {}", transaction);
+    }
+
+    @Override
+    protected void commit(OdpsTransaction transaction) {
+        try {
+            transactionCommitter.commit(transaction, false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to commit odps write sessions.", e);
+        }
+        LOG.info("Committed {}", transaction);
+    }
+
+    @Override
+    protected void recoverAndCommit(OdpsTransaction transaction) {
+        try {
+            transactionCommitter.commit(transaction, true);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to commit odps write sessions.", e);
+        }
+        LOG.info("Committed recovered {}", transaction);
+    }
+
+    @Override
+    protected void abort(OdpsTransaction transaction) {
+        transaction.abort();
+        if (!transaction.isEmpty()) {
+            LOG.info("Aborted {}", transaction);
+        }
+    }
+}
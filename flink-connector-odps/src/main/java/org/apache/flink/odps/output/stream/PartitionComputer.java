@@ -19,11 +19,8 @@
 package org.apache.flink.odps.output.stream;
 
 import com.aliyun.odps.PartitionSpec;
-import org.apache.flink.api.common.typeutils.TypeComparator;
-import org.apache.flink.api.java.tuple.Tuple;
 import org.apache.flink.odps.FlinkOdpsException;
-import org.apache.flink.odps.util.OdpsUtils;
-import org.apache.flink.types.Row;
+import org.apache.flink.odps.util.RecordFieldGetter;
 import org.apache.flink.util.StringUtils;
 
 import java.io.Serializable;
@@ -40,9 +37,8 @@ public class PartitionComputer<T> implements Serializable {
 	private final List<String> partitionColumns;
 	private final int[] partitionIndexes;
 	private final Map<String, String> staticPartitionSpec;
-	private final Object[] keyArray;
 
-	private TypeComparator<T> typeComparator;
+	private transient RecordFieldGetter<T>[] fieldGetters;
 
 	public PartitionComputer(String defaultPartValue,
 							 List<String> columnNames,
@@ -61,7 +57,6 @@ public class PartitionComputer<T> implements Serializable {
 				.collect(Collectors.toList());
 		this.partitionIndexes = this.partitionColumns.stream()
 				.mapToInt(columnNames::indexOf).toArray();
-		this.keyArray = new Object[partitionIndexes.length];
 	}
 
 	public LinkedHashMap<String, String> generatePartValues(T in, PartitionAssigner.Context context) {
@@ -71,20 +66,10 @@ public class PartitionComputer<T> implements Serializable {
 			if (index == -1) {
 				throw new FlinkOdpsException("Invalid partition columns:" + this.partitionColumns);
 			}
-			Object field = null;
-			if (in instanceof Row) {
-				field = ((Row)in).getField(index);
-			} else if (in instanceof Tuple) {
-				field = ((Tuple)in).getField(index);
-			} else {
-				if (typeComparator == null) {
-					this.typeComparator = OdpsUtils.buildTypeComparator(in, partitionColumns);
-				}
-				if (i == 0) {
-					typeComparator.extractKeys(in, keyArray, 0);
-				}
-				field = keyArray[i];
+			if (fieldGetters == null) {
+				this.fieldGetters = RecordFieldGetter.create(in, partitionColumns, partitionIndexes);
 			}
+			Object field = fieldGetters[i].getFieldOrNull(in);
 			String partitionValue = field != null ? field.toString() : null;
 			if (StringUtils.isNullOrWhitespaceOnly(partitionValue)) {
 				partitionValue = defaultPartValue;
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.stream;
+
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides by the watermark when a partition is complete, like the partition-time commit
+ * trigger of Flink's filesystem sink. A partition is committed once the watermark passes its
+ * partition time plus the commit delay, for hourly partitions the delay is at least one hour.
+ * Partitions without a partition time are never committed by the watermark.
+ */
+public class PartitionTimeCommitPolicy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionTimeCommitPolicy.class);
+
+    private final PartitionTimeExtractor extractor;
+    private final long commitDelayMillis;
+
+    public PartitionTimeCommitPolicy(PartitionTimeExtractor extractor, long commitDelayMillis) {
+        Preconditions.checkArgument(commitDelayMillis >= 0L, "commit delay cannot be negative");
+        this.extractor = Preconditions.checkNotNull(extractor);
+        this.commitDelayMillis = commitDelayMillis;
+    }
+
+    /**
+     * Creates the policy of the write options, or null if partitions are not committed by
+     * partition time.
+     */
+    @Nullable
+    public static PartitionTimeCommitPolicy create(OdpsWriteOptions options) {
+        if (options.getPartitionCommitTrigger() != OdpsWriteOptions.PartitionCommitTrigger.PARTITION_TIME) {
+            return null;
+        }
+        return new PartitionTimeCommitPolicy(
+                new PartitionTimeExtractor(
+                        options.getPartitionTimePattern(),
+                        options.getPartitionTimeFormatter(),
+                        ZoneId.of(options.getPartitionTimeZone())),
+                options.getPartitionCommitDelayMillis());
+    }
+
+    public boolean isCommittable(String partition, long watermark) {
+        if (watermark == Long.MIN_VALUE) {
+            return false;
+        }
+        Long partitionTime = extractor.extract(partition);
+        if (partitionTime == null) {
+            LOG.debug("Partition {} has no partition time of {}", partition, extractor);
+            return false;
+        }
+        return watermark > partitionTime + commitDelayMillis;
+    }
+
+    /** Returns the partitions of the given ones that are complete at the watermark. */
+    public List<String> committablePartitions(Collection<String> partitions, long watermark) {
+        List<String> committable = new ArrayList<>();
+        for (String partition : partitions) {
+            if (isCommittable(partition, watermark)) {
+                committable.add(partition);
+            }
+        }
+        return committable;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionTimeCommitPolicy{" +
+                "extractor=" + extractor +
+                ", commitDelayMillis=" + commitDelayMillis +
+                '}';
+    }
+}
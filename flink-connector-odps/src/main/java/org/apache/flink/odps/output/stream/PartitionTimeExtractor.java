@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.stream;
+
+import com.aliyun.odps.PartitionSpec;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+
+/**
+ * Extracts the time of a partition from its partition values. The pattern refers to the
+ * values by {@code $column}, e.g. {@code $dt $hh:00:00} for {@code dt=2022-01-01,hh=08}, and
+ * the result is parsed by the formatter. Missing time fields default to zero, so formatters
+ * like {@code yyyyMMdd} or the {@code yyyy-MM-dd--HH} of {@link DateTimePartitionAssigner} work.
+ */
+public class PartitionTimeExtractor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String DEFAULT_FORMATTER = "yyyy-MM-dd HH:mm:ss";
+    public static final String DEFAULT_TIME_ZONE = "UTC";
+
+    @Nullable
+    private final String pattern;
+    private final String formatterPattern;
+    private final ZoneId zoneId;
+
+    private transient DateTimeFormatter formatter;
+
+    /**
+     * @param pattern builds the partition time from the partition values, the value of the first
+     *                partition column if null
+     */
+    public PartitionTimeExtractor(@Nullable String pattern, String formatterPattern, ZoneId zoneId) {
+        this.pattern = pattern;
+        this.formatterPattern = Preconditions.checkNotNull(formatterPattern);
+        this.zoneId = Preconditions.checkNotNull(zoneId);
+        // fail fast on invalid formatters
+        createFormatter(formatterPattern);
+    }
+
+    /**
+     * Returns the partition time in epoch milliseconds, or null if the partition has no time
+     * of the configured format.
+     */
+    @Nullable
+    public Long extract(String partition) {
+        if (StringUtils.isNullOrWhitespaceOnly(partition)) {
+            return null;
+        }
+        PartitionSpec partitionSpec = new PartitionSpec(partition);
+        if (partitionSpec.isEmpty()) {
+            return null;
+        }
+        String timestamp;
+        if (pattern == null) {
+            timestamp = partitionSpec.get(partitionSpec.keys().iterator().next());
+        } else {
+            timestamp = pattern;
+            for (String key : partitionSpec.keys()) {
+                timestamp = timestamp.replace("$" + key, partitionSpec.get(key));
+            }
+        }
+        if (formatter == null) {
+            formatter = createFormatter(formatterPattern);
+        }
+        try {
+            return LocalDateTime.parse(timestamp, formatter).atZone(zoneId).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static DateTimeFormatter createFormatter(String formatterPattern) {
+        return new DateTimeFormatterBuilder()
+                .appendPattern(formatterPattern)
+                .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+                .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+                .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
+                .toFormatter();
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionTimeExtractor{" +
+                "pattern='" + pattern + '\'' +
+                ", formatter='" + formatterPattern + '\'' +
+                ", zoneId=" + zoneId +
+                '}';
+    }
+}
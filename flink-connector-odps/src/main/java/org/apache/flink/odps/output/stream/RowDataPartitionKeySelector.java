@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.stream;
+
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keys the rows of a dynamic partition sink by their partition, so that all rows of a partition
+ * go to the same sink subtask. With buckets, the rows of a partition are spread over the buckets
+ * by the hash of the cluster columns, so that a large partition is written by several subtasks.
+ */
+public class RowDataPartitionKeySelector implements KeySelector<RowData, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String defaultPartValue;
+    private final RowData.FieldGetter[] partitionFieldGetters;
+    private final RowData.FieldGetter[] clusterFieldGetters;
+    private final long numBuckets;
+
+    private transient StringBuilder keyBuilder;
+
+    public RowDataPartitionKeySelector(RowType rowType,
+                                       List<String> partitionColumns,
+                                       String defaultPartValue) {
+        this(rowType, partitionColumns, defaultPartValue, null, 0);
+    }
+
+    /**
+     * @param clusterColumns the hash cluster columns of the table, rows are not bucketed if null
+     * @param numBuckets the bucket number of the table
+     */
+    public RowDataPartitionKeySelector(RowType rowType,
+                                       List<String> partitionColumns,
+                                       String defaultPartValue,
+                                       List<String> clusterColumns,
+                                       long numBuckets) {
+        this.defaultPartValue = defaultPartValue;
+        this.partitionFieldGetters = createFieldGetters(rowType, partitionColumns);
+        if (clusterColumns == null || clusterColumns.isEmpty() || numBuckets <= 0) {
+            this.clusterFieldGetters = new RowData.FieldGetter[0];
+            this.numBuckets = 0;
+        } else {
+            this.clusterFieldGetters = createFieldGetters(rowType, clusterColumns);
+            this.numBuckets = numBuckets;
+        }
+    }
+
+    @Override
+    public String getKey(RowData row) {
+        if (keyBuilder == null) {
+            keyBuilder = new StringBuilder();
+        }
+        keyBuilder.setLength(0);
+        for (RowData.FieldGetter getter : partitionFieldGetters) {
+            Object value = getter.getFieldOrNull(row);
+            String partitionValue = value != null ? value.toString() : null;
+            if (StringUtils.isNullOrWhitespaceOnly(partitionValue)) {
+                partitionValue = defaultPartValue;
+            }
+            keyBuilder.append(partitionValue).append('/');
+        }
+        if (numBuckets > 0) {
+            int hash = 0;
+            for (RowData.FieldGetter getter : clusterFieldGetters) {
+                Object value = getter.getFieldOrNull(row);
+                int valueHash;
+                if (value == null) {
+                    valueHash = 0;
+                } else if (value instanceof byte[]) {
+                    valueHash = Arrays.hashCode((byte[]) value);
+                } else {
+                    valueHash = value.hashCode();
+                }
+                hash = 31 * hash + valueHash;
+            }
+            keyBuilder.append('#').append(Math.floorMod(hash, numBuckets));
+        }
+        return keyBuilder.toString();
+    }
+
+    private static RowData.FieldGetter[] createFieldGetters(RowType rowType, List<String> columns) {
+        RowData.FieldGetter[] getters = new RowData.FieldGetter[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            int index = rowType.getFieldIndex(columns.get(i));
+            Preconditions.checkArgument(index >= 0, "Unknown column: " + columns.get(i));
+            getters[i] = RowData.createFieldGetter(rowType.getTypeAt(index), index);
+        }
+        return getters;
+    }
+}
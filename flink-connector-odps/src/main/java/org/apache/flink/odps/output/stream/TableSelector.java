@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.output.stream;
+
+import java.io.Serializable;
+
+/**
+ * Selects the table of a record written by a multi-table sink, e.g. by the source table of a
+ * change data capture record.
+ */
+@FunctionalInterface
+public interface TableSelector<T> extends Serializable {
+
+    /**
+     * Returns the name of the table to write the record to, either {@code table} in the project
+     * of the sink or {@code project.table}.
+     */
+    String getTableName(T element);
+}
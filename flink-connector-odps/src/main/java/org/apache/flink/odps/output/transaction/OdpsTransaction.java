@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.transaction;
+
+import org.apache.flink.odps.output.writer.OdpsBlockWrite;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The write sessions of one subtask between two checkpoints, one session per partition. The
+ * rows of a session are uploaded as blocks which become visible when the session is committed.
+ * Only the session ids and the block ids are kept in the operator state, see
+ * {@link OdpsTransactionSerializer}, the writes are rebuilt from them on restore by the
+ * {@link OdpsTransactionCommitter}.
+ */
+public class OdpsTransaction {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsTransaction.class);
+
+    /** Block ids of a tunnel upload session range from 0 to 19999. */
+    public static final int MAX_BLOCKS_PER_SESSION = 20000;
+
+    /** Session ids and block ids of the partitions, in the order the sessions were created. */
+    private final Map<String, String> sessionIds = new LinkedHashMap<>();
+    private final Map<String, List<Long>> blockIds = new HashMap<>();
+
+    /** Writes of the sessions created by this subtask, empty for a restored transaction. */
+    private final Map<String, OdpsBlockWrite<?>> partitionWrites = new HashMap<>();
+
+    /** Partitions with an open block, least recently written first. */
+    private final LinkedHashMap<String, Boolean> openBlocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    @SuppressWarnings("unchecked")
+    public <T> OdpsBlockWrite<T> getWrite(String partition) {
+        return (OdpsBlockWrite<T>) partitionWrites.get(partition);
+    }
+
+    public void addWrite(String partition, OdpsBlockWrite<?> write) {
+        addSession(partition, write.getWriteSessionId(), Collections.emptyList());
+        partitionWrites.put(partition, write);
+    }
+
+    /** Adds the session of a partition restored from its ids. */
+    public void addSession(String partition, String sessionId, List<Long> sessionBlockIds) {
+        Preconditions.checkArgument(!sessionIds.containsKey(partition),
+                "Duplicate write session of partition '%s'", partition);
+        sessionIds.put(partition, Preconditions.checkNotNull(sessionId, "session id cannot be null"));
+        blockIds.put(partition, new ArrayList<>(sessionBlockIds));
+    }
+
+    public Set<String> getPartitions() {
+        return sessionIds.keySet();
+    }
+
+    public String getSessionId(String partition) {
+        return sessionIds.get(partition);
+    }
+
+    public List<Long> getBlockIds(String partition) {
+        return Collections.unmodifiableList(blockIds.get(partition));
+    }
+
+    public boolean isBlockOpen(String partition) {
+        // access order keeps the least recently written partition first
+        return openBlocks.get(partition) != null;
+    }
+
+    public int numOpenBlocks() {
+        return openBlocks.size();
+    }
+
+    /** Opens the next block of the partition session. */
+    public void openBlock(String partition) throws IOException {
+        List<Long> sessionBlockIds = blockIds.get(partition);
+        int blockId = sessionBlockIds.size();
+        if (blockId >= MAX_BLOCKS_PER_SESSION) {
+            throw new IOException(String.format(
+                    "Write session of partition '%s' exceeds %d blocks, decrease the checkpoint interval " +
+                            "or increase 'sink.buffer-flush.max-size'", partition, MAX_BLOCKS_PER_SESSION));
+        }
+        partitionWrites.get(partition).open(blockId, 1);
+        sessionBlockIds.add((long) blockId);
+        openBlocks.put(partition, Boolean.TRUE);
+    }
+
+    /** Closes the open block of the partition, which uploads its remaining rows. */
+    public void closeBlock(String partition) throws IOException {
+        if (openBlocks.remove(partition) != null) {
+            partitionWrites.get(partition).close();
+        }
+    }
+
+    public void closeLeastRecentBlock() throws IOException {
+        Iterator<String> iterator = openBlocks.keySet().iterator();
+        if (iterator.hasNext()) {
+            closeBlock(iterator.next());
+        }
+    }
+
+    public void closeBlocks() throws IOException {
+        while (!openBlocks.isEmpty()) {
+            closeLeastRecentBlock();
+        }
+    }
+
+    /** Closes the open blocks, the uncommitted sessions expire on the server. */
+    public void abort() {
+        for (String partition : openBlocks.keySet()) {
+            try {
+                partitionWrites.get(partition).close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close block of aborted write session of partition '{}'", partition, e);
+            }
+        }
+        openBlocks.clear();
+    }
+
+    public boolean isEmpty() {
+        return sessionIds.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        OdpsTransaction that = (OdpsTransaction) o;
+        return sessionIds.equals(that.sessionIds) && blockIds.equals(that.blockIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return sessionIds.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        Map<String, Integer> numBlocks = new LinkedHashMap<>();
+        sessionIds.keySet().forEach(partition -> numBlocks.put(partition, blockIds.get(partition).size()));
+        return "OdpsTransaction{blocks=" + numBlocks + '}';
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.transaction;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.cupid.table.v1.tunnel.impl.Util;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+import org.apache.flink.odps.output.writer.OdpsBlockWrite;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Commits the write sessions of an {@link OdpsTransaction}. Sessions created by this subtask
+ * are committed by their writes, the sessions of a restored transaction are rebuilt from the
+ * session id and committed with the block ids kept in the state.
+ */
+public class OdpsTransactionCommitter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsTransactionCommitter.class);
+
+    private final OdpsConf odpsConf;
+    private final String projectName;
+    private final String tableName;
+
+    private transient TableTunnel tableTunnel;
+
+    public OdpsTransactionCommitter(OdpsConf odpsConf, String projectName, String tableName) {
+        this.odpsConf = odpsConf;
+        this.projectName = projectName;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Commits all sessions. The sessions of a {@code recovered} transaction which were committed
+     * before the failure are skipped, any other failure is thrown so that the commit is retried.
+     */
+    public void commit(OdpsTransaction transaction, boolean recovered) throws IOException {
+        for (String partition : transaction.getPartitions()) {
+            OdpsBlockWrite<?> write = transaction.getWrite(partition);
+            if (write != null) {
+                write.commitWriteSession();
+                continue;
+            }
+            String sessionId = transaction.getSessionId(partition);
+            if (recovered && isCommitted(partition, sessionId)) {
+                LOG.info("Write session {} of partition '{}' was committed before the failure", sessionId, partition);
+                continue;
+            }
+            commitSession(partition, sessionId, transaction.getBlockIds(partition));
+        }
+    }
+
+    /** Returns whether the upload session of a restored transaction is committed already. */
+    protected boolean isCommitted(String partition, String sessionId) throws IOException {
+        try {
+            return getUploadSession(partition, sessionId).getStatus() == TableTunnel.UploadStatus.CLOSED;
+        } catch (TunnelException e) {
+            throw new IOException("Failed to get the status of write session " + sessionId +
+                    " of partition '" + partition + "'", e);
+        }
+    }
+
+    /** Rebuilds the upload session of a restored transaction and commits its blocks. */
+    protected void commitSession(String partition, String sessionId, List<Long> blockIds) throws IOException {
+        try {
+            getUploadSession(partition, sessionId).commit(blockIds.toArray(new Long[0]));
+        } catch (TunnelException e) {
+            throw new IOException("Failed to commit write session " + sessionId + " of partition '" + partition + "'", e);
+        }
+    }
+
+    private TableTunnel.UploadSession getUploadSession(String partition, String sessionId) throws TunnelException {
+        return partition.isEmpty() ?
+                getTableTunnel().getUploadSession(projectName, tableName, sessionId) :
+                getTableTunnel().getUploadSession(projectName, tableName, new PartitionSpec(partition), sessionId);
+    }
+
+    private TableTunnel getTableTunnel() {
+        if (tableTunnel == null) {
+            tableTunnel = Util.getTableTunnel(OdpsUtils.getOdpsOptions(odpsConf));
+        }
+        return tableTunnel;
+    }
+}
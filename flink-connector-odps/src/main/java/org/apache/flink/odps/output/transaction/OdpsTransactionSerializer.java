@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.transaction;
+
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializer for {@link OdpsTransaction}. Version 1 writes the partition, the write session id
+ * and the block ids of every session.
+ */
+public class OdpsTransactionSerializer implements SimpleVersionedSerializer<OdpsTransaction> {
+
+    public static final OdpsTransactionSerializer INSTANCE = new OdpsTransactionSerializer();
+
+    private static final int VERSION = 1;
+
+    private static final ThreadLocal<DataOutputSerializer> SERIALIZER_CACHE =
+            ThreadLocal.withInitial(() -> new DataOutputSerializer(256));
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] serialize(OdpsTransaction transaction) throws IOException {
+        final DataOutputSerializer out = SERIALIZER_CACHE.get();
+        serialize(transaction, out);
+        final byte[] result = out.getCopyOfBuffer();
+        out.clear();
+        return result;
+    }
+
+    @Override
+    public OdpsTransaction deserialize(int version, byte[] serialized) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unknown version: " + version);
+        }
+        return deserialize(new DataInputDeserializer(serialized));
+    }
+
+    static void serialize(OdpsTransaction transaction, DataOutputView out) throws IOException {
+        out.writeInt(transaction.getPartitions().size());
+        for (String partition : transaction.getPartitions()) {
+            out.writeUTF(partition);
+            out.writeUTF(transaction.getSessionId(partition));
+            List<Long> blockIds = transaction.getBlockIds(partition);
+            out.writeInt(blockIds.size());
+            for (long blockId : blockIds) {
+                out.writeLong(blockId);
+            }
+        }
+    }
+
+    static OdpsTransaction deserialize(DataInputView in) throws IOException {
+        OdpsTransaction transaction = new OdpsTransaction();
+        int numSessions = in.readInt();
+        for (int i = 0; i < numSessions; i++) {
+            String partition = in.readUTF();
+            String sessionId = in.readUTF();
+            int numBlocks = in.readInt();
+            List<Long> blockIds = new ArrayList<>(numBlocks);
+            for (int j = 0; j < numBlocks; j++) {
+                blockIds.add(in.readLong());
+            }
+            transaction.addSession(partition, sessionId, blockIds);
+        }
+        return transaction;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.transaction;
+
+import org.apache.flink.api.common.typeutils.SimpleTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.io.SimpleVersionedSerialization;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+
+/**
+ * Serializes {@link OdpsTransaction} into the operator state of the two phase commit sink
+ * function, in the versioned format of {@link OdpsTransactionSerializer}.
+ */
+public final class OdpsTransactionTypeSerializer extends TypeSerializerSingleton<OdpsTransaction> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final OdpsTransactionTypeSerializer INSTANCE = new OdpsTransactionTypeSerializer();
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public OdpsTransaction createInstance() {
+        return new OdpsTransaction();
+    }
+
+    @Override
+    public OdpsTransaction copy(OdpsTransaction from) {
+        try {
+            OdpsTransactionSerializer serializer = OdpsTransactionSerializer.INSTANCE;
+            return serializer.deserialize(serializer.getVersion(), serializer.serialize(from));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy odps transaction", e);
+        }
+    }
+
+    @Override
+    public OdpsTransaction copy(OdpsTransaction from, OdpsTransaction reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(OdpsTransaction record, DataOutputView target) throws IOException {
+        SimpleVersionedSerialization.writeVersionAndSerialize(OdpsTransactionSerializer.INSTANCE, record, target);
+    }
+
+    @Override
+    public OdpsTransaction deserialize(DataInputView source) throws IOException {
+        return SimpleVersionedSerialization.readVersionAndDeSerialize(OdpsTransactionSerializer.INSTANCE, source);
+    }
+
+    @Override
+    public OdpsTransaction deserialize(OdpsTransaction reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    @Override
+    public TypeSerializerSnapshot<OdpsTransaction> snapshotConfiguration() {
+        return new OdpsTransactionTypeSerializerSnapshot();
+    }
+
+    /** Serializer configuration snapshot for compatibility and format evolution. */
+    public static final class OdpsTransactionTypeSerializerSnapshot
+            extends SimpleTypeSerializerSnapshot<OdpsTransaction> {
+
+        public OdpsTransactionTypeSerializerSnapshot() {
+            super(() -> INSTANCE);
+        }
+    }
+}
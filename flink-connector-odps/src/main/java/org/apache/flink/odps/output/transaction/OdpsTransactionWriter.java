@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.transaction;
+
+import org.apache.flink.odps.output.writer.OdpsBlockWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.file.StaticOdpsPartitionWrite;
+import org.apache.flink.odps.util.OdpsConf;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Writes records into an {@link OdpsTransaction}, creating the session of a partition on its
+ * first record. Blocks roll at {@code sink.buffer-flush.max-size} and at most
+ * {@code sink.dynamic-partition.limit} blocks are open at a time.
+ */
+public class OdpsTransactionWriter<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OdpsConf odpsConf;
+    private final String projectName;
+    private final String tableName;
+    private final OdpsWriteOptions writeOptions;
+
+    public OdpsTransactionWriter(OdpsConf odpsConf,
+                                 String projectName,
+                                 String tableName,
+                                 OdpsWriteOptions writeOptions) {
+        this.odpsConf = odpsConf;
+        this.projectName = projectName;
+        this.tableName = tableName;
+        this.writeOptions = writeOptions;
+    }
+
+    public void write(OdpsTransaction transaction, String partition, T record) throws IOException {
+        OdpsBlockWrite<T> write = transaction.getWrite(partition);
+        if (write == null) {
+            write = createWrite(partition);
+            write.initWriteSession();
+            transaction.addWrite(partition, write);
+        }
+        if (!transaction.isBlockOpen(partition)) {
+            if (transaction.numOpenBlocks() >= writeOptions.getDynamicPartitionLimit()) {
+                transaction.closeLeastRecentBlock();
+            }
+            transaction.openBlock(partition);
+        }
+        try {
+            write.writeRecord(record);
+        } catch (Exception e) {
+            throw new IOException("Writing records to Odps failed.", e);
+        }
+        if (writeOptions.getBufferFlushMaxSizeInBytes() > 0
+                && write.getBytesWritten() >= writeOptions.getBufferFlushMaxSizeInBytes()) {
+            transaction.closeBlock(partition);
+        }
+    }
+
+    protected OdpsBlockWrite<T> createWrite(String partition) {
+        return new StaticOdpsPartitionWrite<>(odpsConf, projectName, tableName, partition, false, writeOptions);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.writer;
+
+/**
+ * A write which uploads the rows of a write session in blocks, see
+ * {@link org.apache.flink.odps.output.transaction.OdpsTransaction}.
+ */
+public interface OdpsBlockWrite<T> extends OdpsWrite<T> {
+
+    /** Bytes written into the open block, 0 if no block is open. */
+    long getBytesWritten();
+
+    /** Id of the write session, with which the session is rebuilt after a restore. */
+    String getWriteSessionId();
+}
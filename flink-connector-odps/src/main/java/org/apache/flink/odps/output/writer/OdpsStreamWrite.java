@@ -27,4 +27,19 @@ public interface OdpsStreamWrite<T> extends OdpsWrite<T> {
     boolean isIdle();
 
     long getFlushInterval();
+
+    /**
+     * Flushes and releases the buffers of the writer. The write session is kept, so the writer
+     * can be opened again.
+     */
+    default void closeWriter() throws IOException {
+        close();
+    }
+
+    /**
+     * Commits and closes the partitions which are complete at the watermark, see
+     * {@link org.apache.flink.odps.output.stream.PartitionTimeCommitPolicy}.
+     */
+    default void commitPartitions(long watermark) throws IOException {
+    }
 }
@@ -23,6 +23,7 @@ import com.aliyun.odps.cupid.table.v1.util.Options;
 import com.aliyun.odps.cupid.table.v1.writer.TableWriteSession;
 import com.aliyun.odps.cupid.table.v1.writer.TableWriteSessionBuilder;
 import com.aliyun.odps.cupid.table.v1.writer.WriteSessionInfo;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.odps.util.OdpsConf;
 import org.apache.flink.odps.util.OdpsMetaDataProvider;
@@ -33,6 +34,7 @@ import org.apache.flink.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.Serializable;
 
@@ -72,6 +74,21 @@ public abstract class OdpsTableWrite<T> implements Serializable,
                           String partition,
                           boolean isOverwrite,
                           OdpsWriteOptions options) {
+        this(odpsConf, projectName, tableName, partition, isOverwrite, options, null);
+    }
+
+    /**
+     * @param tableMetaProvider shares the metadata cache of another writer of the table, e.g.
+     *                          the writers of the dynamic partitions, or null to create one
+     */
+    protected OdpsTableWrite(OdpsConf odpsConf,
+                             String projectName,
+                             String tableName,
+                             String partition,
+                             boolean isOverwrite,
+                             OdpsWriteOptions options,
+                             @Nullable OdpsMetaDataProvider tableMetaProvider) {
+        this.tableMetaProvider = tableMetaProvider;
         this.projectName = Preconditions.checkNotNull(projectName, "project cannot be null");
         this.tableName = Preconditions.checkNotNull(tableName, "table cannot be null");
         this.isOverwrite = isOverwrite;
@@ -93,9 +110,9 @@ public abstract class OdpsTableWrite<T> implements Serializable,
         this.tableMetaProvider = getTableMetaProvider();
         this.tableSchema = getTableSchema();
         try {
-            this.isPartitioned = getTableMetaProvider().getTable(projectName, tableName).isPartitioned();
+            this.isPartitioned = !getTableSchema().getPartitionColumns().isEmpty();
             checkPartition(partition);
-        } catch (IOException | OdpsException e) {
+        } catch (IOException e) {
             throw new FlinkOdpsException(e);
         }
         this.writerContext = new WriterContext(staticPartition);
@@ -116,10 +133,11 @@ public abstract class OdpsTableWrite<T> implements Serializable,
                     try {
                         synchronized (this) {
                             Partition partition = getTableMetaProvider().getPartition(projectName,
-                                    tableName, staticPartition, true);
+                                    tableName, staticPartition, attemptNum > 1);
                             if (partition == null) {
                                 Table table = getTableMetaProvider().getTable(projectName, tableName);
                                 table.createPartition(new PartitionSpec(staticPartition), true);
+                                getTableMetaProvider().invalidatePartition(projectName, tableName, staticPartition);
                                 LOG.info("Create partition: " + tableName + "/" + staticPartition);
                             }
                         }
@@ -200,6 +218,11 @@ public abstract class OdpsTableWrite<T> implements Serializable,
         return odps;
     }
 
+    @Override
+    public void registerMetrics(MetricGroup metricGroup) {
+        getTableMetaProvider().registerMetrics(metricGroup);
+    }
+
     protected OdpsMetaDataProvider getTableMetaProvider() {
         if (tableMetaProvider == null) {
             tableMetaProvider = new OdpsMetaDataProvider(this.getOdps());
@@ -18,6 +18,7 @@
 
 package org.apache.flink.odps.output.writer;
 
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.sink.SinkFunction;
 
 import java.io.IOException;
@@ -35,4 +36,10 @@ public interface OdpsWrite<T> {
     void commitWriteSession() throws IOException;
 
     void updateWriteContext(SinkFunction.Context context);
+
+    /**
+     * Registers the metrics of the writer, e.g. of its metadata cache.
+     */
+    default void registerMetrics(MetricGroup metricGroup) {
+    }
 }
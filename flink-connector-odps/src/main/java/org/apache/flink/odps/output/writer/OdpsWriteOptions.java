@@ -17,6 +17,9 @@
  */
 
 package org.apache.flink.odps.output.writer;
+import org.apache.flink.connector.base.DeliveryGuarantee;
+import org.apache.flink.odps.output.stream.PartitionTimeExtractor;
+
 import java.io.Serializable;
 import java.util.Objects;
 
@@ -25,6 +28,18 @@ public class OdpsWriteOptions implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final long DEFAULT_FLUSH_TARGET_LATENCY_MILLIS = 1000L;
+
+    public static final int DEFAULT_COMMIT_THREADS = 8;
+
+    /** When the partitions of a dynamic partition sink are committed. */
+    public enum PartitionCommitTrigger {
+        /** Partitions are flushed by the flush interval and closed when evicted by the partition limit. */
+        PROCESS_TIME,
+        /** Partitions are committed and closed once the watermark passes their time plus the commit delay. */
+        PARTITION_TIME
+    }
+
     private final long bufferFlushMaxSizeInBytes;
     private final long bufferFlushMaxRows;
     private final long bufferFlushIntervalMillis;
@@ -32,6 +47,20 @@ public class OdpsWriteOptions implements Serializable {
     private final int dynamicPartitionLimit;
     private final String dynamicPartitionDefaultValue;
     private final String dynamicPartitionAssignerClass;
+    // the name only, the closure cleaner rejects the description of DeliveryGuarantee
+    private final String deliveryGuarantee;
+    private final int dynamicPartitionFlushThreads;
+    private final PartitionCommitTrigger partitionCommitTrigger;
+    private final long partitionCommitDelayMillis;
+    private final String partitionTimeZone;
+    private final String partitionTimePattern;
+    private final String partitionTimeFormatter;
+    private final boolean bufferFlushAsync;
+    private final boolean bufferFlushAdaptive;
+    private final long bufferFlushTargetLatencyMillis;
+    private final boolean shuffleByPartition;
+    private final boolean shuffleByBucket;
+    private final int commitThreads;
 
     public OdpsWriteOptions(
             long bufferFlushMaxSizeInBytes,
@@ -41,6 +70,49 @@ public class OdpsWriteOptions implements Serializable {
             int dynamicPartitionLimit,
             String dynamicPartitionDefaultValue,
             String dynamicPartitionAssignerClass) {
+        this(bufferFlushMaxSizeInBytes, bufferFlushMaxMutations, bufferFlushIntervalMillis, writeMaxRetries,
+                dynamicPartitionLimit, dynamicPartitionDefaultValue, dynamicPartitionAssignerClass,
+                DeliveryGuarantee.AT_LEAST_ONCE, 1);
+    }
+
+    public OdpsWriteOptions(
+            long bufferFlushMaxSizeInBytes,
+            long bufferFlushMaxMutations,
+            long bufferFlushIntervalMillis,
+            int writeMaxRetries,
+            int dynamicPartitionLimit,
+            String dynamicPartitionDefaultValue,
+            String dynamicPartitionAssignerClass,
+            DeliveryGuarantee deliveryGuarantee,
+            int dynamicPartitionFlushThreads) {
+        this(bufferFlushMaxSizeInBytes, bufferFlushMaxMutations, bufferFlushIntervalMillis, writeMaxRetries,
+                dynamicPartitionLimit, dynamicPartitionDefaultValue, dynamicPartitionAssignerClass,
+                deliveryGuarantee, dynamicPartitionFlushThreads, PartitionCommitTrigger.PROCESS_TIME, 0,
+                PartitionTimeExtractor.DEFAULT_TIME_ZONE, null, PartitionTimeExtractor.DEFAULT_FORMATTER,
+                false, false, DEFAULT_FLUSH_TARGET_LATENCY_MILLIS, false, false, DEFAULT_COMMIT_THREADS);
+    }
+
+    public OdpsWriteOptions(
+            long bufferFlushMaxSizeInBytes,
+            long bufferFlushMaxMutations,
+            long bufferFlushIntervalMillis,
+            int writeMaxRetries,
+            int dynamicPartitionLimit,
+            String dynamicPartitionDefaultValue,
+            String dynamicPartitionAssignerClass,
+            DeliveryGuarantee deliveryGuarantee,
+            int dynamicPartitionFlushThreads,
+            PartitionCommitTrigger partitionCommitTrigger,
+            long partitionCommitDelayMillis,
+            String partitionTimeZone,
+            String partitionTimePattern,
+            String partitionTimeFormatter,
+            boolean bufferFlushAsync,
+            boolean bufferFlushAdaptive,
+            long bufferFlushTargetLatencyMillis,
+            boolean shuffleByPartition,
+            boolean shuffleByBucket,
+            int commitThreads) {
         this.bufferFlushMaxSizeInBytes = bufferFlushMaxSizeInBytes;
         this.bufferFlushMaxRows = bufferFlushMaxMutations;
         this.bufferFlushIntervalMillis = bufferFlushIntervalMillis;
@@ -48,6 +120,19 @@ public class OdpsWriteOptions implements Serializable {
         this.dynamicPartitionLimit = dynamicPartitionLimit;
         this.dynamicPartitionDefaultValue = dynamicPartitionDefaultValue;
         this.dynamicPartitionAssignerClass = dynamicPartitionAssignerClass;
+        this.deliveryGuarantee = deliveryGuarantee.name();
+        this.dynamicPartitionFlushThreads = dynamicPartitionFlushThreads;
+        this.partitionCommitTrigger = partitionCommitTrigger;
+        this.partitionCommitDelayMillis = partitionCommitDelayMillis;
+        this.partitionTimeZone = partitionTimeZone;
+        this.partitionTimePattern = partitionTimePattern;
+        this.partitionTimeFormatter = partitionTimeFormatter;
+        this.bufferFlushAsync = bufferFlushAsync;
+        this.bufferFlushAdaptive = bufferFlushAdaptive;
+        this.bufferFlushTargetLatencyMillis = bufferFlushTargetLatencyMillis;
+        this.shuffleByPartition = shuffleByPartition;
+        this.shuffleByBucket = shuffleByBucket;
+        this.commitThreads = commitThreads;
     }
 
     public long getBufferFlushMaxSizeInBytes() {
@@ -78,6 +163,58 @@ public class OdpsWriteOptions implements Serializable {
         return dynamicPartitionAssignerClass;
     }
 
+    public DeliveryGuarantee getDeliveryGuarantee() {
+        return DeliveryGuarantee.valueOf(deliveryGuarantee);
+    }
+
+    public int getDynamicPartitionFlushThreads() {
+        return dynamicPartitionFlushThreads;
+    }
+
+    public PartitionCommitTrigger getPartitionCommitTrigger() {
+        return partitionCommitTrigger;
+    }
+
+    public long getPartitionCommitDelayMillis() {
+        return partitionCommitDelayMillis;
+    }
+
+    public String getPartitionTimeZone() {
+        return partitionTimeZone;
+    }
+
+    public String getPartitionTimePattern() {
+        return partitionTimePattern;
+    }
+
+    public String getPartitionTimeFormatter() {
+        return partitionTimeFormatter;
+    }
+
+    public boolean isBufferFlushAsync() {
+        return bufferFlushAsync;
+    }
+
+    public boolean isBufferFlushAdaptive() {
+        return bufferFlushAdaptive;
+    }
+
+    public long getBufferFlushTargetLatencyMillis() {
+        return bufferFlushTargetLatencyMillis;
+    }
+
+    public boolean isShuffleByPartition() {
+        return shuffleByPartition;
+    }
+
+    public boolean isShuffleByBucket() {
+        return shuffleByBucket;
+    }
+
+    public int getCommitThreads() {
+        return commitThreads;
+    }
+
     @Override
     public String toString() {
         return "OdpsWriteOptions{"
@@ -95,6 +232,32 @@ public class OdpsWriteOptions implements Serializable {
                 + dynamicPartitionDefaultValue
                 + ", dynamicPartitionAssignerClass="
                 + dynamicPartitionAssignerClass
+                + ", deliveryGuarantee="
+                + deliveryGuarantee
+                + ", dynamicPartitionFlushThreads="
+                + dynamicPartitionFlushThreads
+                + ", partitionCommitTrigger="
+                + partitionCommitTrigger
+                + ", partitionCommitDelayMillis="
+                + partitionCommitDelayMillis
+                + ", partitionTimeZone="
+                + partitionTimeZone
+                + ", partitionTimePattern="
+                + partitionTimePattern
+                + ", partitionTimeFormatter="
+                + partitionTimeFormatter
+                + ", bufferFlushAsync="
+                + bufferFlushAsync
+                + ", bufferFlushAdaptive="
+                + bufferFlushAdaptive
+                + ", bufferFlushTargetLatencyMillis="
+                + bufferFlushTargetLatencyMillis
+                + ", shuffleByPartition="
+                + shuffleByPartition
+                + ", shuffleByBucket="
+                + shuffleByBucket
+                + ", commitThreads="
+                + commitThreads
                 + '}';
     }
 
@@ -113,7 +276,20 @@ public class OdpsWriteOptions implements Serializable {
                 && writeMaxRetries == that.writeMaxRetries
                 && dynamicPartitionLimit == that.dynamicPartitionLimit
                 && Objects.equals(dynamicPartitionDefaultValue, that.dynamicPartitionDefaultValue)
-                && Objects.equals(dynamicPartitionAssignerClass, that.dynamicPartitionAssignerClass);
+                && Objects.equals(dynamicPartitionAssignerClass, that.dynamicPartitionAssignerClass)
+                && Objects.equals(deliveryGuarantee, that.deliveryGuarantee)
+                && dynamicPartitionFlushThreads == that.dynamicPartitionFlushThreads
+                && partitionCommitTrigger == that.partitionCommitTrigger
+                && partitionCommitDelayMillis == that.partitionCommitDelayMillis
+                && Objects.equals(partitionTimeZone, that.partitionTimeZone)
+                && Objects.equals(partitionTimePattern, that.partitionTimePattern)
+                && Objects.equals(partitionTimeFormatter, that.partitionTimeFormatter)
+                && bufferFlushAsync == that.bufferFlushAsync
+                && bufferFlushAdaptive == that.bufferFlushAdaptive
+                && bufferFlushTargetLatencyMillis == that.bufferFlushTargetLatencyMillis
+                && shuffleByPartition == that.shuffleByPartition
+                && shuffleByBucket == that.shuffleByBucket
+                && commitThreads == that.commitThreads;
     }
 
     @Override
@@ -125,7 +301,20 @@ public class OdpsWriteOptions implements Serializable {
                 writeMaxRetries,
                 dynamicPartitionLimit,
                 dynamicPartitionDefaultValue,
-                dynamicPartitionAssignerClass);
+                dynamicPartitionAssignerClass,
+                deliveryGuarantee,
+                dynamicPartitionFlushThreads,
+                partitionCommitTrigger,
+                partitionCommitDelayMillis,
+                partitionTimeZone,
+                partitionTimePattern,
+                partitionTimeFormatter,
+                bufferFlushAsync,
+                bufferFlushAdaptive,
+                bufferFlushTargetLatencyMillis,
+                shuffleByPartition,
+                shuffleByBucket,
+                commitThreads);
     }
 
     /** Creates a builder for {@link OdpsWriteOptions}. */
@@ -143,6 +332,19 @@ public class OdpsWriteOptions implements Serializable {
         private int dynamicPartitionLimit = 20;
         private String dynamicPartitionDefaultValue;
         private String dynamicPartitionAssignerClass;
+        private DeliveryGuarantee deliveryGuarantee = DeliveryGuarantee.AT_LEAST_ONCE;
+        private int dynamicPartitionFlushThreads = 1;
+        private PartitionCommitTrigger partitionCommitTrigger = PartitionCommitTrigger.PROCESS_TIME;
+        private long partitionCommitDelayMillis = 0L;
+        private String partitionTimeZone = PartitionTimeExtractor.DEFAULT_TIME_ZONE;
+        private String partitionTimePattern;
+        private String partitionTimeFormatter = PartitionTimeExtractor.DEFAULT_FORMATTER;
+        private boolean bufferFlushAsync = false;
+        private boolean bufferFlushAdaptive = false;
+        private long bufferFlushTargetLatencyMillis = DEFAULT_FLUSH_TARGET_LATENCY_MILLIS;
+        private boolean shuffleByPartition = false;
+        private boolean shuffleByBucket = false;
+        private int commitThreads = DEFAULT_COMMIT_THREADS;
 
         public Builder setBufferFlushMaxSizeInBytes(long bufferFlushMaxSizeInBytes) {
             this.bufferFlushMaxSizeInBytes = bufferFlushMaxSizeInBytes;
@@ -179,6 +381,107 @@ public class OdpsWriteOptions implements Serializable {
             return this;
         }
 
+        /**
+         * EXACTLY_ONCE commits the written data with the checkpoints, AT_LEAST_ONCE flushes
+         * the data on checkpoints and by the flush interval.
+         */
+        public Builder setDeliveryGuarantee(DeliveryGuarantee deliveryGuarantee) {
+            this.deliveryGuarantee = deliveryGuarantee;
+            return this;
+        }
+
+        /** Number of threads flushing the partition writers of a dynamic partition sink. */
+        public Builder setDynamicPartitionFlushThreads(int dynamicPartitionFlushThreads) {
+            this.dynamicPartitionFlushThreads = dynamicPartitionFlushThreads;
+            return this;
+        }
+
+        public Builder setPartitionCommitTrigger(PartitionCommitTrigger partitionCommitTrigger) {
+            this.partitionCommitTrigger = partitionCommitTrigger;
+            return this;
+        }
+
+        /**
+         * Time a partition stays open after its partition time, for hourly partitions at least
+         * one hour. Only used by the PARTITION_TIME trigger.
+         */
+        public Builder setPartitionCommitDelayMillis(long partitionCommitDelayMillis) {
+            this.partitionCommitDelayMillis = partitionCommitDelayMillis;
+            return this;
+        }
+
+        /** Time zone of the partition times, the watermarks are compared in this zone. */
+        public Builder setPartitionTimeZone(String partitionTimeZone) {
+            this.partitionTimeZone = partitionTimeZone;
+            return this;
+        }
+
+        /**
+         * Builds the partition time from the partition values, e.g. {@code $dt $hh:00:00}.
+         * By default the value of the first partition column.
+         */
+        public Builder setPartitionTimePattern(String partitionTimePattern) {
+            this.partitionTimePattern = partitionTimePattern;
+            return this;
+        }
+
+        /** {@link java.time.format.DateTimeFormatter} pattern parsing the partition time. */
+        public Builder setPartitionTimeFormatter(String partitionTimeFormatter) {
+            this.partitionTimeFormatter = partitionTimeFormatter;
+            return this;
+        }
+
+        /**
+         * Flushes full buffers in the background while new rows go into a second buffer, at
+         * most one flush per writer is pending.
+         */
+        public Builder setBufferFlushAsync(boolean bufferFlushAsync) {
+            this.bufferFlushAsync = bufferFlushAsync;
+            return this;
+        }
+
+        /**
+         * Adapts the max rows and max size of a flush to the flush latency and throttling,
+         * starting from the configured values.
+         */
+        public Builder setBufferFlushAdaptive(boolean bufferFlushAdaptive) {
+            this.bufferFlushAdaptive = bufferFlushAdaptive;
+            return this;
+        }
+
+        /** The flush latency the adaptive flush sizes aim at. */
+        public Builder setBufferFlushTargetLatencyMillis(long bufferFlushTargetLatencyMillis) {
+            this.bufferFlushTargetLatencyMillis = bufferFlushTargetLatencyMillis;
+            return this;
+        }
+
+        /**
+         * Shuffles the rows of a dynamic partition sink by their partition, so that every sink
+         * subtask writes only some partitions.
+         */
+        public Builder setShuffleByPartition(boolean shuffleByPartition) {
+            this.shuffleByPartition = shuffleByPartition;
+            return this;
+        }
+
+        /**
+         * Shuffles the rows of a partition further by the buckets of a hash clustered table.
+         * Only used together with the partition shuffle.
+         */
+        public Builder setShuffleByBucket(boolean shuffleByBucket) {
+            this.shuffleByBucket = shuffleByBucket;
+            return this;
+        }
+
+        /**
+         * Number of threads committing the write sessions of all subtasks when a checkpoint
+         * completes. Only used by the EXACTLY_ONCE sink.
+         */
+        public Builder setCommitThreads(int commitThreads) {
+            this.commitThreads = commitThreads;
+            return this;
+        }
+
         /** Creates a new instance of {@link OdpsWriteOptions}. */
         public OdpsWriteOptions build() {
             return new OdpsWriteOptions(
@@ -188,7 +491,20 @@ public class OdpsWriteOptions implements Serializable {
                     writeMaxRetries,
                     dynamicPartitionLimit,
                     dynamicPartitionDefaultValue,
-                    dynamicPartitionAssignerClass);
+                    dynamicPartitionAssignerClass,
+                    deliveryGuarantee,
+                    dynamicPartitionFlushThreads,
+                    partitionCommitTrigger,
+                    partitionCommitDelayMillis,
+                    partitionTimeZone,
+                    partitionTimePattern,
+                    partitionTimeFormatter,
+                    bufferFlushAsync,
+                    bufferFlushAdaptive,
+                    bufferFlushTargetLatencyMillis,
+                    shuffleByPartition,
+                    shuffleByBucket,
+                    commitThreads);
         }
     }
 }
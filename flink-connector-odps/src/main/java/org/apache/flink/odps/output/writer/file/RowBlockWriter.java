@@ -24,12 +24,9 @@ import com.aliyun.odps.commons.util.RetryStrategy;
 import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
 import com.aliyun.odps.data.ArrayRecord;
 import com.aliyun.odps.data.Record;
-import org.apache.flink.api.common.typeutils.TypeComparator;
-import org.apache.flink.api.java.tuple.Tuple;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
-import org.apache.flink.odps.util.OdpsTypeConverter;
-import org.apache.flink.odps.util.OdpsUtils;
-import org.apache.flink.types.Row;
+import org.apache.flink.odps.util.OdpsFieldConverter;
+import org.apache.flink.odps.util.RecordFieldGetter;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class RowBlockWriter<T> implements BlockWriter<T> {
 
@@ -44,8 +42,8 @@ public class RowBlockWriter<T> implements BlockWriter<T> {
 
     private final ArrayRecord odpsRecord;
     private final Column[] columns;
-    private final OdpsTypeConverter[] odpsTypeConverters;
-    private TypeComparator<T> typeComparator;
+    private final OdpsFieldConverter[] odpsTypeConverters;
+    private RecordFieldGetter<T>[] fieldGetters;
 
     protected final OdpsWriteOptions options;
     protected FileWriter<ArrayRecord> fileWriter;
@@ -60,10 +58,9 @@ public class RowBlockWriter<T> implements BlockWriter<T> {
         this.fileWriter = fileWriter;
         this.options = options;
         this.odpsRecord = new ArrayRecord(columns);
-        this.odpsTypeConverters = new OdpsTypeConverter[cols.length];
-        for(int i = 0; i < odpsRecord.getColumnCount(); ++i) {
-            odpsTypeConverters[i] =
-                    OdpsTypeConverter.valueOf(odpsRecord.getColumns()[i].getTypeInfo().getOdpsType().name());
+        this.odpsTypeConverters = new OdpsFieldConverter[cols.length];
+        for (int i = 0; i < odpsRecord.getColumnCount(); ++i) {
+            odpsTypeConverters[i] = OdpsFieldConverter.create(odpsRecord.getColumns()[i].getTypeInfo());
         }
         if (options.getWriteMaxRetries() > 0) {
             this.writeRetry = new RetryStrategy(options.getWriteMaxRetries(), 1);
@@ -125,31 +122,18 @@ public class RowBlockWriter<T> implements BlockWriter<T> {
     }
 
     private void buildOdpsRecord(Record odpsRecord, T record) {
-        Object sourceValue;
-        Object[] keyArray = null;
+        if (fieldGetters == null) {
+            this.fieldGetters = RecordFieldGetter.create(record,
+                    Arrays.stream(columns).map(Column::getName).collect(Collectors.toList()),
+                    IntStream.range(0, columns.length).toArray());
+        }
         for (int i = 0; i < odpsRecord.getColumnCount(); ++i) {
-            if (record instanceof Tuple) {
-                sourceValue = ((Tuple) record).getField(i);
-            } else if (record instanceof Row) {
-                sourceValue = ((Row) record).getField(i);
-            } else {
-                if (typeComparator == null) {
-                    this.typeComparator = OdpsUtils.buildTypeComparator(record,
-                            Arrays.stream(columns).map(Column::getName).collect(Collectors.toList()));
-                }
-                if (i == 0) {
-                    keyArray = new Object[this.columns.length];
-                    typeComparator.extractKeys(record, keyArray, 0);
-                }
-                sourceValue = keyArray[i];
-            }
+            Object sourceValue = fieldGetters[i].getFieldOrNull(record);
             if (sourceValue == null) {
                 odpsRecord.set(i, null);
                 continue;
             }
-            Object odpsField = odpsTypeConverters[i].toOdpsField(sourceValue,
-                    odpsRecord.getColumns()[i].getTypeInfo());
-            odpsRecord.set(i, odpsField);
+            odpsRecord.set(i, odpsTypeConverters[i].toOdpsField(sourceValue));
         }
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.writer.file;
+
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.conversion.RowRowConverter;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.utils.TypeConversions;
+import org.apache.flink.types.Row;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link RowData} through a {@link RowBlockWriter}, used when the columns cannot be
+ * written by the {@link RowDataColumnarBlockWriter}.
+ */
+public class RowDataBlockWriter implements BlockWriter<RowData> {
+
+    private final BlockWriter<Row> rowWriter;
+    private final RowRowConverter converter;
+
+    public RowDataBlockWriter(BlockWriter<Row> rowWriter, RowType rowType) {
+        this.rowWriter = rowWriter;
+        this.converter = RowRowConverter.create(TypeConversions.fromLogicalToDataType(rowType));
+        this.converter.open(Thread.currentThread().getContextClassLoader());
+    }
+
+    @Override
+    public void updateFileWriter(FileWriter fileWriter, int blockId) {
+        rowWriter.updateFileWriter(fileWriter, blockId);
+    }
+
+    @Override
+    public void write(RowData rec) throws IOException {
+        rowWriter.write(converter.toExternal(rec));
+    }
+
+    @Override
+    public void close() throws IOException {
+        rowWriter.close();
+    }
+
+    @Override
+    public void commit() throws IOException {
+        rowWriter.commit();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return rowWriter.getBytesWritten();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowWriter.getRowsWritten();
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.writer.file;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Platform;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.type.AbstractCharTypeInfo;
+import com.aliyun.odps.type.DecimalTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.data.binary.BinarySegmentUtils;
+import org.apache.flink.table.data.binary.BinaryStringData;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.LogicalTypeRoot;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.TimestampType;
+import org.apache.flink.util.Preconditions;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Writes {@link RowData} into {@link ColDataBatch}es without building odps records. A typed
+ * column writer is chosen once per column from its {@link LogicalType} and odps type, and
+ * copies the fields of each row straight into the buffers of its vector. Full batches are
+ * handed to the file writer as a whole.
+ *
+ * <p>The vector layout is the one of {@link com.aliyun.odps.cupid.table.v1.writer.adaptor.ColDataRowWriter}.
+ */
+public class RowDataColumnarBlockWriter implements BlockWriter<RowData> {
+
+    private final int batchSize;
+    private final ColumnWriter[] columnWriters;
+    private final ColDataBatch colDataBatch;
+    private FileWriter<ColDataBatch> fileWriter;
+    private int rowCount;
+
+    public RowDataColumnarBlockWriter(Column[] cols,
+                                      RowType rowType,
+                                      FileWriter<ColDataBatch> fileWriter,
+                                      int batchSize) {
+        Preconditions.checkNotNull(cols, "columns cannot be null");
+        Preconditions.checkNotNull(fileWriter, "file writer cannot be null");
+        Preconditions.checkArgument(isSupported(cols, rowType),
+                "Cannot write row type " + rowType + " into columns " + Arrays.toString(cols));
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive");
+        this.batchSize = batchSize;
+        this.fileWriter = fileWriter;
+        this.columnWriters = new ColumnWriter[cols.length];
+        ColDataVector[] vectors = new ColDataVector[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            columnWriters[i] = createColumnWriter(rowType.getTypeAt(i), cols[i], batchSize);
+            vectors[i] = columnWriters[i].vector;
+        }
+        this.colDataBatch = new ColDataBatch(vectors);
+    }
+
+    /**
+     * Whether the first fields of the row type can be written into the columns, one field per
+     * column and in the same order.
+     */
+    public static boolean isSupported(Column[] cols, RowType rowType) {
+        if (rowType == null || rowType.getFieldCount() < cols.length) {
+            return false;
+        }
+        for (int i = 0; i < cols.length; i++) {
+            if (!isSupported(rowType.getTypeAt(i), cols[i].getTypeInfo())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupported(LogicalType logicalType, TypeInfo typeInfo) {
+        LogicalTypeRoot root = logicalType.getTypeRoot();
+        switch (typeInfo.getOdpsType()) {
+            case BOOLEAN:
+                return root == LogicalTypeRoot.BOOLEAN;
+            case TINYINT:
+                return root == LogicalTypeRoot.TINYINT;
+            case SMALLINT:
+                return root == LogicalTypeRoot.SMALLINT;
+            case INT:
+                return root == LogicalTypeRoot.INTEGER;
+            case BIGINT:
+                return root == LogicalTypeRoot.BIGINT;
+            case FLOAT:
+                return root == LogicalTypeRoot.FLOAT;
+            case DOUBLE:
+                return root == LogicalTypeRoot.DOUBLE;
+            case DECIMAL:
+                // other precisions or scales are rescaled by the row path
+                return root == LogicalTypeRoot.DECIMAL
+                        && ((DecimalType) logicalType).getPrecision() == ((DecimalTypeInfo) typeInfo).getPrecision()
+                        && ((DecimalType) logicalType).getScale() == ((DecimalTypeInfo) typeInfo).getScale();
+            case DATE:
+                return root == LogicalTypeRoot.DATE;
+            case DATETIME:
+            case TIMESTAMP:
+                return root == LogicalTypeRoot.TIMESTAMP_WITHOUT_TIME_ZONE;
+            case STRING:
+            case VARCHAR:
+            case CHAR:
+                return root == LogicalTypeRoot.VARCHAR || root == LogicalTypeRoot.CHAR;
+            case BINARY:
+                return root == LogicalTypeRoot.VARBINARY || root == LogicalTypeRoot.BINARY;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateFileWriter(FileWriter fileWriter, int blockId) {
+        this.fileWriter = fileWriter;
+        reset();
+    }
+
+    @Override
+    public void write(RowData row) throws IOException {
+        for (int i = 0; i < columnWriters.length; i++) {
+            if (row.isNullAt(i)) {
+                columnWriters[i].setNull(rowCount);
+            } else {
+                columnWriters[i].write(row, i, rowCount);
+            }
+        }
+        rowCount++;
+        if (rowCount == batchSize) {
+            flush();
+        }
+    }
+
+    public void flush() throws IOException {
+        if (rowCount > 0) {
+            for (ColumnWriter columnWriter : columnWriters) {
+                columnWriter.vector.setDataBufSize(columnWriter.width * rowCount);
+            }
+            colDataBatch.setRowCount(rowCount);
+            fileWriter.write(colDataBatch);
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (ColumnWriter columnWriter : columnWriters) {
+            columnWriter.reset();
+        }
+        rowCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            fileWriter.close();
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        fileWriter.commit();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return fileWriter.getBytesWritten();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return fileWriter.getRowsWritten();
+    }
+
+    private static ColumnWriter createColumnWriter(LogicalType logicalType, Column column, int batchSize) {
+        TypeInfo typeInfo = column.getTypeInfo();
+        Attribute attribute = new Attribute(column.getName(), typeInfo.getTypeName());
+        switch (typeInfo.getOdpsType()) {
+            case BOOLEAN:
+                return new ColumnWriter(attribute, 1, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putBoolean(data, Platform.BYTE_ARRAY_OFFSET + rowId, row.getBoolean(pos));
+                    }
+                };
+            case TINYINT:
+                return new ColumnWriter(attribute, 1, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        data[rowId] = row.getByte(pos);
+                    }
+                };
+            case SMALLINT:
+                return new ColumnWriter(attribute, 2, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putShort(data, offset(rowId), row.getShort(pos));
+                    }
+                };
+            case INT:
+                return new ColumnWriter(attribute, 4, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putInt(data, offset(rowId), row.getInt(pos));
+                    }
+                };
+            case BIGINT:
+                return new ColumnWriter(attribute, 8, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putLong(data, offset(rowId), row.getLong(pos));
+                    }
+                };
+            case FLOAT:
+                return new ColumnWriter(attribute, 4, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putFloat(data, offset(rowId), row.getFloat(pos));
+                    }
+                };
+            case DOUBLE:
+                return new ColumnWriter(attribute, 8, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        Platform.putDouble(data, offset(rowId), row.getDouble(pos));
+                    }
+                };
+            case DATE:
+                return new ColumnWriter(attribute, 8, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        // same conversion as the record path, see OdpsTypeConverter.DATE
+                        java.sql.Date date = new java.sql.Date(row.getInt(pos) * (3600 * 24 * 1000L));
+                        Platform.putLong(data, offset(rowId), DateUtils.getDayOffset(date));
+                    }
+                };
+            case DATETIME:
+                return createDatetimeWriter(attribute, getPrecision(logicalType), batchSize);
+            case TIMESTAMP:
+                return createTimestampWriter(attribute, getPrecision(logicalType), batchSize);
+            case DECIMAL:
+                return createDecimalWriter(attribute, (DecimalTypeInfo) typeInfo, logicalType, batchSize);
+            case BINARY:
+                return new VarLenColumnWriter(attribute, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        append(rowId, row.getBinary(pos));
+                    }
+                };
+            case CHAR:
+            case VARCHAR:
+                final int maxLength = ((AbstractCharTypeInfo) typeInfo).getLength();
+                return new VarLenColumnWriter(attribute, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        BinaryStringData value = (BinaryStringData) row.getString(pos);
+                        if (value.numChars() > maxLength) {
+                            value = value.substring(0, maxLength);
+                        }
+                        append(rowId, value);
+                    }
+                };
+            case STRING:
+            default:
+                return new VarLenColumnWriter(attribute, batchSize) {
+                    @Override
+                    void write(RowData row, int pos, int rowId) {
+                        // the utf-8 bytes of the string data, without decoding
+                        append(rowId, (BinaryStringData) row.getString(pos));
+                    }
+                };
+        }
+    }
+
+    private static ColumnWriter createDatetimeWriter(Attribute attribute, int precision, int batchSize) {
+        final ZoneId zoneId = ZoneId.systemDefault();
+        return new ColumnWriter(attribute, 8, batchSize) {
+            @Override
+            void write(RowData row, int pos, int rowId) {
+                TimestampData timestamp = row.getTimestamp(pos, precision);
+                Date date = Date.from(timestamp.toLocalDateTime().atZone(zoneId).toInstant());
+                Platform.putLong(data, offset(rowId), DateUtils.date2ms(date));
+            }
+        };
+    }
+
+    private static ColumnWriter createTimestampWriter(Attribute attribute, int precision, int batchSize) {
+        return new ColumnWriter(attribute, 12, batchSize) {
+            @Override
+            void write(RowData row, int pos, int rowId) {
+                Timestamp timestamp = row.getTimestamp(pos, precision).toTimestamp();
+                int nanoSeconds = timestamp.getNanos();
+                long seconds = timestamp.getTime() - (nanoSeconds / 1000000) / 1000;
+                Platform.putLong(data, offset(rowId), seconds);
+                Platform.putInt(data, offset(rowId) + 8, nanoSeconds);
+            }
+        };
+    }
+
+    private static ColumnWriter createDecimalWriter(Attribute attribute,
+                                                    DecimalTypeInfo typeInfo,
+                                                    LogicalType logicalType,
+                                                    int batchSize) {
+        final int precision = getPrecision(logicalType);
+        final int scale = getScale(logicalType);
+        if (typeInfo.getPrecision() > 38) {
+            return new VarLenColumnWriter(attribute, batchSize) {
+                @Override
+                void write(RowData row, int pos, int rowId) {
+                    BigDecimal decimal = row.getDecimal(pos, precision, scale).toBigDecimal();
+                    append(rowId, decimal.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        } else if (typeInfo.getPrecision() > 18) {
+            return new ColumnWriter(attribute, 16, batchSize) {
+                @Override
+                void write(RowData row, int pos, int rowId) {
+                    BigDecimal decimal = row.getDecimal(pos, precision, scale).toBigDecimal();
+                    // little endian two's complement
+                    byte[] bytes = decimal.unscaledValue().toByteArray();
+                    int start = rowId * 16;
+                    for (int i = 0; i < bytes.length; i++) {
+                        data[start + i] = bytes[bytes.length - i - 1];
+                    }
+                    Arrays.fill(data, start + bytes.length, start + 16, decimal.signum() < 0 ? (byte) -1 : 0);
+                }
+            };
+        } else if (typeInfo.getPrecision() > 9) {
+            return new ColumnWriter(attribute, 8, batchSize) {
+                @Override
+                void write(RowData row, int pos, int rowId) {
+                    Platform.putLong(data, offset(rowId), unscaledLong(row.getDecimal(pos, precision, scale)));
+                }
+            };
+        } else if (typeInfo.getPrecision() > 4) {
+            return new ColumnWriter(attribute, 4, batchSize) {
+                @Override
+                void write(RowData row, int pos, int rowId) {
+                    Platform.putInt(data, offset(rowId), (int) unscaledLong(row.getDecimal(pos, precision, scale)));
+                }
+            };
+        } else {
+            return new ColumnWriter(attribute, 2, batchSize) {
+                @Override
+                void write(RowData row, int pos, int rowId) {
+                    Platform.putShort(data, offset(rowId), (short) unscaledLong(row.getDecimal(pos, precision, scale)));
+                }
+            };
+        }
+    }
+
+    private static long unscaledLong(DecimalData decimal) {
+        return decimal.isCompact() ?
+                decimal.toUnscaledLong() : decimal.toBigDecimal().unscaledValue().longValue();
+    }
+
+    private static int getPrecision(LogicalType logicalType) {
+        switch (logicalType.getTypeRoot()) {
+            case DECIMAL:
+                return ((DecimalType) logicalType).getPrecision();
+            case TIMESTAMP_WITHOUT_TIME_ZONE:
+                return ((TimestampType) logicalType).getPrecision();
+            default:
+                throw new IllegalArgumentException("Unexpected type " + logicalType);
+        }
+    }
+
+    private static int getScale(LogicalType logicalType) {
+        return ((DecimalType) logicalType).getScale();
+    }
+
+    /** Copies one field of the rows into a fixed width vector. */
+    private abstract static class ColumnWriter {
+
+        final int width;
+        final byte[] data;
+        final byte[] nulls;
+        final ColDataVector vector;
+
+        ColumnWriter(Attribute attribute, int width, int batchSize) {
+            this(attribute, width, batchSize, null);
+        }
+
+        ColumnWriter(Attribute attribute, int width, int batchSize, byte[] deepBuf) {
+            this.width = width;
+            this.data = new byte[width * batchSize];
+            this.nulls = new byte[batchSize];
+            this.vector = new ColDataVector(attribute, data, 0, nulls, deepBuf);
+        }
+
+        /** Writes the non null field at {@code pos} of the row as value {@code rowId}. */
+        abstract void write(RowData row, int pos, int rowId);
+
+        final long offset(int rowId) {
+            return Platform.BYTE_ARRAY_OFFSET + (long) rowId * width;
+        }
+
+        void setNull(int rowId) {
+            nulls[rowId] = 1;
+            Arrays.fill(data, rowId * width, (rowId + 1) * width, (byte) 0);
+        }
+
+        void reset() {
+            Arrays.fill(nulls, (byte) 0);
+        }
+    }
+
+    /** Keeps the lengths in the vector data and the bytes in its deep buffer. */
+    private abstract static class VarLenColumnWriter extends ColumnWriter {
+
+        private byte[] deepBuf;
+        private int deepBufSize;
+
+        VarLenColumnWriter(Attribute attribute, int batchSize) {
+            this(attribute, batchSize, new byte[8 * batchSize]);
+        }
+
+        private VarLenColumnWriter(Attribute attribute, int batchSize, byte[] deepBuf) {
+            super(attribute, 4, batchSize, deepBuf);
+            this.deepBuf = deepBuf;
+        }
+
+        final void append(int rowId, byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, deepBuf, deepBufSize, bytes.length);
+            deepBufSize += bytes.length;
+            Platform.putInt(data, offset(rowId), bytes.length);
+        }
+
+        /** Copies the bytes straight from the memory segments of the string. */
+        final void append(int rowId, BinaryStringData value) {
+            value.ensureMaterialized();
+            int length = value.getSizeInBytes();
+            ensureCapacity(length);
+            BinarySegmentUtils.copyToBytes(value.getSegments(), value.getOffset(), deepBuf, deepBufSize, length);
+            deepBufSize += length;
+            Platform.putInt(data, offset(rowId), length);
+        }
+
+        private void ensureCapacity(int length) {
+            if (deepBufSize + length > deepBuf.length) {
+                deepBuf = Arrays.copyOf(deepBuf, Math.max(deepBuf.length * 2, deepBufSize + length));
+                vector.setDeepBuf(deepBuf);
+            }
+        }
+
+        @Override
+        void reset() {
+            super.reset();
+            deepBufSize = 0;
+        }
+    }
+}
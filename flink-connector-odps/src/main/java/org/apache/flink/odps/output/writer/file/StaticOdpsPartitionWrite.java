@@ -20,13 +20,18 @@ package org.apache.flink.odps.output.writer.file;
 
 import com.aliyun.odps.Column;
 import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.cupid.table.v1.tunnel.impl.TunnelWriteSessionInfo;
 import com.aliyun.odps.cupid.table.v1.util.Options;
 import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
 import com.aliyun.odps.cupid.table.v1.writer.FileWriterBuilder;
+import org.apache.flink.odps.output.writer.OdpsBlockWrite;
 import org.apache.flink.odps.output.writer.OdpsTableWrite;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.OdpsConf;
 import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.types.Row;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,13 +40,14 @@ import java.io.IOException;
 
 import static org.apache.flink.odps.util.Constants.*;
 
-public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
+public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> implements OdpsBlockWrite<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(StaticOdpsPartitionWrite.class);
     protected transient BlockWriter<T> blockWriter;
     protected String currentPartition;
     protected int taskNumber;
     protected int numTasks;
+    protected RowType rowType;
 
     public StaticOdpsPartitionWrite(OdpsConf odpsConf,
                                     String projectName,
@@ -53,6 +59,14 @@ public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
         this.currentPartition = staticPartition;
     }
 
+    /**
+     * Declares the records to be {@link RowData} of the given type. Vectorized writes then copy
+     * the fields into column vectors directly.
+     */
+    public void setRowType(RowType rowType) {
+        this.rowType = rowType;
+    }
+
     @Override
     public void initWriteSession() throws IOException {
         Options options = OdpsUtils.getOdpsOptions(odpsConf);
@@ -61,6 +75,7 @@ public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void open(int taskNumber, int numTasks) throws IOException {
         try {
             Preconditions.checkNotNull(writeSessionInfo, "Write session cannot be null!");
@@ -80,11 +95,20 @@ public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
                     // TODO: use write options
                     int batchSize = odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_BATCH_SIZE,
                             DEFAULT_ODPS_VECTORIZED_BATCH_SIZE);
-                    blockWriter = new ColumnarBlockWriter<T>(
-                            getTableSchema().getColumns().toArray(new Column[0]),
-                            writer,
-                            writeOptions,
-                            batchSize);
+                    Column[] columns = getTableSchema().getColumns().toArray(new Column[0]);
+                    if (RowDataColumnarBlockWriter.isSupported(columns, rowType)) {
+                        blockWriter = (BlockWriter<T>) new RowDataColumnarBlockWriter(
+                                columns, rowType, writer, batchSize);
+                    } else if (rowType != null) {
+                        blockWriter = (BlockWriter<T>) new RowDataBlockWriter(
+                                new ColumnarBlockWriter<>(columns, writer, writeOptions, batchSize), rowType);
+                    } else {
+                        blockWriter = new ColumnarBlockWriter<T>(
+                                columns,
+                                writer,
+                                writeOptions,
+                                batchSize);
+                    }
                 }
             } else {
                 if (this.writeSessionInfo.getOptions().getOrDefault(ODPS_WRITER_BUFFER_ENABLE, false)) {
@@ -100,10 +124,12 @@ public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
                             .buildRecordWriter();
                 }
                 if (blockWriter == null) {
-                    blockWriter = new RowBlockWriter<T>(
+                    RowBlockWriter<?> rowBlockWriter = new RowBlockWriter<>(
                             getTableSchema().getColumns().toArray(new Column[0]),
                             writer,
                             writeOptions);
+                    blockWriter = rowType == null ? (BlockWriter<T>) rowBlockWriter :
+                            (BlockWriter<T>) new RowDataBlockWriter((BlockWriter<Row>) rowBlockWriter, rowType);
                 }
             }
             blockWriter.updateFileWriter(writer, taskNumber);
@@ -136,6 +162,18 @@ public class StaticOdpsPartitionWrite<T> extends OdpsTableWrite<T> {
         }
     }
 
+    @Override
+    public long getBytesWritten() {
+        return blockWriter == null ? 0L : blockWriter.getBytesWritten();
+    }
+
+    @Override
+    public String getWriteSessionId() {
+        Preconditions.checkState(writeSessionInfo instanceof TunnelWriteSessionInfo,
+                "Write session of provider %s has no session id", tableApiProvider);
+        return ((TunnelWriteSessionInfo) writeSessionInfo).getUploadId();
+    }
+
     @Override
     public void commitWriteSession() throws IOException {
         rebuildWriteSession();
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.writer.stream;
+
+import com.aliyun.odps.OdpsException;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.util.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * Decides when a stream writer flushes its buffer. With adaptive flushing the max rows and
+ * max size start from the configured values and move within {@link #MAX_FACTOR} times of them:
+ * they shrink when flushes take longer than the target latency, halve when the tunnel throttles
+ * and grow when flushes are fast, so that each flush stays around the target latency. Limits
+ * configured as 0 stay disabled.
+ */
+public class AdaptiveFlushController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveFlushController.class);
+
+    static final int MAX_FACTOR = 8;
+    private static final double GROW_RATIO = 1.25;
+    private static final double SHRINK_RATIO = 0.75;
+    private static final double THROTTLED_RATIO = 0.5;
+
+    private final boolean adaptive;
+    private final long targetLatencyMillis;
+    private final long minRows;
+    private final long maxRows;
+    private final long minBytes;
+    private final long maxBytes;
+
+    private volatile long flushRows;
+    private volatile long flushBytes;
+
+    public AdaptiveFlushController(OdpsWriteOptions options) {
+        this(options.getBufferFlushMaxRows(),
+                options.getBufferFlushMaxSizeInBytes(),
+                options.isBufferFlushAdaptive(),
+                options.getBufferFlushTargetLatencyMillis());
+    }
+
+    public AdaptiveFlushController(long flushRows, long flushBytes, boolean adaptive, long targetLatencyMillis) {
+        this.flushRows = flushRows;
+        this.flushBytes = flushBytes;
+        this.adaptive = adaptive;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.minRows = Math.max(1, flushRows / MAX_FACTOR);
+        this.maxRows = flushRows * MAX_FACTOR;
+        this.minBytes = Math.max(1, flushBytes / MAX_FACTOR);
+        this.maxBytes = flushBytes * MAX_FACTOR;
+    }
+
+    public boolean shouldFlush(long bufferRows, long bufferBytes) {
+        return (flushRows > 0 && bufferRows > flushRows) || (flushBytes > 0 && bufferBytes > flushBytes);
+    }
+
+    /**
+     * Records a finished flush.
+     *
+     * @param latencyMillis time of the flush including retries
+     * @param throttledAttempts attempts of the flush failed by throttling
+     */
+    public synchronized void onFlush(long latencyMillis, int throttledAttempts) {
+        if (!adaptive) {
+            return;
+        }
+        double ratio;
+        if (throttledAttempts > 0) {
+            ratio = THROTTLED_RATIO;
+        } else if (latencyMillis > targetLatencyMillis) {
+            ratio = SHRINK_RATIO;
+        } else if (latencyMillis < targetLatencyMillis / 2) {
+            ratio = GROW_RATIO;
+        } else {
+            return;
+        }
+        long newRows = adjust(flushRows, ratio, minRows, maxRows);
+        long newBytes = adjust(flushBytes, ratio, minBytes, maxBytes);
+        if (newRows != flushRows || newBytes != flushBytes) {
+            LOG.debug("Adjust flush size to {} rows, {} bytes after a flush of {} ms, {} throttled attempts",
+                    newRows, newBytes, latencyMillis, throttledAttempts);
+            flushRows = newRows;
+            flushBytes = newBytes;
+        }
+    }
+
+    public long getFlushRows() {
+        return flushRows;
+    }
+
+    public long getFlushBytes() {
+        return flushBytes;
+    }
+
+    private static long adjust(long current, double ratio, long min, long max) {
+        if (current <= 0) {
+            return current;
+        }
+        return Math.max(min, Math.min(max, (long) Math.ceil(current * ratio)));
+    }
+
+    /** Whether the flush failed because the tunnel throttles the writes. */
+    public static boolean isThrottled(Throwable t) {
+        Optional<OdpsException> odpsException = ExceptionUtils.findThrowable(t, OdpsException.class);
+        if (!odpsException.isPresent()) {
+            return false;
+        }
+        Integer status = odpsException.get().getStatus();
+        String errorCode = odpsException.get().getErrorCode();
+        return (status != null && (status == 429 || status == 503))
+                || (errorCode != null && (errorCode.contains("Exceeded") || errorCode.contains("Throttl")));
+    }
+}
@@ -18,32 +18,54 @@
 
 package org.apache.flink.odps.output.writer.stream;
 
-import com.aliyun.odps.OdpsException;
-import com.aliyun.odps.Table;
 import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.stream.PartitionTimeCommitPolicy;
 import org.apache.flink.odps.output.stream.TablePartitionAssigner;
 import org.apache.flink.odps.output.writer.OdpsStreamWrite;
 import org.apache.flink.odps.output.writer.OdpsTableWrite;
-import org.apache.flink.odps.output.writer.OdpsWriteFactory;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
 import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.apache.flink.odps.util.OdpsUtils.getPartitionComputer;
 
+/**
+ * Writes into the partitions computed by the {@link PartitionAssigner}. At most
+ * {@code sink.dynamic-partition.limit} partition writers are open, the least recently used one
+ * is flushed and closed to make room for a new partition. The write sessions of closed writers
+ * are cached for as many partitions again, so a partition written again reuses its session.
+ * Writers with buffered rows are flushed by {@code sink.dynamic-partition.flush-threads} threads.
+ *
+ * <p>With the PARTITION_TIME commit trigger, partitions complete at the watermark are flushed,
+ * closed and their write sessions released, see {@link PartitionTimeCommitPolicy}.
+ */
 public class DynamicOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
         implements OdpsStreamWrite<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(DynamicOdpsPartitionStreamWrite.class);
     private final PartitionAssigner<T> partitionAssigner;
-    private final transient Map<String, OdpsStreamWrite<T>> odpsPartitionWriterMap;
+    private final PartitionTimeCommitPolicy commitPolicy;
+    private final transient LinkedHashMap<String, OdpsStreamWrite<T>> odpsPartitionWriterMap;
+    private final transient LinkedHashMap<String, OdpsStreamWrite<T>> closedPartitionWriterMap;
+    private transient ExecutorService flushExecutor;
     private int taskNumber;
     private int numTasks;
 
@@ -53,11 +75,34 @@ public class DynamicOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
                                            String partition,
                                            OdpsWriteOptions options,
                                            PartitionAssigner<T> partitionAssigner) {
-        super(odpsConf, projectName, tableName, partition, false, options);
+        this(odpsConf, projectName, tableName, partition, options, partitionAssigner, null);
+    }
+
+    /**
+     * @param tableMetaProvider shares the metadata cache of another writer of the table, or
+     *                          null to create one
+     */
+    public DynamicOdpsPartitionStreamWrite(OdpsConf odpsConf,
+                                           String projectName,
+                                           String tableName,
+                                           String partition,
+                                           OdpsWriteOptions options,
+                                           PartitionAssigner<T> partitionAssigner,
+                                           @Nullable OdpsMetaDataProvider tableMetaProvider) {
+        super(odpsConf, projectName, tableName, partition, false, options, tableMetaProvider);
         this.partitionAssigner = partitionAssigner == null ?
                 new TablePartitionAssigner<>(getPartitionComputer(getTableSchema(), staticPartition)) :
                 partitionAssigner;
-        this.odpsPartitionWriterMap = new HashMap<>();
+        this.commitPolicy = PartitionTimeCommitPolicy.create(options);
+        // access order, the least recently written partition comes first
+        this.odpsPartitionWriterMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.closedPartitionWriterMap =
+                new LinkedHashMap<String, OdpsStreamWrite<T>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, OdpsStreamWrite<T>> eldest) {
+                        return size() > writeOptions.getDynamicPartitionLimit();
+                    }
+                };
     }
 
     @Override
@@ -74,11 +119,26 @@ public class DynamicOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
     public void open(int taskNumber, int numTasks) throws IOException {
         this.taskNumber = taskNumber;
         this.numTasks = numTasks;
+        if (writeOptions.getDynamicPartitionFlushThreads() > 1) {
+            this.flushExecutor = Executors.newFixedThreadPool(
+                    writeOptions.getDynamicPartitionFlushThreads(),
+                    new ExecutorThreadFactory("odps-partition-flusher"));
+        }
     }
 
     @Override
     public void close() throws IOException {
-        flush();
+        try {
+            flush();
+            for (OdpsStreamWrite<T> writer : odpsPartitionWriterMap.values()) {
+                writer.closeWriter();
+            }
+        } finally {
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                flushExecutor = null;
+            }
+        }
     }
 
     @Override
@@ -86,56 +146,122 @@ public class DynamicOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
         String partition = this.partitionAssigner.getPartitionSpec(record, writerContext);
         OdpsStreamWrite<T> singleOdpsPartitionWriter = odpsPartitionWriterMap.get(partition);
         if (singleOdpsPartitionWriter == null) {
-            singleOdpsPartitionWriter = createSingleOdpsPartitionWriter(partition);
+            singleOdpsPartitionWriter = openSingleOdpsPartitionWriter(partition);
         }
         singleOdpsPartitionWriter.writeRecord(record);
     }
 
-    private OdpsStreamWrite<T> createSingleOdpsPartitionWriter(String partition) throws IOException {
+    private OdpsStreamWrite<T> openSingleOdpsPartitionWriter(String partition) throws IOException {
+        // taken before the eviction below, which could push it out of the closed writers
+        OdpsStreamWrite<T> singleOdpsPartitionWriter = closedPartitionWriterMap.remove(partition);
         if (odpsPartitionWriterMap.size() >= writeOptions.getDynamicPartitionLimit()) {
-            String partKey = null;
-            long idleTime = 0L;
-            for (Map.Entry<String, OdpsStreamWrite<T>> odpsWriterEntry : odpsPartitionWriterMap.entrySet()) {
-                if (odpsWriterEntry.getValue().isIdle() && odpsWriterEntry.getValue().getFlushInterval() > idleTime) {
-                    idleTime = odpsWriterEntry.getValue().getFlushInterval();
-                    partKey = odpsWriterEntry.getKey();
-                }
-            }
-            if (partKey == null) {
-                throw new IOException("Too many dynamic partitions: "
-                        + odpsPartitionWriterMap.size()
-                        + ", which exceeds the size limit: " + writeOptions.getDynamicPartitionLimit());
-            }
-            this.odpsPartitionWriterMap.remove(partKey);
+            Iterator<Map.Entry<String, OdpsStreamWrite<T>>> iterator =
+                    odpsPartitionWriterMap.entrySet().iterator();
+            Map.Entry<String, OdpsStreamWrite<T>> leastRecentlyUsed = iterator.next();
+            iterator.remove();
+            leastRecentlyUsed.getValue().closeWriter();
+            closedPartitionWriterMap.put(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+        }
+        if (singleOdpsPartitionWriter == null) {
+            singleOdpsPartitionWriter = createPartitionWriter(partition);
+            singleOdpsPartitionWriter.initWriteSession();
+            LOG.info("Create new odps writer for dynamic partition: " + partition);
         }
-        OdpsStreamWrite<T> singleOdpsPartitionWriter = OdpsWriteFactory.createOdpsStreamWrite(
+        singleOdpsPartitionWriter.open(taskNumber, numTasks);
+        this.odpsPartitionWriterMap.put(partition, singleOdpsPartitionWriter);
+        return singleOdpsPartitionWriter;
+    }
+
+    /** Creates the writer of a dynamic partition, its write session is not created yet. */
+    protected OdpsStreamWrite<T> createPartitionWriter(String partition) {
+        return new StaticOdpsPartitionStreamWrite<>(
                 odpsConf,
                 projectName,
                 tableName,
                 partition,
-                false,
-                false,
                 writeOptions,
-                null);
-        singleOdpsPartitionWriter.initWriteSession();
-        singleOdpsPartitionWriter.open(taskNumber, numTasks);
-        this.odpsPartitionWriterMap.put(partition, singleOdpsPartitionWriter);
-        LOG.info("Create new odps writer for dynamic partitions");
-        return singleOdpsPartitionWriter;
+                getTableMetaProvider());
     }
 
     @Override
     public void flush() throws IOException {
-        for (Map.Entry<String, OdpsStreamWrite<T>> odpsWriterEntry :
-                odpsPartitionWriterMap.entrySet()) {
-            odpsWriterEntry.getValue().flush();
+        flush(odpsPartitionWriterMap.values());
+    }
+
+    @Override
+    public void commitPartitions(long watermark) throws IOException {
+        if (commitPolicy == null) {
+            return;
+        }
+        List<String> committable = commitPolicy.committablePartitions(odpsPartitionWriterMap.keySet(), watermark);
+        List<OdpsStreamWrite<T>> committableWriters = new ArrayList<>(committable.size());
+        for (String partition : committable) {
+            committableWriters.add(odpsPartitionWriterMap.get(partition));
+        }
+        flush(committableWriters);
+        for (String partition : committable) {
+            odpsPartitionWriterMap.remove(partition).closeWriter();
+        }
+        // closed writers are flushed already, just release their sessions
+        committable.addAll(commitPolicy.committablePartitions(closedPartitionWriterMap.keySet(), watermark));
+        closedPartitionWriterMap.keySet().removeAll(committable);
+        if (!committable.isEmpty()) {
+            LOG.info("Commit partitions {} of table {} at watermark {}", committable, tableName, watermark);
+        }
+    }
+
+    private void flush(Collection<OdpsStreamWrite<T>> writers) throws IOException {
+        flushWriters(writers, flushExecutor);
+    }
+
+    /**
+     * Flushes the writers with buffered rows, in parallel if an executor is given. The first
+     * failure is thrown after all flushes are done.
+     */
+    static void flushWriters(Collection<? extends OdpsStreamWrite<?>> writers,
+                             @Nullable ExecutorService flushExecutor) throws IOException {
+        List<OdpsStreamWrite<?>> dirtyWriters = new ArrayList<>();
+        for (OdpsStreamWrite<?> writer : writers) {
+            if (!writer.isIdle()) {
+                dirtyWriters.add(writer);
+            }
+        }
+        if (flushExecutor == null || dirtyWriters.size() <= 1) {
+            for (OdpsStreamWrite<?> writer : dirtyWriters) {
+                writer.flush();
+            }
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>(dirtyWriters.size());
+        for (OdpsStreamWrite<?> writer : dirtyWriters) {
+            futures.add(flushExecutor.submit(() -> {
+                writer.flush();
+                return null;
+            }));
+        }
+        IOException flushException = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing dynamic partitions", e);
+            } catch (ExecutionException e) {
+                if (flushException == null) {
+                    flushException = e.getCause() instanceof IOException ?
+                            (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+        if (flushException != null) {
+            throw flushException;
         }
     }
 
     @Override
     public boolean isIdle() {
-        for (Map.Entry<String, OdpsStreamWrite<T>> odpsWriterEntry : odpsPartitionWriterMap.entrySet()) {
-            if (!odpsWriterEntry.getValue().isIdle()) {
+        for (OdpsStreamWrite<T> writer : odpsPartitionWriterMap.values()) {
+            if (!writer.isIdle()) {
                 return false;
             }
         }
@@ -149,15 +275,9 @@ public class DynamicOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
 
     @Override
     protected void checkPartition(String partitionSpec) throws IOException {
-        try {
-            Table table = getTableMetaProvider().getTable(projectName, tableName);
-            this.isPartitioned = table.isPartitioned();
-            Preconditions.checkArgument(this.isPartitioned,
-                    "Table " + tableName + " is not partitioned");
-            OdpsUtils.checkPartition(partitionSpec, getTableSchema());
-            this.staticPartition = partitionSpec;
-        } catch (OdpsException e) {
-            throw new IOException("check partition failed.", e);
-        }
+        Preconditions.checkArgument(this.isPartitioned,
+                "Table " + tableName + " is not partitioned");
+        OdpsUtils.checkPartition(partitionSpec, getTableSchema());
+        this.staticPartition = partitionSpec;
     }
 }
@@ -19,14 +19,17 @@
 package org.apache.flink.odps.output.writer.stream;
 
 import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.stream.PartitionTimeCommitPolicy;
 import org.apache.flink.odps.output.stream.TablePartitionAssigner;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
 import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 import static org.apache.flink.odps.util.OdpsUtils.getPartitionComputer;
@@ -35,6 +38,7 @@ public class GroupedOdpsPartitionStreamWrite<T> extends StaticOdpsPartitionStrea
 
     private static final Logger LOG = LoggerFactory.getLogger(GroupedOdpsPartitionStreamWrite.class);
     private final PartitionAssigner<T> partitionAssigner;
+    private final PartitionTimeCommitPolicy commitPolicy;
     private int taskNumber;
     private int numTasks;
 
@@ -44,10 +48,25 @@ public class GroupedOdpsPartitionStreamWrite<T> extends StaticOdpsPartitionStrea
                                            String partition,
                                            OdpsWriteOptions options,
                                            PartitionAssigner<T> partitionAssigner) {
-        super(odpsConf, projectName, tableName, partition, options);
+        this(odpsConf, projectName, tableName, partition, options, partitionAssigner, null);
+    }
+
+    /**
+     * @param tableMetaProvider shares the metadata cache of another writer of the table, or
+     *                          null to create one
+     */
+    public GroupedOdpsPartitionStreamWrite(OdpsConf odpsConf,
+                                           String projectName,
+                                           String tableName,
+                                           String partition,
+                                           OdpsWriteOptions options,
+                                           PartitionAssigner<T> partitionAssigner,
+                                           @Nullable OdpsMetaDataProvider tableMetaProvider) {
+        super(odpsConf, projectName, tableName, partition, options, tableMetaProvider);
         this.partitionAssigner = partitionAssigner == null ?
                 new TablePartitionAssigner<>(getPartitionComputer(getTableSchema(), staticPartition)) :
                 partitionAssigner;
+        this.commitPolicy = PartitionTimeCommitPolicy.create(options);
     }
 
     @Override
@@ -80,6 +99,17 @@ public class GroupedOdpsPartitionStreamWrite<T> extends StaticOdpsPartitionStrea
         super.writeRecord(record);
     }
 
+    @Override
+    public void commitPartitions(long watermark) throws IOException {
+        if (commitPolicy != null && !currentPartition.isEmpty()
+                && commitPolicy.isCommittable(currentPartition, watermark)) {
+            LOG.info("Commit partition {} of table {} at watermark {}", currentPartition, tableName, watermark);
+            closeWriter();
+            // a late record of the partition opens a new writer
+            this.currentPartition = "";
+        }
+    }
+
     @Override
     protected void checkPartition(String partitionSpec) {
         Preconditions.checkArgument(this.isPartitioned,
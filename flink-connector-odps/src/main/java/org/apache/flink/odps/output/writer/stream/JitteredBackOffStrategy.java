@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.output.writer.stream;
+
+import com.aliyun.odps.commons.util.backoff.BackOffStrategy;
+import org.apache.flink.util.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for {@link com.aliyun.odps.commons.util.RetryStrategy}. The
+ * n-th retry waits a random time between half and all of {@code initInterval * 2^(n-1)},
+ * bounded by the max interval, so that the writers throttled together do not retry together.
+ */
+public class JitteredBackOffStrategy extends BackOffStrategy {
+
+    private final long maxIntervalMillis;
+    private long intervalMillis;
+
+    public JitteredBackOffStrategy(long initIntervalMillis, long maxIntervalMillis) {
+        super(initIntervalMillis);
+        Preconditions.checkArgument(initIntervalMillis > 0, "init interval must be positive");
+        Preconditions.checkArgument(maxIntervalMillis >= initIntervalMillis,
+                "max interval must not be less than init interval");
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.intervalMillis = initIntervalMillis;
+    }
+
+    @Override
+    public long next() {
+        long interval = intervalMillis;
+        intervalMillis = Math.min(maxIntervalMillis, intervalMillis * 2);
+        long half = interval / 2;
+        return half + ThreadLocalRandom.current().nextLong(interval - half + 1);
+    }
+
+    @Override
+    public void reset() {
+        intervalMillis = initInterval;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.output.writer.stream;
+
+import com.aliyun.odps.TableSchema;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.stream.PartitionTimeCommitPolicy;
+import org.apache.flink.odps.output.stream.TableSelector;
+import org.apache.flink.odps.output.stream.TablePartitionAssigner;
+import org.apache.flink.odps.output.writer.OdpsStreamWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.WriterContext;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.apache.flink.odps.util.OdpsUtils.getPartitionComputer;
+
+/**
+ * Writes the records of many tables, each record routed to its table by a {@link TableSelector},
+ * through one pool of partition writers. At most {@code maxOpenWriters} writers are open over all
+ * tables and at most {@code sink.dynamic-partition.limit} of the options of a table for the table,
+ * the least recently used one is flushed and closed to make room for a new writer. The write
+ * sessions of closed writers are cached for as many writers again. All tables share one metadata
+ * cache and {@code sink.dynamic-partition.flush-threads} flush threads, so a flush goes through
+ * the buffered rows of all tables in parallel.
+ *
+ * <p>Partitioned tables are written to the dynamic partitions computed from the records. With
+ * the PARTITION_TIME commit trigger in the options of a table, its partitions complete at the
+ * watermark are flushed, closed and their write sessions released, see
+ * {@link PartitionTimeCommitPolicy}.
+ */
+public class MultiTableOdpsStreamWrite<T> implements OdpsStreamWrite<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(MultiTableOdpsStreamWrite.class);
+
+    private final OdpsConf odpsConf;
+    private final String projectName;
+    private final TableSelector<T> tableSelector;
+    private final OdpsWriteOptions writeOptions;
+    private final Map<String, OdpsWriteOptions> tableWriteOptions;
+    private final int maxOpenWriters;
+    private final WriterContext writerContext;
+
+    private transient OdpsMetaDataProvider metaDataProvider;
+    private transient Map<String, TableWriters<T>> tables;
+    // access order, the least recently written partition of all tables comes first
+    private transient LinkedHashMap<PartitionWriter<T>, Boolean> openWriters;
+    private transient LinkedHashMap<PartitionWriter<T>, Boolean> closedWriters;
+    private transient ExecutorService flushExecutor;
+    private int taskNumber;
+    private int numTasks;
+
+    /**
+     * @param tableWriteOptions the options of the tables written with other options than
+     *                          {@code writeOptions}, by the names returned by the selector
+     */
+    public MultiTableOdpsStreamWrite(OdpsConf odpsConf,
+                                     String projectName,
+                                     TableSelector<T> tableSelector,
+                                     OdpsWriteOptions writeOptions,
+                                     Map<String, OdpsWriteOptions> tableWriteOptions,
+                                     int maxOpenWriters) {
+        this.odpsConf = Preconditions.checkNotNull(odpsConf, "odps conf cannot be null");
+        this.projectName = Preconditions.checkNotNull(projectName, "project cannot be null");
+        this.tableSelector = Preconditions.checkNotNull(tableSelector, "table selector cannot be null");
+        this.writeOptions = Preconditions.checkNotNull(writeOptions, "write options cannot be null");
+        this.tableWriteOptions = new HashMap<>(tableWriteOptions);
+        Preconditions.checkArgument(maxOpenWriters > 0, "maxOpenWriters must be positive");
+        this.maxOpenWriters = maxOpenWriters;
+        this.writerContext = new WriterContext("");
+    }
+
+    @Override
+    public void initWriteSession() throws IOException {
+        // the sessions are created with the writers of the partitions
+    }
+
+    @Override
+    public void commitWriteSession() throws IOException {
+    }
+
+    @Override
+    public void updateWriteContext(SinkFunction.Context context) {
+        writerContext.update(
+                context.timestamp(),
+                context.currentWatermark(),
+                context.currentProcessingTime());
+    }
+
+    @Override
+    public void registerMetrics(MetricGroup metricGroup) {
+        getMetaDataProvider().registerMetrics(metricGroup);
+    }
+
+    @Override
+    public void open(int taskNumber, int numTasks) throws IOException {
+        this.taskNumber = taskNumber;
+        this.numTasks = numTasks;
+        this.tables = new HashMap<>();
+        this.openWriters = new LinkedHashMap<>(16, 0.75f, true);
+        this.closedWriters = new LinkedHashMap<PartitionWriter<T>, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PartitionWriter<T>, Boolean> eldest) {
+                if (size() > maxOpenWriters) {
+                    PartitionWriter<T> writer = eldest.getKey();
+                    writer.table.closedWriters.remove(writer.partition);
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (writeOptions.getDynamicPartitionFlushThreads() > 1) {
+            this.flushExecutor = Executors.newFixedThreadPool(
+                    writeOptions.getDynamicPartitionFlushThreads(),
+                    new ExecutorThreadFactory("odps-multi-table-flusher"));
+        }
+    }
+
+    @Override
+    public void writeRecord(T record) throws IOException {
+        String tableName = tableSelector.getTableName(record);
+        TableWriters<T> table = tables.get(tableName);
+        if (table == null) {
+            table = openTable(tableName);
+            tables.put(tableName, table);
+        }
+        String partition = table.partitionAssigner == null ?
+                "" : table.partitionAssigner.getPartitionSpec(record, writerContext);
+        PartitionWriter<T> writer = table.openWriters.get(partition);
+        if (writer == null) {
+            writer = openPartitionWriter(table, partition);
+        } else {
+            // moves the writer to the end of the access order
+            openWriters.get(writer);
+        }
+        writer.writer.writeRecord(record);
+    }
+
+    private TableWriters<T> openTable(String tableName) {
+        int separator = tableName.indexOf('.');
+        String project = separator < 0 ? projectName : tableName.substring(0, separator);
+        String table = separator < 0 ? tableName : tableName.substring(separator + 1);
+        OdpsWriteOptions options = tableWriteOptions.getOrDefault(tableName, writeOptions);
+        LOG.info("Open odps table {}.{} of the multi-table writer", project, table);
+        return new TableWriters<>(project, table, options, createPartitionAssigner(project, table));
+    }
+
+    private PartitionWriter<T> openPartitionWriter(TableWriters<T> table, String partition) throws IOException {
+        // taken before closing other writers, which could push it out of the closed writers
+        PartitionWriter<T> writer = table.closedWriters.remove(partition);
+        if (writer != null) {
+            closedWriters.remove(writer);
+        }
+        if (table.openWriters.size() >= table.options.getDynamicPartitionLimit()) {
+            for (PartitionWriter<T> openWriter : openWriters.keySet()) {
+                if (openWriter.table == table) {
+                    closePartitionWriter(openWriter);
+                    break;
+                }
+            }
+        }
+        if (openWriters.size() >= maxOpenWriters) {
+            closePartitionWriter(openWriters.keySet().iterator().next());
+        }
+        if (writer == null) {
+            writer = new PartitionWriter<>(table, partition,
+                    createWriter(table.project, table.table, partition, table.options));
+            writer.writer.initWriteSession();
+            LOG.info("Create new odps writer for table: {}.{}, partition: {}", table.project, table.table, partition);
+        }
+        writer.writer.open(taskNumber, numTasks);
+        table.openWriters.put(partition, writer);
+        openWriters.put(writer, Boolean.TRUE);
+        return writer;
+    }
+
+    private void closePartitionWriter(PartitionWriter<T> writer) throws IOException {
+        openWriters.remove(writer);
+        writer.table.openWriters.remove(writer.partition);
+        writer.writer.closeWriter();
+        writer.table.closedWriters.put(writer.partition, writer);
+        closedWriters.put(writer, Boolean.TRUE);
+    }
+
+    /**
+     * Creates the writer of a partition of a table, or of a table without partitions if the
+     * partition is empty.
+     */
+    protected OdpsStreamWrite<T> createWriter(String project,
+                                              String table,
+                                              String partition,
+                                              OdpsWriteOptions options) {
+        return new StaticOdpsPartitionStreamWrite<>(odpsConf, project, table, partition, options, getMetaDataProvider());
+    }
+
+    /**
+     * Returns the assigner of the partitions of a table, or null if the table has no partitions.
+     */
+    @Nullable
+    protected PartitionAssigner<T> createPartitionAssigner(String project, String table) {
+        TableSchema tableSchema = getMetaDataProvider().getTableSchema(project, table, false);
+        if (tableSchema.getPartitionColumns().isEmpty()) {
+            return null;
+        }
+        return new TablePartitionAssigner<>(getPartitionComputer(tableSchema, ""));
+    }
+
+    protected OdpsMetaDataProvider getMetaDataProvider() {
+        if (metaDataProvider == null) {
+            metaDataProvider = new OdpsMetaDataProvider(OdpsUtils.getOdps(odpsConf));
+        }
+        return metaDataProvider;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        DynamicOdpsPartitionStreamWrite.flushWriters(writers(openWriters.keySet()), flushExecutor);
+    }
+
+    @Override
+    public void commitPartitions(long watermark) throws IOException {
+        List<PartitionWriter<T>> committable = new ArrayList<>();
+        List<String> released = new ArrayList<>();
+        for (TableWriters<T> table : tables.values()) {
+            if (table.commitPolicy == null) {
+                continue;
+            }
+            for (String partition : table.commitPolicy.committablePartitions(table.openWriters.keySet(), watermark)) {
+                committable.add(table.openWriters.get(partition));
+            }
+            // closed writers are flushed already, just release their sessions
+            for (String partition : table.commitPolicy.committablePartitions(table.closedWriters.keySet(), watermark)) {
+                closedWriters.remove(table.closedWriters.remove(partition));
+                released.add(table.table + "/" + partition);
+            }
+        }
+        DynamicOdpsPartitionStreamWrite.flushWriters(writers(committable), flushExecutor);
+        for (PartitionWriter<T> writer : committable) {
+            openWriters.remove(writer);
+            writer.table.openWriters.remove(writer.partition);
+            writer.writer.closeWriter();
+            released.add(writer.table.table + "/" + writer.partition);
+        }
+        if (!released.isEmpty()) {
+            LOG.info("Commit partitions {} at watermark {}", released, watermark);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (openWriters != null) {
+                flush();
+                Iterator<PartitionWriter<T>> iterator = openWriters.keySet().iterator();
+                while (iterator.hasNext()) {
+                    iterator.next().writer.closeWriter();
+                    iterator.remove();
+                }
+            }
+        } finally {
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                flushExecutor = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isIdle() {
+        for (PartitionWriter<T> writer : openWriters.keySet()) {
+            if (!writer.writer.isIdle()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time since the oldest flush of the open writers, 0 if no writer is open.
+     */
+    @Override
+    public long getFlushInterval() {
+        long flushInterval = 0;
+        for (PartitionWriter<T> writer : openWriters.keySet()) {
+            flushInterval = Math.max(flushInterval, writer.writer.getFlushInterval());
+        }
+        return flushInterval;
+    }
+
+    public int getNumOpenWriters() {
+        return openWriters.size();
+    }
+
+    private static <T> List<OdpsStreamWrite<T>> writers(Iterable<PartitionWriter<T>> partitionWriters) {
+        List<OdpsStreamWrite<T>> writers = new ArrayList<>();
+        for (PartitionWriter<T> writer : partitionWriters) {
+            writers.add(writer.writer);
+        }
+        return writers;
+    }
+
+    /** The writers of the partitions of one table. */
+    private static class TableWriters<T> {
+
+        private final String project;
+        private final String table;
+        private final OdpsWriteOptions options;
+        @Nullable
+        private final PartitionAssigner<T> partitionAssigner;
+        @Nullable
+        private final PartitionTimeCommitPolicy commitPolicy;
+        private final Map<String, PartitionWriter<T>> openWriters = new HashMap<>();
+        private final Map<String, PartitionWriter<T>> closedWriters = new HashMap<>();
+
+        private TableWriters(String project,
+                             String table,
+                             OdpsWriteOptions options,
+                             @Nullable PartitionAssigner<T> partitionAssigner) {
+            this.project = project;
+            this.table = table;
+            this.options = options;
+            this.partitionAssigner = partitionAssigner;
+            this.commitPolicy = partitionAssigner == null ? null : PartitionTimeCommitPolicy.create(options);
+        }
+    }
+
+    /** The writer of one partition, compared by identity. */
+    private static class PartitionWriter<T> {
+
+        private final TableWriters<T> table;
+        private final String partition;
+        private final OdpsStreamWrite<T> writer;
+
+        private PartitionWriter(TableWriters<T> table, String partition, OdpsStreamWrite<T> writer) {
+            this.table = table;
+            this.partition = partition;
+            this.writer = writer;
+        }
+    }
+}
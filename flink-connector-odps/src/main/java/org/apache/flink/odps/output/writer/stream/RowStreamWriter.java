@@ -25,72 +25,171 @@ import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
 import com.aliyun.odps.data.ArrayRecord;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.output.writer.file.RowBlockWriter;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.apache.flink.util.function.SupplierWithException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Writes rows into a tunnel stream writer and flushes it when the limits of the
+ * {@link AdaptiveFlushController} are exceeded. Failed flushes are retried with jittered
+ * exponential backoff.
+ *
+ * <p>With a second file writer the flushes are asynchronous: a full buffer is flushed in the
+ * background while the following rows go into the other buffer. Only one flush is pending at a
+ * time, the next full buffer waits for it, and {@link #flush()} waits for it as well, so that
+ * all rows are flushed when it returns.
+ */
 public class RowStreamWriter<T> extends RowBlockWriter<T>
         implements StreamWriter<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(RowStreamWriter.class);
-    private final RetryStrategy flushRetry;
-    private long lastFlushTime;
+
+    private static final long RETRY_INIT_INTERVAL_MILLIS = 1000L;
+    private static final long RETRY_MAX_INTERVAL_MILLIS = 30000L;
+
+    private final int maxRetries;
+    private final AdaptiveFlushController flushController;
+    @Nullable
+    private final SupplierWithException<FileWriter<ArrayRecord>, IOException> spareWriterFactory;
+
+    private volatile long lastFlushTime;
+
+    private FileWriter<ArrayRecord> spareWriter;
+    private ExecutorService flushExecutor;
+    private Future<Void> pendingFlush;
 
     public RowStreamWriter(Column[] cols,
                            FileWriter<ArrayRecord> fileWriter,
                            OdpsWriteOptions options) {
+        this(cols, fileWriter, null, options);
+    }
+
+    /**
+     * @param spareWriterFactory creates the second buffer of asynchronous flushes, flushes are
+     *                           synchronous if null
+     */
+    public RowStreamWriter(Column[] cols,
+                           FileWriter<ArrayRecord> fileWriter,
+                           @Nullable SupplierWithException<FileWriter<ArrayRecord>, IOException> spareWriterFactory,
+                           OdpsWriteOptions options) {
         super(cols, fileWriter, options);
-        if (options.getWriteMaxRetries() > 0) {
-            this.flushRetry = new RetryStrategy(options.getWriteMaxRetries(), 3);
-        } else {
-            this.flushRetry = new RetryStrategy(3, 3);
-        }
+        this.maxRetries = options.getWriteMaxRetries() > 0 ? options.getWriteMaxRetries() : 3;
+        this.flushController = new AdaptiveFlushController(options);
+        this.spareWriterFactory = spareWriterFactory;
         this.lastFlushTime = System.currentTimeMillis();
-        this.fileWriter = fileWriter;
     }
 
     @Override
     public void write(T rec) throws IOException {
         super.write(rec);
-        if (options.getBufferFlushMaxRows() > 0
-                && fileWriter.getBufferRows() > options.getBufferFlushMaxRows()) {
-            flush();
-        } else if (options.getBufferFlushMaxSizeInBytes() > 0L
-                && fileWriter.getBufferBytes() > options.getBufferFlushMaxSizeInBytes()) {
-            flush();
+        if (flushController.shouldFlush(fileWriter.getBufferRows(), fileWriter.getBufferBytes())) {
+            if (spareWriterFactory != null) {
+                flushAsync();
+            } else {
+                flush();
+            }
         }
     }
 
     @Override
     public void flush() throws IOException {
-        if (!isIdle()) {
-            flushRetry.reset();
-            while (true) {
+        waitForPendingFlush();
+        flush(fileWriter);
+    }
+
+    private void flushAsync() throws IOException {
+        waitForPendingFlush();
+        if (spareWriter == null) {
+            spareWriter = spareWriterFactory.get();
+            flushExecutor = Executors.newSingleThreadExecutor(
+                    new ExecutorThreadFactory("odps-stream-flusher"));
+        }
+        FileWriter<ArrayRecord> fullWriter = fileWriter;
+        fileWriter = spareWriter;
+        spareWriter = fullWriter;
+        pendingFlush = flushExecutor.submit(() -> {
+            flush(fullWriter);
+            return null;
+        });
+    }
+
+    private void waitForPendingFlush() throws IOException {
+        if (pendingFlush == null) {
+            return;
+        }
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the pending flush", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ?
+                    (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pendingFlush = null;
+        }
+    }
+
+    private void flush(FileWriter<ArrayRecord> writer) throws IOException {
+        if (writer.getBufferRows() == 0) {
+            return;
+        }
+        RetryStrategy flushRetry = new RetryStrategy(maxRetries,
+                new JitteredBackOffStrategy(RETRY_INIT_INTERVAL_MILLIS, RETRY_MAX_INTERVAL_MILLIS));
+        long startTime = System.currentTimeMillis();
+        int throttledAttempts = 0;
+        while (true) {
+            try {
+                writer.flush();
+                break;
+            } catch (Exception exception) {
+                LOG.error(String.format("Flush error, retry times = %d",
+                        flushRetry.getAttempts()), exception);
+                if (AdaptiveFlushController.isThrottled(exception)) {
+                    throttledAttempts++;
+                }
                 try {
-                    fileWriter.flush();
-                    break;
-                } catch (Exception exception) {
-                    LOG.error(String.format("Flush error, retry times = %d",
-                            flushRetry.getAttempts()), exception);
-                    try {
-                        flushRetry.onFailure(exception);
-                    } catch (RetryExceedLimitException | InterruptedException e) {
-                        throw new IOException(e);
-                    }
+                    flushRetry.onFailure(exception);
+                } catch (RetryExceedLimitException | InterruptedException e) {
+                    throw new IOException(e);
                 }
             }
-            this.lastFlushTime = System.currentTimeMillis();
         }
+        this.lastFlushTime = System.currentTimeMillis();
+        flushController.onFlush(lastFlushTime - startTime, throttledAttempts);
     }
 
     @Override
     public boolean isIdle() {
-        return fileWriter.getBufferRows() == 0;
+        return pendingFlush == null && fileWriter.getBufferRows() == 0;
     }
 
     @Override
     public long getFlushInterval() {
         return System.currentTimeMillis() - this.lastFlushTime;
     }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            fileWriter.close();
+            if (spareWriter != null) {
+                spareWriter.close();
+            }
+        } finally {
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                flushExecutor = null;
+            }
+        }
+    }
 }
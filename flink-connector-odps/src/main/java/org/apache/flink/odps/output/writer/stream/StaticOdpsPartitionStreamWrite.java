@@ -28,11 +28,13 @@ import org.apache.flink.odps.output.writer.OdpsStreamWrite;
 import org.apache.flink.odps.output.writer.OdpsTableWrite;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
 import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 import static org.apache.flink.odps.util.Constants.ODPS_WRITER_STREAMING_ENABLE;
@@ -50,7 +52,16 @@ public class StaticOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
                                           String tableName,
                                           String partition,
                                           OdpsWriteOptions options) {
-        super(odpsConf, projectName, tableName, partition, false, options);
+        this(odpsConf, projectName, tableName, partition, options, null);
+    }
+
+    public StaticOdpsPartitionStreamWrite(OdpsConf odpsConf,
+                                          String projectName,
+                                          String tableName,
+                                          String partition,
+                                          OdpsWriteOptions options,
+                                          @Nullable OdpsMetaDataProvider tableMetaProvider) {
+        super(odpsConf, projectName, tableName, partition, false, options, tableMetaProvider);
         this.currentPartition = staticPartition;
     }
 
@@ -63,25 +74,35 @@ public class StaticOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
 
     @Override
     public void open(int taskNumber, int numTasks) throws IOException {
+        Preconditions.checkNotNull(writeSessionInfo, "Write session cannot be null!");
+        if (useBatch) {
+            throw new UnsupportedOperationException();
+        }
+        if (streamWriter != null) {
+            streamWriter.close();
+        }
+        streamWriter = createStreamWriter(taskNumber);
+    }
+
+    /** Creates the stream writer of the current partition. */
+    protected StreamWriter<T> createStreamWriter(int taskNumber) throws IOException {
+        return new RowStreamWriter<T>(
+                getTableSchema().getColumns().toArray(new Column[0]),
+                createFileWriter(taskNumber),
+                writeOptions.isBufferFlushAsync() ? () -> createFileWriter(taskNumber) : null,
+                writeOptions) {
+        };
+    }
+
+    private FileWriter<ArrayRecord> createFileWriter(int taskNumber) throws IOException {
         try {
-            Preconditions.checkNotNull(writeSessionInfo, "Write session cannot be null!");
-            if (useBatch) {
-                throw new UnsupportedOperationException();
+            if (isPartitioned) {
+                return new FileWriterBuilder(writeSessionInfo, taskNumber)
+                        .partitionSpec(OdpsUtils.getPartitionSpecKVMap(new PartitionSpec(currentPartition)))
+                        .buildRecordWriter();
             } else {
-                FileWriter<ArrayRecord> writer;
-                if (isPartitioned) {
-                    writer = new FileWriterBuilder(writeSessionInfo, taskNumber)
-                            .partitionSpec(OdpsUtils.getPartitionSpecKVMap(new PartitionSpec(currentPartition)))
-                            .buildRecordWriter();
-                } else {
-                    writer = new FileWriterBuilder(writeSessionInfo, taskNumber)
-                            .buildRecordWriter();
-                }
-                streamWriter = new RowStreamWriter<T>(
-                        getTableSchema().getColumns().toArray(new Column[0]),
-                        writer,
-                        writeOptions) {
-                };
+                return new FileWriterBuilder(writeSessionInfo, taskNumber)
+                        .buildRecordWriter();
             }
         } catch (ClassNotFoundException e) {
             LOG.error("Fail to init odps file writer!", e);
@@ -105,7 +126,17 @@ public class StaticOdpsPartitionStreamWrite<T> extends OdpsTableWrite<T>
 
     @Override
     public void close() throws IOException {
-        flush();
+        if (streamWriter != null) {
+            streamWriter.close();
+        }
+    }
+
+    @Override
+    public void closeWriter() throws IOException {
+        if (streamWriter != null) {
+            streamWriter.close();
+            streamWriter = null;
+        }
     }
 
     @Override
@@ -29,4 +29,7 @@ public interface StreamWriter<T> {
     boolean isIdle();
 
     long getFlushInterval();
+
+    /** Flushes the buffered rows and releases the resources of the writer. */
+    void close() throws IOException;
 }
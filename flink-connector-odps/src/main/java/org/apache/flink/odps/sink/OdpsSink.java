@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.sink;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.connector.sink.Committer;
+import org.apache.flink.api.connector.sink.GlobalCommitter;
+import org.apache.flink.api.connector.sink.Sink;
+import org.apache.flink.api.connector.sink.SinkWriter;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionCommitter;
+import org.apache.flink.odps.output.transaction.OdpsTransactionSerializer;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittable;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittableSerializer;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommitter;
+import org.apache.flink.odps.sink.writer.OdpsSinkWriter;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * An exactly-once {@link Sink} writing into odps tables through tunnel upload sessions.
+ *
+ * <p>Each {@link OdpsSinkWriter} writes the rows of a checkpoint into its own sessions, one per
+ * partition, from the task thread without locking. On checkpoints the writers close their
+ * blocks and hand the sessions over to the single {@link OdpsGlobalCommitter}, which commits
+ * the sessions of all subtasks together once the checkpoint completes.
+ */
+@PublicEvolving
+public class OdpsSink<IN> implements Sink<IN, OdpsTransaction, Void, OdpsGlobalCommittable> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsSink.class);
+
+    private final OdpsConf odpsConf;
+    private final String projectName;
+    private final String tableName;
+    private final String partition;
+    private final boolean isDynamicPartition;
+    private final OdpsWriteOptions writeOptions;
+    private final PartitionAssigner<IN> partitionAssigner;
+
+    private OdpsSink(
+            OdpsConf odpsConf,
+            String projectName,
+            String tableName,
+            String partition,
+            boolean isDynamicPartition,
+            OdpsWriteOptions writeOptions,
+            PartitionAssigner<IN> partitionAssigner) {
+        if (odpsConf == null) {
+            this.odpsConf = OdpsUtils.getOdpsConf();
+        } else {
+            this.odpsConf = odpsConf;
+        }
+        Preconditions.checkNotNull(this.odpsConf, "odps conf cannot be null");
+        if (this.odpsConf.isClusterMode()) {
+            throw new IllegalStateException("Odps sink cannot support cluster mode.");
+        }
+        this.projectName = Preconditions.checkNotNull(projectName, "project cannot be null");
+        this.tableName = Preconditions.checkNotNull(tableName, "table cannot be null");
+        this.partition = partition == null ? "" : partition;
+        this.isDynamicPartition = isDynamicPartition;
+        Preconditions.checkArgument(!isDynamicPartition || partitionAssigner != null,
+                "partition assigner cannot be null with dynamic partition");
+        this.writeOptions = writeOptions == null ?
+                OdpsWriteOptions.builder().build() : writeOptions;
+        this.partitionAssigner = partitionAssigner;
+        LOG.info("Create odps sink, table:{}.{}, partition:{},isDynamicPartition:{},writeOptions:{}",
+                projectName, tableName, partition, isDynamicPartition, writeOptions);
+    }
+
+    public static <IN> Builder<IN> builder(OdpsConf odpsConf, String projectName, String tableName) {
+        return new Builder<>(odpsConf, projectName, tableName);
+    }
+
+    @Override
+    public SinkWriter<IN, OdpsTransaction, Void> createWriter(InitContext context, List<Void> states) {
+        return new OdpsSinkWriter<>(
+                odpsConf,
+                projectName,
+                tableName,
+                partition,
+                isDynamicPartition,
+                writeOptions,
+                partitionAssigner,
+                context.getProcessingTimeService());
+    }
+
+    @Override
+    public Optional<SimpleVersionedSerializer<Void>> getWriterStateSerializer() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Committer<OdpsTransaction>> createCommitter() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<GlobalCommitter<OdpsTransaction, OdpsGlobalCommittable>> createGlobalCommitter() {
+        return Optional.of(new OdpsGlobalCommitter(
+                new OdpsTransactionCommitter(odpsConf, projectName, tableName),
+                writeOptions.getCommitThreads()));
+    }
+
+    @Override
+    public Optional<SimpleVersionedSerializer<OdpsTransaction>> getCommittableSerializer() {
+        return Optional.of(OdpsTransactionSerializer.INSTANCE);
+    }
+
+    @Override
+    public Optional<SimpleVersionedSerializer<OdpsGlobalCommittable>> getGlobalCommittableSerializer() {
+        return Optional.of(OdpsGlobalCommittableSerializer.INSTANCE);
+    }
+
+    /**
+     * Builder for {@link OdpsSink}.
+     */
+    public static class Builder<IN> {
+
+        private final OdpsConf odpsConf;
+        private final String projectName;
+        private final String tableName;
+        private String partition;
+        private boolean isDynamicPartition;
+        private OdpsWriteOptions writeOptions;
+        private PartitionAssigner<IN> partitionAssigner;
+
+        private Builder(OdpsConf odpsConf, String projectName, String tableName) {
+            this.odpsConf = odpsConf;
+            this.projectName = projectName;
+            this.tableName = tableName;
+        }
+
+        public Builder<IN> setPartition(String partition) {
+            this.partition = partition;
+            return this;
+        }
+
+        public Builder<IN> setDynamicPartition(boolean dynamicPartition) {
+            this.isDynamicPartition = dynamicPartition;
+            return this;
+        }
+
+        public Builder<IN> setWriteOptions(OdpsWriteOptions writeOptions) {
+            this.writeOptions = writeOptions;
+            return this;
+        }
+
+        public Builder<IN> setPartitionAssigner(PartitionAssigner<IN> partitionAssigner) {
+            this.partitionAssigner = partitionAssigner;
+            return this;
+        }
+
+        public OdpsSink<IN> build() {
+            checkNotNull(projectName, "projectName should not be null");
+            checkNotNull(tableName, "tableName should not be null");
+            return new OdpsSink<>(
+                    odpsConf,
+                    projectName,
+                    tableName,
+                    partition,
+                    isDynamicPartition,
+                    writeOptions,
+                    partitionAssigner);
+        }
+    }
+}
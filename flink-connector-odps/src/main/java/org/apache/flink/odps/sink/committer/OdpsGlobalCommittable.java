@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.sink.committer;
+
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+
+import java.util.List;
+
+/**
+ * The write sessions of all subtasks for one checkpoint.
+ */
+public class OdpsGlobalCommittable {
+
+    private final List<OdpsTransaction> transactions;
+
+    /** Set for committables restored from a checkpoint, which may have been committed before. */
+    private final boolean recovered;
+
+    public OdpsGlobalCommittable(List<OdpsTransaction> transactions, boolean recovered) {
+        this.transactions = transactions;
+        this.recovered = recovered;
+    }
+
+    public List<OdpsTransaction> getTransactions() {
+        return transactions;
+    }
+
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    @Override
+    public String toString() {
+        return "OdpsGlobalCommittable{" +
+                "transactions=" + transactions.size() +
+                ", recovered=" + recovered +
+                '}';
+    }
+}
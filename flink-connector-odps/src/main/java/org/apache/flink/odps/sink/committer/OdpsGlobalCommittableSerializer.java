@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.sink.committer;
+
+import org.apache.flink.core.io.SimpleVersionedSerialization;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializer for {@link OdpsGlobalCommittable}. Version 1 writes the recovered flag and the
+ * transactions, each in the versioned format of {@link OdpsTransactionSerializer}.
+ */
+public class OdpsGlobalCommittableSerializer implements SimpleVersionedSerializer<OdpsGlobalCommittable> {
+
+    public static final OdpsGlobalCommittableSerializer INSTANCE = new OdpsGlobalCommittableSerializer();
+
+    private static final int VERSION = 1;
+
+    private static final ThreadLocal<DataOutputSerializer> SERIALIZER_CACHE =
+            ThreadLocal.withInitial(() -> new DataOutputSerializer(256));
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] serialize(OdpsGlobalCommittable committable) throws IOException {
+        final DataOutputSerializer out = SERIALIZER_CACHE.get();
+        out.writeBoolean(committable.isRecovered());
+        out.writeInt(committable.getTransactions().size());
+        for (OdpsTransaction transaction : committable.getTransactions()) {
+            SimpleVersionedSerialization.writeVersionAndSerialize(OdpsTransactionSerializer.INSTANCE, transaction, out);
+        }
+        final byte[] result = out.getCopyOfBuffer();
+        out.clear();
+        return result;
+    }
+
+    @Override
+    public OdpsGlobalCommittable deserialize(int version, byte[] serialized) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unknown version: " + version);
+        }
+        DataInputDeserializer in = new DataInputDeserializer(serialized);
+        boolean recovered = in.readBoolean();
+        int numTransactions = in.readInt();
+        List<OdpsTransaction> transactions = new ArrayList<>(numTransactions);
+        for (int i = 0; i < numTransactions; i++) {
+            transactions.add(SimpleVersionedSerialization.readVersionAndDeSerialize(
+                    OdpsTransactionSerializer.INSTANCE, in));
+        }
+        return new OdpsGlobalCommittable(transactions, recovered);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.sink.committer;
+
+import org.apache.flink.api.connector.sink.GlobalCommitter;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionCommitter;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Commits the write sessions of all subtasks once a checkpoint completes. The sessions are
+ * committed in parallel by {@code sink.commit-threads} threads instead of one after another by every subtask.
+ *
+ * <p>A failed commit fails the job and the committables restored afterwards are committed
+ * again. Restored sessions whose upload status is already {@code CLOSED} were committed before
+ * the failure and are skipped, any other failure of a restored committable fails the commit
+ * again.
+ */
+public class OdpsGlobalCommitter implements GlobalCommitter<OdpsTransaction, OdpsGlobalCommittable> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsGlobalCommitter.class);
+
+    private final OdpsTransactionCommitter transactionCommitter;
+    private final int commitThreads;
+
+    private ExecutorService commitExecutor;
+
+    public OdpsGlobalCommitter(OdpsTransactionCommitter transactionCommitter, int commitThreads) {
+        this.transactionCommitter = transactionCommitter;
+        this.commitThreads = commitThreads;
+    }
+
+    @Override
+    public List<OdpsGlobalCommittable> filterRecoveredCommittables(List<OdpsGlobalCommittable> committables) {
+        return committables.stream()
+                .map(committable -> new OdpsGlobalCommittable(committable.getTransactions(), true))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public OdpsGlobalCommittable combine(List<OdpsTransaction> committables) {
+        return new OdpsGlobalCommittable(new ArrayList<>(committables), false);
+    }
+
+    @Override
+    public List<OdpsGlobalCommittable> commit(List<OdpsGlobalCommittable> committables)
+            throws IOException, InterruptedException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (OdpsGlobalCommittable committable : committables) {
+            for (OdpsTransaction transaction : committable.getTransactions()) {
+                futures.add(getCommitExecutor().submit(() -> {
+                    transactionCommitter.commit(transaction, committable.isRecovered());
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw new IOException("Failed to commit odps write sessions.", e.getCause());
+        }
+        LOG.info("Committed {}", committables);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void endOfInput() {
+    }
+
+    private ExecutorService getCommitExecutor() {
+        if (commitExecutor == null) {
+            commitExecutor = Executors.newFixedThreadPool(commitThreads,
+                    new ExecutorThreadFactory("odps-sink-committer"));
+        }
+        return commitExecutor;
+    }
+
+    @Override
+    public void close() {
+        if (commitExecutor != null) {
+            commitExecutor.shutdownNow();
+            commitExecutor = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.sink.writer;
+
+import org.apache.flink.api.connector.sink.Sink;
+import org.apache.flink.api.connector.sink.SinkWriter;
+import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionWriter;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.WriterContext;
+import org.apache.flink.odps.util.OdpsConf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the rows of one subtask into an {@link OdpsTransaction}. All methods, the flush timer
+ * included, run in the task thread, so no locking is needed.
+ *
+ * <p>Open blocks are closed every {@code sink.buffer-flush.interval} to bound the rows kept in
+ * memory, the sessions are handed over to the committer in {@link #prepareCommit}.
+ */
+public class OdpsSinkWriter<IN> implements SinkWriter<IN, OdpsTransaction, Void> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsSinkWriter.class);
+
+    private final String partition;
+    private final boolean isDynamicPartition;
+    private final PartitionAssigner<IN> partitionAssigner;
+    private final OdpsTransactionWriter<IN> transactionWriter;
+    private final Sink.ProcessingTimeService processingTimeService;
+    private final long flushIntervalMillis;
+    private final WriterContext writerContext;
+
+    private OdpsTransaction transaction;
+
+    public OdpsSinkWriter(
+            OdpsConf odpsConf,
+            String projectName,
+            String tableName,
+            String partition,
+            boolean isDynamicPartition,
+            OdpsWriteOptions writeOptions,
+            PartitionAssigner<IN> partitionAssigner,
+            Sink.ProcessingTimeService processingTimeService) {
+        this(partition, isDynamicPartition, partitionAssigner,
+                new OdpsTransactionWriter<>(odpsConf, projectName, tableName, writeOptions),
+                writeOptions, processingTimeService);
+    }
+
+    public OdpsSinkWriter(
+            String partition,
+            boolean isDynamicPartition,
+            PartitionAssigner<IN> partitionAssigner,
+            OdpsTransactionWriter<IN> transactionWriter,
+            OdpsWriteOptions writeOptions,
+            Sink.ProcessingTimeService processingTimeService) {
+        this.partition = partition;
+        this.isDynamicPartition = isDynamicPartition;
+        this.partitionAssigner = partitionAssigner;
+        this.transactionWriter = transactionWriter;
+        this.processingTimeService = processingTimeService;
+        this.flushIntervalMillis = writeOptions.getBufferFlushIntervalMillis();
+        this.writerContext = new WriterContext(partition);
+        this.transaction = new OdpsTransaction();
+        if (flushIntervalMillis > 0) {
+            registerFlushTimer();
+        }
+    }
+
+    @Override
+    public void write(IN element, Context context) throws IOException {
+        writerContext.update(context.timestamp(), context.currentWatermark(),
+                processingTimeService.getCurrentProcessingTime());
+        String partitionSpec = isDynamicPartition ?
+                partitionAssigner.getPartitionSpec(element, writerContext) : partition;
+        transactionWriter.write(transaction, partitionSpec, element);
+    }
+
+    @Override
+    public List<OdpsTransaction> prepareCommit(boolean flush) throws IOException {
+        transaction.closeBlocks();
+        if (transaction.isEmpty()) {
+            return Collections.emptyList();
+        }
+        OdpsTransaction committable = transaction;
+        transaction = new OdpsTransaction();
+        LOG.info("Prepare commit {}", committable);
+        return Collections.singletonList(committable);
+    }
+
+    @Override
+    public List<Void> snapshotState() {
+        return Collections.emptyList();
+    }
+
+    private void registerFlushTimer() {
+        processingTimeService.registerProcessingTimer(
+                processingTimeService.getCurrentProcessingTime() + flushIntervalMillis,
+                time -> {
+                    transaction.closeBlocks();
+                    registerFlushTimer();
+                });
+    }
+
+    @Override
+    public void close() {
+        // the sessions of an unfinished checkpoint expire on the server
+        transaction.abort();
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source;
+
+import com.aliyun.odps.Table;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.TableReadSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.connector.source.*;
+import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.connector.base.source.reader.synchronization.FutureCompletingBlockingQueue;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.odps.schema.OdpsColumn;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumState;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumStateSerializer;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumerator;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
+import org.apache.flink.odps.source.reader.OdpsSourceReader;
+import org.apache.flink.odps.source.reader.OdpsSourceSplitReader;
+import org.apache.flink.odps.source.reader.OdpsSplitFetcherManager;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.source.split.OdpsSourceSplitSerializer;
+import org.apache.flink.odps.util.*;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.apache.flink.odps.util.Constants.*;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A bounded {@link Source} reading an odps table as {@link RowData}.
+ *
+ * <p>Splits are planned lazily by the {@link OdpsSourceEnumerator}, a batch of partitions at a
+ * time, instead of being created all at once on the JobManager.
+ */
+@PublicEvolving
+public class OdpsSource implements Source<RowData, OdpsSourceSplit, OdpsSourceEnumState>,
+        ResultTypeQueryable<RowData> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsSource.class);
+
+    private final OdpsConf odpsConf;
+    private final String tableApiProvider;
+    private final String projectName;
+    private final String tableName;
+    private final OdpsTableSchema odpsTableSchema;
+    private final String[] selectedColumns;
+    private final List<String> partitions;
+    private final int splitSize;
+    private final boolean useBatch;
+    private final int batchSize;
+    private final int numFetchers;
+    private final int partitionBatchSize;
+    private final List<FilterExpression> filters;
+    private final boolean pushDownFilters;
+    @Nullable
+    private final Long limit;
+
+    private OdpsSource(OdpsConf odpsConf,
+                       String tableApiProvider,
+                       String projectName,
+                       String tableName,
+                       OdpsTableSchema odpsTableSchema,
+                       String[] selectedColumns,
+                       List<String> partitions,
+                       int splitSize,
+                       boolean useBatch,
+                       int batchSize,
+                       int numFetchers,
+                       int partitionBatchSize,
+                       List<FilterExpression> filters,
+                       boolean pushDownFilters,
+                       @Nullable Long limit) {
+        this.odpsConf = odpsConf;
+        this.tableApiProvider = tableApiProvider;
+        this.projectName = projectName;
+        this.tableName = tableName;
+        this.odpsTableSchema = odpsTableSchema;
+        this.selectedColumns = selectedColumns;
+        this.partitions = partitions;
+        this.splitSize = splitSize;
+        this.useBatch = useBatch;
+        this.batchSize = batchSize;
+        this.numFetchers = numFetchers;
+        this.partitionBatchSize = partitionBatchSize;
+        this.filters = filters;
+        this.pushDownFilters = pushDownFilters;
+        this.limit = limit;
+        LOG.info("Create odps source, table:{}.{},partitions:{},columns:{},splitSize:{},filters:{},pushDown:{},limit:{}",
+                projectName, tableName, partitions.size(), Arrays.toString(selectedColumns), splitSize,
+                filters, pushDownFilters, limit);
+    }
+
+    @Override
+    public Boundedness getBoundedness() {
+        return Boundedness.BOUNDED;
+    }
+
+    @Override
+    public SourceReader<RowData, OdpsSourceSplit> createReader(SourceReaderContext readerContext) {
+        FutureCompletingBlockingQueue<RecordsWithSplitIds<RowData>> elementsQueue =
+                new FutureCompletingBlockingQueue<>();
+        AtomicLong numRecordsFetched = new AtomicLong();
+        RecordFilter recordFilter = pushDownFilters ? null : RecordFilter.create(filters, selectedColumns);
+        Supplier<SplitReader<RowData, OdpsSourceSplit>> splitReaderSupplier =
+                () -> new OdpsSourceSplitReader(
+                        odpsTableSchema,
+                        selectedColumns,
+                        useBatch,
+                        batchSize,
+                        recordFilter,
+                        limit,
+                        numRecordsFetched);
+        return new OdpsSourceReader(
+                elementsQueue,
+                new OdpsSplitFetcherManager(elementsQueue, splitReaderSupplier, numFetchers),
+                readerContext.getConfiguration(),
+                readerContext,
+                numFetchers);
+    }
+
+    @Override
+    public SplitEnumerator<OdpsSourceSplit, OdpsSourceEnumState> createEnumerator(
+            SplitEnumeratorContext<OdpsSourceSplit> enumContext) {
+        return restoreEnumerator(enumContext, OdpsSourceEnumState.initialState(partitions));
+    }
+
+    @Override
+    public SplitEnumerator<OdpsSourceSplit, OdpsSourceEnumState> restoreEnumerator(
+            SplitEnumeratorContext<OdpsSourceSplit> enumContext,
+            OdpsSourceEnumState checkpoint) {
+        return new OdpsSourceEnumerator(enumContext, createSplitPlanner(), partitionBatchSize, checkpoint);
+    }
+
+    @Override
+    public SimpleVersionedSerializer<OdpsSourceSplit> getSplitSerializer() {
+        return OdpsSourceSplitSerializer.INSTANCE;
+    }
+
+    @Override
+    public SimpleVersionedSerializer<OdpsSourceEnumState> getEnumeratorCheckpointSerializer() {
+        return OdpsSourceEnumStateSerializer.INSTANCE;
+    }
+
+    @Override
+    public TypeInformation<RowData> getProducedType() {
+        DataType[] dataTypes = Arrays.stream(selectedColumns)
+                .map(columnName -> OdpsTypeUtil.toFlinkType(odpsTableSchema.getColumn(columnName).getTypeInfo()))
+                .toArray(DataType[]::new);
+        return InternalTypeInfo.of(org.apache.flink.table.api.TableSchema.builder()
+                .fields(selectedColumns, dataTypes)
+                .build()
+                .toRowDataType()
+                .getLogicalType());
+    }
+
+    private OdpsSplitPlanner createSplitPlanner() {
+        List<Attribute> requiredColumns = Arrays.stream(selectedColumns)
+                .filter(columnName -> !odpsTableSchema.isPartitionColumn(columnName))
+                .map(odpsTableSchema::getColumn)
+                .map(col -> new Attribute(col.getName(), col.getTypeName()))
+                .collect(Collectors.toList());
+        // tunnel request 0 column default
+        if (requiredColumns.isEmpty()) {
+            OdpsColumn odpsColumn = odpsTableSchema.getColumns().get(0);
+            requiredColumns.add(new Attribute(odpsColumn.getName(), odpsColumn.getTypeName()));
+        }
+        return new OdpsSplitPlanner(odpsConf, tableApiProvider, projectName, tableName, requiredColumns,
+                pushDownFilters ? filters : Collections.emptyList(), splitSize);
+    }
+
+    public static OdpsSourceBuilder builder(OdpsConf odpsConf, String projectName, String tableName) {
+        return new OdpsSourceBuilder(odpsConf, projectName, tableName);
+    }
+
+    /**
+     * Builder to build {@link OdpsSource}.
+     */
+    public static class OdpsSourceBuilder {
+
+        private final OdpsConf odpsConf;
+        private final String projectName;
+        private final String tableName;
+        private String tableApiProvider;
+        private OdpsTableSchema odpsTableSchema;
+        private String[] columns;
+        private String[] partitions;
+        private int splitSize = 0;
+        private int batchSize = 0;
+        private List<FilterExpression> filters = Collections.emptyList();
+        private Long limit;
+
+        public OdpsSourceBuilder(String projectName, String tableName) {
+            this(null, projectName, tableName);
+        }
+
+        public OdpsSourceBuilder(OdpsConf odpsConf, String projectName, String tableName) {
+            this.odpsConf = odpsConf == null ? OdpsUtils.getOdpsConf() : odpsConf;
+            this.projectName = projectName;
+            this.tableName = tableName;
+        }
+
+        public OdpsSourceBuilder setColumns(String[] columns) {
+            this.columns = columns;
+            return this;
+        }
+
+        /**
+         * Partitions to read, null for all partitions of a partitioned table.
+         */
+        public OdpsSourceBuilder setPartitions(String[] partitions) {
+            this.partitions = partitions;
+            return this;
+        }
+
+        public OdpsSourceBuilder setSplitSize(int splitSize) {
+            this.splitSize = splitSize;
+            return this;
+        }
+
+        /**
+         * Rows per batch of vectorized reads, defaults to {@code odps.vectorized.batch.size}.
+         */
+        public OdpsSourceBuilder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Filters are pushed into the read session if the table api provider supports it,
+         * otherwise they are evaluated by the readers before records are converted.
+         */
+        public OdpsSourceBuilder setFilters(List<FilterExpression> filters) {
+            this.filters = checkNotNull(filters);
+            return this;
+        }
+
+        public OdpsSourceBuilder setLimit(Long limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Use the given schema instead of loading it from odps meta.
+         */
+        public OdpsSourceBuilder setTableSchema(OdpsTableSchema odpsTableSchema) {
+            this.odpsTableSchema = odpsTableSchema;
+            return this;
+        }
+
+        public OdpsSourceBuilder setTableApiProvider(String tableApiProvider) {
+            this.tableApiProvider = tableApiProvider;
+            return this;
+        }
+
+        public OdpsSource build() {
+            checkNotNull(odpsConf, "odps conf cannot be null");
+            checkNotNull(projectName, "projectName should not be null");
+            checkNotNull(tableName, "tableName should not be null");
+            String provider = tableApiProvider;
+            if (provider == null) {
+                provider = odpsConf.isClusterMode() ? DEFAULT_TABLE_API_PROVIDER : TUNNEL_TABLE_API_PROVIDER;
+            }
+            OdpsMetaDataProvider metaDataProvider = null;
+            OdpsTableSchema tableSchema = odpsTableSchema;
+            if (tableSchema == null) {
+                metaDataProvider = new OdpsMetaDataProvider(OdpsUtils.getOdps(odpsConf));
+                Table table = metaDataProvider.getTable(projectName, tableName);
+                TableSchema schema = table.getSchema();
+                tableSchema = new OdpsTableSchema(schema.getColumns(), schema.getPartitionColumns(), table.isVirtualView());
+            }
+            String[] selectedColumns = getSelectedColumns(tableSchema);
+            List<String> partitionSpecs;
+            if (!tableSchema.isPartition()) {
+                // an empty spec stands for the whole table
+                partitionSpecs = Collections.singletonList("");
+            } else if (partitions != null) {
+                partitionSpecs = Arrays.asList(partitions);
+            } else {
+                if (metaDataProvider == null) {
+                    metaDataProvider = new OdpsMetaDataProvider(OdpsUtils.getOdps(odpsConf));
+                }
+                partitionSpecs = Arrays.asList(OdpsUtils.createPartitionSpec(
+                        metaDataProvider.getPartitions(projectName, tableName, true)));
+            }
+            boolean useBatch = odpsConf.isClusterMode()
+                    && odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_READ_ENABLE, false)
+                    && OdpsTableUtil.supportColumnarRead(tableSchema, selectedColumns);
+            boolean pushDownFilters = false;
+            if (!filters.isEmpty()) {
+                try {
+                    pushDownFilters = TableReadSessionBuilder.getProviderCapabilities(provider)
+                            .supportPushDownFilters();
+                } catch (ClassNotFoundException e) {
+                    throw new FlinkOdpsException("Cannot find table api provider: " + provider, e);
+                }
+            }
+            if (limit != null) {
+                Preconditions.checkArgument(limit >= 0, "limit cannot be negative");
+            }
+            return new OdpsSource(
+                    odpsConf,
+                    provider,
+                    projectName,
+                    tableName,
+                    tableSchema,
+                    selectedColumns,
+                    new ArrayList<>(partitionSpecs),
+                    splitSize > 0 ? splitSize : odpsConf.getPropertyOrDefault(ODPS_INPUT_SPLIT_SIZE, DEFAULT_SPLIT_SIZE),
+                    useBatch,
+                    batchSize > 0 ? batchSize
+                            : odpsConf.getPropertyOrDefault(ODPS_VECTORIZED_BATCH_SIZE, DEFAULT_ODPS_VECTORIZED_BATCH_SIZE),
+                    odpsConf.getPropertyOrDefault(ODPS_SOURCE_FETCHER_NUM, DEFAULT_ODPS_SOURCE_FETCHER_NUM),
+                    odpsConf.getPropertyOrDefault(ODPS_SOURCE_PARTITION_BATCH_SIZE, DEFAULT_ODPS_SOURCE_PARTITION_BATCH_SIZE),
+                    new ArrayList<>(filters),
+                    pushDownFilters,
+                    limit);
+        }
+
+        private String[] getSelectedColumns(OdpsTableSchema tableSchema) {
+            if (columns == null) {
+                // when not specific column, get all (contains partition columns)
+                return tableSchema.getColumns()
+                        .stream()
+                        .map(OdpsColumn::getName)
+                        .toArray(String[]::new);
+            }
+            for (String column : columns) {
+                if (tableSchema.getColumn(column.toLowerCase()) == null) {
+                    throw new FlinkOdpsException("column " + column + " not exist in table: " + tableName);
+                }
+            }
+            return Arrays.stream(columns)
+                    .map(String::toLowerCase)
+                    .distinct()
+                    .toArray(String[]::new);
+        }
+    }
+}
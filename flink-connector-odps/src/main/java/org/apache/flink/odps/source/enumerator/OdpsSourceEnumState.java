@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.enumerator;
+
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Checkpointed state of {@link OdpsSourceEnumerator}.
+ *
+ * <p>Partitions in {@code remainingPartitions} have not been planned yet, {@code pendingSplits}
+ * are planned but not assigned, and {@code assignedSplitIds} have been handed to readers.
+ */
+public class OdpsSourceEnumState {
+
+    private final Collection<String> remainingPartitions;
+    private final Collection<OdpsSourceSplit> pendingSplits;
+    private final Set<String> assignedSplitIds;
+    private final long nextSplitId;
+
+    public OdpsSourceEnumState(Collection<String> remainingPartitions,
+                               Collection<OdpsSourceSplit> pendingSplits,
+                               Set<String> assignedSplitIds,
+                               long nextSplitId) {
+        this.remainingPartitions = remainingPartitions;
+        this.pendingSplits = pendingSplits;
+        this.assignedSplitIds = assignedSplitIds;
+        this.nextSplitId = nextSplitId;
+    }
+
+    public static OdpsSourceEnumState initialState(Collection<String> partitions) {
+        return new OdpsSourceEnumState(partitions,
+                Collections.emptyList(),
+                Collections.emptySet(),
+                0L);
+    }
+
+    public Collection<String> getRemainingPartitions() {
+        return remainingPartitions;
+    }
+
+    public Collection<OdpsSourceSplit> getPendingSplits() {
+        return pendingSplits;
+    }
+
+    public Set<String> getAssignedSplitIds() {
+        return assignedSplitIds;
+    }
+
+    public long getNextSplitId() {
+        return nextSplitId;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.enumerator;
+
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.source.split.OdpsSourceSplitSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Serializer for {@link OdpsSourceEnumState}.
+ */
+public class OdpsSourceEnumStateSerializer implements SimpleVersionedSerializer<OdpsSourceEnumState> {
+
+    public static final OdpsSourceEnumStateSerializer INSTANCE = new OdpsSourceEnumStateSerializer();
+
+    private static final int VERSION = 1;
+
+    private final OdpsSourceSplitSerializer splitSerializer = OdpsSourceSplitSerializer.INSTANCE;
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] serialize(OdpsSourceEnumState state) throws IOException {
+        final DataOutputSerializer out = new DataOutputSerializer(1024);
+        out.writeLong(state.getNextSplitId());
+
+        out.writeInt(state.getRemainingPartitions().size());
+        for (String partition : state.getRemainingPartitions()) {
+            out.writeUTF(partition);
+        }
+
+        out.writeInt(splitSerializer.getVersion());
+        out.writeInt(state.getPendingSplits().size());
+        for (OdpsSourceSplit split : state.getPendingSplits()) {
+            byte[] serializedSplit = splitSerializer.serialize(split);
+            out.writeInt(serializedSplit.length);
+            out.write(serializedSplit);
+        }
+
+        out.writeInt(state.getAssignedSplitIds().size());
+        for (String splitId : state.getAssignedSplitIds()) {
+            out.writeUTF(splitId);
+        }
+        return out.getCopyOfBuffer();
+    }
+
+    @Override
+    public OdpsSourceEnumState deserialize(int version, byte[] serialized) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unknown version: " + version);
+        }
+        final DataInputDeserializer in = new DataInputDeserializer(serialized);
+        long nextSplitId = in.readLong();
+
+        int numPartitions = in.readInt();
+        List<String> remainingPartitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            remainingPartitions.add(in.readUTF());
+        }
+
+        int splitSerializerVersion = in.readInt();
+        int numSplits = in.readInt();
+        List<OdpsSourceSplit> pendingSplits = new ArrayList<>(numSplits);
+        for (int i = 0; i < numSplits; i++) {
+            byte[] serializedSplit = new byte[in.readInt()];
+            in.readFully(serializedSplit);
+            pendingSplits.add(splitSerializer.deserialize(splitSerializerVersion, serializedSplit));
+        }
+
+        int numAssigned = in.readInt();
+        Set<String> assignedSplitIds = new HashSet<>(numAssigned);
+        for (int i = 0; i < numAssigned; i++) {
+            assignedSplitIds.add(in.readUTF());
+        }
+        return new OdpsSourceEnumState(remainingPartitions, pendingSplits, assignedSplitIds, nextSplitId);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.enumerator;
+
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import org.apache.flink.api.connector.source.SplitEnumerator;
+import org.apache.flink.api.connector.source.SplitEnumeratorContext;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A {@link SplitEnumerator} which plans odps splits lazily, a batch of partitions at a time,
+ * and hands them out only when a reader asks for more work. Readers request a new split every
+ * time one of theirs is finished, so fast subtasks simply pull more splits than slow ones.
+ *
+ * <p>A failed planning of a batch is retried a few times, waiting a little longer before each
+ * attempt, before the failure is thrown.
+ */
+public class OdpsSourceEnumerator implements SplitEnumerator<OdpsSourceSplit, OdpsSourceEnumState> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsSourceEnumerator.class);
+
+    private static final int DEFAULT_MAX_PLANNING_RETRIES = 3;
+    private static final Duration DEFAULT_PLANNING_RETRY_INTERVAL = Duration.ofSeconds(10);
+
+    private final SplitEnumeratorContext<OdpsSourceSplit> context;
+    private final OdpsSplitPlanner splitPlanner;
+    private final int partitionBatchSize;
+    private final int maxPlanningRetries;
+    private final Duration planningRetryInterval;
+
+    private final Deque<String> remainingPartitions;
+    private final List<String> inProgressPartitions;
+    private final Deque<OdpsSourceSplit> pendingSplits;
+    private final Set<String> assignedSplitIds;
+    private final Deque<Integer> splitRequests;
+    private long nextSplitId;
+    private int numPlanningRetries;
+
+    public OdpsSourceEnumerator(SplitEnumeratorContext<OdpsSourceSplit> context,
+                                OdpsSplitPlanner splitPlanner,
+                                int partitionBatchSize,
+                                OdpsSourceEnumState state) {
+        this(context, splitPlanner, partitionBatchSize, state,
+                DEFAULT_MAX_PLANNING_RETRIES, DEFAULT_PLANNING_RETRY_INTERVAL);
+    }
+
+    public OdpsSourceEnumerator(SplitEnumeratorContext<OdpsSourceSplit> context,
+                                OdpsSplitPlanner splitPlanner,
+                                int partitionBatchSize,
+                                OdpsSourceEnumState state,
+                                int maxPlanningRetries,
+                                Duration planningRetryInterval) {
+        Preconditions.checkArgument(partitionBatchSize > 0, "partitionBatchSize must be positive");
+        Preconditions.checkArgument(maxPlanningRetries >= 0, "maxPlanningRetries cannot be negative");
+        this.context = Preconditions.checkNotNull(context);
+        this.splitPlanner = Preconditions.checkNotNull(splitPlanner);
+        this.partitionBatchSize = partitionBatchSize;
+        this.maxPlanningRetries = maxPlanningRetries;
+        this.planningRetryInterval = Preconditions.checkNotNull(planningRetryInterval);
+        this.remainingPartitions = new ArrayDeque<>(state.getRemainingPartitions());
+        this.inProgressPartitions = new ArrayList<>();
+        this.pendingSplits = new ArrayDeque<>(state.getPendingSplits());
+        this.assignedSplitIds = new HashSet<>(state.getAssignedSplitIds());
+        this.splitRequests = new ArrayDeque<>();
+        this.nextSplitId = state.getNextSplitId();
+    }
+
+    @Override
+    public void start() {
+        LOG.info("Start odps source enumerator for {}.{}, remaining partitions: {}, pending splits: {}",
+                splitPlanner.getProjectName(), splitPlanner.getTableName(),
+                remainingPartitions.size(), pendingSplits.size());
+        if (pendingSplits.isEmpty()) {
+            discoverSplits();
+        }
+    }
+
+    @Override
+    public void handleSplitRequest(int subtaskId, @Nullable String requesterHostname) {
+        splitRequests.add(subtaskId);
+        assignSplits();
+    }
+
+    @Override
+    public void addSplitsBack(List<OdpsSourceSplit> splits, int subtaskId) {
+        LOG.info("Add {} splits back from subtask {}", splits.size(), subtaskId);
+        for (OdpsSourceSplit split : splits) {
+            assignedSplitIds.remove(split.splitId());
+            pendingSplits.addFirst(split);
+        }
+        assignSplits();
+    }
+
+    @Override
+    public void addReader(int subtaskId) {
+        // readers pull splits through split requests
+    }
+
+    @Override
+    public OdpsSourceEnumState snapshotState(long checkpointId) {
+        List<String> partitions = new ArrayList<>(inProgressPartitions);
+        partitions.addAll(remainingPartitions);
+        return new OdpsSourceEnumState(partitions,
+                new ArrayList<>(pendingSplits),
+                new HashSet<>(assignedSplitIds),
+                nextSplitId);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void assignSplits() {
+        Iterator<Integer> requests = splitRequests.iterator();
+        while (requests.hasNext() && !pendingSplits.isEmpty()) {
+            int subtaskId = requests.next();
+            requests.remove();
+            if (!context.registeredReaders().containsKey(subtaskId)) {
+                // the reader failed after sending the request
+                continue;
+            }
+            OdpsSourceSplit split = pendingSplits.poll();
+            context.assignSplit(split, subtaskId);
+            assignedSplitIds.add(split.splitId());
+            LOG.debug("Assign split {} to subtask {}", split, subtaskId);
+        }
+        if (splitRequests.isEmpty()) {
+            return;
+        }
+        if (!remainingPartitions.isEmpty() || !inProgressPartitions.isEmpty()) {
+            discoverSplits();
+        } else {
+            for (int subtaskId : new LinkedHashSet<>(splitRequests)) {
+                if (context.registeredReaders().containsKey(subtaskId)) {
+                    context.signalNoMoreSplits(subtaskId);
+                }
+            }
+            splitRequests.clear();
+        }
+    }
+
+    private void discoverSplits() {
+        if (!inProgressPartitions.isEmpty() || remainingPartitions.isEmpty()) {
+            return;
+        }
+        while (inProgressPartitions.size() < partitionBatchSize && !remainingPartitions.isEmpty()) {
+            inProgressPartitions.add(remainingPartitions.poll());
+        }
+        planSplits(0L);
+    }
+
+    private void planSplits(long delayMillis) {
+        final List<String> partitions = new ArrayList<>(inProgressPartitions);
+        context.callAsync(
+                () -> {
+                    // runs in the worker thread of the enumerator, not in the coordinator thread
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                    return splitPlanner.planSplits(partitions);
+                },
+                this::handleDiscoveredSplits);
+    }
+
+    private void handleDiscoveredSplits(List<InputSplit> inputSplits, Throwable error) {
+        if (error != null) {
+            if (numPlanningRetries >= maxPlanningRetries || error instanceof InterruptedException) {
+                throw new FlinkOdpsException(String.format("Failed to plan splits for partitions: %s after %d retries",
+                        inProgressPartitions, numPlanningRetries), error);
+            }
+            numPlanningRetries++;
+            long delayMillis = numPlanningRetries * planningRetryInterval.toMillis();
+            LOG.warn(String.format("Failed to plan splits for partitions: %s, will retry in %d ms",
+                    inProgressPartitions, delayMillis), error);
+            planSplits(delayMillis);
+            return;
+        }
+        numPlanningRetries = 0;
+        for (InputSplit inputSplit : inputSplits) {
+            pendingSplits.add(new OdpsSourceSplit(String.valueOf(nextSplitId++), inputSplit));
+        }
+        LOG.info("Discovered {} splits from {} partitions, {} partitions remaining",
+                inputSplits.size(), inProgressPartitions.size(), remainingPartitions.size());
+        inProgressPartitions.clear();
+        if (pendingSplits.isEmpty()) {
+            discoverSplits();
+        }
+        assignSplits();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.enumerator;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.*;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.StringUtils;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.flink.odps.util.OdpsUtils.getPartitionSpecKVMap;
+
+/**
+ * Creates cupid {@link InputSplit}s for a batch of partitions. An empty partition spec
+ * stands for the whole non-partitioned table.
+ */
+public class OdpsSplitPlanner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OdpsConf odpsConf;
+    private final String tableApiProvider;
+    private final String projectName;
+    private final String tableName;
+    private final List<Attribute> requiredColumns;
+    private final List<FilterExpression> filters;
+    private final int splitSize;
+
+    public OdpsSplitPlanner(OdpsConf odpsConf,
+                            String tableApiProvider,
+                            String projectName,
+                            String tableName,
+                            List<Attribute> requiredColumns,
+                            int splitSize) {
+        this(odpsConf, tableApiProvider, projectName, tableName, requiredColumns, Collections.emptyList(), splitSize);
+    }
+
+    /**
+     * Creates a planner which pushes the given filters into the read session, the provider must
+     * support filter push down if any filter is given.
+     */
+    public OdpsSplitPlanner(OdpsConf odpsConf,
+                            String tableApiProvider,
+                            String projectName,
+                            String tableName,
+                            List<Attribute> requiredColumns,
+                            List<FilterExpression> filters,
+                            int splitSize) {
+        this.odpsConf = Preconditions.checkNotNull(odpsConf, "odps conf cannot be null");
+        this.tableApiProvider = Preconditions.checkNotNull(tableApiProvider, "provider cannot be null");
+        this.projectName = Preconditions.checkNotNull(projectName, "project cannot be null");
+        this.tableName = Preconditions.checkNotNull(tableName, "table cannot be null");
+        this.requiredColumns = new ArrayList<>(requiredColumns);
+        this.filters = new ArrayList<>(filters);
+        this.splitSize = splitSize;
+    }
+
+    public List<InputSplit> planSplits(List<String> partitions) throws IOException {
+        List<String> partitionSpecs = partitions.stream()
+                .filter(p -> !StringUtils.isNullOrWhitespaceOnly(p))
+                .collect(Collectors.toList());
+        try {
+            TableReadSessionBuilder builder = new TableReadSessionBuilder(tableApiProvider, projectName, tableName)
+                    .readDataColumns(RequiredSchema.columns(requiredColumns))
+                    .splitBySize(splitSize)
+                    .options(OdpsUtils.getOdpsOptions(odpsConf));
+            if (!partitionSpecs.isEmpty()) {
+                builder.readPartitions(partitionSpecs.stream()
+                        .map(e -> new PartitionSpecWithBucketFilter(getPartitionSpecKVMap(new PartitionSpec(e))))
+                        .collect(Collectors.toList()));
+            }
+            if (!filters.isEmpty()) {
+                builder.filterExpressions(filters);
+            }
+            TableReadSession tableReadSession = builder.build();
+            return Arrays.asList(tableReadSession.getOrCreateInputSplits());
+        } catch (Exception e) {
+            throw new IOException("create table read session failed, partitions: " + partitionSpecs, e);
+        }
+    }
+
+    public List<Attribute> getRequiredColumns() {
+        return requiredColumns;
+    }
+
+    public List<FilterExpression> getFilters() {
+        return filters;
+    }
+
+    public int getSplitSize() {
+        return splitSize;
+    }
+
+    public String getTableApiProvider() {
+        return tableApiProvider;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.reader;
+
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.odps.vectorized.ColumnarRowDataBatch;
+import org.apache.flink.table.data.RowData;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The rows of one {@link ColumnarRowDataBatch} of a split. The rows are views over the batch,
+ * the recycler is called once all of them are emitted and lets the split reader move on to the
+ * next batch.
+ */
+class OdpsColumnarRecords implements RecordsWithSplitIds<RowData> {
+
+    private final ColumnarRowDataBatch batch;
+    private final int endRowId;
+    private final Runnable recycler;
+
+    @Nullable
+    private String splitId;
+    private int nextRowId;
+
+    OdpsColumnarRecords(String splitId,
+                        ColumnarRowDataBatch batch,
+                        int startRowId,
+                        int endRowId,
+                        Runnable recycler) {
+        this.splitId = splitId;
+        this.batch = batch;
+        this.nextRowId = startRowId;
+        this.endRowId = endRowId;
+        this.recycler = recycler;
+    }
+
+    @Nullable
+    @Override
+    public String nextSplit() {
+        String nextSplit = splitId;
+        splitId = null;
+        return nextSplit;
+    }
+
+    @Nullable
+    @Override
+    public RowData nextRecordFromSplit() {
+        if (nextRowId >= endRowId) {
+            return null;
+        }
+        return batch.getRow(nextRowId++);
+    }
+
+    @Override
+    public Set<String> finishedSplits() {
+        // splits are finished by a later fetch, after their last batch is recycled
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void recycle() {
+        recycler.run();
+    }
+}
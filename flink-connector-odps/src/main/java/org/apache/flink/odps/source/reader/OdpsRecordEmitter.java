@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.reader;
+
+import org.apache.flink.api.connector.source.SourceOutput;
+import org.apache.flink.connector.base.source.reader.RecordEmitter;
+import org.apache.flink.odps.source.split.OdpsSourceSplitState;
+import org.apache.flink.table.data.RowData;
+
+/**
+ * Emits the records and advances the position of the split they belong to.
+ */
+public class OdpsRecordEmitter implements RecordEmitter<RowData, RowData, OdpsSourceSplitState> {
+
+    @Override
+    public void emitRecord(RowData element, SourceOutput<RowData> output, OdpsSourceSplitState splitState) {
+        output.collect(element);
+        splitState.incrementReaderPosition();
+    }
+}
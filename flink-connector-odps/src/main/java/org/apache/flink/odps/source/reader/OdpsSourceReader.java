@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.reader;
+
+import org.apache.flink.api.connector.source.SourceReaderContext;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.SourceReaderBase;
+import org.apache.flink.connector.base.source.reader.synchronization.FutureCompletingBlockingQueue;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.source.split.OdpsSourceSplitState;
+import org.apache.flink.table.data.RowData;
+
+import java.util.Map;
+
+/**
+ * A {@link SourceReaderBase} for odps splits. The reader keeps one split in flight per fetcher
+ * and asks the enumerator for another split whenever one is finished.
+ */
+public class OdpsSourceReader
+        extends SourceReaderBase<RowData, RowData, OdpsSourceSplit, OdpsSourceSplitState> {
+
+    private final int maxFetchers;
+
+    public OdpsSourceReader(FutureCompletingBlockingQueue<RecordsWithSplitIds<RowData>> elementsQueue,
+                            OdpsSplitFetcherManager splitFetcherManager,
+                            Configuration config,
+                            SourceReaderContext context,
+                            int maxFetchers) {
+        super(elementsQueue, splitFetcherManager, new OdpsRecordEmitter(), config, context);
+        this.maxFetchers = maxFetchers;
+    }
+
+    @Override
+    public void start() {
+        for (int i = getNumberOfCurrentlyAssignedSplits(); i < maxFetchers; i++) {
+            context.sendSplitRequest();
+        }
+    }
+
+    @Override
+    protected void onSplitFinished(Map<String, OdpsSourceSplitState> finishedSplitIds) {
+        for (int i = 0; i < finishedSplitIds.size(); i++) {
+            context.sendSplitRequest();
+        }
+    }
+
+    @Override
+    protected OdpsSourceSplitState initializedState(OdpsSourceSplit split) {
+        return new OdpsSourceSplitState(split);
+    }
+
+    @Override
+    protected OdpsSourceSplit toSplitType(String splitId, OdpsSourceSplitState splitState) {
+        return splitState.toOdpsSourceSplit();
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.reader;
+
+import org.apache.flink.connector.base.source.reader.RecordsBySplits;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsChange;
+import org.apache.flink.odps.input.reader.CupidBatchIterator;
+import org.apache.flink.odps.input.reader.CupidColumnarBatchReader;
+import org.apache.flink.odps.input.reader.NextIterator;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.odps.input.reader.RecordIterator;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.odps.vectorized.ColumnarRowDataBatch;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SplitReader} which reads the assigned {@link OdpsSourceSplit}s one after another
+ * and hands out at most {@code fetchSize} records per fetch. Records rejected by the
+ * {@link RecordFilter} are skipped before they are converted to {@link RowData}.
+ *
+ * <p>With vectorized reads and no record filter, every fetch hands out one batch of the split
+ * as {@link org.apache.flink.table.data.ColumnarRowData} views instead of converted records.
+ * As the batch buffers may be reused by the table api reader, the next batch is only read after
+ * the previous one has been recycled by the source reader.
+ *
+ * <p>While a split is read, the reader of the next queued split is opened in the background,
+ * so its first records are ready once the current split is drained.
+ */
+public class OdpsSourceSplitReader implements SplitReader<RowData, OdpsSourceSplit> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OdpsSourceSplitReader.class);
+
+    private static final long RECYCLE_WAIT_MS = 100;
+
+    private final OdpsTableSchema odpsTableSchema;
+    private final String[] selectedColumns;
+    private final boolean useBatch;
+    private final int fetchSize;
+    @Nullable
+    private final RecordFilter recordFilter;
+    @Nullable
+    private final Long limit;
+    private final AtomicLong numRecordsFetched;
+    private final Queue<OdpsSourceSplit> splits;
+    // held while the rows of a batch are in use
+    private final Semaphore batchPermit;
+
+    @Nullable
+    private OdpsSourceSplit currentSplit;
+    @Nullable
+    private NextIterator<RowData> currentIterator;
+    @Nullable
+    private CupidColumnarBatchReader currentBatchReader;
+    // rows of the current split to skip after a restore
+    private long rowsToSkip;
+    private volatile boolean wakeUp;
+
+    // the next split, taken from the queue once its reader is opened in the background
+    @Nullable
+    private OdpsSourceSplit nextSplit;
+    @Nullable
+    private Future<Closeable> nextReader;
+    @Nullable
+    private ExecutorService prefetchExecutor;
+
+    public OdpsSourceSplitReader(OdpsTableSchema odpsTableSchema,
+                                 String[] selectedColumns,
+                                 boolean useBatch,
+                                 int fetchSize,
+                                 @Nullable RecordFilter recordFilter,
+                                 @Nullable Long limit,
+                                 AtomicLong numRecordsFetched) {
+        Preconditions.checkArgument(fetchSize > 0, "fetchSize must be positive");
+        this.odpsTableSchema = Preconditions.checkNotNull(odpsTableSchema);
+        this.selectedColumns = Preconditions.checkNotNull(selectedColumns);
+        this.useBatch = useBatch;
+        this.fetchSize = fetchSize;
+        this.recordFilter = recordFilter;
+        this.limit = limit;
+        this.numRecordsFetched = Preconditions.checkNotNull(numRecordsFetched);
+        this.splits = new ArrayDeque<>();
+        this.batchPermit = new Semaphore(1);
+    }
+
+    @Override
+    public RecordsWithSplitIds<RowData> fetch() throws IOException {
+        RecordsBySplits.Builder<RowData> builder = new RecordsBySplits.Builder<>();
+        if (currentSplit == null) {
+            Future<Closeable> reader = nextReader;
+            currentSplit = nextSplit != null ? nextSplit : splits.poll();
+            nextSplit = null;
+            nextReader = null;
+            if (currentSplit == null) {
+                return builder.build();
+            }
+            if (reachedLimit()) {
+                builder.addFinishedSplit(currentSplit.splitId());
+                currentSplit = null;
+                closeReader(reader);
+                return builder.build();
+            }
+            openCurrentSplit(reader);
+        }
+        prefetchNextSplit();
+        if (currentBatchReader != null) {
+            return fetchBatch();
+        }
+        int numRecords = 0;
+        while (numRecords < fetchSize && currentIterator.hasNext() && reserveRows(1) > 0) {
+            builder.add(currentSplit, currentIterator.next());
+            numRecords++;
+        }
+        if (reachedLimit() || !currentIterator.hasNext()) {
+            builder.addFinishedSplit(currentSplit.splitId());
+            closeCurrentSplit();
+        }
+        return builder.build();
+    }
+
+    private RecordsWithSplitIds<RowData> fetchBatch() throws IOException {
+        RecordsBySplits.Builder<RowData> builder = new RecordsBySplits.Builder<>();
+        if (!acquireBatch()) {
+            return builder.build();
+        }
+        boolean hasBatch = !reachedLimit() && currentBatchReader.nextBatch();
+        ColumnarRowDataBatch batch = currentBatchReader.getCurrentBatch();
+        while (hasBatch && rowsToSkip >= batch.getNumRows()) {
+            rowsToSkip -= batch.getNumRows();
+            hasBatch = currentBatchReader.nextBatch();
+        }
+        if (!hasBatch) {
+            batchPermit.release();
+            builder.addFinishedSplit(currentSplit.splitId());
+            closeCurrentSplit();
+            return builder.build();
+        }
+        int startRowId = (int) rowsToSkip;
+        rowsToSkip = 0;
+        int numRows = reserveRows(batch.getNumRows() - startRowId);
+        if (numRows == 0 && reachedLimit()) {
+            // the other readers have taken the rest of the limit
+            batchPermit.release();
+            builder.addFinishedSplit(currentSplit.splitId());
+            closeCurrentSplit();
+            return builder.build();
+        }
+        return new OdpsColumnarRecords(currentSplit.splitId(), batch, startRowId, startRowId + numRows,
+                batchPermit::release);
+    }
+
+    /**
+     * Waits until the rows of the previous batch are recycled, returns false if woken up before.
+     */
+    private boolean acquireBatch() throws IOException {
+        try {
+            while (!batchPermit.tryAcquire(RECYCLE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (wakeUp) {
+                    wakeUp = false;
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the previous batch to be recycled", e);
+        }
+    }
+
+    @Override
+    public void handleSplitsChanges(SplitsChange<OdpsSourceSplit> splitsChange) {
+        if (!(splitsChange instanceof SplitsAddition)) {
+            throw new UnsupportedOperationException(
+                    String.format("The SplitChange type of %s is not supported.", splitsChange.getClass()));
+        }
+        splits.addAll(splitsChange.splits());
+    }
+
+    @Override
+    public void wakeUp() {
+        // fetch only blocks while waiting for a batch to be recycled
+        wakeUp = true;
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            closeCurrentSplit();
+        } finally {
+            closeReader(nextReader);
+            nextSplit = null;
+            nextReader = null;
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private void openCurrentSplit(@Nullable Future<Closeable> reader) throws IOException {
+        Closeable opened;
+        if (reader == null) {
+            opened = openReader(currentSplit);
+        } else {
+            try {
+                opened = reader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // closed with the split reader
+                nextReader = reader;
+                throw new IOException("Interrupted while opening odps split: " + currentSplit, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("create table reader failed", e.getCause());
+            }
+        }
+        if (useBatch && recordFilter == null) {
+            rowsToSkip = currentSplit.getReaderPosition();
+            currentBatchReader = (CupidColumnarBatchReader) opened;
+        } else {
+            @SuppressWarnings("unchecked")
+            NextIterator<RowData> iterator = (NextIterator<RowData>) opened;
+            currentIterator = iterator;
+        }
+    }
+
+    /**
+     * Opens the reader of the next queued split in the background, at most one split ahead.
+     */
+    private void prefetchNextSplit() {
+        if (currentSplit == null || nextSplit != null || splits.isEmpty() || reachedLimit()) {
+            return;
+        }
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newSingleThreadExecutor(
+                    new ExecutorThreadFactory("odps-split-prefetcher"));
+        }
+        OdpsSourceSplit split = splits.poll();
+        nextSplit = split;
+        nextReader = prefetchExecutor.submit(() -> openReader(split));
+    }
+
+    private Closeable openReader(OdpsSourceSplit split) throws IOException {
+        return useBatch && recordFilter == null ? openColumnarSplit(split) : openSplit(split);
+    }
+
+    /**
+     * Closes a reader opened in the background once its open has finished.
+     */
+    private static void closeReader(@Nullable Future<Closeable> reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.get().close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Failed to close the reader of the next odps split", e);
+        }
+    }
+
+    private NextIterator<RowData> openSplit(OdpsSourceSplit split) throws IOException {
+        LOG.info("Open odps split: {}", split);
+        NextIterator<RowData> iterator;
+        try {
+            if (useBatch) {
+                iterator = new CupidBatchIterator<>(split.toOdpsInputSplit(),
+                        odpsTableSchema,
+                        selectedColumns,
+                        RecordType.FLINK_ROW_DATA,
+                        fetchSize,
+                        recordFilter);
+            } else {
+                iterator = new RecordIterator<>(split.toOdpsInputSplit(),
+                        odpsTableSchema,
+                        selectedColumns,
+                        RecordType.FLINK_ROW_DATA,
+                        recordFilter);
+            }
+        } catch (Exception e) {
+            throw new IOException("create table reader failed", e);
+        }
+        if (split.getReaderPosition() > 0) {
+            iterator.seekToRow(split.getReaderPosition());
+        }
+        return iterator;
+    }
+
+    private CupidColumnarBatchReader openColumnarSplit(OdpsSourceSplit split) throws IOException {
+        LOG.info("Open odps split: {}", split);
+        try {
+            return new CupidColumnarBatchReader(split.toOdpsInputSplit(),
+                    odpsTableSchema,
+                    selectedColumns,
+                    fetchSize);
+        } catch (Exception e) {
+            throw new IOException("create table reader failed", e);
+        }
+    }
+
+    /**
+     * Takes up to {@code numRows} rows from the limit shared by all readers and returns how many
+     * of them may be emitted, 0 once the limit is reached.
+     */
+    private int reserveRows(int numRows) {
+        if (limit == null) {
+            numRecordsFetched.addAndGet(numRows);
+            return numRows;
+        }
+        while (true) {
+            long fetched = numRecordsFetched.get();
+            int reserved = (int) Math.max(0, Math.min(numRows, limit - fetched));
+            if (reserved == 0 || numRecordsFetched.compareAndSet(fetched, fetched + reserved)) {
+                return reserved;
+            }
+        }
+    }
+
+    private boolean reachedLimit() {
+        return limit != null && numRecordsFetched.get() >= limit;
+    }
+
+    private void closeCurrentSplit() throws IOException {
+        if (currentIterator != null) {
+            currentIterator.close();
+        }
+        if (currentBatchReader != null) {
+            currentBatchReader.close();
+        }
+        currentIterator = null;
+        currentBatchReader = null;
+        currentSplit = null;
+    }
+}
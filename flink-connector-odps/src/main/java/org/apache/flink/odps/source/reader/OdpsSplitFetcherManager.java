@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.reader;
+
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.fetcher.SplitFetcher;
+import org.apache.flink.connector.base.source.reader.fetcher.SplitFetcherManager;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.connector.base.source.reader.synchronization.FutureCompletingBlockingQueue;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@link SplitFetcherManager} which keeps a pool of up to {@code maxFetchers} fetchers,
+ * each with its own split reader, and spreads new splits over them round robin.
+ */
+public class OdpsSplitFetcherManager extends SplitFetcherManager<RowData, OdpsSourceSplit> {
+
+    private final int maxFetchers;
+    private int nextFetcher;
+
+    public OdpsSplitFetcherManager(
+            FutureCompletingBlockingQueue<RecordsWithSplitIds<RowData>> elementsQueue,
+            Supplier<SplitReader<RowData, OdpsSourceSplit>> splitReaderSupplier,
+            int maxFetchers) {
+        super(elementsQueue, splitReaderSupplier);
+        Preconditions.checkArgument(maxFetchers > 0, "maxFetchers must be positive");
+        this.maxFetchers = maxFetchers;
+    }
+
+    @Override
+    public void addSplits(List<OdpsSourceSplit> splitsToAdd) {
+        for (OdpsSourceSplit split : splitsToAdd) {
+            if (fetchers.size() < maxFetchers) {
+                SplitFetcher<RowData, OdpsSourceSplit> fetcher = createSplitFetcher();
+                fetcher.addSplits(Collections.singletonList(split));
+                startFetcher(fetcher);
+            } else {
+                List<SplitFetcher<RowData, OdpsSourceSplit>> runningFetchers = new ArrayList<>(fetchers.values());
+                nextFetcher = (nextFetcher + 1) % runningFetchers.size();
+                runningFetchers.get(nextFetcher).addSplits(Collections.singletonList(split));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.split;
+
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import org.apache.flink.api.connector.source.SourceSplit;
+import org.apache.flink.odps.input.OdpsInputSplit;
+import org.apache.flink.util.Preconditions;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A {@link SourceSplit} wrapping a cupid {@link InputSplit} together with the number
+ * of records that have already been emitted from it.
+ */
+public class OdpsSourceSplit implements SourceSplit, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String splitId;
+    private final InputSplit inputSplit;
+    private final long readerPosition;
+
+    public OdpsSourceSplit(String splitId, InputSplit inputSplit) {
+        this(splitId, inputSplit, 0L);
+    }
+
+    public OdpsSourceSplit(String splitId, InputSplit inputSplit, long readerPosition) {
+        Preconditions.checkArgument(readerPosition >= 0, "readerPosition cannot be negative");
+        this.splitId = Preconditions.checkNotNull(splitId, "splitId cannot be null");
+        this.inputSplit = Preconditions.checkNotNull(inputSplit, "inputSplit cannot be null");
+        this.readerPosition = readerPosition;
+    }
+
+    @Override
+    public String splitId() {
+        return splitId;
+    }
+
+    public InputSplit getInputSplit() {
+        return inputSplit;
+    }
+
+    /**
+     * Number of records of this split that have already been emitted.
+     */
+    public long getReaderPosition() {
+        return readerPosition;
+    }
+
+    public OdpsSourceSplit updateWithReaderPosition(long readerPosition) {
+        return new OdpsSourceSplit(splitId, inputSplit, readerPosition);
+    }
+
+    public OdpsInputSplit toOdpsInputSplit() {
+        return new OdpsInputSplit(inputSplit, splitId.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        OdpsSourceSplit that = (OdpsSourceSplit) o;
+        return readerPosition == that.readerPosition
+                && splitId.equals(that.splitId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(splitId, readerPosition);
+    }
+
+    @Override
+    public String toString() {
+        return "OdpsSourceSplit{" +
+                "splitId='" + splitId + '\'' +
+                ", partitionSpec=" + inputSplit.getPartitionSpec() +
+                ", readerPosition=" + readerPosition +
+                '}';
+    }
+}
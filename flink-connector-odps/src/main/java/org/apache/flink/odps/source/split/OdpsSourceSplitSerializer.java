@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.source.split;
+
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.util.InstantiationUtil;
+
+import java.io.IOException;
+
+/**
+ * Serializer for {@link OdpsSourceSplit}.
+ */
+public class OdpsSourceSplitSerializer implements SimpleVersionedSerializer<OdpsSourceSplit> {
+
+    public static final OdpsSourceSplitSerializer INSTANCE = new OdpsSourceSplitSerializer();
+
+    private static final int VERSION = 1;
+
+    private static final ThreadLocal<DataOutputSerializer> SERIALIZER_CACHE =
+            ThreadLocal.withInitial(() -> new DataOutputSerializer(256));
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] serialize(OdpsSourceSplit split) throws IOException {
+        final DataOutputSerializer out = SERIALIZER_CACHE.get();
+        serialize(split, out);
+        final byte[] result = out.getCopyOfBuffer();
+        out.clear();
+        return result;
+    }
+
+    @Override
+    public OdpsSourceSplit deserialize(int version, byte[] serialized) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unknown version: " + version);
+        }
+        return deserialize(new DataInputDeserializer(serialized));
+    }
+
+    static void serialize(OdpsSourceSplit split, DataOutputView out) throws IOException {
+        out.writeUTF(split.splitId());
+        out.writeLong(split.getReaderPosition());
+        byte[] inputSplitBytes = InstantiationUtil.serializeObject(split.getInputSplit());
+        out.writeInt(inputSplitBytes.length);
+        out.write(inputSplitBytes);
+    }
+
+    static OdpsSourceSplit deserialize(DataInputView in) throws IOException {
+        String splitId = in.readUTF();
+        long readerPosition = in.readLong();
+        byte[] inputSplitBytes = new byte[in.readInt()];
+        in.readFully(inputSplitBytes);
+        try {
+            InputSplit inputSplit = InstantiationUtil.deserializeObject(
+                    inputSplitBytes, Thread.currentThread().getContextClassLoader());
+            return new OdpsSourceSplit(splitId, inputSplit, readerPosition);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to deserialize odps input split", e);
+        }
+    }
+}
@@ -18,16 +18,21 @@
 
 package org.apache.flink.odps.table;
 
+import com.aliyun.odps.Table;
 import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.typeinfo.Types;
 import org.apache.flink.configuration.ReadableConfig;
+import org.apache.flink.connector.base.DeliveryGuarantee;
 import org.apache.flink.odps.output.OdpsOutputFormat;
 import org.apache.flink.odps.output.OdpsSinkFunction;
 import org.apache.flink.odps.output.stream.*;
 import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.apache.flink.odps.util.OdpsUtils;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSink;
-import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
 import org.apache.flink.table.api.TableColumn;
 import org.apache.flink.table.api.TableSchema;
 import org.apache.flink.table.connector.ChangelogMode;
@@ -36,6 +41,7 @@ import org.apache.flink.table.connector.sink.DynamicTableSink;
 import org.apache.flink.table.connector.sink.abilities.SupportsOverwrite;
 import org.apache.flink.table.connector.sink.abilities.SupportsPartitioning;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.RowType;
 import org.apache.flink.types.Row;
 import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.StringUtils;
@@ -98,20 +104,80 @@ public class OdpsDynamicTableSink implements DynamicTableSink, SupportsPartition
             DataStream<RowData> dataStream, boolean isBounded, DataStructureConverter converter) {
         final int parallelism =
                 Optional.ofNullable(configuredParallelism).orElse(dataStream.getParallelism());
+        final boolean shuffled = shouldShuffleByPartition();
+        if (shuffled) {
+            dataStream = shuffleByPartition(dataStream);
+        }
         if (isBounded) {
+            // rows are written without conversion, vectorized writes copy them into column vectors
             return dataStream
-                    .map((MapFunction<RowData, Row>) value -> (Row) converter.toExternal(value))
                     .writeUsingOutputFormat(createOdpsOutputFormat())
                     .setParallelism(parallelism);
         } else {
             if (overwrite) {
                 throw new IllegalStateException("Streaming mode not support overwrite.");
             }
-            final SinkFunction<Row> odpsProducer = createOdpsProducer();
-            return dataStream
-                    .map((MapFunction<RowData, Row>) value -> (Row) converter.toExternal(value))
-                    .addSink(odpsProducer)
-                    .setParallelism(parallelism);
+            final OdpsSinkFunction.OdpsSinkBuilder<Row> builder = createOdpsSinkBuilder();
+            SingleOutputStreamOperator<Row> rows = dataStream
+                    .map((MapFunction<RowData, Row>) value -> (Row) converter.toExternal(value));
+            if (shuffled) {
+                // keep the partitions of the shuffle, the conversion is chained to the sink
+                rows = rows.setParallelism(parallelism);
+            }
+            if (writeOptions.getDeliveryGuarantee() == DeliveryGuarantee.EXACTLY_ONCE) {
+                return rows.sinkTo(builder.buildSink()).setParallelism(parallelism);
+            }
+            return rows.addSink(builder.build()).setParallelism(parallelism);
+        }
+    }
+
+    private boolean shouldShuffleByPartition() {
+        return writeOptions.isShuffleByPartition()
+                && partitionKeys != null
+                && partitionKeys.size() > staticPartitionSpec.size();
+    }
+
+    /**
+     * Keys the rows by their dynamic partition, and by bucket for hash clustered tables if
+     * enabled, so that every sink subtask only writes some partitions.
+     */
+    private DataStream<RowData> shuffleByPartition(DataStream<RowData> dataStream) {
+        List<String> dynamicPartitionKeys = partitionKeys.stream()
+                .filter(key -> !staticPartitionSpec.containsKey(key))
+                .collect(Collectors.toList());
+        List<String> clusterColumns = null;
+        long numBuckets = 0;
+        if (writeOptions.isShuffleByBucket()) {
+            Table.ClusterInfo clusterInfo = getClusterInfo();
+            if (clusterInfo != null
+                    && "hash".equalsIgnoreCase(clusterInfo.getClusterType())
+                    && clusterInfo.getBucketNum() > 0) {
+                clusterColumns = clusterInfo.getClusterCols();
+                numBuckets = clusterInfo.getBucketNum();
+            } else {
+                LOG.warn("Table {} is not hash clustered, shuffle the rows by partition only", identifier);
+            }
+        }
+        LOG.info("Shuffle the rows by partition columns {}, cluster columns {}, buckets {}",
+                dynamicPartitionKeys, clusterColumns, numBuckets);
+        RowDataPartitionKeySelector keySelector = new RowDataPartitionKeySelector(
+                (RowType) tableSchema.toRowDataType().getLogicalType(),
+                dynamicPartitionKeys,
+                writeOptions.getDynamicPartitionDefaultValue(),
+                clusterColumns,
+                numBuckets);
+        return dataStream.keyBy(keySelector, Types.STRING);
+    }
+
+    @Nullable
+    private Table.ClusterInfo getClusterInfo() {
+        try {
+            return new OdpsMetaDataProvider(OdpsUtils.getOdps(odpsConf))
+                    .getTable(identifier.getProjectName(), identifier.getTableName())
+                    .getClusterInfo();
+        } catch (Exception e) {
+            LOG.warn("Failed to get the cluster info of table " + identifier, e);
+            return null;
         }
     }
 
@@ -202,7 +268,7 @@ public class OdpsDynamicTableSink implements DynamicTableSink, SupportsPartition
     }
 
 
-    private SinkFunction<Row> createOdpsProducer() {
+    private OdpsSinkFunction.OdpsSinkBuilder<Row> createOdpsSinkBuilder() {
         boolean isPartitioned = partitionKeys != null && !partitionKeys.isEmpty();
         boolean isDynamicPartition = isPartitioned && partitionKeys.size() > staticPartitionSpec.size();
         boolean supportPartitionGrouping = dynamicGrouping;
@@ -251,11 +317,11 @@ public class OdpsDynamicTableSink implements DynamicTableSink, SupportsPartition
                 }
             }
             builder.setWriteOptions(writeOptions);
-            return builder.build();
+            return builder;
         }
     }
 
-    private OdpsOutputFormat<Row> createOdpsOutputFormat() {
+    private OdpsOutputFormat<RowData> createOdpsOutputFormat() {
         boolean isPartitioned = partitionKeys != null && !partitionKeys.isEmpty();
         boolean isDynamicPartition = isPartitioned && partitionKeys.size() > staticPartitionSpec.size();
         boolean supportPartitionGrouping = dynamicGrouping;
@@ -270,13 +336,14 @@ public class OdpsDynamicTableSink implements DynamicTableSink, SupportsPartition
                     .map(colName -> colName + "=" + staticPartitionSpec.get(colName))
                     .collect(Collectors.joining(","));
         }
-        OdpsOutputFormat.OutputFormatBuilder<Row> builder =
+        OdpsOutputFormat.OutputFormatBuilder<RowData> builder =
                 new OdpsOutputFormat.OutputFormatBuilder<>(odpsConf, projectName, tableName);
         builder.setOverwrite(overwrite);
         builder.setPartition(partition);
         builder.setDynamicPartition(isDynamicPartition);
         builder.setSupportPartitionGrouping(supportPartitionGrouping);
         builder.setWriteOptions(writeOptions);
+        builder.setRowType((RowType) tableSchema.toRowDataType().getLogicalType());
         return builder.build();
     }
 
@@ -20,21 +20,30 @@ package org.apache.flink.odps.table;
 
 import com.aliyun.odps.Partition;
 import com.aliyun.odps.PartitionSpec;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.ReadableConfig;
+import org.apache.flink.odps.input.OdpsAsyncLookupFunction;
 import org.apache.flink.odps.input.OdpsInputFormat;
 import org.apache.flink.odps.input.OdpsLookupFunction;
 import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.odps.source.OdpsSource;
 import org.apache.flink.odps.util.OdpsConf;
 import org.apache.flink.odps.util.OdpsMetaDataProvider;
 import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.DataStreamSource;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.table.api.TableSchema;
 import org.apache.flink.table.connector.ChangelogMode;
 import org.apache.flink.table.connector.source.*;
+import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown;
 import org.apache.flink.table.connector.source.abilities.SupportsLimitPushDown;
 import org.apache.flink.table.connector.source.abilities.SupportsPartitionPushDown;
 import org.apache.flink.table.connector.source.abilities.SupportsProjectionPushDown;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.expressions.ResolvedExpression;
 import org.apache.flink.table.types.logical.RowType;
 import org.apache.flink.table.utils.TableSchemaUtils;
 import org.apache.flink.util.Preconditions;
@@ -43,6 +52,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.apache.flink.odps.util.Constants.DEFAULT_SPLIT_SIZE;
+import static org.apache.flink.odps.util.Constants.ODPS_INPUT_SPLIT_SIZE;
 
 
 /**
@@ -53,6 +66,7 @@ public class OdpsDynamicTableSource
         LookupTableSource,
         SupportsPartitionPushDown,
         SupportsProjectionPushDown,
+        SupportsFilterPushDown,
         SupportsLimitPushDown {
 
     private static final Logger LOG = LoggerFactory.getLogger(OdpsDynamicTableSource.class);
@@ -74,6 +88,7 @@ public class OdpsDynamicTableSource
     protected int[] projectedFields = null;
     @Nullable
     private Long limit = null;
+    private List<ResolvedExpression> filters = Collections.emptyList();
 
     public OdpsDynamicTableSource(
             ReadableConfig flinkConf,
@@ -82,14 +97,28 @@ public class OdpsDynamicTableSource
             OdpsTablePath identifier,
             TableSchema schema,
             List<String> partitionKeys) {
+        // TODO: Singleton
+        this(flinkConf, odpsConf, lookupOptions, identifier, schema, partitionKeys,
+                new OdpsMetaDataProvider(OdpsUtils.getOdps(
+                        Preconditions.checkNotNull(odpsConf, "odpsConf cannot be null"))));
+    }
+
+    @VisibleForTesting
+    public OdpsDynamicTableSource(
+            ReadableConfig flinkConf,
+            OdpsConf odpsConf,
+            OdpsLookupOptions lookupOptions,
+            OdpsTablePath identifier,
+            TableSchema schema,
+            List<String> partitionKeys,
+            OdpsMetaDataProvider metaDataProvider) {
         this.flinkConf = flinkConf == null ? new Configuration() : flinkConf;
         this.odpsConf = Preconditions.checkNotNull(odpsConf, "odpsConf cannot be null");
         this.lookupOptions = lookupOptions;
         this.identifier = Preconditions.checkNotNull(identifier);
         this.tableSchema = schema;
         this.partitionKeys = partitionKeys;
-        // TODO: Singleton
-        this.metaDataProvider = new OdpsMetaDataProvider(OdpsUtils.getOdps(this.odpsConf));
+        this.metaDataProvider = metaDataProvider;
     }
 
     @Override
@@ -105,12 +134,13 @@ public class OdpsDynamicTableSource
             keyIndices[i] = key[0];
             i++;
         }
+        RowType rowType = (RowType) tableSchema.toRowDataType().getLogicalType();
+        if (lookupOptions.isAsync()) {
+            return AsyncTableFunctionProvider.of(
+                    new OdpsAsyncLookupFunction(getOdpsInputFormat(), lookupOptions, keyIndices, rowType));
+        }
         return TableFunctionProvider.of(
-                new OdpsLookupFunction(
-                        getOdpsInputFormat(),
-                        lookupOptions,
-                        keyIndices,
-                        (RowType) tableSchema.toRowDataType().getLogicalType()));
+                new OdpsLookupFunction(getOdpsInputFormat(), lookupOptions, keyIndices, rowType));
     }
 
     private OdpsInputFormat<RowData> getOdpsInputFormat() {
@@ -124,7 +154,79 @@ public class OdpsDynamicTableSource
 
     @Override
     public ScanRuntimeProvider getScanRuntimeProvider(ScanContext runtimeProviderContext) {
-        return InputFormatProvider.of(getOdpsInputFormat());
+        OdpsSource source = getOdpsSource();
+        if (!flinkConf.get(OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM)) {
+            return SourceProvider.of(source);
+        }
+        int parallelism = inferSourceParallelism();
+        return new DataStreamScanProvider() {
+            @Override
+            public DataStream<RowData> produceDataStream(StreamExecutionEnvironment execEnv) {
+                DataStreamSource<RowData> sourceStream = execEnv.fromSource(
+                        source, WatermarkStrategy.noWatermarks(), "OdpsSource-" + identifier);
+                return parallelism > 0 ? sourceStream.setParallelism(parallelism) : sourceStream;
+            }
+
+            @Override
+            public boolean isBounded() {
+                return true;
+            }
+        };
+    }
+
+    private OdpsSource getOdpsSource() {
+        OdpsSource.OdpsSourceBuilder builder =
+                new OdpsSource.OdpsSourceBuilder(odpsConf, this.identifier.getProjectName(),
+                        this.identifier.getTableName());
+        builder.setColumns(tableSchema.getFieldNames());
+        if (remainingPartitions != null) {
+            // pruned partitions come from the planner, no need to look them up again
+            builder.setPartitions(getRemainingPartitionSpecs());
+        }
+        builder.setFilters(filters.stream()
+                .map(OdpsFilterConverter::convert)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList()));
+        builder.setLimit(limit);
+        return builder.build();
+    }
+
+    private String[] getRemainingPartitionSpecs() {
+        return remainingPartitions.stream()
+                .map(spec -> spec.entrySet().stream()
+                        .map(entry -> entry.getKey() + "=" + entry.getValue())
+                        .collect(Collectors.joining(",")))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * One task per split size of the bytes left after partition pruning, -1 if the size is
+     * unknown and the parallelism is left to the planner.
+     */
+    @VisibleForTesting
+    public int inferSourceParallelism() {
+        int maxParallelism = flinkConf.get(OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM_MAX);
+        Preconditions.checkArgument(maxParallelism >= 1,
+                OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM_MAX.key() + " cannot be less than 1");
+        if (remainingPartitions != null && remainingPartitions.isEmpty()) {
+            return 1;
+        }
+        try {
+            long totalSize = metaDataProvider.getTableStatistics(identifier.getProjectName(),
+                    identifier.getTableName(),
+                    remainingPartitions == null ? null : getRemainingPartitionSpecs()).getRawDataSize();
+            if (totalSize < 0) {
+                return -1;
+            }
+            long splitSize = odpsConf.getPropertyOrDefault(ODPS_INPUT_SPLIT_SIZE, DEFAULT_SPLIT_SIZE) * 1024L * 1024L;
+            int parallelism = (int) Math.min(maxParallelism, Math.max(1, (totalSize + splitSize - 1) / splitSize));
+            LOG.info("Infer source parallelism {} of table {} from {} bytes", parallelism, identifier, totalSize);
+            return parallelism;
+        } catch (Exception e) {
+            LOG.warn("Cannot infer source parallelism of table {}", identifier, e);
+            return -1;
+        }
     }
 
     private List<Partition> getPrunedPartitions() {
@@ -148,6 +250,17 @@ public class OdpsDynamicTableSource
         return odpsPartitions;
     }
 
+    @Override
+    public Result applyFilters(List<ResolvedExpression> filters) {
+        List<ResolvedExpression> acceptedFilters = filters.stream()
+                .filter(filter -> OdpsFilterConverter.convert(filter).isPresent())
+                .collect(Collectors.toList());
+        this.filters = acceptedFilters;
+        LOG.info("Accepted filters: {}", acceptedFilters);
+        // accepted filters are still evaluated by flink, the source only drops records early
+        return Result.of(acceptedFilters, filters);
+    }
+
     @Override
     public void applyLimit(long limit) {
         this.limit = limit;
@@ -207,10 +320,11 @@ public class OdpsDynamicTableSource
     @Override
     public DynamicTableSource copy() {
         OdpsDynamicTableSource source = new OdpsDynamicTableSource(
-                flinkConf, odpsConf, lookupOptions, identifier, tableSchema, partitionKeys);
+                flinkConf, odpsConf, lookupOptions, identifier, tableSchema, partitionKeys, metaDataProvider);
         source.remainingPartitions = remainingPartitions;
         source.projectedFields = projectedFields;
         source.limit = limit;
+        source.filters = filters;
         return source;
     }
 
@@ -231,7 +345,8 @@ public class OdpsDynamicTableSource
                 && Objects.equals(partitionKeys, that.partitionKeys)
                 && Objects.equals(remainingPartitions, that.remainingPartitions)
                 && Arrays.equals(projectedFields, that.projectedFields)
-                && Objects.equals(limit, that.limit);
+                && Objects.equals(limit, that.limit)
+                && Objects.equals(filters, that.filters);
     }
 
     @Override
@@ -245,6 +360,7 @@ public class OdpsDynamicTableSource
                 partitionKeys,
                 remainingPartitions,
                 projectedFields,
-                limit);
+                limit,
+                filters);
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.table;
+
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import org.apache.flink.table.expressions.*;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.apache.flink.table.functions.FunctionDefinition;
+import org.apache.flink.table.types.logical.LogicalTypeRoot;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Converts flink filter expressions to cupid {@link FilterExpression}s. Supports comparisons
+ * between a column and a literal, IN, IS [NOT] NULL and AND/OR of those on numeric, boolean
+ * and string columns. {@code <>} on FLOAT and DOUBLE columns is not converted, it keeps NaN.
+ */
+public class OdpsFilterConverter {
+
+    private OdpsFilterConverter() {
+    }
+
+    public static Optional<FilterExpression> convert(ResolvedExpression expression) {
+        if (expression instanceof FieldReferenceExpression) {
+            // boolean column used as a predicate
+            FieldReferenceExpression field = (FieldReferenceExpression) expression;
+            if (getTypeRoot(field) == LogicalTypeRoot.BOOLEAN) {
+                return Optional.of(FilterExpression.EqualTo(field.getName(), true));
+            }
+            return Optional.empty();
+        }
+        if (!(expression instanceof CallExpression)) {
+            return Optional.empty();
+        }
+        CallExpression call = (CallExpression) expression;
+        FunctionDefinition function = call.getFunctionDefinition();
+        List<ResolvedExpression> args = call.getResolvedChildren();
+
+        if (function == BuiltInFunctionDefinitions.AND || function == BuiltInFunctionDefinitions.OR) {
+            FilterExpression[] children = new FilterExpression[args.size()];
+            for (int i = 0; i < children.length; i++) {
+                Optional<FilterExpression> child = convert(args.get(i));
+                if (!child.isPresent()) {
+                    return Optional.empty();
+                }
+                children[i] = child.get();
+            }
+            return Optional.of(function == BuiltInFunctionDefinitions.AND
+                    ? FilterExpression.And(children) : FilterExpression.Or(children));
+        }
+        if (function == BuiltInFunctionDefinitions.IS_NULL || function == BuiltInFunctionDefinitions.IS_NOT_NULL) {
+            if (args.size() != 1 || !(args.get(0) instanceof FieldReferenceExpression)) {
+                return Optional.empty();
+            }
+            String name = ((FieldReferenceExpression) args.get(0)).getName();
+            return Optional.of(function == BuiltInFunctionDefinitions.IS_NULL
+                    ? FilterExpression.IsNull(name) : FilterExpression.IsNotNull(name));
+        }
+        if (function == BuiltInFunctionDefinitions.IN) {
+            return convertIn(args);
+        }
+        return convertComparison(function, args);
+    }
+
+    private static Optional<FilterExpression> convertIn(List<ResolvedExpression> args) {
+        if (args.size() < 2 || !(args.get(0) instanceof FieldReferenceExpression)) {
+            return Optional.empty();
+        }
+        FieldReferenceExpression field = (FieldReferenceExpression) args.get(0);
+        Object[] values = new Object[args.size() - 1];
+        for (int i = 1; i < args.size(); i++) {
+            if (!(args.get(i) instanceof ValueLiteralExpression)) {
+                return Optional.empty();
+            }
+            Optional<Object> value = convertLiteral(field, (ValueLiteralExpression) args.get(i));
+            if (!value.isPresent()) {
+                return Optional.empty();
+            }
+            values[i - 1] = value.get();
+        }
+        return Optional.of(FilterExpression.In(field.getName(), values));
+    }
+
+    private static Optional<FilterExpression> convertComparison(FunctionDefinition function,
+                                                                List<ResolvedExpression> args) {
+        if (args.size() != 2) {
+            return Optional.empty();
+        }
+        FieldReferenceExpression field;
+        ValueLiteralExpression literal;
+        boolean reversed;
+        if (args.get(0) instanceof FieldReferenceExpression && args.get(1) instanceof ValueLiteralExpression) {
+            field = (FieldReferenceExpression) args.get(0);
+            literal = (ValueLiteralExpression) args.get(1);
+            reversed = false;
+        } else if (args.get(0) instanceof ValueLiteralExpression && args.get(1) instanceof FieldReferenceExpression) {
+            field = (FieldReferenceExpression) args.get(1);
+            literal = (ValueLiteralExpression) args.get(0);
+            reversed = true;
+        } else {
+            return Optional.empty();
+        }
+        Optional<Object> value = convertLiteral(field, literal);
+        if (!value.isPresent()) {
+            return Optional.empty();
+        }
+        String name = field.getName();
+        Object v = value.get();
+        if (function == BuiltInFunctionDefinitions.EQUALS) {
+            return Optional.of(FilterExpression.EqualTo(name, v));
+        } else if (function == BuiltInFunctionDefinitions.NOT_EQUALS) {
+            if (isFloatingPoint(field)) {
+                // NaN <> x is true in flink, but neither NaN < x nor NaN > x
+                return Optional.empty();
+            }
+            return Optional.of(FilterExpression.Or(FilterExpression.LessThan(name, v),
+                    FilterExpression.GreaterThan(name, v)));
+        } else if (function == BuiltInFunctionDefinitions.GREATER_THAN) {
+            return Optional.of(reversed ? FilterExpression.LessThan(name, v) : FilterExpression.GreaterThan(name, v));
+        } else if (function == BuiltInFunctionDefinitions.GREATER_THAN_OR_EQUAL) {
+            return Optional.of(reversed
+                    ? FilterExpression.LessThanOrEqual(name, v) : FilterExpression.GreaterThanOrEqual(name, v));
+        } else if (function == BuiltInFunctionDefinitions.LESS_THAN) {
+            return Optional.of(reversed ? FilterExpression.GreaterThan(name, v) : FilterExpression.LessThan(name, v));
+        } else if (function == BuiltInFunctionDefinitions.LESS_THAN_OR_EQUAL) {
+            return Optional.of(reversed
+                    ? FilterExpression.GreaterThanOrEqual(name, v) : FilterExpression.LessThanOrEqual(name, v));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Converts the literal to the java type odps uses for the column, empty if the literal is
+     * null or cannot be represented exactly.
+     */
+    private static Optional<Object> convertLiteral(FieldReferenceExpression field, ValueLiteralExpression literal) {
+        if (literal.isNull()) {
+            return Optional.empty();
+        }
+        Optional<?> value = literal.getValueAs(literal.getOutputDataType().getConversionClass());
+        if (!value.isPresent()) {
+            return Optional.empty();
+        }
+        Object v = value.get();
+        switch (getTypeRoot(field)) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return toLong(v).map(l -> narrow(l, getTypeRoot(field)));
+            case FLOAT:
+            case DOUBLE:
+                if (v instanceof Float || v instanceof Double || isIntegral(v)) {
+                    Number number = (Number) v;
+                    return Optional.of(getTypeRoot(field) == LogicalTypeRoot.FLOAT
+                            ? (Object) number.floatValue() : (Object) number.doubleValue());
+                }
+                return Optional.empty();
+            case DECIMAL:
+                if (v instanceof BigDecimal) {
+                    return Optional.of(v);
+                }
+                return isIntegral(v) ? Optional.of(BigDecimal.valueOf(((Number) v).longValue())) : Optional.empty();
+            case CHAR:
+            case VARCHAR:
+                return v instanceof String ? Optional.of(v) : Optional.empty();
+            case BOOLEAN:
+                return v instanceof Boolean ? Optional.of(v) : Optional.empty();
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static Optional<Long> toLong(Object value) {
+        if (isIntegral(value)) {
+            return Optional.of(((Number) value).longValue());
+        }
+        if (value instanceof BigDecimal) {
+            try {
+                return Optional.of(((BigDecimal) value).longValueExact());
+            } catch (ArithmeticException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Object narrow(long value, LogicalTypeRoot typeRoot) {
+        switch (typeRoot) {
+            case TINYINT:
+                return (byte) value == value ? (Object) (byte) value : (Object) value;
+            case SMALLINT:
+                return (short) value == value ? (Object) (short) value : (Object) value;
+            case INTEGER:
+                return (int) value == value ? (Object) (int) value : (Object) value;
+            default:
+                return value;
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isFloatingPoint(FieldReferenceExpression field) {
+        LogicalTypeRoot typeRoot = getTypeRoot(field);
+        return typeRoot == LogicalTypeRoot.FLOAT || typeRoot == LogicalTypeRoot.DOUBLE;
+    }
+
+    private static LogicalTypeRoot getTypeRoot(FieldReferenceExpression field) {
+        return field.getOutputDataType().getLogicalType().getTypeRoot();
+    }
+}
@@ -21,6 +21,10 @@ package org.apache.flink.odps.table;
 import org.apache.flink.configuration.ConfigOption;
 import org.apache.flink.configuration.ConfigOptions;
 import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.connector.base.DeliveryGuarantee;
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.odps.output.stream.PartitionTimeExtractor;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.util.Constants;
 
 import java.time.Duration;
@@ -71,6 +75,19 @@ public class OdpsOptions {
                     .defaultValue(DEFAULT_SPLIT_SIZE)
                     .withDescription("The input split size for odps read.");
 
+    public static final ConfigOption<Boolean> VECTORIZED_READ_ENABLE =
+            ConfigOptions.key(ODPS_VECTORIZED_READ_ENABLE)
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Read batches of columns in cluster mode. Without filters evaluated by " +
+                            "the source, the rows are emitted as views over the batches without being copied.");
+
+    public static final ConfigOption<Integer> VECTORIZED_BATCH_SIZE =
+            ConfigOptions.key(ODPS_VECTORIZED_BATCH_SIZE)
+                    .intType()
+                    .defaultValue(DEFAULT_ODPS_VECTORIZED_BATCH_SIZE)
+                    .withDescription("The number of rows of a batch of vectorized reads and writes.");
+
     public static final ConfigOption<Boolean> WRITER_BUFFER_ENABLE =
             ConfigOptions.key(ODPS_WRITER_BUFFER_ENABLE)
                     .booleanType()
@@ -83,6 +100,21 @@ public class OdpsOptions {
                     .defaultValue(MemorySize.parse("64mb"))
                     .withDescription("Odps writer buffer size.");
 
+    // source, read from the table config
+    public static final ConfigOption<Boolean> TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM =
+            ConfigOptions.key("table.exec.odps.infer-source-parallelism")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("If true, the source parallelism is inferred from the size of the " +
+                            "partitions to read, one task per input split size. Otherwise it is set by the config. " +
+                            "Disabled by default, so the source keeps the parallelism of the job.");
+
+    public static final ConfigOption<Integer> TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM_MAX =
+            ConfigOptions.key("table.exec.odps.infer-source-parallelism.max")
+                    .intType()
+                    .defaultValue(1000)
+                    .withDescription("The max inferred source parallelism.");
+
     // lookup
     public static final ConfigOption<Duration> LOOKUP_CACHE_TTL =
             ConfigOptions.key("lookup.cache.ttl")
@@ -97,6 +129,61 @@ public class OdpsOptions {
                     .defaultValue(3)
                     .withDescription("The max retry times if lookup database failed.");
 
+    public static final ConfigOption<OdpsLookupOptions.CacheType> LOOKUP_CACHE =
+            ConfigOptions.key("lookup.cache")
+                    .enumType(OdpsLookupOptions.CacheType.class)
+                    .defaultValue(OdpsLookupOptions.CacheType.ALL)
+                    .withDescription("ALL caches the whole table and reloads it in the background every ttl, " +
+                            "LRU caches the recently looked up keys and loads missing keys on demand by a read session " +
+                            "filtered by the key, it falls back to ALL if the table api provider cannot filter.");
+
+    public static final ConfigOption<Long> LOOKUP_CACHE_MAX_ROWS =
+            ConfigOptions.key("lookup.cache.max-rows")
+                    .longType()
+                    .defaultValue(100000L)
+                    .withDescription("The max number of rows kept by the LRU lookup cache.");
+
+    public static final ConfigOption<MemorySize> LOOKUP_CACHE_MAX_SIZE =
+            ConfigOptions.key("lookup.cache.max-size")
+                    .memoryType()
+                    .noDefaultValue()
+                    .withDescription("The max size of rows kept by the LRU lookup cache. " +
+                            "If set, it replaces 'lookup.cache.max-rows'.");
+
+    public static final ConfigOption<Integer> LOOKUP_CACHE_LOAD_THREADS =
+            ConfigOptions.key("lookup.cache.load-threads")
+                    .intType()
+                    .defaultValue(4)
+                    .withDescription("The number of threads reading splits when loading the whole table, " +
+                            "or loading missing keys in async mode.");
+
+    public static final ConfigOption<Boolean> LOOKUP_ASYNC =
+            ConfigOptions.key("lookup.async")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Whether to use an async lookup function.");
+
+    public static final ConfigOption<OdpsLookupOptions.CacheStorage> LOOKUP_CACHE_STORAGE =
+            ConfigOptions.key("lookup.cache.storage")
+                    .enumType(OdpsLookupOptions.CacheStorage.class)
+                    .defaultValue(OdpsLookupOptions.CacheStorage.HEAP)
+                    .withDescription("Where the ALL lookup cache keeps its rows. HEAP keeps row objects, " +
+                            "OFF_HEAP keeps serialized rows in off-heap pages.");
+
+    public static final ConfigOption<MemorySize> LOOKUP_CACHE_OFF_HEAP_MEMORY =
+            ConfigOptions.key("lookup.cache.off-heap.memory")
+                    .memoryType()
+                    .noDefaultValue()
+                    .withDescription("The off-heap memory of the OFF_HEAP lookup cache. Pages beyond it are " +
+                            "spilled to memory-mapped files. Unbounded if not set.");
+
+    public static final ConfigOption<String> LOOKUP_CACHE_SPILL_DIR =
+            ConfigOptions.key("lookup.cache.spill.dir")
+                    .stringType()
+                    .noDefaultValue()
+                    .withDescription("The directory of the OFF_HEAP lookup cache spill files. " +
+                            "By default the java temp dir.");
+
 
     public static final ConfigOption<MemorySize> SINK_BUFFER_FLUSH_MAX_SIZE =
             ConfigOptions.key("sink.buffer-flush.max-size")
@@ -124,18 +211,112 @@ public class OdpsOptions {
                             "Writing option, the interval to flush any buffered rows. "
                                     + "This can improve performance for writing data to Odps, but may increase the latency. ");
 
+    public static final ConfigOption<Boolean> SINK_BUFFER_FLUSH_ASYNC =
+            ConfigOptions.key("sink.buffer-flush.async")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Writing option, whether full buffers are flushed in the background "
+                            + "while new rows go into a second buffer. Each writer flushes at most one buffer "
+                            + "at a time and opens a second tunnel stream for it.");
+
+    public static final ConfigOption<Boolean> SINK_BUFFER_FLUSH_ADAPTIVE =
+            ConfigOptions.key("sink.buffer-flush.adaptive")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Writing option, whether the max rows and max size of a flush adapt to "
+                            + "the flush latency and throttling, within 8 times of the configured values.");
+
+    public static final ConfigOption<Duration> SINK_BUFFER_FLUSH_TARGET_LATENCY =
+            ConfigOptions.key("sink.buffer-flush.target-latency")
+                    .durationType()
+                    .defaultValue(Duration.ofMillis(OdpsWriteOptions.DEFAULT_FLUSH_TARGET_LATENCY_MILLIS))
+                    .withDescription("Writing option, the flush latency the adaptive flush sizes aim at.");
+
     public static final ConfigOption<Integer> SINK_DYNAMIC_PARTITION_LIMIT =
             ConfigOptions.key("sink.dynamic-partition.limit")
                     .intType()
                     .defaultValue(20)
                     .withDescription("The max limit of dynamic partition");
 
+    public static final ConfigOption<Integer> SINK_DYNAMIC_PARTITION_FLUSH_THREADS =
+            ConfigOptions.key("sink.dynamic-partition.flush-threads")
+                    .intType()
+                    .defaultValue(1)
+                    .withDescription("The number of threads flushing the writers of dynamic partitions "
+                            + "in parallel.");
+
     public static final ConfigOption<Integer> SINK_MAX_RETRIES =
             ConfigOptions.key("sink.max-retries")
                     .intType()
                     .defaultValue(3)
                     .withDescription("The max retry times if writing records to odps failed.");
 
+    public static final ConfigOption<DeliveryGuarantee> SINK_DELIVERY_GUARANTEE =
+            ConfigOptions.key("sink.delivery-guarantee")
+                    .enumType(DeliveryGuarantee.class)
+                    .defaultValue(DeliveryGuarantee.AT_LEAST_ONCE)
+                    .withDescription("The delivery guarantee of the streaming sink. EXACTLY_ONCE writes the rows "
+                            + "of every checkpoint into new write sessions and commits them when the checkpoint "
+                            + "completes, it requires checkpointing.");
+
+    public static final ConfigOption<Integer> SINK_COMMIT_THREADS =
+            ConfigOptions.key("sink.commit-threads")
+                    .intType()
+                    .defaultValue(OdpsWriteOptions.DEFAULT_COMMIT_THREADS)
+                    .withDescription("The number of threads committing the write sessions of all subtasks "
+                            + "when a checkpoint completes, only used if 'sink.delivery-guarantee' is EXACTLY_ONCE.");
+
+    public static final ConfigOption<OdpsWriteOptions.PartitionCommitTrigger> SINK_PARTITION_COMMIT_TRIGGER =
+            ConfigOptions.key("sink.partition-commit.trigger")
+                    .enumType(OdpsWriteOptions.PartitionCommitTrigger.class)
+                    .defaultValue(OdpsWriteOptions.PartitionCommitTrigger.PROCESS_TIME)
+                    .withDescription("When the dynamic partitions of the streaming sink are committed. "
+                            + "PARTITION_TIME flushes and closes a partition once the watermark passes its "
+                            + "partition time plus 'sink.partition-commit.delay'.");
+
+    public static final ConfigOption<Duration> SINK_PARTITION_COMMIT_DELAY =
+            ConfigOptions.key("sink.partition-commit.delay")
+                    .durationType()
+                    .defaultValue(Duration.ofMillis(0))
+                    .withDescription("The time a partition stays open after its partition time, "
+                            + "e.g. '1 h' for hourly partitions.");
+
+    public static final ConfigOption<String> SINK_PARTITION_COMMIT_WATERMARK_TIME_ZONE =
+            ConfigOptions.key("sink.partition-commit.watermark-time-zone")
+                    .stringType()
+                    .defaultValue(PartitionTimeExtractor.DEFAULT_TIME_ZONE)
+                    .withDescription("The time zone of the partition times compared with the watermark.");
+
+    public static final ConfigOption<String> PARTITION_TIME_EXTRACTOR_TIMESTAMP_PATTERN =
+            ConfigOptions.key("partition.time-extractor.timestamp-pattern")
+                    .stringType()
+                    .noDefaultValue()
+                    .withDescription("Builds the partition time from the partition values, e.g. "
+                            + "'$dt $hh:00:00'. By default the value of the first partition column.");
+
+    public static final ConfigOption<String> PARTITION_TIME_EXTRACTOR_TIMESTAMP_FORMATTER =
+            ConfigOptions.key("partition.time-extractor.timestamp-formatter")
+                    .stringType()
+                    .defaultValue(PartitionTimeExtractor.DEFAULT_FORMATTER)
+                    .withDescription("The DateTimeFormatter pattern parsing the partition time, "
+                            + "missing time fields default to zero.");
+
+    public static final ConfigOption<Boolean> SINK_SHUFFLE_BY_PARTITION =
+            ConfigOptions.key("sink.shuffle-by-partition.enable")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Whether the rows are shuffled by their dynamic partition before the sink, "
+                            + "so that every sink subtask writes only some partitions. This reduces the open "
+                            + "writers and write sessions, but may cause data skew.");
+
+    public static final ConfigOption<Boolean> SINK_SHUFFLE_BY_BUCKET =
+            ConfigOptions.key("sink.shuffle-by-partition.bucket-aware")
+                    .booleanType()
+                    .defaultValue(false)
+                    .withDescription("Whether the rows of a partition are spread further by the hash of the "
+                            + "cluster columns modulo the bucket number of a hash clustered table, so that a "
+                            + "large partition is written by several subtasks.");
+
     public static final ConfigOption<Integer> SINK_PARALLELISM =
             ConfigOptions.key("sink.parallelism")
                     .intType()
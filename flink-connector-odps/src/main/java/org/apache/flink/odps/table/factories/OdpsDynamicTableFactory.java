@@ -80,17 +80,40 @@ public class OdpsDynamicTableFactory implements DynamicTableSourceFactory, Dynam
         set.add(RUNNING_MODE);
 
         set.add(INPUT_SPLIT_SIZE);
+        set.add(VECTORIZED_READ_ENABLE);
+        set.add(VECTORIZED_BATCH_SIZE);
         set.add(WRITER_BUFFER_ENABLE);
         set.add(WRITER_BUFFER_SIZE);
 
         set.add(LOOKUP_CACHE_TTL);
         set.add(LOOKUP_MAX_RETRIES);
+        set.add(LOOKUP_CACHE);
+        set.add(LOOKUP_CACHE_MAX_ROWS);
+        set.add(LOOKUP_CACHE_MAX_SIZE);
+        set.add(LOOKUP_CACHE_LOAD_THREADS);
+        set.add(LOOKUP_ASYNC);
+        set.add(LOOKUP_CACHE_STORAGE);
+        set.add(LOOKUP_CACHE_OFF_HEAP_MEMORY);
+        set.add(LOOKUP_CACHE_SPILL_DIR);
 
         set.add(SINK_BUFFER_FLUSH_MAX_SIZE);
         set.add(SINK_BUFFER_FLUSH_MAX_ROWS);
         set.add(SINK_BUFFER_FLUSH_INTERVAL);
+        set.add(SINK_BUFFER_FLUSH_ASYNC);
+        set.add(SINK_BUFFER_FLUSH_ADAPTIVE);
+        set.add(SINK_BUFFER_FLUSH_TARGET_LATENCY);
         set.add(SINK_MAX_RETRIES);
         set.add(SINK_DYNAMIC_PARTITION_LIMIT);
+        set.add(SINK_DELIVERY_GUARANTEE);
+        set.add(SINK_DYNAMIC_PARTITION_FLUSH_THREADS);
+        set.add(SINK_COMMIT_THREADS);
+        set.add(SINK_PARTITION_COMMIT_TRIGGER);
+        set.add(SINK_PARTITION_COMMIT_DELAY);
+        set.add(SINK_PARTITION_COMMIT_WATERMARK_TIME_ZONE);
+        set.add(PARTITION_TIME_EXTRACTOR_TIMESTAMP_PATTERN);
+        set.add(PARTITION_TIME_EXTRACTOR_TIMESTAMP_FORMATTER);
+        set.add(SINK_SHUFFLE_BY_PARTITION);
+        set.add(SINK_SHUFFLE_BY_BUCKET);
         set.add(SINK_PARALLELISM);
         set.add(PARTITION_DEFAULT_VALUE);
         set.add(PARTITION_ASSIGNER_CLASS);
@@ -153,6 +176,13 @@ public class OdpsDynamicTableFactory implements DynamicTableSourceFactory, Dynam
                             LOOKUP_MAX_RETRIES.key(), config.get(LOOKUP_MAX_RETRIES)));
         }
 
+        if (config.get(LOOKUP_CACHE_LOAD_THREADS) <= 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The value of '%s' option should be positive, but is %s.",
+                            LOOKUP_CACHE_LOAD_THREADS.key(), config.get(LOOKUP_CACHE_LOAD_THREADS)));
+        }
+
         if (config.get(SINK_MAX_RETRIES) < 0) {
             throw new IllegalArgumentException(
                     String.format(
@@ -186,6 +216,10 @@ public class OdpsDynamicTableFactory implements DynamicTableSourceFactory, Dynam
                     readableConfig.get(RUNNING_MODE));
             conf.setProperty(INPUT_SPLIT_SIZE.key(),
                     String.valueOf(readableConfig.get(INPUT_SPLIT_SIZE)));
+            conf.setProperty(VECTORIZED_READ_ENABLE.key(),
+                    String.valueOf(readableConfig.get(VECTORIZED_READ_ENABLE)));
+            conf.setProperty(VECTORIZED_BATCH_SIZE.key(),
+                    String.valueOf(readableConfig.get(VECTORIZED_BATCH_SIZE)));
             conf.setProperty(WRITER_BUFFER_ENABLE.key(),
                     String.valueOf(readableConfig.get(WRITER_BUFFER_ENABLE)));
             conf.setProperty(WRITER_BUFFER_SIZE.key(),
@@ -205,10 +239,23 @@ public class OdpsDynamicTableFactory implements DynamicTableSourceFactory, Dynam
         builder.setBufferFlushMaxRows(tableOptions.get(SINK_BUFFER_FLUSH_MAX_ROWS));
         builder.setBufferFlushMaxSizeInBytes(
                 tableOptions.get(SINK_BUFFER_FLUSH_MAX_SIZE).getBytes());
+        builder.setBufferFlushAsync(tableOptions.get(SINK_BUFFER_FLUSH_ASYNC));
+        builder.setBufferFlushAdaptive(tableOptions.get(SINK_BUFFER_FLUSH_ADAPTIVE));
+        builder.setBufferFlushTargetLatencyMillis(tableOptions.get(SINK_BUFFER_FLUSH_TARGET_LATENCY).toMillis());
         builder.setWriteMaxRetries(tableOptions.get(SINK_MAX_RETRIES));
         builder.setDynamicPartitionLimit(tableOptions.get(SINK_DYNAMIC_PARTITION_LIMIT));
         builder.setDynamicPartitionDefaultValue(tableOptions.get(PARTITION_DEFAULT_VALUE));
         builder.setDynamicPartitionAssignerClass(tableOptions.get(PARTITION_ASSIGNER_CLASS));
+        builder.setDeliveryGuarantee(tableOptions.get(SINK_DELIVERY_GUARANTEE));
+        builder.setDynamicPartitionFlushThreads(tableOptions.get(SINK_DYNAMIC_PARTITION_FLUSH_THREADS));
+        builder.setCommitThreads(tableOptions.get(SINK_COMMIT_THREADS));
+        builder.setShuffleByPartition(tableOptions.get(SINK_SHUFFLE_BY_PARTITION));
+        builder.setShuffleByBucket(tableOptions.get(SINK_SHUFFLE_BY_BUCKET));
+        builder.setPartitionCommitTrigger(tableOptions.get(SINK_PARTITION_COMMIT_TRIGGER));
+        builder.setPartitionCommitDelayMillis(tableOptions.get(SINK_PARTITION_COMMIT_DELAY).toMillis());
+        builder.setPartitionTimeZone(tableOptions.get(SINK_PARTITION_COMMIT_WATERMARK_TIME_ZONE));
+        builder.setPartitionTimePattern(tableOptions.get(PARTITION_TIME_EXTRACTOR_TIMESTAMP_PATTERN));
+        builder.setPartitionTimeFormatter(tableOptions.get(PARTITION_TIME_EXTRACTOR_TIMESTAMP_FORMATTER));
         return builder.build();
     }
 
@@ -218,6 +265,16 @@ public class OdpsDynamicTableFactory implements DynamicTableSourceFactory, Dynam
                 tableOptions.get(LOOKUP_CACHE_TTL).toMillis());
         builder.setMaxRetryTimes(
                 tableOptions.get(LOOKUP_MAX_RETRIES));
+        builder.setCacheType(tableOptions.get(LOOKUP_CACHE));
+        builder.setCacheMaxRows(tableOptions.get(LOOKUP_CACHE_MAX_ROWS));
+        tableOptions.getOptional(LOOKUP_CACHE_MAX_SIZE)
+                .ifPresent(size -> builder.setCacheMaxBytes(size.getBytes()));
+        builder.setLoadThreads(tableOptions.get(LOOKUP_CACHE_LOAD_THREADS));
+        builder.setAsync(tableOptions.get(LOOKUP_ASYNC));
+        builder.setCacheStorage(tableOptions.get(LOOKUP_CACHE_STORAGE));
+        tableOptions.getOptional(LOOKUP_CACHE_OFF_HEAP_MEMORY)
+                .ifPresent(size -> builder.setOffHeapMemory(size.getBytes()));
+        tableOptions.getOptional(LOOKUP_CACHE_SPILL_DIR).ifPresent(builder::setSpillDir);
         return builder.build();
     }
 }
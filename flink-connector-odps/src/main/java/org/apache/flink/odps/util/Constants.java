@@ -34,6 +34,9 @@ public class Constants {
     public static final String ODPS_META_CACHE_EXPIRE_TIME = "odps.meta.cache.expire.time";
     public static final int DEFAULT_ODPS_META_CACHE_SIZE = 100;
     public static final int DEFAULT_ODPS_META_CACHE_EXPIRE_TIME = 60;
+    public static final int DEFAULT_ODPS_META_CACHE_REFRESH_TIME = 30;
+    public static final int DEFAULT_ODPS_META_NEGATIVE_CACHE_EXPIRE_TIME = 5;
+    public static final String ODPS_STATISTICS_LAST_MODIFIED_TIME = "last_modified_time";
 
     public static final String ODPS_CONF_DIR = "ODPS_CONF_DIR";
     public static final String ODPS_TABLE = "table-name";
@@ -51,6 +54,17 @@ public class Constants {
 
     public static final String ODPS_INPUT_SPLIT_SIZE = "odps.input.split.size";
     public static final int DEFAULT_SPLIT_SIZE = 256;
+    public static final String ODPS_INPUT_SPLIT_PLAN_THREADS = "odps.input.split.plan.threads";
+    public static final int DEFAULT_ODPS_INPUT_SPLIT_PLAN_THREADS = 8;
+    public static final String ODPS_INPUT_SPLIT_PLAN_TIMEOUT = "odps.input.split.plan.timeout";
+    public static final int DEFAULT_ODPS_INPUT_SPLIT_PLAN_TIMEOUT = 60;
+    public static final String ODPS_INPUT_SPLIT_PLAN_CACHE_TTL = "odps.input.split.plan.cache.ttl";
+    public static final int DEFAULT_ODPS_INPUT_SPLIT_PLAN_CACHE_TTL = 0;
+
+    public static final String ODPS_SOURCE_FETCHER_NUM = "odps.source.fetcher.num";
+    public static final int DEFAULT_ODPS_SOURCE_FETCHER_NUM = 2;
+    public static final String ODPS_SOURCE_PARTITION_BATCH_SIZE = "odps.source.partition.batch.size";
+    public static final int DEFAULT_ODPS_SOURCE_PARTITION_BATCH_SIZE = 16;
 
     public static final String ODPS_WRITER_COMPRESS_ENABLE= "odps.cupid.writer.compress.enable";
     public static final String ODPS_WRITER_BUFFER_ENABLE = "odps.cupid.writer.buffer.enable";
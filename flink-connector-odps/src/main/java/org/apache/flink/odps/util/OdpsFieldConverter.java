@@ -0,0 +1,677 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.util;
+
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.SimpleStruct;
+import com.aliyun.odps.data.Struct;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.ArrayTypeInfo;
+import com.aliyun.odps.type.CharTypeInfo;
+import com.aliyun.odps.type.DecimalTypeInfo;
+import com.aliyun.odps.type.MapTypeInfo;
+import com.aliyun.odps.type.StructTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.VarcharTypeInfo;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.GenericArrayData;
+import org.apache.flink.table.data.GenericMapData;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.types.Row;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts the values of one odps column, compiled once from the column type by
+ * {@link #create(TypeInfo)}. Same conversions as {@link OdpsTypeConverter}, but the converters
+ * of the elements, keys, values and fields of complex types are created with their parent
+ * instead of being looked up by type name for every value, and values already of the target
+ * class are checked first and passed through without unboxing. Other primitive values are
+ * written by {@link OdpsTypeConverter} itself. Arrays get their class from the element type,
+ * so arrays which are empty or start with null are read instead of failing.
+ */
+public abstract class OdpsFieldConverter {
+
+    /**
+     * Converts an odps value to the external flink class, used by rows, tuples and POJOs.
+     */
+    public abstract Object toFlinkField(Object sourceValue);
+
+    /**
+     * Converts an odps value to the internal flink data structure, used by {@code RowData}.
+     */
+    public abstract Object toFlinkDataField(Object sourceValue);
+
+    /**
+     * Converts a flink value to the class expected by the odps record.
+     */
+    public abstract Object toOdpsField(Object sourceValue);
+
+    public Object toFlinkField(Record sourceRecord, int pos) {
+        return toFlinkField(sourceRecord.get(pos));
+    }
+
+    public Object toFlinkDataField(Record sourceRecord, int pos) {
+        return toFlinkDataField(sourceRecord.get(pos));
+    }
+
+    /**
+     * The external flink class of the converted values, the component type of converted arrays.
+     */
+    protected abstract Class<?> getExternalClass();
+
+    public static OdpsFieldConverter[] create(TypeInfo[] typeInfos) {
+        OdpsFieldConverter[] converters = new OdpsFieldConverter[typeInfos.length];
+        for (int i = 0; i < typeInfos.length; i++) {
+            converters[i] = create(typeInfos[i]);
+        }
+        return converters;
+    }
+
+    public static OdpsFieldConverter create(TypeInfo typeInfo) {
+        switch (typeInfo.getOdpsType()) {
+            case TINYINT:
+                return new TinyIntConverter(typeInfo);
+            case SMALLINT:
+                return new SmallIntConverter(typeInfo);
+            case INT:
+                return new IntConverter(typeInfo);
+            case BIGINT:
+                return new BigIntConverter(typeInfo);
+            case FLOAT:
+                return new FloatConverter(typeInfo);
+            case DOUBLE:
+                return new DoubleConverter(typeInfo);
+            case BOOLEAN:
+                return new BooleanConverter(typeInfo);
+            case DECIMAL:
+                return new DecimalConverter((DecimalTypeInfo) typeInfo);
+            case BINARY:
+                return new BinaryConverter(typeInfo);
+            case CHAR:
+                return new CharConverter((CharTypeInfo) typeInfo);
+            case VARCHAR:
+                return new VarcharConverter((VarcharTypeInfo) typeInfo);
+            case STRING:
+                return new StringConverter(typeInfo);
+            case DATETIME:
+                return new DateTimeConverter(typeInfo);
+            case DATE:
+                return new DateConverter(typeInfo);
+            case TIMESTAMP:
+                return new TimestampConverter(typeInfo);
+            case STRUCT:
+                return new StructConverter((StructTypeInfo) typeInfo);
+            case MAP:
+                return new MapConverter((MapTypeInfo) typeInfo);
+            case ARRAY:
+                return new ArrayConverter((ArrayTypeInfo) typeInfo);
+            default:
+                throw new UnsupportedOperationException("Unsupported odps type: " + typeInfo.getTypeName());
+        }
+    }
+
+    /**
+     * Primitive types, values already of the odps class are written as they are, other values
+     * are converted by {@link OdpsTypeConverter}.
+     */
+    private abstract static class ScalarConverter extends OdpsFieldConverter {
+
+        private final TypeInfo typeInfo;
+        private final OdpsTypeConverter typeConverter;
+        private final Class<?> odpsClass;
+
+        private ScalarConverter(TypeInfo typeInfo, Class<?> odpsClass) {
+            this.typeInfo = typeInfo;
+            this.typeConverter = OdpsTypeConverter.valueOf(typeInfo.getOdpsType().name());
+            this.odpsClass = odpsClass;
+        }
+
+        @Override
+        public Object toOdpsField(Object sourceValue) {
+            if (sourceValue == null || odpsClass.isInstance(sourceValue)) {
+                return sourceValue;
+            }
+            return typeConverter.toOdpsField(sourceValue, typeInfo);
+        }
+    }
+
+    /** Types read as the external class, which is also the internal one. */
+    private abstract static class PassThroughConverter extends ScalarConverter {
+
+        private PassThroughConverter(TypeInfo typeInfo, Class<?> odpsClass) {
+            super(typeInfo, odpsClass);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue;
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue;
+        }
+    }
+
+    private static final class TinyIntConverter extends PassThroughConverter {
+
+        private TinyIntConverter(TypeInfo typeInfo) {
+            super(typeInfo, Byte.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Byte.class;
+        }
+    }
+
+    private static final class SmallIntConverter extends PassThroughConverter {
+
+        private SmallIntConverter(TypeInfo typeInfo) {
+            super(typeInfo, Short.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Short.class;
+        }
+    }
+
+    private static final class IntConverter extends PassThroughConverter {
+
+        private IntConverter(TypeInfo typeInfo) {
+            super(typeInfo, Integer.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Integer.class;
+        }
+    }
+
+    private static final class BigIntConverter extends PassThroughConverter {
+
+        private BigIntConverter(TypeInfo typeInfo) {
+            super(typeInfo, Long.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Long.class;
+        }
+    }
+
+    private static final class FloatConverter extends PassThroughConverter {
+
+        private FloatConverter(TypeInfo typeInfo) {
+            super(typeInfo, Float.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Float.class;
+        }
+    }
+
+    private static final class DoubleConverter extends PassThroughConverter {
+
+        private DoubleConverter(TypeInfo typeInfo) {
+            super(typeInfo, Double.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Double.class;
+        }
+    }
+
+    private static final class BooleanConverter extends PassThroughConverter {
+
+        private BooleanConverter(TypeInfo typeInfo) {
+            super(typeInfo, Boolean.class);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Boolean.class;
+        }
+    }
+
+    private static final class DecimalConverter extends PassThroughConverter {
+
+        private final int precision;
+        private final int scale;
+
+        private DecimalConverter(DecimalTypeInfo typeInfo) {
+            super(typeInfo, BigDecimal.class);
+            this.precision = typeInfo.getPrecision();
+            this.scale = typeInfo.getScale();
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue == null ? null :
+                    DecimalData.fromBigDecimal((BigDecimal) sourceValue, precision, scale);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return BigDecimal.class;
+        }
+    }
+
+    private static final class BinaryConverter extends ScalarConverter {
+
+        private BinaryConverter(TypeInfo typeInfo) {
+            super(typeInfo, Binary.class);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            if (sourceValue == null || sourceValue instanceof byte[]) {
+                return sourceValue;
+            } else if (sourceValue instanceof Binary) {
+                return ((Binary) sourceValue).data();
+            } else if (sourceValue instanceof String) {
+                return ((String) sourceValue).getBytes(StandardCharsets.UTF_8);
+            } else if (sourceValue instanceof AbstractChar) {
+                return ((AbstractChar) sourceValue).getValue().getBytes(StandardCharsets.UTF_8);
+            }
+            throw new RuntimeException("Does not support getBytes for type other than String/Binary/Char/VarChar, sees "
+                    + sourceValue.getClass());
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue instanceof Binary ? ((Binary) sourceValue).data() : sourceValue;
+        }
+
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos) {
+            return sourceRecord.getBytes(pos);
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos) {
+            return sourceRecord.getBytes(pos);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return byte[].class;
+        }
+    }
+
+    private static final class CharConverter extends ScalarConverter {
+
+        private CharConverter(CharTypeInfo typeInfo) {
+            super(typeInfo, Char.class);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue == null ? null : ((Char) sourceValue).getValue();
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue == null ? null : StringData.fromString(((Char) sourceValue).getValue());
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return String.class;
+        }
+    }
+
+    private static final class VarcharConverter extends ScalarConverter {
+
+        private VarcharConverter(VarcharTypeInfo typeInfo) {
+            super(typeInfo, Varchar.class);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue == null ? null : ((Varchar) sourceValue).getValue();
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue == null ? null : StringData.fromString(((Varchar) sourceValue).getValue());
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return String.class;
+        }
+    }
+
+    private static final class StringConverter extends ScalarConverter {
+
+        private StringConverter(TypeInfo typeInfo) {
+            super(typeInfo, String.class);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue;
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return StringData.fromString((String) sourceValue);
+        }
+
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos) {
+            return sourceRecord.getString(pos);
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos) {
+            return StringData.fromString(sourceRecord.getString(pos));
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return String.class;
+        }
+    }
+
+    private static final class DateTimeConverter extends ScalarConverter {
+
+        private DateTimeConverter(TypeInfo typeInfo) {
+            super(typeInfo, Date.class);
+        }
+
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue == null ? null : LocalDateTime.ofInstant(((Date) sourceValue).toInstant(), zone);
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue == null ? null : TimestampData.fromLocalDateTime(
+                    LocalDateTime.ofInstant(((Date) sourceValue).toInstant(), zone));
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return LocalDateTime.class;
+        }
+    }
+
+    private static final class DateConverter extends ScalarConverter {
+
+        private DateConverter(TypeInfo typeInfo) {
+            super(typeInfo, java.sql.Date.class);
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            if (sourceValue == null || sourceValue instanceof LocalDate) {
+                return sourceValue;
+            }
+            return ((java.sql.Date) sourceValue).toLocalDate();
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            } else if (sourceValue instanceof LocalDate) {
+                return (int) ((LocalDate) sourceValue).toEpochDay();
+            }
+            return (int) ((java.sql.Date) sourceValue).toLocalDate().toEpochDay();
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return LocalDate.class;
+        }
+    }
+
+    private static final class TimestampConverter extends ScalarConverter {
+
+        private TimestampConverter(TypeInfo typeInfo) {
+            super(typeInfo, Timestamp.class);
+        }
+
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            return sourceValue == null ? null :
+                    LocalDateTime.ofInstant(((Timestamp) sourceValue).toInstant(), zone);
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            return sourceValue == null ? null : TimestampData.fromTimestamp((Timestamp) sourceValue);
+        }
+
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos) {
+            return toFlinkField(((ArrayRecord) sourceRecord).getTimestamp(pos));
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos) {
+            return toFlinkDataField(((ArrayRecord) sourceRecord).getTimestamp(pos));
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return LocalDateTime.class;
+        }
+    }
+
+    private static final class StructConverter extends OdpsFieldConverter {
+
+        private final StructTypeInfo typeInfo;
+        private final OdpsFieldConverter[] fieldConverters;
+
+        private StructConverter(StructTypeInfo typeInfo) {
+            this.typeInfo = typeInfo;
+            this.fieldConverters = create(typeInfo.getFieldTypeInfos().toArray(new TypeInfo[0]));
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Struct struct = (Struct) sourceValue;
+            Row row = new Row(fieldConverters.length);
+            for (int i = 0; i < fieldConverters.length; i++) {
+                row.setField(i, fieldConverters[i].toFlinkField(struct.getFieldValue(i)));
+            }
+            return row;
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Struct struct = (Struct) sourceValue;
+            GenericRowData row = new GenericRowData(fieldConverters.length);
+            for (int i = 0; i < fieldConverters.length; i++) {
+                row.setField(i, fieldConverters[i].toFlinkDataField(struct.getFieldValue(i)));
+            }
+            return row;
+        }
+
+        @Override
+        public Object toOdpsField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Row row = (Row) sourceValue;
+            List<Object> values = new ArrayList<>(fieldConverters.length);
+            for (int i = 0; i < fieldConverters.length; i++) {
+                values.add(fieldConverters[i].toOdpsField(row.getField(i)));
+            }
+            return new SimpleStruct(typeInfo, values);
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Row.class;
+        }
+    }
+
+    private static final class MapConverter extends OdpsFieldConverter {
+
+        private final OdpsFieldConverter keyConverter;
+        private final OdpsFieldConverter valueConverter;
+
+        private MapConverter(MapTypeInfo typeInfo) {
+            this.keyConverter = create(typeInfo.getKeyTypeInfo());
+            this.valueConverter = create(typeInfo.getValueTypeInfo());
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Map<?, ?> sourceMap = (Map<?, ?>) sourceValue;
+            Map<Object, Object> result = new HashMap<>(capacity(sourceMap.size()));
+            for (Map.Entry<?, ?> entry : sourceMap.entrySet()) {
+                result.put(keyConverter.toFlinkField(entry.getKey()),
+                        valueConverter.toFlinkField(entry.getValue()));
+            }
+            return result;
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Map<?, ?> sourceMap = (Map<?, ?>) sourceValue;
+            Map<Object, Object> result = new HashMap<>(capacity(sourceMap.size()));
+            for (Map.Entry<?, ?> entry : sourceMap.entrySet()) {
+                result.put(keyConverter.toFlinkDataField(entry.getKey()),
+                        valueConverter.toFlinkDataField(entry.getValue()));
+            }
+            return new GenericMapData(result);
+        }
+
+        @Override
+        public Object toOdpsField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Map<?, ?> sourceMap = (Map<?, ?>) sourceValue;
+            Map<Object, Object> result = new HashMap<>(capacity(sourceMap.size()));
+            for (Map.Entry<?, ?> entry : sourceMap.entrySet()) {
+                result.put(keyConverter.toOdpsField(entry.getKey()),
+                        valueConverter.toOdpsField(entry.getValue()));
+            }
+            return result;
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return HashMap.class;
+        }
+
+        private static int capacity(int size) {
+            return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
+        }
+    }
+
+    private static final class ArrayConverter extends OdpsFieldConverter {
+
+        private final OdpsFieldConverter elementConverter;
+        private final Class<?> elementClass;
+
+        private ArrayConverter(ArrayTypeInfo typeInfo) {
+            this.elementConverter = create(typeInfo.getElementTypeInfo());
+            this.elementClass = elementConverter.getExternalClass();
+        }
+
+        @Override
+        public Object toFlinkField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            List<?> sourceList = (List<?>) sourceValue;
+            Object[] result = (Object[]) Array.newInstance(elementClass, sourceList.size());
+            for (int i = 0; i < result.length; i++) {
+                result[i] = elementConverter.toFlinkField(sourceList.get(i));
+            }
+            return result;
+        }
+
+        @Override
+        public Object toFlinkDataField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            List<?> sourceList = (List<?>) sourceValue;
+            Object[] result = new Object[sourceList.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = elementConverter.toFlinkDataField(sourceList.get(i));
+            }
+            return new GenericArrayData(result);
+        }
+
+        @Override
+        public Object toOdpsField(Object sourceValue) {
+            if (sourceValue == null) {
+                return null;
+            }
+            Object[] array = (Object[]) sourceValue;
+            List<Object> result = new ArrayList<>(array.length);
+            for (Object element : array) {
+                result.add(elementConverter.toOdpsField(element));
+            }
+            return result;
+        }
+
+        @Override
+        protected Class<?> getExternalClass() {
+            return Array.newInstance(elementClass, 0).getClass();
+        }
+    }
+}
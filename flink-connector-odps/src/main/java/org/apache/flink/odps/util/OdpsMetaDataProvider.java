@@ -19,100 +19,223 @@
 package org.apache.flink.odps.util;
 
 import com.aliyun.odps.*;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.table.catalog.ObjectPath;
+import org.apache.flink.table.catalog.stats.CatalogTableStatistics;
+import org.apache.flink.util.concurrent.ExecutorThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.flink.odps.util.Constants.DEFAULT_ODPS_META_CACHE_EXPIRE_TIME;
+import static org.apache.flink.odps.util.Constants.DEFAULT_ODPS_META_CACHE_REFRESH_TIME;
 import static org.apache.flink.odps.util.Constants.DEFAULT_ODPS_META_CACHE_SIZE;
+import static org.apache.flink.odps.util.Constants.DEFAULT_ODPS_META_NEGATIVE_CACHE_EXPIRE_TIME;
+import static org.apache.flink.odps.util.Constants.ODPS_STATISTICS_LAST_MODIFIED_TIME;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
  * Utils to get odps meta data.
+ *
+ * <p>Projects, tables and partitions are cached for the expire time and reloaded in the
+ * background after the refresh time, stale entries are served while the reload runs. Objects
+ * that do not exist are remembered for the shorter negative expire time only. A partition
+ * missing from the cache is looked up in a listing of all partitions of its table, which is
+ * kept for the expire time. Partitions not in the listing are loaded one by one, so a table
+ * is listed at most once per expire time however many partitions are created meanwhile.
+ *
+ * <p>Only objects reported as not existing are cached as missing. Other failures are thrown, a
+ * failed background reload keeps the stale entry until the next reload or its expiry.
  */
 public class OdpsMetaDataProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(OdpsMetaDataProvider.class);
+
+    /** Most partitions loaded one by one for their statistics. */
+    public static final int MAX_STATISTICS_PARTITIONS = 100;
+
+    private static ExecutorService refreshExecutor;
+
     public LoadingCache<String, Optional<Project>> projectCache;
     public LoadingCache<ObjectPath, Optional<Table>> tableCache;
     public LoadingCache<PartitionPath, Optional<Partition>> partitionCache;
+    private LoadingCache<ObjectPath, Map<String, Partition>> partitionListCache;
+    private Cache<Object, Boolean> missingCache;
 
     private final int cacheSize;
     private final int cacheExpireTime;
+    private final int cacheRefreshTime;
+    private final int negativeCacheExpireTime;
+    private final boolean bulkLoadPartitions;
     private final Odps odps;
 
+    private final AtomicLong negativeCacheHits = new AtomicLong();
+    private final AtomicLong partitionListings = new AtomicLong();
+
     public OdpsMetaDataProvider(Odps odps) {
         this(odps, DEFAULT_ODPS_META_CACHE_SIZE, DEFAULT_ODPS_META_CACHE_EXPIRE_TIME);
     }
 
     public OdpsMetaDataProvider(Odps odps, int cacheSize, int cacheExpireTime) {
+        this(odps, cacheSize, cacheExpireTime, DEFAULT_ODPS_META_CACHE_REFRESH_TIME,
+                DEFAULT_ODPS_META_NEGATIVE_CACHE_EXPIRE_TIME, true);
+    }
+
+    /**
+     * @param cacheRefreshTime seconds after which entries are reloaded in the background,
+     *                         disabled if not positive or not less than the expire time
+     * @param negativeCacheExpireTime seconds to remember objects that do not exist
+     * @param bulkLoadPartitions whether missing partitions are looked up in a listing of the
+     *                           table before they are loaded one by one
+     */
+    public OdpsMetaDataProvider(Odps odps,
+                                int cacheSize,
+                                int cacheExpireTime,
+                                int cacheRefreshTime,
+                                int negativeCacheExpireTime,
+                                boolean bulkLoadPartitions) {
         this.odps = odps;
         this.cacheSize = cacheSize;
         this.cacheExpireTime = cacheExpireTime;
+        this.cacheRefreshTime = cacheRefreshTime;
+        this.negativeCacheExpireTime = negativeCacheExpireTime;
+        this.bulkLoadPartitions = bulkLoadPartitions;
         this.initMetaCache();
     }
 
-    private CacheBuilder createCacheBuilder() {
-        return CacheBuilder.newBuilder()
+    private CacheBuilder<Object, Object> createCacheBuilder() {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
                 .maximumSize(cacheSize)
-                .expireAfterWrite(cacheExpireTime, TimeUnit.SECONDS);
+                .expireAfterWrite(cacheExpireTime, TimeUnit.SECONDS)
+                .recordStats();
+        if (cacheRefreshTime > 0 && cacheRefreshTime < cacheExpireTime) {
+            builder.refreshAfterWrite(cacheRefreshTime, TimeUnit.SECONDS);
+        }
+        return builder;
     }
 
     private void initMetaCache() {
-        CacheLoader<String, Optional<Project>> projectCacheLoader = new CacheLoader<String, Optional<Project>>() {
+        projectCache = createCacheBuilder().build(new AsyncReloadingLoader<String, Optional<Project>>() {
             @Override
             public Optional<Project> load(String projectName) throws Exception {
                 try {
-                    Project project = odps.projects().get(projectName);
-                    project.reload();
-                    return Optional.of(project);
-                } catch (OdpsException e) {
-                    LOG.error("load odps project failed: " + e.getMessage());
+                    return Optional.of(loadProject(projectName));
+                } catch (NoSuchObjectException e) {
+                    LOG.warn("odps project does not exist: " + e.getMessage());
                     return Optional.empty();
                 }
             }
-        };
-        projectCache = createCacheBuilder().build(projectCacheLoader);
-        CacheLoader<ObjectPath, Optional<Table>> tableCacheLoader = new CacheLoader<ObjectPath, Optional<Table>>() {
+        });
+        tableCache = createCacheBuilder().build(new AsyncReloadingLoader<ObjectPath, Optional<Table>>() {
             @Override
             public Optional<Table> load(ObjectPath qualifiedTableName) throws Exception {
                 try {
-                    Table table = odps.tables().get(qualifiedTableName.getDatabaseName(), qualifiedTableName.getObjectName());
-                    table.reload();
-                    return Optional.of(table);
-                } catch (OdpsException e) {
-                    LOG.error("load odps table failed: " + e.getMessage());
+                    return Optional.of(loadTable(qualifiedTableName));
+                } catch (NoSuchObjectException e) {
+                    LOG.warn("odps table does not exist: " + e.getMessage());
                     return Optional.empty();
                 }
             }
-        };
-        tableCache = createCacheBuilder().build(tableCacheLoader);
-
-        CacheLoader<PartitionPath, Optional<Partition>> partitionCacheLoader = new CacheLoader<PartitionPath, Optional<Partition>>() {
+        });
+        partitionCache = createCacheBuilder().build(new AsyncReloadingLoader<PartitionPath, Optional<Partition>>() {
             @Override
             public Optional<Partition> load(PartitionPath qualifiedPartition) throws Exception {
-                try {
-                    Table table = tableCache.get(new ObjectPath(qualifiedPartition.getProjectName(), qualifiedPartition.getTableName()))
-                            .orElseThrow(() -> new FlinkOdpsException(qualifiedPartition.getProjectName() + "." + qualifiedPartition.getTableName() + " does not exist"));
-                    Partition partition = table.getPartition(new PartitionSpec(qualifiedPartition.getPartitionSpec()));
-                    partition.reload();
+                return loadPartitionOption(qualifiedPartition);
+            }
+        });
+        // listings live as long as other entries, partitions created since then are loaded one by one
+        partitionListCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheExpireTime, TimeUnit.SECONDS)
+                .build(new CacheLoader<ObjectPath, Map<String, Partition>>() {
+                    @Override
+                    public Map<String, Partition> load(ObjectPath tablePath) throws Exception {
+                        Map<String, Partition> partitions = new HashMap<>();
+                        for (Partition partition : listAllPartitions(getTable(tablePath))) {
+                            partitions.put(partition.getPartitionSpec().toString(), partition);
+                        }
+                        return partitions;
+                    }
+                });
+        missingCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(negativeCacheExpireTime, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private Optional<Partition> loadPartitionOption(PartitionPath qualifiedPartition)
+            throws ExecutionException, OdpsException {
+        ObjectPath tablePath = new ObjectPath(qualifiedPartition.getProjectName(), qualifiedPartition.getTableName());
+        if (bulkLoadPartitions) {
+            try {
+                Partition partition = partitionListCache.get(tablePath).get(qualifiedPartition.getPartitionSpec());
+                if (partition != null) {
                     return Optional.of(partition);
-                } catch (OdpsException e) {
-                    LOG.error("load odps partition failed: " + e.getMessage());
-                    return Optional.empty();
                 }
+                // may have been created after the listing, ask for this partition only
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                LOG.warn("list odps partitions of " + tablePath.getFullName() + " failed, load "
+                        + qualifiedPartition.getPartitionSpec() + " only", e.getCause());
             }
-        };
-        partitionCache = createCacheBuilder().build(partitionCacheLoader);
+        }
+        try {
+            return Optional.of(loadPartition(getTable(tablePath), new PartitionSpec(qualifiedPartition.getPartitionSpec())));
+        } catch (NoSuchObjectException e) {
+            LOG.warn("odps partition does not exist: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Table getTable(ObjectPath tablePath) throws ExecutionException {
+        return getOption(tableCache, tablePath, false)
+                .orElseThrow(() -> new FlinkOdpsException(tablePath.getFullName() + " does not exist"));
+    }
+
+    /** Gets the project from odps, throws if it does not exist. */
+    protected Project loadProject(String projectName) throws OdpsException {
+        Project project = odps.projects().get(projectName);
+        project.reload();
+        return project;
+    }
+
+    /** Gets the table from odps, throws if it does not exist. */
+    protected Table loadTable(ObjectPath tablePath) throws OdpsException {
+        Table table = odps.tables().get(tablePath.getDatabaseName(), tablePath.getObjectName());
+        table.reload();
+        return table;
+    }
+
+    /** Gets one partition from odps, throws if it does not exist. */
+    protected Partition loadPartition(Table table, PartitionSpec partitionSpec) throws OdpsException {
+        Partition partition = table.getPartition(partitionSpec);
+        partition.reload();
+        return partition;
+    }
+
+    /** Lists all partitions of the table with one listing. */
+    protected List<Partition> listPartitions(Table table) {
+        return table.getPartitions();
+    }
+
+    private List<Partition> listAllPartitions(Table table) {
+        partitionListings.incrementAndGet();
+        return listPartitions(table);
     }
 
     public Partition getPartition(String projectName, String tableName, String partitionSpec, boolean refresh) {
@@ -133,11 +256,16 @@ public class OdpsMetaDataProvider {
 
     public List<Partition> getPartitions(String projectName, String tableName, boolean refresh) {
         Table table = refresh ? getTable(projectName, tableName, true) : getTable(projectName, tableName);
-        List<Partition> result = table.getPartitions();
+        List<Partition> result = listAllPartitions(table);
+        Map<String, Partition> partitions = new HashMap<>();
         result.forEach(partition -> {
-            partitionCache.put(new PartitionPath(projectName, tableName, partition.getPartitionSpec().toString()),
-                    Optional.of(partition));
+            PartitionPath partitionPath =
+                    new PartitionPath(projectName, tableName, partition.getPartitionSpec().toString());
+            partitionCache.put(partitionPath, Optional.of(partition));
+            missingCache.invalidate(partitionPath);
+            partitions.put(partitionPath.getPartitionSpec(), partition);
         });
+        partitionListCache.put(new ObjectPath(projectName, tableName), partitions);
         return result;
     }
 
@@ -145,6 +273,16 @@ public class OdpsMetaDataProvider {
         return this.getPartitions(projectName, tableName, false);
     }
 
+    /**
+     * Forgets the partition, e.g. after it was created, so that the next lookup asks odps. The
+     * listing of the table is kept, partitions missing in it are loaded one by one.
+     */
+    public void invalidatePartition(String projectName, String tableName, String partitionSpec) {
+        PartitionPath partitionPath = new PartitionPath(projectName, tableName, partitionSpec);
+        partitionCache.invalidate(partitionPath);
+        missingCache.invalidate(partitionPath);
+    }
+
     public Table getTable(String projectName, String tableName, boolean refresh) {
         checkNotNull(projectName, "projectName cannot be null");
         checkNotNull(tableName, "tableName cannot be null");
@@ -162,6 +300,127 @@ public class OdpsMetaDataProvider {
         return this.getTable(projectName, tableName, false);
     }
 
+    /**
+     * Statistics of a table from the cached table metadata, also for partitioned tables, so no
+     * partition is loaded. The row count is -1 if odps does not know it.
+     */
+    public CatalogTableStatistics getTableStatistics(String projectName, String tableName) {
+        return getStatistics(getTable(projectName, tableName));
+    }
+
+    /**
+     * Statistics of the given partitions from the cached partition metadata, partitions that do
+     * not exist are skipped. Without partitions the statistics of the whole table are returned.
+     * Partitions missing in the cache are looked up with one listing of the table. As every
+     * partition is loaded on its own, the statistics are unknown for more than
+     * {@link #MAX_STATISTICS_PARTITIONS} partitions, and the file count and the total size are
+     * left out since they need another request per partition.
+     */
+    public CatalogTableStatistics getTableStatistics(String projectName, String tableName, String[] partitions) {
+        if (partitions == null || partitions.length == 0) {
+            return getTableStatistics(projectName, tableName);
+        }
+        if (partitions.length > MAX_STATISTICS_PARTITIONS) {
+            return CatalogTableStatistics.UNKNOWN;
+        }
+        List<Partition> partitionList = new ArrayList<>(partitions.length);
+        List<PartitionPath> uncached = new ArrayList<>();
+        for (String partitionSpec : partitions) {
+            PartitionPath partitionPath = new PartitionPath(projectName, tableName, partitionSpec);
+            Optional<Partition> partition = partitionCache.getIfPresent(partitionPath);
+            if (partition != null) {
+                partition.ifPresent(partitionList::add);
+            } else if (missingCache.getIfPresent(partitionPath) == null) {
+                uncached.add(partitionPath);
+            }
+        }
+        if (uncached.size() == 1) {
+            Partition partition = getPartition(projectName, tableName, uncached.get(0).getPartitionSpec());
+            if (partition != null) {
+                partitionList.add(partition);
+            }
+        } else if (!uncached.isEmpty()) {
+            Map<String, Partition> listed = new HashMap<>();
+            for (Partition partition : getPartitions(projectName, tableName)) {
+                listed.put(partition.getPartitionSpec().toString(), partition);
+            }
+            for (PartitionPath partitionPath : uncached) {
+                Partition partition = listed.get(partitionPath.getPartitionSpec());
+                if (partition != null) {
+                    partitionList.add(partition);
+                }
+            }
+        }
+        return sumStatistics(partitionList);
+    }
+
+    public CatalogTableStatistics getPartitionStatistics(String projectName, String tableName, String partitionSpec) {
+        Partition partition = getPartition(projectName, tableName, partitionSpec);
+        if (partition == null) {
+            throw new FlinkOdpsException("partition not exist. " + partitionSpec);
+        }
+        return getStatistics(partition, true);
+    }
+
+    /** Statistics of the whole table from its metadata. */
+    protected CatalogTableStatistics getStatistics(Table table) {
+        return createStatistics(table.getRecordNum(), table.getFileNum(), table.getPhysicalSize(),
+                table.getSize(), table.getLastDataModifiedTime());
+    }
+
+    /**
+     * Statistics of one partition from its metadata. The file count and the total size are -1
+     * unless {@code extended}, they need a second request.
+     */
+    protected CatalogTableStatistics getStatistics(Partition partition, boolean extended) {
+        return createStatistics(partition.getRecordNum(),
+                extended ? partition.getFileNum() : -1,
+                extended ? partition.getPhysicalSize() : -1,
+                partition.getSize(),
+                partition.getLastDataModifiedTime());
+    }
+
+    private CatalogTableStatistics sumStatistics(List<Partition> partitions) {
+        long rowCount = 0;
+        long fileCount = 0;
+        long totalSize = 0;
+        long rawDataSize = 0;
+        Date lastModifiedTime = null;
+        for (Partition partition : partitions) {
+            CatalogTableStatistics statistics = getStatistics(partition, false);
+            // one partition without a value makes the sum unknown
+            rowCount = sum(rowCount, statistics.getRowCount());
+            fileCount = sum(fileCount, statistics.getFileCount());
+            totalSize = sum(totalSize, statistics.getTotalSize());
+            rawDataSize = sum(rawDataSize, statistics.getRawDataSize());
+            String modifiedTime = statistics.getProperties().get(ODPS_STATISTICS_LAST_MODIFIED_TIME);
+            if (modifiedTime != null
+                    && (lastModifiedTime == null || Long.parseLong(modifiedTime) > lastModifiedTime.getTime())) {
+                lastModifiedTime = new Date(Long.parseLong(modifiedTime));
+            }
+        }
+        return createStatistics(rowCount, fileCount, totalSize, rawDataSize, lastModifiedTime);
+    }
+
+    private static long sum(long sum, long value) {
+        return sum < 0 || value < 0 ? -1 : sum + value;
+    }
+
+    private static CatalogTableStatistics createStatistics(long rowCount,
+                                                           long fileCount,
+                                                           long totalSize,
+                                                           long rawDataSize,
+                                                           Date lastModifiedTime) {
+        return new CatalogTableStatistics(
+                rowCount < 0 ? -1 : rowCount,
+                fileCount < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, fileCount),
+                totalSize < 0 ? -1 : totalSize,
+                rawDataSize < 0 ? -1 : rawDataSize,
+                lastModifiedTime == null ? Collections.emptyMap() :
+                        Collections.singletonMap(ODPS_STATISTICS_LAST_MODIFIED_TIME,
+                                String.valueOf(lastModifiedTime.getTime())));
+    }
+
     public Project getProject(String projectName, boolean refresh) {
         checkNotNull(projectName, "projectName cannot be null");
         try {
@@ -183,24 +442,85 @@ public class OdpsMetaDataProvider {
         return this.getTable(projectName, tableName, refresh).getSchema();
     }
 
+    /**
+     * Registers the hits and misses of the caches, the hits of the negative cache and the
+     * number of partition listings.
+     */
+    public void registerMetrics(MetricGroup metricGroup) {
+        MetricGroup group = metricGroup.addGroup("odpsMeta");
+        group.gauge("tableCacheHits", (Gauge<Long>) () -> tableCache.stats().hitCount());
+        group.gauge("tableCacheMisses", (Gauge<Long>) () -> tableCache.stats().missCount());
+        group.gauge("partitionCacheHits", (Gauge<Long>) () -> partitionCache.stats().hitCount());
+        group.gauge("partitionCacheMisses", (Gauge<Long>) () -> partitionCache.stats().missCount());
+        group.gauge("negativeCacheHits", (Gauge<Long>) negativeCacheHits::get);
+        group.gauge("partitionListings", (Gauge<Long>) partitionListings::get);
+    }
+
+    public long getNegativeCacheHits() {
+        return negativeCacheHits.get();
+    }
+
+    public long getPartitionListings() {
+        return partitionListings.get();
+    }
+
     private Optional<Table> getOdpsTableOption(ObjectPath objectPath, boolean refresh) throws ExecutionException {
-        if (refresh) {
-            tableCache.invalidate(objectPath);
-        }
-        return tableCache.get(objectPath);
+        return getOption(tableCache, objectPath, refresh);
     }
 
     private Optional<Project> getProjectOption(String projectName, boolean refresh) throws ExecutionException {
+        return getOption(projectCache, projectName, refresh);
+    }
+
+    private Optional<Partition> getPartitionOption(PartitionPath partitionPath, boolean refresh) throws ExecutionException {
         if (refresh) {
-            projectCache.invalidate(projectName);
+            partitionListCache.invalidate(new ObjectPath(partitionPath.getProjectName(), partitionPath.getTableName()));
         }
-        return projectCache.get(projectName);
+        return getOption(partitionCache, partitionPath, refresh);
     }
 
-    private Optional<Partition> getPartitionOption(PartitionPath partitionPath, boolean refresh) throws ExecutionException {
+    private <K, V> Optional<V> getOption(LoadingCache<K, Optional<V>> cache, K key, boolean refresh)
+            throws ExecutionException {
         if (refresh) {
-            partitionCache.invalidate(partitionPath);
+            cache.invalidate(key);
+            missingCache.invalidate(key);
+        } else if (missingCache.getIfPresent(key) != null) {
+            negativeCacheHits.incrementAndGet();
+            return Optional.empty();
+        }
+        Optional<V> value = cache.get(key);
+        if (!value.isPresent()) {
+            // remembered for the negative expire time only
+            cache.invalidate(key);
+            missingCache.put(key, Boolean.TRUE);
+        }
+        return value;
+    }
+
+    /**
+     * Shared by all providers. The daemon threads exit after a minute without reloads, so they
+     * neither keep the JVM alive nor hold on to providers of closed catalogs.
+     */
+    private static synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ExecutorThreadFactory("odps-meta-refresher"));
+            executor.allowCoreThreadTimeOut(true);
+            refreshExecutor = executor;
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Reloads entries in the background, the cache serves the old value until the reload is done.
+     */
+    private abstract static class AsyncReloadingLoader<K, V> extends CacheLoader<K, V> {
+
+        @Override
+        public ListenableFuture<V> reload(K key, V oldValue) {
+            ListenableFutureTask<V> task = ListenableFutureTask.create(() -> load(key));
+            getRefreshExecutor().execute(task);
+            return task;
         }
-        return partitionCache.get(partitionPath);
     }
 }
@@ -19,6 +19,9 @@
 package org.apache.flink.odps.util;
 
 import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import org.apache.flink.odps.schema.OdpsColumn;
+import org.apache.flink.odps.schema.OdpsTableSchema;
 import org.apache.flink.table.api.TableSchema;
 import org.apache.flink.table.types.DataType;
 
@@ -75,4 +78,31 @@ public class OdpsTableUtil {
 
         return columns;
     }
+
+    /**
+     * Whether the selected columns can be read through the columnar (ColDataBatch) reader.
+     */
+    public static boolean supportColumnarRead(OdpsTableSchema tableSchema, String[] selectedColumns) {
+        for (String columnName : selectedColumns) {
+            OdpsColumn column = tableSchema.getColumn(columnName);
+            if (!column.getType().equals(OdpsType.BOOLEAN) &&
+                    !column.getType().equals(OdpsType.STRING) &&
+                    !column.getType().equals(OdpsType.CHAR) &&
+                    !column.getType().equals(OdpsType.VARCHAR) &&
+                    !column.getType().equals(OdpsType.BINARY) &&
+                    !column.getType().equals(OdpsType.DECIMAL) &&
+                    !column.getType().equals(OdpsType.DATETIME) &&
+                    !column.getType().equals(OdpsType.DATE) &&
+                    !column.getType().equals(OdpsType.TIMESTAMP) &&
+                    !column.getType().equals(OdpsType.DOUBLE) &&
+                    !column.getType().equals(OdpsType.FLOAT) &&
+                    !column.getType().equals(OdpsType.BIGINT) &&
+                    !column.getType().equals(OdpsType.INT) &&
+                    !column.getType().equals(OdpsType.TINYINT) &&
+                    !column.getType().equals(OdpsType.SMALLINT)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -410,6 +410,16 @@ public enum OdpsTypeConverter {
             return sourceRecord.getBytes(sourceColumn.getName());
         }
 
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return sourceRecord.getBytes(pos);
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return sourceRecord.getBytes(pos);
+        }
+
         @Override
         public Object toFlinkDataField(Object sourceValue, TypeInfo odpsTypeInfo) {
             if (sourceValue == null) {
@@ -562,6 +572,16 @@ public enum OdpsTypeConverter {
                     sourceColumn.getTypeInfo());
         }
 
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return sourceRecord.getString(pos);
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return toFlinkDataField(sourceRecord.getString(pos), odpsTypeInfo);
+        }
+
         @Override
         public Object toFlinkDataField(Object sourceValue, TypeInfo odpsTypeInfo) {
             return StringData.fromString((String) sourceValue);
@@ -725,6 +745,16 @@ public enum OdpsTypeConverter {
                     sourceColumn.getTypeInfo());
         }
 
+        @Override
+        public Object toFlinkField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return toFlinkField(((ArrayRecord) sourceRecord).getTimestamp(pos), odpsTypeInfo);
+        }
+
+        @Override
+        public Object toFlinkDataField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+            return toFlinkDataField(((ArrayRecord) sourceRecord).getTimestamp(pos), odpsTypeInfo);
+        }
+
         @Override
         public Object toFlinkDataField(Object sourceValue, TypeInfo odpsTypeInfo) {
             if (sourceValue == null) {
@@ -979,6 +1009,20 @@ public enum OdpsTypeConverter {
 
     public abstract Object toFlinkDataField(Record sourceRecord, Column sourceColumn);
 
+    /**
+     * Same as {@link #toFlinkField(Record, Column)} for a column position resolved in advance.
+     */
+    public Object toFlinkField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+        return toFlinkField(sourceRecord.get(pos), odpsTypeInfo);
+    }
+
+    /**
+     * Same as {@link #toFlinkDataField(Record, Column)} for a column position resolved in advance.
+     */
+    public Object toFlinkDataField(Record sourceRecord, int pos, TypeInfo odpsTypeInfo) {
+        return toFlinkDataField(sourceRecord.get(pos), odpsTypeInfo);
+    }
+
     public Object toFlinkDataField(Object sourceValue, TypeInfo odpsTypeInfo) {
         return sourceValue;
     }
@@ -27,12 +27,6 @@ import com.aliyun.odps.data.Char;
 import com.aliyun.odps.data.Varchar;
 import com.aliyun.odps.type.AbstractCharTypeInfo;
 import com.aliyun.odps.type.TypeInfo;
-import org.apache.flink.api.common.ExecutionConfig;
-import org.apache.flink.api.common.operators.Keys;
-import org.apache.flink.api.common.typeinfo.TypeInformation;
-import org.apache.flink.api.common.typeutils.CompositeType;
-import org.apache.flink.api.common.typeutils.TypeComparator;
-import org.apache.flink.api.java.typeutils.TypeExtractor;
 import org.apache.flink.odps.*;
 import org.apache.flink.odps.output.stream.PartitionComputer;
 import org.apache.flink.util.Preconditions;
@@ -269,22 +263,4 @@ public class OdpsUtils {
         POJO,
         FLINK_ROW_DATA
     }
-
-    public static  <T> TypeComparator<T> buildTypeComparator(T record, List<String> columnNames) {
-        TypeInformation<T> typeInfo;
-        try {
-            typeInfo = TypeExtractor.getForObject(record);
-        } catch (Exception e) {
-            throw new FlinkOdpsException("Could not create TypeInformation for type " + record.getClass().getName(), e);
-        }
-        Keys<T> keys = new Keys.ExpressionKeys<>(columnNames.toArray(new String[0]), typeInfo);
-        CompositeType<T> compositeType = (CompositeType<T>) typeInfo;
-        int[] logicalKeyPositions = keys.computeLogicalKeyPositions();
-        int numKeyFields = logicalKeyPositions.length;
-        boolean[] orders = new boolean[numKeyFields];
-        for (int i = 0; i < numKeyFields; i++) {
-            orders[i] = true;
-        }
-        return compositeType.createComparator(logicalKeyPositions, orders, 0, new ExecutionConfig());
-    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.util;
+
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.tuple.Tuple;
+import org.apache.flink.api.java.typeutils.PojoTypeInfo;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.types.Row;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Reads one field of the records written by the DataStream API. Rows and tuples are read by
+ * position, POJO fields by name through a {@link MethodHandle} resolved once per class, so
+ * that no key array is extracted for every record.
+ */
+public abstract class RecordFieldGetter<T> {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    @Nullable
+    public abstract Object getFieldOrNull(T record);
+
+    /**
+     * Creates the getters of the given columns for records of the class of {@code record}.
+     * Rows and tuples are expected to hold the columns at {@code positions}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RecordFieldGetter<T>[] create(T record, List<String> columnNames, int[] positions) {
+        RecordFieldGetter<T>[] getters = new RecordFieldGetter[columnNames.size()];
+        if (record instanceof Row) {
+            for (int i = 0; i < getters.length; i++) {
+                getters[i] = (RecordFieldGetter<T>) new RowFieldGetter(positions[i]);
+            }
+        } else if (record instanceof Tuple) {
+            for (int i = 0; i < getters.length; i++) {
+                getters[i] = (RecordFieldGetter<T>) new TupleFieldGetter(positions[i]);
+            }
+        } else {
+            PojoTypeInfo<T> pojoType = getPojoType(record);
+            for (int i = 0; i < getters.length; i++) {
+                getters[i] = new PojoFieldGetter<>(pojoType, columnNames.get(i));
+            }
+        }
+        return getters;
+    }
+
+    private static <T> PojoTypeInfo<T> getPojoType(T record) {
+        TypeInformation<T> typeInfo;
+        try {
+            typeInfo = TypeExtractor.getForObject(record);
+        } catch (Exception e) {
+            throw new FlinkOdpsException("Could not create TypeInformation for type " + record.getClass().getName(), e);
+        }
+        if (!(typeInfo instanceof PojoTypeInfo)) {
+            throw new FlinkOdpsException("Unsupported record type " + typeInfo
+                    + ", only Row, Tuple and POJO records can be written");
+        }
+        return (PojoTypeInfo<T>) typeInfo;
+    }
+
+    private static class RowFieldGetter extends RecordFieldGetter<Row> {
+
+        private final int pos;
+
+        private RowFieldGetter(int pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public Object getFieldOrNull(Row record) {
+            return record.getField(pos);
+        }
+    }
+
+    private static class TupleFieldGetter extends RecordFieldGetter<Tuple> {
+
+        private final int pos;
+
+        private TupleFieldGetter(int pos) {
+            this.pos = pos;
+        }
+
+        @Override
+        public Object getFieldOrNull(Tuple record) {
+            return record.getField(pos);
+        }
+    }
+
+    private static class PojoFieldGetter<T> extends RecordFieldGetter<T> {
+
+        private final String name;
+        private final MethodHandle getter;
+
+        private PojoFieldGetter(PojoTypeInfo<T> pojoType, String name) {
+            int index = pojoType.getFieldIndex(name);
+            if (index < 0) {
+                throw new FlinkOdpsException("Field " + name + " not found in " + pojoType);
+            }
+            Field field = pojoType.getPojoFieldAt(index).getField();
+            try {
+                // fields of flink pojos may be private with public getters and setters
+                field.setAccessible(true);
+                this.getter = MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new FlinkOdpsException("Cannot access field " + name + " of " + pojoType, e);
+            }
+            this.name = name;
+        }
+
+        @Override
+        public Object getFieldOrNull(T record) {
+            try {
+                return getter.invokeExact((Object) record);
+            } catch (Throwable t) {
+                throw new FlinkOdpsException("Failed to get field " + name, t);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.vectorized;
+
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.type.DecimalTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.data.vector.BooleanColumnVector;
+import org.apache.flink.table.data.vector.ByteColumnVector;
+import org.apache.flink.table.data.vector.BytesColumnVector;
+import org.apache.flink.table.data.vector.DecimalColumnVector;
+import org.apache.flink.table.data.vector.DoubleColumnVector;
+import org.apache.flink.table.data.vector.FloatColumnVector;
+import org.apache.flink.table.data.vector.IntColumnVector;
+import org.apache.flink.table.data.vector.LongColumnVector;
+import org.apache.flink.table.data.vector.ShortColumnVector;
+import org.apache.flink.table.data.vector.TimestampColumnVector;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A flink column vector reading the buffers of a cupid {@link ColDataVector} in place.
+ *
+ * <p>Strings and binaries are returned as slices of the deep buffer of the vector, the offsets
+ * of a batch are computed on first access. Dates, datetimes, timestamps and decimals are
+ * converted like {@link org.apache.flink.odps.util.OdpsTypeConverter} converts the values of
+ * {@link MutableColumnarRow}.
+ */
+public class ColDataColumnVector implements BooleanColumnVector, ByteColumnVector, ShortColumnVector,
+        IntColumnVector, LongColumnVector, FloatColumnVector, DoubleColumnVector, BytesColumnVector,
+        DecimalColumnVector, TimestampColumnVector {
+
+    private final OdpsType odpsType;
+    private final int precision;
+    private final int scale;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private ColDataVector vector;
+    private int[] offsets;
+    private boolean offsetsValid;
+
+    public ColDataColumnVector(TypeInfo typeInfo) {
+        this.odpsType = typeInfo.getOdpsType();
+        if (odpsType == OdpsType.DECIMAL) {
+            this.precision = ((DecimalTypeInfo) typeInfo).getPrecision();
+            this.scale = ((DecimalTypeInfo) typeInfo).getScale();
+        } else {
+            this.precision = -1;
+            this.scale = -1;
+        }
+    }
+
+    /**
+     * Points this vector to the column of the next batch.
+     */
+    public void setVector(ColDataVector vector) {
+        this.vector = vector;
+        this.offsetsValid = false;
+    }
+
+    @Override
+    public boolean isNullAt(int rowId) {
+        return vector.isNullAt(rowId);
+    }
+
+    @Override
+    public boolean getBoolean(int rowId) {
+        return vector.getBoolean(rowId);
+    }
+
+    @Override
+    public byte getByte(int rowId) {
+        return vector.getByte(rowId);
+    }
+
+    @Override
+    public short getShort(int rowId) {
+        return vector.getShort(rowId);
+    }
+
+    @Override
+    public int getInt(int rowId) {
+        if (odpsType == OdpsType.DATE) {
+            // days since epoch
+            return (int) vector.getLong(rowId);
+        }
+        return vector.getInt(rowId);
+    }
+
+    @Override
+    public long getLong(int rowId) {
+        return vector.getLong(rowId);
+    }
+
+    @Override
+    public float getFloat(int rowId) {
+        return vector.getFloat(rowId);
+    }
+
+    @Override
+    public double getDouble(int rowId) {
+        return vector.getDouble(rowId);
+    }
+
+    @Override
+    public Bytes getBytes(int rowId) {
+        if (!offsetsValid) {
+            computeOffsets();
+        }
+        int offset = offsets[rowId];
+        return new Bytes(vector.getDeepBuf(), offset, offsets[rowId + 1] - offset);
+    }
+
+    @Override
+    public DecimalData getDecimal(int rowId, int precision, int scale) {
+        if (precision == this.precision && scale == this.scale && precision > 9 && precision <= 18) {
+            return DecimalData.fromUnscaledLong(vector.getLong(rowId), precision, scale);
+        }
+        return DecimalData.fromBigDecimal(vector.getDecimal(rowId), precision, scale);
+    }
+
+    @Override
+    public TimestampData getTimestamp(int rowId, int precision) {
+        if (odpsType == OdpsType.DATETIME) {
+            return TimestampData.fromLocalDateTime(
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(vector.getLong(rowId)), zoneId));
+        }
+        return TimestampData.fromTimestamp(vector.getTimestamp(rowId));
+    }
+
+    private void computeOffsets() {
+        int numRows = vector.getNumRows();
+        if (offsets == null || offsets.length < numRows + 1) {
+            offsets = new int[numRows + 1];
+        }
+        int sum = 0;
+        for (int i = 0; i < numRows; i++) {
+            offsets[i] = sum;
+            // same layout as read by ColDataVector#getBinary
+            sum += (int) vector.getLong(i * 2);
+        }
+        offsets[numRows] = sum;
+        offsetsValid = true;
+    }
+}
@@ -22,31 +22,26 @@ import com.aliyun.odps.Column;
 import com.aliyun.odps.data.Char;
 import com.aliyun.odps.data.Varchar;
 import com.aliyun.odps.type.TypeInfo;
-import org.apache.flink.api.common.typeutils.TypeComparator;
-import org.apache.flink.api.java.tuple.Tuple;
 import org.apache.flink.odps.util.OdpsTypeConverter;
-import org.apache.flink.odps.util.OdpsUtils;
-import org.apache.flink.types.Row;
+import org.apache.flink.odps.util.RecordFieldGetter;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class ColDataRowImpl<T> implements com.aliyun.odps.cupid.table.v1.writer.adaptor.Row {
 
-    private TypeComparator<T> typeComparator;
+    private RecordFieldGetter<T>[] fieldGetters;
     private T row;
-    private Object[] sourceValues;
-    private OdpsUtils.RecordType recordType = null;
     private final Column[] columns;
     private final TypeInfo[] odpsTypeInfo;
     private final OdpsTypeConverter[] odpsTypeConverter;
 
     public ColDataRowImpl(Column[] columns) {
         this.columns = columns;
-        this.sourceValues = new Object[columns.length];
         this.odpsTypeConverter = new OdpsTypeConverter[columns.length];
         this.odpsTypeInfo = new TypeInfo[columns.length];
         for (int i = 0; i < columns.length; i++) {
@@ -56,49 +51,21 @@ public class ColDataRowImpl<T> implements com.aliyun.odps.cupid.table.v1.writer.
     }
 
     public void setRow(T row) {
-        if (recordType == null) {
-            if (row instanceof Row) {
-                this.recordType = OdpsUtils.RecordType.FLINK_ROW;
-            } else if (row instanceof Tuple) {
-                this.recordType = OdpsUtils.RecordType.FLINK_TUPLE;
-            } else {
-                this.recordType = OdpsUtils.RecordType.POJO;
-                this.typeComparator = OdpsUtils.buildTypeComparator(row, Arrays.stream(columns).map(Column::getName).collect(Collectors.toList()));
-            }
+        if (fieldGetters == null) {
+            this.fieldGetters = RecordFieldGetter.create(row,
+                    Arrays.stream(columns).map(Column::getName).collect(Collectors.toList()),
+                    IntStream.range(0, columns.length).toArray());
         }
         this.row = row;
-        if (this.recordType == OdpsUtils.RecordType.POJO) {
-            buildFlinkRow(row);
-        }
-    }
-
-    private void buildFlinkRow(T row) {
-        Object[] keyArray = new Object[this.columns.length];
-        typeComparator.extractKeys(row, keyArray, 0);
-        sourceValues = keyArray;
     }
 
     private Object getSourceValue(int idx) {
-        switch (recordType) {
-            case FLINK_ROW:
-                return ((Row) this.row).getField(idx);
-            case FLINK_TUPLE:
-                return ((Tuple) this.row).getField(idx);
-            default:
-                return sourceValues[idx];
-        }
+        return fieldGetters[idx].getFieldOrNull(row);
     }
 
     @Override
     public boolean isNullAt(int idx) {
-        switch (recordType) {
-            case FLINK_ROW:
-                return ((Row) this.row).getField(idx) == null;
-            case FLINK_TUPLE:
-                return ((Tuple) this.row).getField(idx) == null;
-            default:
-                return sourceValues[idx] == null;
-        }
+        return getSourceValue(idx) == null;
     }
 
     @Override
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.vectorized;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.table.data.ColumnarRowData;
+import org.apache.flink.table.data.vector.ColumnVector;
+import org.apache.flink.table.data.vector.VectorizedColumnBatch;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes a cupid {@link ColDataBatch} as a {@link VectorizedColumnBatch}, the rows are read
+ * through one reused {@link ColumnarRowData} without copying them. Partition columns are
+ * constant vectors, their values are converted once per split.
+ *
+ * <p>The rows are only valid until the next batch is set.
+ */
+public class ColumnarRowDataBatch {
+
+    private final ColDataColumnVector[] dataVectors;
+    private final VectorizedColumnBatch columnBatch;
+    private final ColumnarRowData row;
+
+    public ColumnarRowDataBatch(Column[] fullColumns, Map<String, String> partitionSpec) {
+        ColumnVector[] vectors = new ColumnVector[fullColumns.length];
+        List<ColDataColumnVector> dataVectors = new ArrayList<>(fullColumns.length);
+        for (int i = 0; i < fullColumns.length; i++) {
+            Column column = fullColumns[i];
+            if (partitionSpec.containsKey(column.getName())) {
+                Object value = OdpsUtils.convertPartitionColumn(
+                        partitionSpec.get(column.getName()), column.getTypeInfo());
+                vectors[i] = new ConstantColumnVector(
+                        OdpsTypeConverter.valueOf(column.getTypeInfo().getOdpsType().name())
+                                .toFlinkDataField(value, column.getTypeInfo()));
+            } else {
+                // data columns are read in the order they are selected
+                ColDataColumnVector vector = new ColDataColumnVector(column.getTypeInfo());
+                dataVectors.add(vector);
+                vectors[i] = vector;
+            }
+        }
+        this.dataVectors = dataVectors.toArray(new ColDataColumnVector[0]);
+        this.columnBatch = new VectorizedColumnBatch(vectors);
+        this.row = new ColumnarRowData(columnBatch);
+    }
+
+    public void updateColumnBatch(ColDataBatch colDataBatch) {
+        // a split without selected data columns still reads one column
+        Preconditions.checkArgument(colDataBatch.getColumnCount() >= dataVectors.length,
+                "Expect %s data columns, but the batch has %s", dataVectors.length, colDataBatch.getColumnCount());
+        for (int i = 0; i < dataVectors.length; i++) {
+            dataVectors[i].setVector(colDataBatch.getVectors()[i]);
+        }
+        columnBatch.setNumRows(colDataBatch.getRowCount());
+    }
+
+    public int getNumRows() {
+        return columnBatch.getNumRows();
+    }
+
+    /**
+     * Returns the reused row pointing to the given row of the current batch.
+     */
+    public ColumnarRowData getRow(int rowId) {
+        row.setRowId(rowId);
+        return row;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.vectorized;
+
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.data.vector.BooleanColumnVector;
+import org.apache.flink.table.data.vector.ByteColumnVector;
+import org.apache.flink.table.data.vector.BytesColumnVector;
+import org.apache.flink.table.data.vector.DecimalColumnVector;
+import org.apache.flink.table.data.vector.DoubleColumnVector;
+import org.apache.flink.table.data.vector.FloatColumnVector;
+import org.apache.flink.table.data.vector.IntColumnVector;
+import org.apache.flink.table.data.vector.LongColumnVector;
+import org.apache.flink.table.data.vector.ShortColumnVector;
+import org.apache.flink.table.data.vector.TimestampColumnVector;
+
+import javax.annotation.Nullable;
+
+/**
+ * A column vector with the same value in every row, used for the partition columns of a split.
+ * The value is in the internal data format of flink, e.g. {@link StringData} for strings.
+ */
+public class ConstantColumnVector implements BooleanColumnVector, ByteColumnVector, ShortColumnVector,
+        IntColumnVector, LongColumnVector, FloatColumnVector, DoubleColumnVector, BytesColumnVector,
+        DecimalColumnVector, TimestampColumnVector {
+
+    @Nullable
+    private final Object value;
+    @Nullable
+    private final Bytes bytes;
+
+    public ConstantColumnVector(@Nullable Object value) {
+        this.value = value;
+        if (value instanceof StringData) {
+            byte[] data = ((StringData) value).toBytes();
+            this.bytes = new Bytes(data, 0, data.length);
+        } else if (value instanceof byte[]) {
+            this.bytes = new Bytes((byte[]) value, 0, ((byte[]) value).length);
+        } else {
+            this.bytes = null;
+        }
+    }
+
+    @Override
+    public boolean isNullAt(int rowId) {
+        return value == null;
+    }
+
+    @Override
+    public boolean getBoolean(int rowId) {
+        return (Boolean) value;
+    }
+
+    @Override
+    public byte getByte(int rowId) {
+        return (Byte) value;
+    }
+
+    @Override
+    public short getShort(int rowId) {
+        return (Short) value;
+    }
+
+    @Override
+    public int getInt(int rowId) {
+        return (Integer) value;
+    }
+
+    @Override
+    public long getLong(int rowId) {
+        return (Long) value;
+    }
+
+    @Override
+    public float getFloat(int rowId) {
+        return (Float) value;
+    }
+
+    @Override
+    public double getDouble(int rowId) {
+        return (Double) value;
+    }
+
+    @Override
+    public Bytes getBytes(int rowId) {
+        return bytes;
+    }
+
+    @Override
+    public DecimalData getDecimal(int rowId, int precision, int scale) {
+        return (DecimalData) value;
+    }
+
+    @Override
+    public TimestampData getTimestamp(int rowId, int precision) {
+        return (TimestampData) value;
+    }
+}
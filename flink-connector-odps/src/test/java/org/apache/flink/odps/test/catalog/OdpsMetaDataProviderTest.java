@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.catalog;
+
+import com.aliyun.odps.*;
+import com.aliyun.odps.account.AliyunAccount;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.odps.util.Constants;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.apache.flink.table.catalog.ObjectPath;
+import org.apache.flink.table.catalog.stats.CatalogTableStatistics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OdpsMetaDataProviderTest {
+
+    private static final String PROJECT = "project";
+    private static final String TABLE = "table";
+
+    @Test
+    public void testPartitionsAreListedOnce() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        for (int i = 0; i < 10; i++) {
+            provider.addPartition("dt=" + i);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 10; i++) {
+                Partition partition = provider.getPartition(PROJECT, TABLE, "dt='" + i + "'");
+                assertEquals("dt='" + i + "'", partition.getPartitionSpec().toString());
+            }
+        }
+        assertEquals(1, provider.listings.get());
+        assertEquals(1, provider.getPartitionListings());
+        assertEquals(0, provider.partitionLoads.get());
+        assertEquals(1, provider.tableLoads.get());
+        assertEquals(10, provider.partitionCache.stats().hitCount());
+    }
+
+    @Test
+    public void testMissingPartitionsAreCachedNegatively() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        provider.addPartition("dt=1");
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        assertEquals(1, provider.listings.get());
+        assertEquals(1, provider.partitionLoads.get());
+        assertEquals(1, provider.getNegativeCacheHits());
+
+        // created by another writer, still unknown until invalidated
+        provider.addPartition("dt=2");
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        provider.invalidatePartition(PROJECT, TABLE, "dt=2");
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        // not in the listing, loaded on its own
+        assertEquals(1, provider.listings.get());
+        assertEquals(2, provider.partitionLoads.get());
+    }
+
+    @Test
+    public void testNegativeEntriesExpire() throws Exception {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 1, true);
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        provider.addPartition("dt=1");
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        Thread.sleep(1100);
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        // the listing outlives the negative entry, the partition is loaded on its own
+        assertEquals(1, provider.listings.get());
+        assertEquals(2, provider.partitionLoads.get());
+    }
+
+    @Test
+    public void testListingExpiresWithOtherEntries() throws Exception {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(1, 0, 1, true);
+        provider.addPartition("dt=1");
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        for (int i = 2; i < 12; i++) {
+            provider.addPartition("dt=" + i);
+            assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=" + i));
+        }
+        // new partitions do not list the table again
+        assertEquals(1, provider.listings.get());
+        assertEquals(10, provider.partitionLoads.get());
+
+        Thread.sleep(1100);
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=5"));
+        assertEquals(2, provider.listings.get());
+        assertEquals(10, provider.partitionLoads.get());
+    }
+
+    @Test
+    public void testPartitionStatisticsAreSummed() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        provider.addPartition("dt=1", 10, 1, 100, 200, 1000L);
+        provider.addPartition("dt=2", 5, 2, 50, 80, 3000L);
+        provider.addPartition("dt=3", -1, 1, 10, 20, 2000L);
+
+        CatalogTableStatistics statistics =
+                provider.getTableStatistics(PROJECT, TABLE, new String[]{"dt=1", "dt='2'", "dt=9"});
+        assertEquals(15, statistics.getRowCount());
+        assertEquals(3, statistics.getFileCount());
+        assertEquals(150, statistics.getTotalSize());
+        assertEquals(280, statistics.getRawDataSize());
+        assertEquals("3000", statistics.getProperties().get(Constants.ODPS_STATISTICS_LAST_MODIFIED_TIME));
+        // the partitions missing in the cache are looked up with one listing
+        assertEquals(1, provider.listings.get());
+        assertEquals(0, provider.partitionLoads.get());
+
+        // one partition without record count makes the row count unknown
+        statistics = provider.getTableStatistics(PROJECT, TABLE, new String[]{"dt=1", "dt=3"});
+        assertEquals(-1, statistics.getRowCount());
+        assertEquals(2, statistics.getFileCount());
+        assertEquals(220, statistics.getRawDataSize());
+        assertEquals("2000", statistics.getProperties().get(Constants.ODPS_STATISTICS_LAST_MODIFIED_TIME));
+        assertEquals(1, provider.listings.get());
+
+        statistics = provider.getTableStatistics(PROJECT, TABLE, new String[]{"dt=9"});
+        assertEquals(0, statistics.getRowCount());
+        assertTrue(statistics.getProperties().isEmpty());
+        assertEquals(-1, provider.getPartitionStatistics(PROJECT, TABLE, "dt=3").getRowCount());
+        assertEquals(1, provider.listings.get());
+    }
+
+    @Test
+    public void testTableStatisticsDoNotLoadPartitions() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        provider.addPartition("dt=1", 10, 1, 100, 200, 1000L);
+        provider.tableStatistics = new CatalogTableStatistics(15, 3, 150, 280);
+
+        for (int i = 0; i < 2; i++) {
+            CatalogTableStatistics statistics = provider.getTableStatistics(PROJECT, TABLE);
+            assertEquals(15, statistics.getRowCount());
+            assertEquals(280, statistics.getRawDataSize());
+            statistics = provider.getTableStatistics(PROJECT, TABLE, new String[0]);
+            assertEquals(280, statistics.getRawDataSize());
+        }
+        assertEquals(0, provider.listings.get());
+        assertEquals(0, provider.partitionLoads.get());
+        assertEquals(1, provider.tableLoads.get());
+    }
+
+    @Test
+    public void testStatisticsOfTooManyPartitionsAreUnknown() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        String[] partitions = new String[OdpsMetaDataProvider.MAX_STATISTICS_PARTITIONS + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = "dt=" + i;
+            provider.addPartition(partitions[i], 1, 1, 1, 1, 1000L);
+        }
+        assertSame(CatalogTableStatistics.UNKNOWN, provider.getTableStatistics(PROJECT, TABLE, partitions));
+        assertEquals(0, provider.listings.get());
+
+        String[] maxPartitions = Arrays.copyOf(partitions, OdpsMetaDataProvider.MAX_STATISTICS_PARTITIONS);
+        CatalogTableStatistics statistics = provider.getTableStatistics(PROJECT, TABLE, maxPartitions);
+        assertEquals(OdpsMetaDataProvider.MAX_STATISTICS_PARTITIONS, statistics.getRawDataSize());
+        assertEquals(1, provider.listings.get());
+    }
+
+    @Test
+    public void testMissingTablesAreCachedNegatively() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        for (int i = 0; i < 3; i++) {
+            try {
+                provider.getTable(PROJECT, "missing");
+                fail();
+            } catch (FlinkOdpsException e) {
+                assertTrue(e.getMessage().contains("does not exist"));
+            }
+        }
+        assertEquals(1, provider.tableLoads.get());
+        assertNotNull(provider.getTable(PROJECT, TABLE, true));
+        assertEquals(2, provider.tableLoads.get());
+    }
+
+    @Test
+    public void testSinglePartitionLoads() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, false);
+        provider.addPartition("dt=1");
+        assertNotNull(provider.getPartition(PROJECT, TABLE, "dt=1"));
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        assertNull(provider.getPartition(PROJECT, TABLE, "dt=2"));
+        assertEquals(0, provider.listings.get());
+        assertEquals(2, provider.partitionLoads.get());
+
+        // a failed listing falls back to the single partition
+        TestingMetaDataProvider failingListings = new TestingMetaDataProvider(60, 0, 60, true);
+        failingListings.addPartition("dt=1");
+        failingListings.failListings = true;
+        assertNotNull(failingListings.getPartition(PROJECT, TABLE, "dt=1"));
+        assertEquals(1, failingListings.partitionLoads.get());
+    }
+
+    @Test
+    public void testStaleEntriesAreServedWhileReloading() throws Exception {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 1, 60, true);
+        Table table = provider.getTable(PROJECT, TABLE);
+        CountDownLatch reloadStarted = new CountDownLatch(1);
+        CountDownLatch releaseReload = new CountDownLatch(1);
+        provider.blockTableLoads(reloadStarted, releaseReload);
+        Thread.sleep(1100);
+
+        // the reload blocks in the background, the stale table is returned
+        assertSame(table, provider.getTable(PROJECT, TABLE));
+        reloadStarted.await();
+        assertSame(table, provider.getTable(PROJECT, TABLE));
+        releaseReload.countDown();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (provider.getTable(PROJECT, TABLE) == table) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(2, provider.tableLoads.get());
+    }
+
+    @Test
+    public void testFailedReloadKeepsStaleTable() throws Exception {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 1, 60, true);
+        Table table = provider.getTable(PROJECT, TABLE);
+        provider.tableLoadFailure = new OdpsException("throttled");
+        Thread.sleep(1100);
+
+        // the reload fails in the background, the table is still served
+        assertSame(table, provider.getTable(PROJECT, TABLE));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (provider.tableLoads.get() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertSame(table, provider.getTable(PROJECT, TABLE));
+        assertEquals(0, provider.getNegativeCacheHits());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCachedAsMissing() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider(60, 0, 60, true);
+        provider.tableLoadFailure = new OdpsException("throttled");
+        try {
+            provider.getTable(PROJECT, TABLE);
+            fail();
+        } catch (FlinkOdpsException e) {
+            assertFalse(e.getMessage().contains("does not exist"));
+        }
+        provider.tableLoadFailure = null;
+        assertNotNull(provider.getTable(PROJECT, TABLE));
+        assertEquals(0, provider.getNegativeCacheHits());
+        assertEquals(2, provider.tableLoads.get());
+    }
+
+    /** Answers the metadata requests from memory and counts them. */
+    private static class TestingMetaDataProvider extends OdpsMetaDataProvider {
+
+        private static final Odps ODPS = createOdps();
+
+        private final Set<String> partitions = ConcurrentHashMap.newKeySet();
+        private final Map<String, CatalogTableStatistics> statistics = new ConcurrentHashMap<>();
+        private final AtomicInteger tableLoads = new AtomicInteger();
+        private final AtomicInteger partitionLoads = new AtomicInteger();
+        private final AtomicInteger listings = new AtomicInteger();
+        private volatile boolean failListings;
+        private volatile OdpsException tableLoadFailure;
+        private volatile CatalogTableStatistics tableStatistics;
+        private volatile CountDownLatch loadStarted;
+        private volatile CountDownLatch releaseLoad;
+
+        private TestingMetaDataProvider(int expireTime, int refreshTime, int negativeExpireTime, boolean bulkLoad) {
+            super(ODPS, 100, expireTime, refreshTime, negativeExpireTime, bulkLoad);
+        }
+
+        private static Odps createOdps() {
+            Odps odps = new Odps(new AliyunAccount("accessId", "accessKey"));
+            odps.setEndpoint("http://localhost");
+            odps.setDefaultProject(PROJECT);
+            return odps;
+        }
+
+        private void addPartition(String partitionSpec) {
+            partitions.add(new PartitionSpec(partitionSpec).toString());
+        }
+
+        private void addPartition(String partitionSpec,
+                                  long rowCount,
+                                  int fileCount,
+                                  long totalSize,
+                                  long rawDataSize,
+                                  long lastModifiedTime) {
+            addPartition(partitionSpec);
+            statistics.put(new PartitionSpec(partitionSpec).toString(),
+                    new CatalogTableStatistics(rowCount, fileCount, totalSize, rawDataSize,
+                            Collections.singletonMap(Constants.ODPS_STATISTICS_LAST_MODIFIED_TIME,
+                                    String.valueOf(lastModifiedTime))));
+        }
+
+        private void blockTableLoads(CountDownLatch loadStarted, CountDownLatch releaseLoad) {
+            this.loadStarted = loadStarted;
+            this.releaseLoad = releaseLoad;
+        }
+
+        @Override
+        protected Project loadProject(String projectName) throws OdpsException {
+            return ODPS.projects().get(projectName);
+        }
+
+        @Override
+        protected Table loadTable(ObjectPath tablePath) throws OdpsException {
+            tableLoads.incrementAndGet();
+            if (loadStarted != null) {
+                loadStarted.countDown();
+                try {
+                    releaseLoad.await();
+                } catch (InterruptedException e) {
+                    throw new OdpsException("interrupted", e);
+                }
+            }
+            if (tableLoadFailure != null) {
+                throw tableLoadFailure;
+            }
+            if (!TABLE.equals(tablePath.getObjectName())) {
+                throw new NoSuchObjectException("Table not found: " + tablePath.getFullName());
+            }
+            return ODPS.tables().get(tablePath.getDatabaseName(), tablePath.getObjectName());
+        }
+
+        @Override
+        protected Partition loadPartition(Table table, PartitionSpec partitionSpec) throws OdpsException {
+            partitionLoads.incrementAndGet();
+            if (!partitions.contains(partitionSpec.toString())) {
+                throw new NoSuchObjectException("Partition not found: " + partitionSpec);
+            }
+            return table.getPartition(partitionSpec);
+        }
+
+        @Override
+        protected CatalogTableStatistics getStatistics(Table table) {
+            return tableStatistics;
+        }
+
+        @Override
+        protected CatalogTableStatistics getStatistics(Partition partition, boolean extended) {
+            return statistics.get(partition.getPartitionSpec().toString());
+        }
+
+        @Override
+        protected List<Partition> listPartitions(Table table) {
+            listings.incrementAndGet();
+            if (failListings) {
+                throw new RuntimeException("listing failed");
+            }
+            List<Partition> result = new ArrayList<>();
+            for (String partition : partitions) {
+                result.add(table.getPartition(new PartitionSpec(partition)));
+            }
+            return result;
+        }
+    }
+}
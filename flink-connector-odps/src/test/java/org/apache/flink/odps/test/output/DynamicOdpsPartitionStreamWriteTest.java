@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.account.AliyunAccount;
+import org.apache.flink.odps.output.writer.OdpsStreamWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.stream.DynamicOdpsPartitionStreamWrite;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class DynamicOdpsPartitionStreamWriteTest {
+
+    private static final OdpsConf ODPS_CONF = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+
+    @Test
+    public void testLeastRecentlyUsedPartitionIsClosed() throws Exception {
+        TestingDynamicWrite write = new TestingDynamicWrite(OdpsWriteOptions.builder()
+                .setDynamicPartitionLimit(2)
+                .build());
+        write.open(0, 1);
+        writeAll(write, "dt=1:a", "dt=2:b", "dt=1:c", "dt=3:d");
+        // dt=1 was written after dt=2, so dt=2 is the least recently used one
+        assertFalse(write.writer("dt=2").open);
+        assertEquals(Collections.singletonList("b"), write.writer("dt=2").records);
+        assertTrue(write.writer("dt=1").open);
+        assertTrue(write.writer("dt=3").open);
+
+        writeAll(write, "dt=4:e");
+        assertFalse(write.writer("dt=1").open);
+        assertEquals(Arrays.asList("a", "c"), write.writer("dt=1").records);
+        assertTrue(write.writer("dt=3").open);
+        assertTrue(write.writer("dt=4").open);
+
+        write.close();
+        assertEquals(Collections.singletonList("d"), write.writer("dt=3").records);
+        assertEquals(Collections.singletonList("e"), write.writer("dt=4").records);
+        assertFalse(write.writer("dt=3").open);
+        assertFalse(write.writer("dt=4").open);
+    }
+
+    @Test
+    public void testClosedPartitionsReuseWriteSession() throws Exception {
+        TestingDynamicWrite write = new TestingDynamicWrite(OdpsWriteOptions.builder()
+                .setDynamicPartitionLimit(2)
+                .build());
+        write.open(0, 1);
+        writeAll(write, "dt=1:a", "dt=2:b", "dt=3:c");
+        assertFalse(write.writer("dt=1").open);
+
+        // the closed writer is opened again with its write session
+        TestingWrite reopened = write.writer("dt=1");
+        writeAll(write, "dt=1:d");
+        assertSame(reopened, write.writer("dt=1"));
+        assertTrue(reopened.open);
+        assertEquals(1, reopened.sessions);
+        assertEquals(2, reopened.opens);
+        assertEquals(3, write.created);
+
+        // at most limit closed writers keep their session, dt=1 is pushed out while writing dt=4 .. dt=7
+        writeAll(write, "dt=4:e", "dt=5:f", "dt=6:g", "dt=7:h");
+        writeAll(write, "dt=1:i");
+        assertNotSame(reopened, write.writer("dt=1"));
+        assertEquals(1, write.writer("dt=1").sessions);
+        assertEquals(Collections.singletonList("i"), write.writer("dt=1").buffer);
+        assertEquals(8, write.created);
+
+        // dt=5 is the eldest closed writer, closing dt=7 to reopen it must not push it out
+        TestingWrite closed = write.writer("dt=5");
+        assertFalse(closed.open);
+        writeAll(write, "dt=5:j");
+        assertSame(closed, write.writer("dt=5"));
+        assertTrue(closed.open);
+        assertFalse(write.writer("dt=7").open);
+        assertEquals(1, closed.sessions);
+        assertEquals(8, write.created);
+        write.close();
+    }
+
+    @Test
+    public void testParallelFlushFailureIsThrown() throws Exception {
+        TestingDynamicWrite write = new TestingDynamicWrite(OdpsWriteOptions.builder()
+                .setDynamicPartitionFlushThreads(2)
+                .build());
+        write.open(0, 1);
+        writeAll(write, "dt=1:a", "dt=2:b", "dt=3:c");
+        write.writer("dt=2").flushFailure = new IOException("dt=2 failed");
+        try {
+            write.flush();
+            fail();
+        } catch (IOException e) {
+            assertEquals("dt=2 failed", e.getMessage());
+        }
+        // the other partitions are flushed before the failure is thrown
+        assertEquals(Collections.singletonList("a"), write.writer("dt=1").records);
+        assertEquals(Collections.singletonList("c"), write.writer("dt=3").records);
+        assertFalse(write.isIdle());
+
+        write.writer("dt=2").flushFailure = new IllegalStateException("dt=2 broken");
+        writeAll(write, "dt=1:d");
+        try {
+            write.flush();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("dt=2 broken", e.getCause().getMessage());
+        }
+        assertEquals(Arrays.asList("a", "d"), write.writer("dt=1").records);
+
+        write.writer("dt=2").flushFailure = null;
+        write.flush();
+        assertEquals(Collections.singletonList("b"), write.writer("dt=2").records);
+        assertTrue(write.isIdle());
+        write.close();
+    }
+
+    @Test
+    public void testCommitCompletePartitions() throws Exception {
+        TestingDynamicWrite write = new TestingDynamicWrite(OdpsWriteOptions.builder()
+                .setDynamicPartitionLimit(2)
+                .setPartitionCommitTrigger(OdpsWriteOptions.PartitionCommitTrigger.PARTITION_TIME)
+                .setPartitionTimeZone("UTC")
+                .setPartitionTimeFormatter("yyyyMMdd")
+                .build());
+        write.open(0, 1);
+        writeAll(write, "dt=20220301:a", "dt=20220302:b", "dt=20220303:c", "dt=20220302:d");
+        TestingWrite closed = write.writer("dt=20220301");
+        TestingWrite committed = write.writer("dt=20220302");
+        assertFalse(closed.open);
+
+        write.commitPartitions(LocalDateTime.of(2022, 3, 3, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        // the open partition is flushed and closed, the later one stays open
+        assertFalse(committed.open);
+        assertEquals(Arrays.asList("b", "d"), committed.records);
+        assertTrue(write.writer("dt=20220303").open);
+        assertTrue(write.writer("dt=20220303").records.isEmpty());
+
+        // the write sessions are released, a late record starts a new one
+        writeAll(write, "dt=20220301:e", "dt=20220302:f");
+        assertNotSame(closed, write.writer("dt=20220301"));
+        assertNotSame(committed, write.writer("dt=20220302"));
+        assertEquals(1, write.writer("dt=20220302").sessions);
+        assertEquals(Collections.singletonList("f"), write.writer("dt=20220302").buffer);
+        assertEquals(5, write.created);
+
+        // nothing is committed before the watermark passes a partition
+        write.commitPartitions(LocalDateTime.of(2022, 3, 2, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        assertTrue(write.writer("dt=20220302").open);
+        write.close();
+    }
+
+    private static void writeAll(DynamicOdpsPartitionStreamWrite<String> write, String... records)
+            throws IOException {
+        for (String record : records) {
+            write.writeRecord(record);
+        }
+    }
+
+    /** Writes records {@code partition:value} to in-memory partition writers. */
+    private static class TestingDynamicWrite extends DynamicOdpsPartitionStreamWrite<String> {
+
+        private final Map<String, TestingWrite> writers = new ConcurrentHashMap<>();
+        private int created;
+
+        private TestingDynamicWrite(OdpsWriteOptions options) {
+            super(ODPS_CONF, "project", "table", null, options,
+                    (record, context) -> record.split(":")[0], new TestingMetaDataProvider());
+        }
+
+        private TestingWrite writer(String partition) {
+            TestingWrite writer = writers.get(partition);
+            assertNotNull("No writer of " + partition, writer);
+            return writer;
+        }
+
+        @Override
+        protected OdpsStreamWrite<String> createPartitionWriter(String partition) {
+            TestingWrite writer = new TestingWrite();
+            writers.put(partition, writer);
+            created++;
+            return writer;
+        }
+    }
+
+    /** Serves the schema of a table partitioned by {@code dt}. */
+    private static class TestingMetaDataProvider extends OdpsMetaDataProvider {
+
+        private TestingMetaDataProvider() {
+            super(createOdps());
+        }
+
+        private static Odps createOdps() {
+            Odps odps = new Odps(new AliyunAccount("accessId", "accessKey"));
+            odps.setEndpoint("http://localhost");
+            odps.setDefaultProject("project");
+            return odps;
+        }
+
+        @Override
+        public TableSchema getTableSchema(String projectName, String tableName, boolean refresh) {
+            TableSchema schema = new TableSchema();
+            schema.addColumn(new Column("c", OdpsType.STRING));
+            schema.addPartitionColumn(new Column("dt", OdpsType.STRING));
+            return schema;
+        }
+    }
+
+    private static class TestingWrite implements OdpsStreamWrite<String> {
+
+        private final List<String> records = new ArrayList<>();
+        private final List<String> buffer = new ArrayList<>();
+        private volatile Exception flushFailure;
+        private int sessions;
+        private int opens;
+        private boolean open;
+
+        @Override
+        public void initWriteSession() {
+            sessions++;
+        }
+
+        @Override
+        public void open(int taskNumber, int numTasks) {
+            opens++;
+            open = true;
+        }
+
+        @Override
+        public void writeRecord(String record) {
+            assertTrue(open);
+            buffer.add(record.split(":")[1]);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            Exception failure = flushFailure;
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            records.addAll(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public synchronized boolean isIdle() {
+            return buffer.isEmpty();
+        }
+
+        @Override
+        public long getFlushInterval() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeWriter();
+        }
+
+        @Override
+        public void closeWriter() throws IOException {
+            if (!isIdle()) {
+                flush();
+            }
+            open = false;
+        }
+
+        @Override
+        public void commitWriteSession() {
+        }
+
+        @Override
+        public void updateWriteContext(SinkFunction.Context context) {
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.cupid.table.v1.writer.WriteSessionInfo;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.stream.GroupedOdpsPartitionStreamWrite;
+import org.apache.flink.odps.output.writer.stream.StreamWriter;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GroupedOdpsPartitionStreamWriteTest {
+
+    private static final OdpsConf ODPS_CONF = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+
+    @Test
+    public void testCommitCurrentPartition() throws Exception {
+        TestingGroupedWrite write = new TestingGroupedWrite(OdpsWriteOptions.builder()
+                .setPartitionCommitTrigger(OdpsWriteOptions.PartitionCommitTrigger.PARTITION_TIME)
+                .setPartitionTimeZone("UTC")
+                .setPartitionTimeFormatter("yyyyMMdd")
+                .build());
+        write.initWriteSession();
+        write.open(0, 1);
+        writeAll(write, "dt=20220301:a", "dt=20220301:b");
+
+        // the watermark has not passed the partition yet
+        write.commitPartitions(LocalDateTime.of(2022, 3, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        TestingStreamWriter committed = write.writers.get(0);
+        assertFalse(committed.closed);
+
+        write.commitPartitions(LocalDateTime.of(2022, 3, 1, 12, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+        assertTrue(committed.closed);
+        assertEquals(Arrays.asList("a", "b"), committed.records);
+        assertTrue(write.isIdle());
+
+        // a late record of the committed partition opens a new writer
+        writeAll(write, "dt=20220301:c");
+        assertEquals(2, write.writers.size());
+        TestingStreamWriter reopened = write.writers.get(1);
+        assertEquals("dt=20220301", reopened.partition);
+        assertFalse(reopened.closed);
+        assertEquals(Collections.singletonList("c"), reopened.buffer);
+        write.close();
+        assertEquals(Collections.singletonList("c"), reopened.records);
+        assertEquals(1, write.sessions);
+    }
+
+    @Test
+    public void testNotCommittedWithoutTrigger() throws Exception {
+        TestingGroupedWrite write = new TestingGroupedWrite(OdpsWriteOptions.builder().build());
+        write.initWriteSession();
+        write.open(0, 1);
+        writeAll(write, "dt=20220301:a", "dt=20220302:b");
+        // the writer of the previous partition is flushed and closed when the partition changes
+        assertEquals(Collections.singletonList("a"), write.writers.get(0).records);
+        assertTrue(write.writers.get(0).closed);
+
+        write.commitPartitions(Long.MAX_VALUE);
+        assertFalse(write.writers.get(1).closed);
+        assertFalse(write.isIdle());
+        write.close();
+    }
+
+    private static void writeAll(GroupedOdpsPartitionStreamWrite<String> write, String... records)
+            throws IOException {
+        for (String record : records) {
+            write.writeRecord(record);
+        }
+    }
+
+    /** Writes records {@code partition:value} to in-memory stream writers. */
+    private static class TestingGroupedWrite extends GroupedOdpsPartitionStreamWrite<String> {
+
+        private final List<TestingStreamWriter> writers = new ArrayList<>();
+        private int sessions;
+
+        private TestingGroupedWrite(OdpsWriteOptions options) {
+            super(ODPS_CONF, "project", "table", "", options,
+                    (record, context) -> record.split(":")[0], new TestingMetaDataProvider());
+        }
+
+        @Override
+        public void initWriteSession() {
+            sessions++;
+            writeSessionInfo = new WriteSessionInfo(projectName, tableName,
+                    Collections.emptyList(), Collections.emptyList(), Collections.emptyMap()) {
+                @Override
+                public String getProvider() {
+                    return "memory";
+                }
+            };
+        }
+
+        @Override
+        protected StreamWriter<String> createStreamWriter(int taskNumber) {
+            TestingStreamWriter writer = new TestingStreamWriter(currentPartition);
+            writers.add(writer);
+            return writer;
+        }
+    }
+
+    /** Serves the schema of a table partitioned by {@code dt}. */
+    private static class TestingMetaDataProvider extends OdpsMetaDataProvider {
+
+        private TestingMetaDataProvider() {
+            super(createOdps());
+        }
+
+        private static Odps createOdps() {
+            Odps odps = new Odps(new AliyunAccount("accessId", "accessKey"));
+            odps.setEndpoint("http://localhost");
+            odps.setDefaultProject("project");
+            return odps;
+        }
+
+        @Override
+        public TableSchema getTableSchema(String projectName, String tableName, boolean refresh) {
+            TableSchema schema = new TableSchema();
+            schema.addColumn(new Column("c", OdpsType.STRING));
+            schema.addPartitionColumn(new Column("dt", OdpsType.STRING));
+            return schema;
+        }
+    }
+
+    private static class TestingStreamWriter implements StreamWriter<String> {
+
+        private final String partition;
+        private final List<String> records = new ArrayList<>();
+        private final List<String> buffer = new ArrayList<>();
+        private boolean closed;
+
+        private TestingStreamWriter(String partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void write(String record) {
+            assertFalse(closed);
+            buffer.add(record.split(":")[1]);
+        }
+
+        @Override
+        public void flush() {
+            records.addAll(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public boolean isIdle() {
+            return buffer.isEmpty();
+        }
+
+        @Override
+        public long getFlushInterval() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void close() {
+            flush();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.test.output;
+
+import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.writer.OdpsStreamWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.stream.MultiTableOdpsStreamWrite;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiTableOdpsStreamWriteTest {
+
+    private static final OdpsConf ODPS_CONF = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+
+    @Test
+    public void testRoutesRecordsToTablesAndPartitions() throws Exception {
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                Collections.emptyMap(), 10);
+        write.open(0, 1);
+        writeAll(write, "orders:dt=1:a", "users::b", "orders:dt=2:c", "orders:dt=1:d", "other.users::e");
+        write.flush();
+        assertEquals(Arrays.asList("a", "d"), write.writer("project.orders/dt=1").records);
+        assertEquals(Collections.singletonList("c"), write.writer("project.orders/dt=2").records);
+        assertEquals(Collections.singletonList("b"), write.writer("project.users/").records);
+        assertEquals(Collections.singletonList("e"), write.writer("other.users/").records);
+        assertEquals(4, write.writers.size());
+        assertEquals(4, write.getNumOpenWriters());
+        for (TestingWrite writer : write.writers.values()) {
+            assertEquals(1, writer.sessions);
+        }
+        write.close();
+        for (TestingWrite writer : write.writers.values()) {
+            assertFalse(writer.open);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedWritersAreClosed() throws Exception {
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                Collections.emptyMap(), 2);
+        write.open(0, 1);
+        writeAll(write, "t1::a", "t2::b", "t1::c", "t3::d");
+        assertEquals(2, write.getNumOpenWriters());
+        assertFalse(write.writer("project.t2/").open);
+        assertTrue(write.writer("project.t1/").open);
+
+        // the write session of the closed writer is reused
+        writeAll(write, "t2::e");
+        assertEquals(3, write.writers.size());
+        assertEquals(1, write.writer("project.t2/").sessions);
+        assertEquals(2, write.writer("project.t2/").opens);
+        assertFalse(write.writer("project.t1/").open);
+    }
+
+    @Test
+    public void testEldestClosedWriterIsReused() throws Exception {
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                Collections.emptyMap(), 2);
+        write.open(0, 1);
+        writeAll(write, "t1::a", "t2::b", "t3::c", "t4::d", "t5::e");
+        // t1 was pushed out of the closed writers by t3, t2 is the eldest closed writer
+        TestingWrite closed = write.writer("project.t2/");
+        assertFalse(closed.open);
+
+        // closing t4 to reopen t2 must not push t2 out
+        writeAll(write, "t2::f");
+        assertSame(closed, write.writer("project.t2/"));
+        assertTrue(closed.open);
+        assertEquals(1, closed.sessions);
+        assertEquals(2, closed.opens);
+        assertFalse(write.writer("project.t4/").open);
+        assertEquals(2, write.getNumOpenWriters());
+
+        writeAll(write, "t1::g");
+        assertEquals(1, write.writer("project.t1/").opens);
+        write.close();
+        assertEquals(Arrays.asList("b", "f"), closed.records);
+    }
+
+    @Test
+    public void testFlushIntervalOfOldestFlush() throws Exception {
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                Collections.emptyMap(), 2);
+        write.open(0, 1);
+        assertEquals(0, write.getFlushInterval());
+        writeAll(write, "t1::a", "t2::b");
+        write.writer("project.t1/").flushInterval = 100;
+        write.writer("project.t2/").flushInterval = 300;
+        assertEquals(300, write.getFlushInterval());
+
+        // closed writers are not flushed any more
+        writeAll(write, "t1::c", "t3::d");
+        write.writer("project.t3/").flushInterval = 200;
+        assertFalse(write.writer("project.t2/").open);
+        assertEquals(200, write.getFlushInterval());
+        write.close();
+    }
+
+    @Test
+    public void testPartitionLimitPerTable() throws Exception {
+        Map<String, OdpsWriteOptions> tableOptions = new HashMap<>();
+        tableOptions.put("small", OdpsWriteOptions.builder().setDynamicPartitionLimit(1).build());
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                tableOptions, 10);
+        write.open(0, 1);
+        writeAll(write, "small:dt=1:a", "large:dt=1:b", "small:dt=2:c", "large:dt=2:d");
+        assertFalse(write.writer("project.small/dt=1").open);
+        assertTrue(write.writer("project.small/dt=2").open);
+        assertTrue(write.writer("project.large/dt=1").open);
+        assertTrue(write.writer("project.large/dt=2").open);
+        assertEquals(3, write.getNumOpenWriters());
+    }
+
+    @Test
+    public void testTablesAreFlushedInParallel() throws Exception {
+        TestingMultiTableWrite write = new TestingMultiTableWrite(
+                OdpsWriteOptions.builder().setDynamicPartitionFlushThreads(4).build(), Collections.emptyMap(), 10);
+        write.open(0, 1);
+        writeAll(write, "t1::a", "t2::b", "t3::c");
+        write.flush();
+        writeAll(write, "t1::d", "t2::e");
+        // both flushes wait for each other, a sequential flush times out
+        CountDownLatch latch = new CountDownLatch(2);
+        write.writer("project.t1/").flushLatch = latch;
+        write.writer("project.t2/").flushLatch = latch;
+        write.flush();
+        assertEquals(2, write.writer("project.t1/").flushes);
+        assertEquals(2, write.writer("project.t2/").flushes);
+        // idle writers are not flushed
+        assertEquals(1, write.writer("project.t3/").flushes);
+        assertTrue(write.isIdle());
+        write.close();
+    }
+
+    @Test
+    public void testCommitCompletePartitions() throws Exception {
+        OdpsWriteOptions options = OdpsWriteOptions.builder()
+                .setPartitionCommitTrigger(OdpsWriteOptions.PartitionCommitTrigger.PARTITION_TIME)
+                .setPartitionTimeZone("UTC")
+                .setPartitionTimeFormatter("yyyyMMdd")
+                .build();
+        TestingMultiTableWrite write = new TestingMultiTableWrite(OdpsWriteOptions.builder().build(),
+                Collections.singletonMap("daily", options), 10);
+        write.open(0, 1);
+        writeAll(write, "daily:dt=20220301:a", "daily:dt=20220302:b", "other:dt=20220301:c");
+        write.commitPartitions(LocalDateTime.of(2022, 3, 1, 12, 0).toInstant(ZoneOffset.UTC).toEpochMilli());
+
+        TestingWrite committed = write.writer("project.daily/dt=20220301");
+        assertFalse(committed.open);
+        assertEquals(1, committed.flushes);
+        assertTrue(write.writer("project.daily/dt=20220302").open);
+        // the table without the commit trigger keeps its partitions open
+        assertTrue(write.writer("project.other/dt=20220301").open);
+
+        // a late record of the committed partition starts a new write session
+        writeAll(write, "daily:dt=20220301:d");
+        write.flush();
+        assertEquals(Collections.singletonList("d"), write.writer("project.daily/dt=20220301").records);
+        assertNotSame(committed, write.writer("project.daily/dt=20220301"));
+    }
+
+    private static void writeAll(MultiTableOdpsStreamWrite<String> write, String... records) throws IOException {
+        for (String record : records) {
+            write.writeRecord(record);
+        }
+    }
+
+    /** Writes records {@code table:partition:value} to in-memory writers. */
+    private static class TestingMultiTableWrite extends MultiTableOdpsStreamWrite<String> {
+
+        private final Map<String, TestingWrite> writers = new ConcurrentHashMap<>();
+
+        private TestingMultiTableWrite(OdpsWriteOptions writeOptions,
+                                       Map<String, OdpsWriteOptions> tableWriteOptions,
+                                       int maxOpenWriters) {
+            super(ODPS_CONF, "project", record -> record.split(":")[0], writeOptions, tableWriteOptions,
+                    maxOpenWriters);
+        }
+
+        private TestingWrite writer(String path) {
+            TestingWrite writer = writers.get(path);
+            assertNotNull("No writer of " + path, writer);
+            return writer;
+        }
+
+        @Override
+        protected OdpsStreamWrite<String> createWriter(String project,
+                                                       String table,
+                                                       String partition,
+                                                       OdpsWriteOptions options) {
+            TestingWrite writer = new TestingWrite();
+            writers.put(project + "." + table + "/" + partition, writer);
+            return writer;
+        }
+
+        @Nullable
+        @Override
+        protected PartitionAssigner<String> createPartitionAssigner(String project, String table) {
+            return table.equals("users") ? null : (record, context) -> record.split(":")[1];
+        }
+    }
+
+    private static class TestingWrite implements OdpsStreamWrite<String> {
+
+        private final List<String> records = new ArrayList<>();
+        private final List<String> buffer = new ArrayList<>();
+        private volatile CountDownLatch flushLatch;
+        private long flushInterval = Long.MAX_VALUE;
+        private int sessions;
+        private int opens;
+        private int flushes;
+        private boolean open;
+
+        @Override
+        public void initWriteSession() {
+            sessions++;
+        }
+
+        @Override
+        public void open(int taskNumber, int numTasks) {
+            opens++;
+            open = true;
+        }
+
+        @Override
+        public void writeRecord(String record) {
+            assertTrue(open);
+            buffer.add(record.split(":")[2]);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (flushLatch != null) {
+                flushLatch.countDown();
+                try {
+                    if (!flushLatch.await(10, TimeUnit.SECONDS)) {
+                        throw new IOException("the other flush did not start");
+                    }
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            records.addAll(buffer);
+            buffer.clear();
+            flushes++;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return buffer.isEmpty();
+        }
+
+        @Override
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeWriter();
+        }
+
+        @Override
+        public void closeWriter() throws IOException {
+            if (!isIdle()) {
+                flush();
+            }
+            open = false;
+        }
+
+        @Override
+        public void commitWriteSession() {
+        }
+
+        @Override
+        public void updateWriteContext(SinkFunction.Context context) {
+        }
+    }
+}
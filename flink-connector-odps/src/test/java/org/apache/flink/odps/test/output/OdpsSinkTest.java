@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import org.apache.flink.api.connector.sink.Sink;
+import org.apache.flink.api.connector.sink.SinkWriter;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionCommitter;
+import org.apache.flink.odps.output.transaction.OdpsTransactionSerializer;
+import org.apache.flink.odps.output.transaction.OdpsTransactionWriter;
+import org.apache.flink.odps.output.writer.OdpsBlockWrite;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittable;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittableSerializer;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommitter;
+import org.apache.flink.odps.sink.writer.OdpsSinkWriter;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class OdpsSinkTest {
+
+    private static final OdpsConf ODPS_CONF = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+
+    @Test
+    public void testPrepareCommit() throws Exception {
+        TestingTransactionWriter transactionWriter = new TestingTransactionWriter(
+                OdpsWriteOptions.builder().setBufferFlushMaxSizeInBytes(2).setBufferFlushIntervalMillis(0).build());
+        OdpsSinkWriter<String> writer = createWriter(transactionWriter, new TestingTimeService());
+        writeAll(writer, "dt=1:a", "dt=2:b", "dt=1:c", "dt=1:d");
+
+        List<OdpsTransaction> committables = writer.prepareCommit(false);
+        assertEquals(1, committables.size());
+        OdpsTransaction transaction = committables.get(0);
+        assertEquals(Arrays.asList("dt=1", "dt=2"), new ArrayList<>(transaction.getPartitions()));
+        // the first block of dt=1 rolled at two records
+        assertEquals(Arrays.asList(0L, 1L), transaction.getBlockIds("dt=1"));
+        assertEquals(Collections.singletonList(0L), transaction.getBlockIds("dt=2"));
+        assertEquals("session-1", transaction.getSessionId("dt=1"));
+        assertEquals(Arrays.asList("a", "c", "d"), transactionWriter.write("session-1").records);
+        assertEquals(0, transaction.numOpenBlocks());
+        assertFalse(transactionWriter.write("session-1").open);
+
+        // nothing written since the last checkpoint
+        assertTrue(writer.prepareCommit(false).isEmpty());
+
+        // the next checkpoint writes into new sessions
+        writeAll(writer, "dt=1:e");
+        transaction = writer.prepareCommit(false).get(0);
+        assertEquals("session-3", transaction.getSessionId("dt=1"));
+        assertEquals(Collections.singletonList(0L), transaction.getBlockIds("dt=1"));
+        writer.close();
+    }
+
+    @Test
+    public void testOpenBlocksAreBoundedAndFlushed() throws Exception {
+        TestingTransactionWriter transactionWriter = new TestingTransactionWriter(OdpsWriteOptions.builder()
+                .setDynamicPartitionLimit(1)
+                .setBufferFlushIntervalMillis(100)
+                .build());
+        TestingTimeService timeService = new TestingTimeService();
+        OdpsSinkWriter<String> writer = createWriter(transactionWriter, timeService);
+        writeAll(writer, "dt=1:a", "dt=2:b");
+        // the block of dt=1 was closed to open the one of dt=2
+        assertFalse(transactionWriter.write("session-1").open);
+        assertTrue(transactionWriter.write("session-2").open);
+
+        timeService.fire();
+        assertFalse(transactionWriter.write("session-2").open);
+        assertEquals(1, timeService.callbacks.size());
+
+        writeAll(writer, "dt=1:c");
+        OdpsTransaction transaction = writer.prepareCommit(false).get(0);
+        assertEquals(Arrays.asList(0L, 1L), transaction.getBlockIds("dt=1"));
+
+        // the open blocks of an unfinished checkpoint are closed, the sessions expire
+        writeAll(writer, "dt=3:d");
+        writer.close();
+        assertFalse(transactionWriter.write("session-3").open);
+        assertEquals(0, transactionWriter.write("session-3").commits);
+    }
+
+    @Test
+    public void testCommit() throws Exception {
+        TestingTransactionWriter transactionWriter = new TestingTransactionWriter(
+                OdpsWriteOptions.builder().setBufferFlushIntervalMillis(0).build());
+        List<OdpsTransaction> committables = new ArrayList<>();
+        for (int subtask = 0; subtask < 3; subtask++) {
+            OdpsSinkWriter<String> writer = createWriter(transactionWriter, new TestingTimeService());
+            writeAll(writer, "dt=1:a", "dt=2:b");
+            // committables reach the global committer serialized
+            committables.add(restore(writer.prepareCommit(false).get(0)));
+        }
+
+        TestingCommitter transactionCommitter = new TestingCommitter();
+        OdpsGlobalCommitter committer = new OdpsGlobalCommitter(transactionCommitter, 2);
+        OdpsGlobalCommittable committable = committer.combine(committables);
+        assertFalse(committable.isRecovered());
+        assertTrue(committer.commit(Collections.singletonList(committable)).isEmpty());
+        assertEquals(new TreeSet<>(Arrays.asList(
+                "dt=1/session-1/[0]", "dt=2/session-2/[0]",
+                "dt=1/session-3/[0]", "dt=2/session-4/[0]",
+                "dt=1/session-5/[0]", "dt=2/session-6/[0]")), transactionCommitter.committed);
+        committer.close();
+    }
+
+    @Test
+    public void testFailedCommitIsRetriedAfterRestore() throws Exception {
+        OdpsTransaction first = new OdpsTransaction();
+        first.addSession("dt=1", "session-1", Arrays.asList(0L, 1L));
+        OdpsTransaction second = new OdpsTransaction();
+        second.addSession("dt=1", "session-2", Collections.singletonList(0L));
+
+        TestingCommitter transactionCommitter = new TestingCommitter();
+        transactionCommitter.failures.add("session-2");
+        OdpsGlobalCommitter committer = new OdpsGlobalCommitter(transactionCommitter, 1);
+        OdpsGlobalCommittable committable = committer.combine(Arrays.asList(first, second));
+        try {
+            committer.commit(Collections.singletonList(committable));
+            fail();
+        } catch (IOException e) {
+            assertEquals("session-2 failed", e.getCause().getMessage());
+        }
+        assertEquals(Collections.singleton("dt=1/session-1/[0, 1]"), transactionCommitter.committed);
+        committer.close();
+
+        // the job restarts from the checkpoint holding the global committable
+        OdpsGlobalCommittableSerializer serializer = OdpsGlobalCommittableSerializer.INSTANCE;
+        OdpsGlobalCommittable restored = serializer.deserialize(serializer.getVersion(),
+                serializer.serialize(committable));
+        OdpsGlobalCommitter restoredCommitter = new OdpsGlobalCommitter(transactionCommitter, 1);
+        List<OdpsGlobalCommittable> recovered =
+                restoredCommitter.filterRecoveredCommittables(Collections.singletonList(restored));
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.get(0).isRecovered());
+        assertEquals(committable.getTransactions(), recovered.get(0).getTransactions());
+
+        // a transient failure on recovery fails the commit again
+        transactionCommitter.failures.add("session-2");
+        try {
+            restoredCommitter.commit(recovered);
+            fail();
+        } catch (IOException e) {
+            assertEquals("session-2 failed", e.getCause().getMessage());
+        }
+
+        // the session committed before the failure is skipped on recovery
+        assertTrue(restoredCommitter.commit(recovered).isEmpty());
+        assertEquals(new TreeSet<>(Arrays.asList("dt=1/session-1/[0, 1]", "dt=1/session-2/[0]")),
+                transactionCommitter.committed);
+        restoredCommitter.close();
+    }
+
+    private static OdpsSinkWriter<String> createWriter(TestingTransactionWriter transactionWriter,
+                                                       TestingTimeService timeService) {
+        return new OdpsSinkWriter<>("", true, (record, context) -> record.split(":")[0],
+                transactionWriter, transactionWriter.writeOptions, timeService);
+    }
+
+    private static void writeAll(OdpsSinkWriter<String> writer, String... records) throws IOException {
+        for (String record : records) {
+            writer.write(record, new SinkWriter.Context() {
+                @Override
+                public long currentWatermark() {
+                    return Long.MIN_VALUE;
+                }
+
+                @Override
+                public Long timestamp() {
+                    return null;
+                }
+            });
+        }
+    }
+
+    private static OdpsTransaction restore(OdpsTransaction transaction) throws IOException {
+        OdpsTransactionSerializer serializer = OdpsTransactionSerializer.INSTANCE;
+        return serializer.deserialize(serializer.getVersion(), serializer.serialize(transaction));
+    }
+
+    /** Creates in-memory writes with the session ids session-1, session-2, ... */
+    private static class TestingTransactionWriter extends OdpsTransactionWriter<String> {
+
+        private final OdpsWriteOptions writeOptions;
+        private final Map<String, TestingWrite> writes = new ConcurrentHashMap<>();
+
+        private TestingTransactionWriter(OdpsWriteOptions writeOptions) {
+            super(ODPS_CONF, "project", "table", writeOptions);
+            this.writeOptions = writeOptions;
+        }
+
+        private TestingWrite write(String sessionId) {
+            TestingWrite write = writes.get(sessionId);
+            assertNotNull("No write of " + sessionId, write);
+            return write;
+        }
+
+        @Override
+        protected OdpsBlockWrite<String> createWrite(String partition) {
+            TestingWrite write = new TestingWrite("session-" + (writes.size() + 1));
+            writes.put(write.sessionId, write);
+            return write;
+        }
+    }
+
+    private static class TestingWrite implements OdpsBlockWrite<String> {
+
+        private final String sessionId;
+        private final List<String> records = new ArrayList<>();
+        private final List<Integer> blocks = new ArrayList<>();
+        private int blockRecords;
+        private int commits;
+        private boolean open;
+
+        private TestingWrite(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void initWriteSession() {
+        }
+
+        @Override
+        public void open(int taskNumber, int numTasks) {
+            assertFalse(open);
+            blocks.add(taskNumber);
+            blockRecords = 0;
+            open = true;
+        }
+
+        @Override
+        public void writeRecord(String record) {
+            assertTrue(open);
+            records.add(record.split(":")[1]);
+            blockRecords++;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public void commitWriteSession() {
+            commits++;
+        }
+
+        @Override
+        public void updateWriteContext(SinkFunction.Context context) {
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return open ? blockRecords : 0;
+        }
+
+        @Override
+        public String getWriteSessionId() {
+            return sessionId;
+        }
+    }
+
+    /** Records the sessions rebuilt from their ids, sessions committed once fail afterwards. */
+    private static class TestingCommitter extends OdpsTransactionCommitter {
+
+        private final Set<String> committed = ConcurrentHashMap.newKeySet();
+        private final Set<String> failures = ConcurrentHashMap.newKeySet();
+
+        private TestingCommitter() {
+            super(ODPS_CONF, "project", "table");
+        }
+
+        @Override
+        protected boolean isCommitted(String partition, String sessionId) {
+            for (String session : committed) {
+                if (session.startsWith(partition + "/" + sessionId + "/")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected void commitSession(String partition, String sessionId, List<Long> blockIds) throws IOException {
+            if (failures.remove(sessionId)) {
+                throw new IOException(sessionId + " failed");
+            }
+            if (!committed.add(partition + "/" + sessionId + "/" + blockIds)) {
+                throw new IOException(sessionId + " is already committed");
+            }
+        }
+    }
+
+    private static class TestingTimeService implements Sink.ProcessingTimeService {
+
+        private final List<ProcessingTimeCallback> callbacks = new ArrayList<>();
+
+        @Override
+        public long getCurrentProcessingTime() {
+            return 0;
+        }
+
+        @Override
+        public void registerProcessingTimer(long time, ProcessingTimeCallback callback) {
+            callbacks.add(callback);
+        }
+
+        private void fire() throws Exception {
+            List<ProcessingTimeCallback> fired = new ArrayList<>(callbacks);
+            callbacks.clear();
+            for (ProcessingTimeCallback callback : fired) {
+                callback.onProcessingTime(0);
+            }
+        }
+    }
+}
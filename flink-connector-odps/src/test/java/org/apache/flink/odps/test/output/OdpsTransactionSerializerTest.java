@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.odps.output.transaction.OdpsTransaction;
+import org.apache.flink.odps.output.transaction.OdpsTransactionCommitter;
+import org.apache.flink.odps.output.transaction.OdpsTransactionSerializer;
+import org.apache.flink.odps.output.transaction.OdpsTransactionTypeSerializer;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittable;
+import org.apache.flink.odps.sink.committer.OdpsGlobalCommittableSerializer;
+import org.apache.flink.odps.util.OdpsConf;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OdpsTransactionSerializerTest {
+
+    private static final OdpsConf ODPS_CONF = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+
+    @Test
+    public void testSerializeSessionIdsAndBlockIds() throws Exception {
+        OdpsTransaction transaction = createTransaction();
+        OdpsTransactionSerializer serializer = OdpsTransactionSerializer.INSTANCE;
+        OdpsTransaction restored = serializer.deserialize(serializer.getVersion(), serializer.serialize(transaction));
+        assertEquals(transaction, restored);
+        assertEquals(Arrays.asList("dt='2'", "dt='1'"), new ArrayList<>(restored.getPartitions()));
+        assertEquals("session-2", restored.getSessionId("dt='2'"));
+        assertEquals(Arrays.asList(0L, 1L, 2L), restored.getBlockIds("dt='2'"));
+        assertEquals(Collections.emptyList(), restored.getBlockIds("dt='1'"));
+        // no writes are restored, the sessions are rebuilt by their ids
+        assertNull(restored.getWrite("dt='2'"));
+
+        try {
+            serializer.deserialize(serializer.getVersion() + 1, serializer.serialize(transaction));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unknown version"));
+        }
+    }
+
+    @Test
+    public void testTypeSerializer() throws Exception {
+        OdpsTransaction transaction = createTransaction();
+        OdpsTransactionTypeSerializer serializer = OdpsTransactionTypeSerializer.INSTANCE;
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        serializer.serialize(transaction, out);
+        serializer.serialize(new OdpsTransaction(), out);
+
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        assertEquals(transaction, serializer.deserialize(in));
+        assertTrue(serializer.deserialize(in).isEmpty());
+        assertEquals(transaction, serializer.copy(transaction));
+
+        DataOutputSerializer copied = new DataOutputSerializer(64);
+        serializer.copy(new DataInputDeserializer(out.getCopyOfBuffer()), copied);
+        assertEquals(transaction, serializer.deserialize(new DataInputDeserializer(copied.getCopyOfBuffer())));
+    }
+
+    @Test
+    public void testSerializeGlobalCommittable() throws Exception {
+        OdpsGlobalCommittable committable = new OdpsGlobalCommittable(
+                Arrays.asList(createTransaction(), new OdpsTransaction()), true);
+        OdpsGlobalCommittableSerializer serializer = OdpsGlobalCommittableSerializer.INSTANCE;
+        OdpsGlobalCommittable restored = serializer.deserialize(serializer.getVersion(), serializer.serialize(committable));
+        assertTrue(restored.isRecovered());
+        assertEquals(committable.getTransactions(), restored.getTransactions());
+    }
+
+    @Test
+    public void testRestoredSessionsAreRebuilt() throws Exception {
+        OdpsTransactionSerializer serializer = OdpsTransactionSerializer.INSTANCE;
+        OdpsTransaction restored = serializer.deserialize(serializer.getVersion(),
+                serializer.serialize(createTransaction()));
+        TestingCommitter committer = new TestingCommitter();
+        committer.commit(restored, false);
+        assertEquals(Arrays.asList("dt='2'/session-2/[0, 1, 2]", "dt='1'/session-1/[]"), committer.commits);
+
+        // a recovered session committed before the failure is skipped
+        committer.commits.clear();
+        committer.committedSession = "session-2";
+        committer.commit(restored, true);
+        assertEquals(Collections.singletonList("dt='1'/session-1/[]"), committer.commits);
+
+        // any other failure is thrown, recovered or not
+        committer.commits.clear();
+        committer.committedSession = null;
+        committer.failingSession = "session-2";
+        for (boolean recovered : new boolean[]{true, false}) {
+            try {
+                committer.commit(restored, recovered);
+                fail();
+            } catch (IOException e) {
+                assertEquals("session-2 expired", e.getMessage());
+            }
+        }
+        assertTrue(committer.commits.isEmpty());
+    }
+
+    private static OdpsTransaction createTransaction() {
+        OdpsTransaction transaction = new OdpsTransaction();
+        transaction.addSession("dt='2'", "session-2", Arrays.asList(0L, 1L, 2L));
+        transaction.addSession("dt='1'", "session-1", Collections.emptyList());
+        return transaction;
+    }
+
+    /** Records the sessions rebuilt from their ids instead of committing them. */
+    private static class TestingCommitter extends OdpsTransactionCommitter {
+
+        private final List<String> commits = new ArrayList<>();
+        private String failingSession;
+        private String committedSession;
+
+        private TestingCommitter() {
+            super(ODPS_CONF, "project", "table");
+        }
+
+        @Override
+        protected boolean isCommitted(String partition, String sessionId) {
+            return sessionId.equals(committedSession);
+        }
+
+        @Override
+        protected void commitSession(String partition, String sessionId, List<Long> blockIds) throws IOException {
+            if (sessionId.equals(failingSession)) {
+                throw new IOException(sessionId + " expired");
+            }
+            commits.add(partition + "/" + sessionId + "/" + blockIds);
+        }
+    }
+}
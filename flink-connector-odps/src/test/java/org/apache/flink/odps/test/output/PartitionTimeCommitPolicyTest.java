@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.odps.output.stream.DateTimePartitionAssigner;
+import org.apache.flink.odps.output.stream.PartitionTimeCommitPolicy;
+import org.apache.flink.odps.output.stream.PartitionTimeExtractor;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.WriterContext;
+import org.apache.flink.odps.table.factories.OdpsDynamicTableFactory;
+import org.apache.flink.util.InstantiationUtil;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PartitionTimeCommitPolicyTest {
+
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Test
+    public void testExtractPartitionTime() {
+        long time = toMillis(LocalDateTime.of(2022, 3, 1, 8, 0));
+        assertEquals(time, (long) new PartitionTimeExtractor(null, "yyyy-MM-dd HH:mm:ss", UTC)
+                .extract("dt='2022-03-01 08:00:00'"));
+        assertEquals(time, (long) new PartitionTimeExtractor("$dt $hh:00:00", "yyyyMMdd HH:mm:ss", UTC)
+                .extract("dt=20220301,hh=08"));
+        assertEquals(time, (long) new PartitionTimeExtractor(null, "yyyy-MM-dd--HH", UTC)
+                .extract("dt=2022-03-01--08,region=hz"));
+        assertEquals(toMillis(LocalDateTime.of(2022, 3, 1, 0, 0)),
+                (long) new PartitionTimeExtractor(null, "yyyyMMdd", UTC).extract("dt=20220301"));
+        assertEquals(time - 8 * HOUR, (long) new PartitionTimeExtractor(null, "yyyyMMdd HH", ZoneId.of("Asia/Shanghai"))
+                .extract("dt='20220301 08'"));
+
+        PartitionTimeExtractor extractor = new PartitionTimeExtractor(null, "yyyyMMdd", UTC);
+        assertNull(extractor.extract("dt=__DEFAULT_PARTITION__"));
+        assertNull(extractor.extract(""));
+    }
+
+    @Test
+    public void testCommitByWatermark() throws Exception {
+        PartitionTimeCommitPolicy policy = new PartitionTimeCommitPolicy(
+                new PartitionTimeExtractor(null, DateTimePartitionAssigner.DEFAULT_FORMAT_STRING, UTC), HOUR);
+        DateTimePartitionAssigner<String> assigner = new DateTimePartitionAssigner<>(UTC);
+        WriterContext context = new WriterContext("");
+        // hourly partitions of rows written at 08:10, 08:50, 09:20 and 10:05
+        ManualClock clock = new ManualClock(toMillis(LocalDateTime.of(2022, 3, 1, 8, 10)));
+        List<String> partitions = Arrays.asList(
+                partitionAt(assigner, context, clock, 0),
+                partitionAt(assigner, context, clock, 40),
+                partitionAt(assigner, context, clock, 30),
+                partitionAt(assigner, context, clock, 45));
+        assertEquals(Arrays.asList("dt='2022-03-01--08'", "dt='2022-03-01--08'",
+                "dt='2022-03-01--09'", "dt='2022-03-01--10'"), partitions);
+
+        List<String> open = Arrays.asList("dt='2022-03-01--08'", "dt='2022-03-01--09'", "dt='2022-03-01--10'");
+        // no watermark yet
+        assertEquals(Collections.emptyList(), policy.committablePartitions(open, Long.MIN_VALUE));
+        // the watermark reaches the end of 08:00 - 09:00 but rows of 09:00 may still come
+        long watermark = toMillis(LocalDateTime.of(2022, 3, 1, 9, 0));
+        assertEquals(Collections.emptyList(), policy.committablePartitions(open, watermark));
+        assertEquals(Collections.singletonList("dt='2022-03-01--08'"),
+                policy.committablePartitions(open, watermark + 1));
+        watermark = toMillis(LocalDateTime.of(2022, 3, 1, 10, 30));
+        assertEquals(Arrays.asList("dt='2022-03-01--08'", "dt='2022-03-01--09'"),
+                policy.committablePartitions(open, watermark));
+        assertFalse(policy.isCommittable("dt='2022-03-01--10'", watermark));
+        assertFalse(policy.isCommittable("dt=__DEFAULT_PARTITION__", Long.MAX_VALUE));
+
+        PartitionTimeCommitPolicy copy = InstantiationUtil.clone(policy);
+        assertTrue(copy.isCommittable("dt='2022-03-01--09'", watermark));
+    }
+
+    @Test
+    public void testCommitDelay() {
+        PartitionTimeCommitPolicy policy = new PartitionTimeCommitPolicy(
+                new PartitionTimeExtractor("$dt $hh:00:00", "yyyyMMdd HH:mm:ss", UTC), 2 * HOUR);
+        long partitionTime = toMillis(LocalDateTime.of(2022, 3, 1, 8, 0));
+        assertFalse(policy.isCommittable("dt=20220301,hh=08", partitionTime + HOUR + 1));
+        assertFalse(policy.isCommittable("dt=20220301,hh=08", partitionTime + 2 * HOUR));
+        assertTrue(policy.isCommittable("dt=20220301,hh=08", partitionTime + 2 * HOUR + 1));
+    }
+
+    @Test
+    public void testCreateFromOptions() {
+        assertNull(PartitionTimeCommitPolicy.create(OdpsWriteOptions.builder().build()));
+
+        Configuration conf = new Configuration();
+        conf.setString("sink.partition-commit.trigger", "PARTITION_TIME");
+        conf.setString("sink.partition-commit.delay", "1 h");
+        conf.setString("sink.partition-commit.watermark-time-zone", "Asia/Shanghai");
+        conf.setString("partition.time-extractor.timestamp-pattern", "$dt $hh:00:00");
+        conf.setString("partition.time-extractor.timestamp-formatter", "yyyyMMdd HH:mm:ss");
+        OdpsWriteOptions options = OdpsDynamicTableFactory.getOdpsStreamWriteOptions(conf);
+        assertEquals(OdpsWriteOptions.PartitionCommitTrigger.PARTITION_TIME, options.getPartitionCommitTrigger());
+        assertEquals(HOUR, options.getPartitionCommitDelayMillis());
+
+        PartitionTimeCommitPolicy policy = PartitionTimeCommitPolicy.create(options);
+        assertNotNull(policy);
+        // 08:00 in Shanghai is 00:00 UTC
+        long partitionEnd = toMillis(LocalDateTime.of(2022, 3, 1, 1, 0));
+        assertFalse(policy.isCommittable("dt=20220301,hh=08", partitionEnd));
+        assertTrue(policy.isCommittable("dt=20220301,hh=08", partitionEnd + 1));
+    }
+
+    private static String partitionAt(DateTimePartitionAssigner<String> assigner,
+                                      WriterContext context,
+                                      ManualClock clock,
+                                      long advanceMinutes) {
+        context.update(null, Long.MIN_VALUE, clock.advance(Duration.ofMinutes(advanceMinutes).toMillis()));
+        return assigner.getPartitionSpec("row", context);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(UTC).toInstant().toEpochMilli();
+    }
+
+    private static class ManualClock {
+
+        private long time;
+
+        private ManualClock(long time) {
+            this.time = time;
+        }
+
+        private long advance(long millis) {
+            time += millis;
+            return time;
+        }
+    }
+}
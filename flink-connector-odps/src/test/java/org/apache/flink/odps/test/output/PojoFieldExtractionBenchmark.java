@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.type.TypeInfoFactory;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.operators.Keys;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.CompositeType;
+import org.apache.flink.api.common.typeutils.TypeComparator;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.RecordFieldGetter;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the CPU time and the allocated bytes per record of reading the fields of a
+ * 50-field POJO through a {@link TypeComparator}, as the writers did before, and through
+ * {@link RecordFieldGetter}. Both feed every value through {@link OdpsTypeConverter}.
+ *
+ * <p>Usage: {@code PojoFieldExtractionBenchmark [numRecords] [iterations]}
+ */
+public class PojoFieldExtractionBenchmark {
+
+    private static final int NUM_FIELDS = 50;
+
+    public static void main(String[] args) {
+        int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<String> names = new ArrayList<>();
+        Column[] columns = new Column[NUM_FIELDS];
+        OdpsTypeConverter[] converters = new OdpsTypeConverter[NUM_FIELDS];
+        for (int i = 0; i < NUM_FIELDS; i++) {
+            names.add("f" + i);
+            OdpsType type = new OdpsType[]{
+                    OdpsType.BIGINT, OdpsType.STRING, OdpsType.DOUBLE, OdpsType.INT, OdpsType.BOOLEAN}[i % 5];
+            columns[i] = new Column("f" + i, TypeInfoFactory.getPrimitiveTypeInfo(type));
+            converters[i] = OdpsTypeConverter.valueOf(type.name());
+        }
+        WidePojo[] records = new WidePojo[1024];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new WidePojo(i);
+        }
+        TypeComparator<WidePojo> comparator = createComparator(records[0], names);
+        RecordFieldGetter<WidePojo>[] getters =
+                RecordFieldGetter.create(records[0], names, new int[NUM_FIELDS]);
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long blackhole = 0;
+        for (int i = 0; i < iterations; i++) {
+            long startCpu = threadMXBean.getCurrentThreadCpuTime();
+            long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int n = 0; n < numRecords; n++) {
+                WidePojo record = records[n & (records.length - 1)];
+                Object[] keyArray = new Object[NUM_FIELDS];
+                comparator.extractKeys(record, keyArray, 0);
+                for (int f = 0; f < NUM_FIELDS; f++) {
+                    blackhole += convert(converters[f], keyArray[f], columns[f]);
+                }
+            }
+            long comparatorNanos = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+            long comparatorBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+            startCpu = threadMXBean.getCurrentThreadCpuTime();
+            startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int n = 0; n < numRecords; n++) {
+                WidePojo record = records[n & (records.length - 1)];
+                for (int f = 0; f < NUM_FIELDS; f++) {
+                    blackhole += convert(converters[f], getters[f].getFieldOrNull(record), columns[f]);
+                }
+            }
+            long getterNanos = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+            long getterBytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+            System.out.printf("iteration %d: comparator %.1f ns/record %.1f B/record, "
+                            + "field getters %.1f ns/record %.1f B/record%n",
+                    i, (double) comparatorNanos / numRecords, (double) comparatorBytes / numRecords,
+                    (double) getterNanos / numRecords, (double) getterBytes / numRecords);
+        }
+        System.out.println(blackhole);
+    }
+
+    private static int convert(OdpsTypeConverter converter, Object value, Column column) {
+        return value == null ? 0 : converter.toOdpsField(value, column.getTypeInfo()).hashCode() & 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TypeComparator<T> createComparator(T record, List<String> names) {
+        TypeInformation<T> typeInfo = TypeExtractor.getForObject(record);
+        Keys<T> keys = new Keys.ExpressionKeys<>(names.toArray(new String[0]), typeInfo);
+        int[] logicalKeyPositions = keys.computeLogicalKeyPositions();
+        boolean[] orders = new boolean[logicalKeyPositions.length];
+        Arrays.fill(orders, true);
+        return ((CompositeType<T>) typeInfo).createComparator(logicalKeyPositions, orders, 0, new ExecutionConfig());
+    }
+
+    /** Pojo with 50 fields of mixed types. */
+    public static class WidePojo {
+
+        public long f0;
+        public String f1;
+        public double f2;
+        public Integer f3;
+        public Boolean f4;
+        public long f5;
+        public String f6;
+        public double f7;
+        public Integer f8;
+        public Boolean f9;
+        public long f10;
+        public String f11;
+        public double f12;
+        public Integer f13;
+        public Boolean f14;
+        public long f15;
+        public String f16;
+        public double f17;
+        public Integer f18;
+        public Boolean f19;
+        public long f20;
+        public String f21;
+        public double f22;
+        public Integer f23;
+        public Boolean f24;
+        public long f25;
+        public String f26;
+        public double f27;
+        public Integer f28;
+        public Boolean f29;
+        public long f30;
+        public String f31;
+        public double f32;
+        public Integer f33;
+        public Boolean f34;
+        public long f35;
+        public String f36;
+        public double f37;
+        public Integer f38;
+        public Boolean f39;
+        public long f40;
+        public String f41;
+        public double f42;
+        public Integer f43;
+        public Boolean f44;
+        public long f45;
+        public String f46;
+        public double f47;
+        public Integer f48;
+        public Boolean f49;
+
+        public WidePojo() {
+        }
+
+        public WidePojo(int i) {
+            f0 = i + 0;
+            f1 = "value" + 1;
+            f2 = i * 0.5 + 2;
+            f3 = 3;
+            f4 = i % 2 == 0;
+            f5 = i + 5;
+            f6 = "value" + 6;
+            f7 = i * 0.5 + 7;
+            f8 = 8;
+            f9 = i % 2 == 0;
+            f10 = i + 10;
+            f11 = "value" + 11;
+            f12 = i * 0.5 + 12;
+            f13 = 13;
+            f14 = i % 2 == 0;
+            f15 = i + 15;
+            f16 = "value" + 16;
+            f17 = i * 0.5 + 17;
+            f18 = 18;
+            f19 = i % 2 == 0;
+            f20 = i + 20;
+            f21 = "value" + 21;
+            f22 = i * 0.5 + 22;
+            f23 = 23;
+            f24 = i % 2 == 0;
+            f25 = i + 25;
+            f26 = "value" + 26;
+            f27 = i * 0.5 + 27;
+            f28 = 28;
+            f29 = i % 2 == 0;
+            f30 = i + 30;
+            f31 = "value" + 31;
+            f32 = i * 0.5 + 32;
+            f33 = 33;
+            f34 = i % 2 == 0;
+            f35 = i + 35;
+            f36 = "value" + 36;
+            f37 = i * 0.5 + 37;
+            f38 = 38;
+            f39 = i % 2 == 0;
+            f40 = i + 40;
+            f41 = "value" + 41;
+            f42 = i * 0.5 + 42;
+            f43 = 43;
+            f44 = i % 2 == 0;
+            f45 = i + 45;
+            f46 = "value" + 46;
+            f47 = i * 0.5 + 47;
+            f48 = 48;
+            f49 = i % 2 == 0;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.type.TypeInfoFactory;
+import org.apache.flink.api.java.tuple.Tuple3;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.odps.output.stream.PartitionComputer;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.file.RowBlockWriter;
+import org.apache.flink.odps.test.util.BookEntry;
+import org.apache.flink.odps.vectorized.ColDataRowImpl;
+import org.apache.flink.types.Row;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RowBlockWriterTest {
+
+    private static final Column[] COLUMNS = new Column[]{
+            new Column("id", TypeInfoFactory.INT),
+            new Column("title", TypeInfoFactory.STRING),
+            new Column("price", TypeInfoFactory.DOUBLE),
+    };
+
+    @Test
+    public void testWritePojos() throws Exception {
+        List<Object[]> written = new ArrayList<>();
+        RowBlockWriter<BookEntry> writer = createWriter(written);
+        writer.write(new BookEntry(1, "Java", "Gosling", 12.5, 1, "2022-03-01"));
+        writer.write(new BookEntry(2, null, "Anonymous", 3.0, 2, "2022-03-02"));
+        assertArrayEquals(new Object[]{1, "Java", 12.5}, written.get(0));
+        assertArrayEquals(new Object[]{2, null, 3.0}, written.get(1));
+    }
+
+    @Test
+    public void testWritePojosWithPrivateFields() throws Exception {
+        List<Object[]> written = new ArrayList<>();
+        RowBlockWriter<Book> writer = createWriter(written);
+        writer.write(new Book(7, "Flink", 42.0));
+        assertArrayEquals(new Object[]{7, "Flink", 42.0}, written.get(0));
+    }
+
+    @Test
+    public void testWriteTuplesAndRows() throws Exception {
+        List<Object[]> written = new ArrayList<>();
+        RowBlockWriter<Tuple3<Integer, String, Double>> tupleWriter = createWriter(written);
+        tupleWriter.write(Tuple3.of(1, "a", 1.0));
+        RowBlockWriter<Row> rowWriter = createWriter(written);
+        rowWriter.write(Row.of(2, "b", null));
+        assertArrayEquals(new Object[]{1, "a", 1.0}, written.get(0));
+        assertArrayEquals(new Object[]{2, "b", null}, written.get(1));
+    }
+
+    @Test(expected = FlinkOdpsException.class)
+    public void testMissingPojoField() throws Exception {
+        RowBlockWriter<BookEntry> writer = new RowBlockWriter<>(
+                new Column[]{new Column("isbn", TypeInfoFactory.STRING)},
+                new CollectingFileWriter(new ArrayList<>()),
+                OdpsWriteOptions.builder().build());
+        writer.write(new BookEntry(1, "Java", "Gosling", 12.5, 1, "2022-03-01"));
+    }
+
+    @Test
+    public void testColumnarRows() {
+        ColDataRowImpl<Book> row = new ColDataRowImpl<>(COLUMNS);
+        row.setRow(new Book(1, null, 2.5));
+        assertEquals(1, row.getInt(0));
+        assertTrue(row.isNullAt(1));
+        assertEquals(2.5, row.getDouble(2), 0);
+        row.setRow(new Book(2, "b", 0.5));
+        assertEquals(2, row.getInt(0));
+        assertEquals("b", row.getString(1));
+    }
+
+    @Test
+    public void testPojoPartitions() {
+        PartitionComputer<BookEntry> computer = new PartitionComputer<>("__DEFAULT__",
+                Arrays.asList("id", "title", "author", "price", "qty", "date"),
+                Arrays.asList("author", "date"), "");
+        LinkedHashMap<String, String> partition =
+                computer.generatePartValues(new BookEntry(1, "Java", "Gosling", 12.5, 1, "2022-03-01"), null);
+        assertEquals("Gosling", partition.get("author"));
+        assertEquals("2022-03-01", partition.get("date"));
+        partition = computer.generatePartValues(new BookEntry(2, "Go", null, 1.0, 1, "2022-03-02"), null);
+        assertEquals("__DEFAULT__", partition.get("author"));
+        assertEquals("2022-03-02", partition.get("date"));
+    }
+
+    private static <T> RowBlockWriter<T> createWriter(List<Object[]> written) {
+        return new RowBlockWriter<>(COLUMNS, new CollectingFileWriter(written), OdpsWriteOptions.builder().build());
+    }
+
+    /** Pojo with private fields and accessors. */
+    public static class Book {
+
+        private Integer id;
+        private String title;
+        private Double price;
+
+        public Book() {
+        }
+
+        public Book(Integer id, String title, Double price) {
+            this.id = id;
+            this.title = title;
+            this.price = price;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public Double getPrice() {
+            return price;
+        }
+
+        public void setPrice(Double price) {
+            this.price = price;
+        }
+    }
+
+    /** Copies the values of the written records. */
+    private static class CollectingFileWriter implements FileWriter<ArrayRecord> {
+
+        private final List<Object[]> written;
+
+        private CollectingFileWriter(List<Object[]> written) {
+            this.written = written;
+        }
+
+        @Override
+        public void write(ArrayRecord record) {
+            written.add(record.toArray().clone());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public long getBufferRows() {
+            return 0;
+        }
+
+        @Override
+        public long getBufferBytes() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return written.size();
+        }
+    }
+}
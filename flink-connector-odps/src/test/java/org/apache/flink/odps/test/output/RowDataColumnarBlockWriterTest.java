@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.cupid.table.v1.writer.adaptor.ColDataRowWriter;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoFactory;
+import org.apache.flink.odps.output.writer.file.RowDataColumnarBlockWriter;
+import org.apache.flink.odps.vectorized.ColDataRowImpl;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.conversion.RowRowConverter;
+import org.apache.flink.table.runtime.typeutils.RowDataSerializer;
+import org.apache.flink.table.types.logical.*;
+import org.apache.flink.table.types.utils.TypeConversions;
+import org.apache.flink.types.Row;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowDataColumnarBlockWriterTest {
+
+    private static final int BATCH_SIZE = 128;
+    private static final int NUM_ROWS = 1000;
+
+    static final Column[] COLUMNS = new Column[]{
+            new Column("c_boolean", TypeInfoFactory.BOOLEAN),
+            new Column("c_tinyint", TypeInfoFactory.TINYINT),
+            new Column("c_smallint", TypeInfoFactory.SMALLINT),
+            new Column("c_int", TypeInfoFactory.INT),
+            new Column("c_bigint", TypeInfoFactory.BIGINT),
+            new Column("c_float", TypeInfoFactory.FLOAT),
+            new Column("c_double", TypeInfoFactory.DOUBLE),
+            new Column("c_decimal_4", TypeInfoFactory.getDecimalTypeInfo(4, 1)),
+            new Column("c_decimal_10", TypeInfoFactory.getDecimalTypeInfo(10, 2)),
+            new Column("c_decimal_30", TypeInfoFactory.getDecimalTypeInfo(30, 5)),
+            new Column("c_string", TypeInfoFactory.STRING),
+            new Column("c_varchar", TypeInfoFactory.getVarcharTypeInfo(10)),
+            new Column("c_date", TypeInfoFactory.DATE),
+            new Column("c_datetime", TypeInfoFactory.DATETIME),
+            new Column("c_timestamp", TypeInfoFactory.TIMESTAMP),
+    };
+
+    static final RowType ROW_TYPE = RowType.of(
+            new BooleanType(),
+            new TinyIntType(),
+            new SmallIntType(),
+            new IntType(),
+            new BigIntType(),
+            new FloatType(),
+            new DoubleType(),
+            new DecimalType(4, 1),
+            new DecimalType(10, 2),
+            new DecimalType(30, 5),
+            new VarCharType(VarCharType.MAX_LENGTH),
+            new VarCharType(10),
+            new DateType(),
+            new TimestampType(3),
+            new TimestampType(9));
+
+    @Test
+    public void testSameVectorsAsRecordPath() throws IOException {
+        List<Row> rows = generateRows();
+        RowRowConverter converter = RowRowConverter.create(TypeConversions.fromLogicalToDataType(ROW_TYPE));
+        converter.open(Thread.currentThread().getContextClassLoader());
+
+        CollectingFileWriter expected = new CollectingFileWriter(COLUMNS);
+        ColDataRowWriter rowWriter = new ColDataRowWriter(COLUMNS, expected, BATCH_SIZE);
+        ColDataRowImpl<Row> colDataRow = new ColDataRowImpl<>(COLUMNS);
+        for (Row row : rows) {
+            colDataRow.setRow(row);
+            rowWriter.insert(colDataRow);
+        }
+        rowWriter.close();
+
+        CollectingFileWriter actual = new CollectingFileWriter(COLUMNS);
+        RowDataColumnarBlockWriter columnarWriter =
+                new RowDataColumnarBlockWriter(COLUMNS, ROW_TYPE, actual, BATCH_SIZE);
+        for (Row row : rows) {
+            columnarWriter.write(converter.toInternal(row));
+        }
+        columnarWriter.close();
+
+        assertTrue(actual.closed);
+        assertEquals(expected.batches.size(), actual.batches.size());
+        for (int i = 0; i < expected.batches.size(); i++) {
+            assertEquals("batch " + i, expected.batches.get(i), actual.batches.get(i));
+        }
+
+        // strings of binary rows are copied from the memory segments of the row
+        CollectingFileWriter binary = new CollectingFileWriter(COLUMNS);
+        RowDataSerializer serializer = new RowDataSerializer(ROW_TYPE);
+        columnarWriter = new RowDataColumnarBlockWriter(COLUMNS, ROW_TYPE, binary, BATCH_SIZE);
+        for (Row row : rows) {
+            columnarWriter.write(serializer.toBinaryRow(converter.toInternal(row)));
+        }
+        columnarWriter.close();
+        assertEquals(expected.batches, binary.batches);
+    }
+
+    @Test
+    public void testTruncateVarchar() throws IOException {
+        Column[] columns = new Column[]{new Column("c_varchar", TypeInfoFactory.getVarcharTypeInfo(3))};
+        CollectingFileWriter fileWriter = new CollectingFileWriter(columns);
+        RowType rowType = RowType.of(new VarCharType(VarCharType.MAX_LENGTH));
+        RowDataColumnarBlockWriter writer = new RowDataColumnarBlockWriter(columns, rowType, fileWriter, 2);
+        RowRowConverter converter = RowRowConverter.create(TypeConversions.fromLogicalToDataType(rowType));
+        converter.open(Thread.currentThread().getContextClassLoader());
+        writer.write(converter.toInternal(Row.of("中文字符")));
+        writer.write(converter.toInternal(Row.of("ab")));
+        writer.close();
+
+        assertEquals(1, fileWriter.batches.size());
+        assertEquals(Arrays.asList("[null=false, 中文字]", "[null=false, ab]"), fileWriter.batches.get(0));
+    }
+
+    @Test
+    public void testUnsupportedTypes() {
+        assertTrue(RowDataColumnarBlockWriter.isSupported(COLUMNS, ROW_TYPE));
+        Column[] columns = new Column[]{new Column("c_bigint", TypeInfoFactory.BIGINT)};
+        assertFalse(RowDataColumnarBlockWriter.isSupported(columns, RowType.of(new IntType())));
+        assertFalse(RowDataColumnarBlockWriter.isSupported(columns, null));
+        columns = new Column[]{new Column("c_array", TypeInfoFactory.getArrayTypeInfo(TypeInfoFactory.INT))};
+        assertFalse(RowDataColumnarBlockWriter.isSupported(columns, RowType.of(new ArrayType(new IntType()))));
+        // decimals of another precision or scale are rescaled by the row path
+        columns = new Column[]{new Column("c_decimal", TypeInfoFactory.getDecimalTypeInfo(10, 2))};
+        assertTrue(RowDataColumnarBlockWriter.isSupported(columns, RowType.of(new DecimalType(10, 2))));
+        assertFalse(RowDataColumnarBlockWriter.isSupported(columns, RowType.of(new DecimalType(10, 4))));
+        assertFalse(RowDataColumnarBlockWriter.isSupported(columns, RowType.of(new DecimalType(20, 2))));
+    }
+
+    private static List<Row> generateRows() {
+        return generateRows(NUM_ROWS);
+    }
+
+    static List<Row> generateRows(int numRows) {
+        Random random = new Random(42);
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numRows; i++) {
+            Row row = Row.of(
+                    random.nextBoolean(),
+                    (byte) random.nextInt(),
+                    (short) random.nextInt(),
+                    random.nextInt(),
+                    random.nextLong(),
+                    random.nextFloat(),
+                    random.nextDouble(),
+                    BigDecimal.valueOf(random.nextInt(19999) - 9999, 1),
+                    BigDecimal.valueOf(random.nextInt(), 2),
+                    new BigDecimal(random.nextLong() + "" + Math.abs(random.nextInt())).movePointLeft(5),
+                    "s" + random.nextInt(100),
+                    "v" + random.nextInt(1000),
+                    LocalDate.ofEpochDay(random.nextInt(40000)),
+                    LocalDateTime.of(2000 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                            random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000) * 1000000),
+                    LocalDateTime.of(2000 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                            random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000000000)));
+            for (int pos = 0; pos < row.getArity(); pos++) {
+                if (random.nextInt(10) == 0) {
+                    row.setField(pos, null);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /** Keeps the values of the written batches, decoded as strings per row and column. */
+    private static class CollectingFileWriter implements FileWriter<ColDataBatch> {
+
+        private final Column[] columns;
+        private final List<List<String>> batches = new ArrayList<>();
+        private boolean closed;
+
+        private CollectingFileWriter(Column[] columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(ColDataBatch batch) {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < batch.getColumnCount(); i++) {
+                ColDataVector vector = batch.getVectors()[i];
+                TypeInfo typeInfo = columns[i].getTypeInfo();
+                int width = vector.getDataBufSize() / batch.getRowCount();
+                boolean isVarLen = isVarLen(typeInfo.getOdpsType());
+                int deepOffset = 0;
+                for (int rowId = 0; rowId < batch.getRowCount(); rowId++) {
+                    boolean isNull = vector.isNullAt(rowId);
+                    String value;
+                    if (isVarLen) {
+                        int length = vector.getInt(rowId);
+                        byte[] bytes = Arrays.copyOfRange(vector.getDeepBuf(), deepOffset, deepOffset + length);
+                        deepOffset += length;
+                        value = new String(bytes, StandardCharsets.UTF_8);
+                    } else {
+                        value = Arrays.toString(Arrays.copyOfRange(
+                                vector.getDataBuf(), rowId * width, (rowId + 1) * width));
+                    }
+                    values.add("[null=" + isNull + (isNull ? "" : ", " + value) + "]");
+                }
+            }
+            batches.add(values);
+        }
+
+        private static boolean isVarLen(OdpsType odpsType) {
+            return odpsType == OdpsType.STRING || odpsType == OdpsType.VARCHAR;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return 0;
+        }
+    }
+}
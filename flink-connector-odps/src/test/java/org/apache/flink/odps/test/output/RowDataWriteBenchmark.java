@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.data.ArrayRecord;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.file.BlockWriter;
+import org.apache.flink.odps.output.writer.file.ColumnarBlockWriter;
+import org.apache.flink.odps.output.writer.file.RowBlockWriter;
+import org.apache.flink.odps.output.writer.file.RowDataBlockWriter;
+import org.apache.flink.odps.output.writer.file.RowDataColumnarBlockWriter;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.conversion.RowRowConverter;
+import org.apache.flink.table.types.utils.TypeConversions;
+import org.apache.flink.types.Row;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.apache.flink.odps.test.output.RowDataColumnarBlockWriterTest.COLUMNS;
+import static org.apache.flink.odps.test.output.RowDataColumnarBlockWriterTest.ROW_TYPE;
+
+/**
+ * Compares the CPU time and the allocated bytes per row of writing {@code RowData} of 15
+ * columns through {@link RowDataColumnarBlockWriter}, through the {@code Row} conversion into
+ * {@link ColumnarBlockWriter} and through the {@code Row} conversion into {@link ArrayRecord}s
+ * of the {@link RowBlockWriter}. The file writers drop what they get.
+ *
+ * <p>Usage: {@code RowDataWriteBenchmark [numRows] [batchSize] [iterations]}
+ */
+public class RowDataWriteBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        List<Row> rows = RowDataColumnarBlockWriterTest.generateRows(1024);
+        RowRowConverter converter = RowRowConverter.create(TypeConversions.fromLogicalToDataType(ROW_TYPE));
+        converter.open(Thread.currentThread().getContextClassLoader());
+        RowData[] records = rows.stream().map(converter::toInternal).toArray(RowData[]::new);
+        OdpsWriteOptions options = OdpsWriteOptions.builder().build();
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++) {
+            StringBuilder result = new StringBuilder("iteration " + i + ":");
+            for (String path : new String[]{"columnar", "row columnar", "record"}) {
+                BlockWriter<RowData> writer = createWriter(path, options, batchSize);
+                long startCpu = threadMXBean.getCurrentThreadCpuTime();
+                long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                for (int n = 0; n < numRows; n++) {
+                    writer.write(records[n & (records.length - 1)]);
+                }
+                writer.close();
+                long nanos = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+                long bytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+                result.append(String.format(" %s %.1f ns/row %.1f B/row,",
+                        path, (double) nanos / numRows, (double) bytes / numRows));
+            }
+            System.out.println(result.substring(0, result.length() - 1));
+        }
+    }
+
+    private static BlockWriter<RowData> createWriter(String path, OdpsWriteOptions options, int batchSize) {
+        switch (path) {
+            case "columnar":
+                return new RowDataColumnarBlockWriter(COLUMNS, ROW_TYPE, new DiscardingFileWriter<>(), batchSize);
+            case "row columnar":
+                return new RowDataBlockWriter(
+                        new ColumnarBlockWriter<>(COLUMNS, new DiscardingFileWriter<ColDataBatch>(), options, batchSize),
+                        ROW_TYPE);
+            default:
+                return new RowDataBlockWriter(
+                        new RowBlockWriter<>(COLUMNS, new DiscardingFileWriter<ArrayRecord>(), options), ROW_TYPE);
+        }
+    }
+
+    private static class DiscardingFileWriter<T> implements FileWriter<T> {
+
+        private long rows;
+
+        @Override
+        public void write(T data) {
+            rows++;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return rows;
+        }
+    }
+}
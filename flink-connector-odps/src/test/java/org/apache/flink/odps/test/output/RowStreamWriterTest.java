@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.output;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.type.TypeInfoFactory;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.output.writer.stream.AdaptiveFlushController;
+import org.apache.flink.odps.output.writer.stream.JitteredBackOffStrategy;
+import org.apache.flink.odps.output.writer.stream.RowStreamWriter;
+import org.apache.flink.types.Row;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class RowStreamWriterTest {
+
+    private static final Column[] COLUMNS = new Column[]{new Column("id", TypeInfoFactory.BIGINT)};
+
+    @Test
+    public void testFlushByMaxRows() throws Exception {
+        List<Long> flushed = Collections.synchronizedList(new ArrayList<>());
+        TestingFileWriter fileWriter = new TestingFileWriter(flushed);
+        RowStreamWriter<Row> writer = new RowStreamWriter<>(COLUMNS, fileWriter,
+                OdpsWriteOptions.builder().setBufferFlushMaxRows(10).setBufferFlushMaxSizeInBytes(0).build());
+        write(writer, 0, 25);
+        assertEquals(2, fileWriter.numFlushes.get());
+        assertEquals(22, flushed.size());
+        assertFalse(writer.isIdle());
+
+        writer.flush();
+        assertTrue(writer.isIdle());
+        assertEquals(rows(0, 25), flushed);
+        writer.close();
+        assertTrue(fileWriter.closed);
+    }
+
+    @Test
+    public void testAsyncFlush() throws Exception {
+        List<Long> flushed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch uploaded = new CountDownLatch(1);
+        TestingFileWriter fileWriter = new TestingFileWriter(flushed) {
+            @Override
+            public void flush() throws IOException {
+                flushStarted.countDown();
+                try {
+                    uploaded.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.flush();
+            }
+        };
+        TestingFileWriter spareWriter = new TestingFileWriter(flushed);
+        AtomicInteger numSpareWriters = new AtomicInteger();
+        RowStreamWriter<Row> writer = new RowStreamWriter<>(COLUMNS, fileWriter, () -> {
+            numSpareWriters.incrementAndGet();
+            return spareWriter;
+        }, OdpsWriteOptions.builder().setBufferFlushMaxRows(10).setBufferFlushMaxSizeInBytes(0).build());
+
+        write(writer, 0, 11);
+        assertTrue(flushStarted.await(10, TimeUnit.SECONDS));
+        // the rows go into the spare buffer while the first one uploads
+        write(writer, 11, 16);
+        assertEquals(5, spareWriter.getBufferRows());
+        assertTrue(flushed.isEmpty());
+        assertFalse(writer.isIdle());
+
+        uploaded.countDown();
+        writer.flush();
+        assertTrue(writer.isIdle());
+        assertEquals(rows(0, 16), flushed);
+        assertEquals(1, numSpareWriters.get());
+        writer.close();
+        // both buffers are closed
+        assertTrue(fileWriter.closed);
+        assertTrue(spareWriter.closed);
+    }
+
+    @Test
+    public void testAsyncFlushFailure() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        TestingFileWriter fileWriter = new TestingFileWriter(new ArrayList<>()) {
+            @Override
+            public void flush() throws IOException {
+                if (failing.get()) {
+                    throw new IOException("upload failed");
+                }
+                super.flush();
+            }
+        };
+        RowStreamWriter<Row> writer = new RowStreamWriter<>(COLUMNS, fileWriter,
+                () -> new TestingFileWriter(new ArrayList<>()),
+                OdpsWriteOptions.builder()
+                        .setBufferFlushMaxRows(10)
+                        .setBufferFlushMaxSizeInBytes(0)
+                        .setWriteMaxRetries(1)
+                        .build());
+        write(writer, 0, 11);
+        try {
+            writer.flush();
+            fail("the failure of the pending flush should be thrown");
+        } catch (IOException e) {
+            assertTrue(e.getCause().getCause().getMessage().contains("upload failed"));
+        }
+        failing.set(false);
+        writer.close();
+        assertTrue(fileWriter.closed);
+    }
+
+    @Test
+    public void testThrottledFlushShrinksFlushSize() throws Exception {
+        List<Long> flushed = new ArrayList<>();
+        AtomicInteger throttled = new AtomicInteger(1);
+        TestingFileWriter fileWriter = new TestingFileWriter(flushed) {
+            @Override
+            public void flush() throws IOException {
+                if (throttled.getAndDecrement() > 0) {
+                    TunnelException e = new TunnelException("too many requests");
+                    e.setStatus(429);
+                    throw new IOException(e);
+                }
+                super.flush();
+            }
+        };
+        RowStreamWriter<Row> writer = new RowStreamWriter<>(COLUMNS, fileWriter,
+                OdpsWriteOptions.builder()
+                        .setBufferFlushMaxRows(16)
+                        .setBufferFlushMaxSizeInBytes(0)
+                        .setBufferFlushAdaptive(true)
+                        .setBufferFlushTargetLatencyMillis(60000)
+                        .build());
+        write(writer, 0, 17);
+        assertEquals(rows(0, 17), flushed);
+        assertEquals(1, fileWriter.numFlushes.get());
+        // halved after the throttled flush
+        write(writer, 17, 26);
+        assertEquals(2, fileWriter.numFlushes.get());
+        assertEquals(rows(0, 26), flushed);
+    }
+
+    @Test
+    public void testAdaptiveFlushController() {
+        AdaptiveFlushController controller = new AdaptiveFlushController(1000, 0, true, 1000);
+        controller.onFlush(100, 0);
+        assertEquals(1250, controller.getFlushRows());
+        assertEquals(0, controller.getFlushBytes());
+        controller.onFlush(700, 0);
+        assertEquals(1250, controller.getFlushRows());
+        controller.onFlush(2000, 0);
+        assertEquals(938, controller.getFlushRows());
+        controller.onFlush(100, 2);
+        assertEquals(469, controller.getFlushRows());
+        for (int i = 0; i < 100; i++) {
+            controller.onFlush(10000, 1);
+        }
+        assertEquals(125, controller.getFlushRows());
+        for (int i = 0; i < 100; i++) {
+            controller.onFlush(0, 0);
+        }
+        assertEquals(8000, controller.getFlushRows());
+        assertTrue(controller.shouldFlush(8001, 0));
+        assertFalse(controller.shouldFlush(8000, Long.MAX_VALUE));
+
+        AdaptiveFlushController fixed = new AdaptiveFlushController(1000, 4096, false, 1000);
+        fixed.onFlush(0, 0);
+        fixed.onFlush(10000, 3);
+        assertEquals(1000, fixed.getFlushRows());
+        assertEquals(4096, fixed.getFlushBytes());
+        assertTrue(fixed.shouldFlush(0, 4097));
+    }
+
+    @Test
+    public void testThrottlingErrors() {
+        TunnelException throttled = new TunnelException("too many requests");
+        throttled.setErrorCode("SlotExceeded");
+        assertTrue(AdaptiveFlushController.isThrottled(new IOException(throttled)));
+        TunnelException unavailable = new TunnelException("server busy");
+        unavailable.setStatus(503);
+        assertTrue(AdaptiveFlushController.isThrottled(unavailable));
+        TunnelException invalid = new TunnelException("invalid partition");
+        invalid.setErrorCode("InvalidPartitionSpec");
+        invalid.setStatus(400);
+        assertFalse(AdaptiveFlushController.isThrottled(invalid));
+        assertFalse(AdaptiveFlushController.isThrottled(new IOException("connection reset")));
+    }
+
+    @Test
+    public void testJitteredBackOff() {
+        JitteredBackOffStrategy backOff = new JitteredBackOffStrategy(100, 1000);
+        long[] upperBounds = {100, 200, 400, 800, 1000, 1000};
+        for (long upperBound : upperBounds) {
+            long interval = backOff.next();
+            assertTrue(interval + " of " + upperBound, interval >= upperBound / 2 && interval <= upperBound);
+        }
+        backOff.reset();
+        long interval = backOff.next();
+        assertTrue(interval >= 50 && interval <= 100);
+    }
+
+    private static void write(RowStreamWriter<Row> writer, long from, long to) throws IOException {
+        for (long i = from; i < to; i++) {
+            writer.write(Row.of(i));
+        }
+    }
+
+    private static List<Long> rows(long from, long to) {
+        return LongStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    /** Buffers the ids of the written records and moves them to the flushed ones on flush. */
+    private static class TestingFileWriter implements FileWriter<ArrayRecord> {
+
+        private final List<Long> flushed;
+        private final List<Long> buffer = new ArrayList<>();
+        private final AtomicInteger numFlushes = new AtomicInteger();
+        private volatile boolean closed;
+
+        private TestingFileWriter(List<Long> flushed) {
+            this.flushed = flushed;
+        }
+
+        @Override
+        public void write(ArrayRecord record) {
+            buffer.add(record.getBigint(0));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            numFlushes.incrementAndGet();
+            flushed.addAll(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public long getBufferRows() {
+            return buffer.size();
+        }
+
+        @Override
+        public long getBufferBytes() {
+            return buffer.size() * 8L;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            closed = true;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            close();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return 0;
+        }
+    }
+}
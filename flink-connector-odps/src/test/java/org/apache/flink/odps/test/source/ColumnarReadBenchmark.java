@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.source;
+
+import org.apache.flink.odps.input.reader.CupidBatchIterator;
+import org.apache.flink.odps.input.reader.CupidColumnarBatchReader;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.odps.vectorized.ColumnarRowDataBatch;
+import org.apache.flink.table.data.RowData;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Compares the CPU time per row of a full scan through {@link CupidBatchIterator} and through
+ * {@link CupidColumnarBatchReader}, reading every field of every row like a downstream
+ * serializer would. The batches are served from memory by
+ * {@link ColumnarRowDataReadTest.ColumnarSplitProvider}.
+ *
+ * <p>Usage: {@code ColumnarReadBenchmark [numRows] [batchSize] [iterations]}
+ */
+public class ColumnarReadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        String table = "benchmark";
+        ColumnarRowDataReadTest.ColumnarSplitProvider.FILES.put(table, ColumnarRowDataReadTest.createRecords(numRows));
+        String[] selectedColumns = Arrays.stream(ColumnarRowDataReadTest.DATA_COLUMNS)
+                .map(column -> column.getName())
+                .toArray(String[]::new);
+        selectedColumns = Arrays.copyOf(selectedColumns, selectedColumns.length + 1);
+        selectedColumns[selectedColumns.length - 1] = "p_string";
+        OdpsSourceSplit split = ColumnarRowDataReadTest.createSplit(table, selectedColumns, 0);
+        OdpsTableSchema tableSchema = ColumnarRowDataReadTest.createTableSchema();
+        RowData.FieldGetter[] getters = ColumnarRowDataReadTest.createFieldGetters(selectedColumns);
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < iterations; i++) {
+            long start = threadMXBean.getCurrentThreadCpuTime();
+            long rows = scanWithIterator(split, tableSchema, selectedColumns, batchSize, getters);
+            long iteratorNanos = threadMXBean.getCurrentThreadCpuTime() - start;
+
+            start = threadMXBean.getCurrentThreadCpuTime();
+            long columnarRows = scanColumnar(split, tableSchema, selectedColumns, batchSize, getters);
+            long columnarNanos = threadMXBean.getCurrentThreadCpuTime() - start;
+
+            if (rows != numRows || columnarRows != numRows) {
+                throw new IllegalStateException("Unexpected row count " + rows + ", " + columnarRows);
+            }
+            System.out.printf("iteration %d: batch iterator %.1f ns/row, columnar %.1f ns/row%n",
+                    i, (double) iteratorNanos / numRows, (double) columnarNanos / numRows);
+        }
+    }
+
+    private static long scanWithIterator(OdpsSourceSplit split,
+                                         OdpsTableSchema tableSchema,
+                                         String[] selectedColumns,
+                                         int batchSize,
+                                         RowData.FieldGetter[] getters) throws Exception {
+        CupidBatchIterator<RowData> iterator = new CupidBatchIterator<>(split.toOdpsInputSplit(),
+                tableSchema, selectedColumns, RecordType.FLINK_ROW_DATA, batchSize);
+        long numRows = 0;
+        long checksum = 0;
+        try {
+            while (iterator.hasNext()) {
+                checksum += consume(iterator.next(), getters);
+                numRows++;
+            }
+        } finally {
+            iterator.close();
+        }
+        blackhole(checksum);
+        return numRows;
+    }
+
+    private static long scanColumnar(OdpsSourceSplit split,
+                                     OdpsTableSchema tableSchema,
+                                     String[] selectedColumns,
+                                     int batchSize,
+                                     RowData.FieldGetter[] getters) throws Exception {
+        CupidColumnarBatchReader reader = new CupidColumnarBatchReader(split.toOdpsInputSplit(),
+                tableSchema, selectedColumns, batchSize);
+        long numRows = 0;
+        long checksum = 0;
+        try {
+            while (reader.nextBatch()) {
+                ColumnarRowDataBatch batch = reader.getCurrentBatch();
+                for (int rowId = 0; rowId < batch.getNumRows(); rowId++) {
+                    checksum += consume(batch.getRow(rowId), getters);
+                    numRows++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        blackhole(checksum);
+        return numRows;
+    }
+
+    private static int consume(RowData row, RowData.FieldGetter[] getters) {
+        int hash = 0;
+        for (RowData.FieldGetter getter : getters) {
+            Object field = getter.getFieldOrNull(row);
+            hash += field == null ? 0 : 1;
+        }
+        return hash;
+    }
+
+    private static void blackhole(long checksum) {
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.commons.util.DateUtils;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.util.Platform;
+import com.aliyun.odps.cupid.table.v1.util.TableUtils;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoFactory;
+import demo.memory.MemoryProvider;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.odps.input.reader.CupidBatchIterator;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.reader.OdpsSourceSplitReader;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.OdpsTypeUtil;
+import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.table.data.ColumnarRowData;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ColumnarRowDataReadTest {
+
+    private static final String PROJECT = "flink_columnar_read_test";
+    private static final int NUM_ROWS = 1000;
+    private static final int BATCH_SIZE = 128;
+
+    static final Column[] DATA_COLUMNS = new Column[]{
+            new Column("c_tinyint", TypeInfoFactory.TINYINT),
+            new Column("c_smallint", TypeInfoFactory.SMALLINT),
+            new Column("c_int", TypeInfoFactory.INT),
+            new Column("c_bigint", TypeInfoFactory.BIGINT),
+            new Column("c_float", TypeInfoFactory.FLOAT),
+            new Column("c_double", TypeInfoFactory.DOUBLE),
+            new Column("c_boolean", TypeInfoFactory.BOOLEAN),
+            new Column("c_string", TypeInfoFactory.STRING),
+            new Column("c_binary", TypeInfoFactory.BINARY),
+            new Column("c_decimal", TypeInfoFactory.getDecimalTypeInfo(10, 2)),
+            new Column("c_decimal38", TypeInfoFactory.getDecimalTypeInfo(38, 18)),
+            new Column("c_date", TypeInfoFactory.DATE),
+            new Column("c_datetime", TypeInfoFactory.DATETIME),
+            new Column("c_timestamp", TypeInfoFactory.TIMESTAMP),
+    };
+    static final Column[] PARTITION_COLUMNS = new Column[]{
+            new Column("p_string", TypeInfoFactory.STRING),
+            new Column("p_bigint", TypeInfoFactory.BIGINT),
+    };
+
+    @Test
+    public void testSameRowsAsBatchIterator() throws Exception {
+        String table = "all_types";
+        ColumnarSplitProvider.FILES.put(table, createRecords(NUM_ROWS));
+        // partition columns interleaved with data columns in another order than the table
+        List<String> selected = new ArrayList<>();
+        selected.add("p_bigint");
+        for (int i = DATA_COLUMNS.length - 1; i >= 0; i--) {
+            selected.add(DATA_COLUMNS[i].getName());
+        }
+        selected.add("p_string");
+        String[] selectedColumns = selected.toArray(new String[0]);
+        OdpsSourceSplit split = createSplit(table, selectedColumns, 0);
+
+        List<GenericRowData> columnarRows = readColumnar(selectedColumns, Collections.singletonList(split), null, null);
+        List<RowData> iteratorRows = readWithBatchIterator(split, selectedColumns);
+        assertEquals(NUM_ROWS, columnarRows.size());
+        assertEquals(NUM_ROWS, iteratorRows.size());
+
+        RowData.FieldGetter[] getters = createFieldGetters(selectedColumns);
+        ArrayRecord[] records = ColumnarSplitProvider.FILES.get(table);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            for (int c = 0; c < selectedColumns.length; c++) {
+                Object actual = columnarRows.get(i).getField(c);
+                assertFieldEquals(selectedColumns[c] + " of row " + i,
+                        getters[c].getFieldOrNull(iteratorRows.get(i)), actual);
+                if (c > 0 && c < selectedColumns.length - 1) {
+                    Column column = getColumn(selectedColumns[c]);
+                    assertFieldEquals(selectedColumns[c] + " of row " + i,
+                            converter(column).toFlinkDataField(records[i], column), actual);
+                }
+            }
+            assertEquals(7L, columnarRows.get(i).getField(0));
+            assertEquals(StringData.fromString("2024"), columnarRows.get(i).getField(selectedColumns.length - 1));
+        }
+    }
+
+    @Test
+    public void testRestoredPositionAndLimit() throws Exception {
+        String table = "restore";
+        ColumnarSplitProvider.FILES.put(table, createRecords(NUM_ROWS));
+        String[] selectedColumns = new String[]{"c_int", "c_string"};
+        // skips two full batches and a part of the third
+        OdpsSourceSplit split = createSplit(table, selectedColumns, 300);
+
+        List<GenericRowData> rows = readColumnar(selectedColumns, Collections.singletonList(split), null, 150L);
+        assertEquals(150, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            int expected = 300 + i;
+            assertEquals(expected % 7 == 0 ? null : expected, rows.get(i).getField(0));
+        }
+    }
+
+    @Test
+    public void testLimitIsSharedByConcurrentReaders() throws Exception {
+        String table = "shared_limit";
+        ColumnarSplitProvider.FILES.put(table, createRecords(NUM_ROWS));
+        String[] selectedColumns = new String[]{"c_int"};
+        int numReaders = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numReaders);
+        try {
+            for (int round = 0; round < 50; round++) {
+                AtomicLong numRecordsFetched = new AtomicLong();
+                List<Future<List<GenericRowData>>> futures = new ArrayList<>();
+                for (int i = 0; i < numReaders; i++) {
+                    OdpsSourceSplitReader reader = createSplitReader(selectedColumns, null, 300L, numRecordsFetched);
+                    List<OdpsSourceSplit> splits = Collections.singletonList(createSplit(table, selectedColumns, 0));
+                    futures.add(executor.submit(() -> readColumnar(reader, selectedColumns, splits)));
+                }
+                // readers left without rows finish their splits
+                int numRows = 0;
+                for (Future<List<GenericRowData>> future : futures) {
+                    numRows += future.get(30, TimeUnit.SECONDS).size();
+                }
+                assertEquals(300, numRows);
+                assertEquals(300, numRecordsFetched.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNextBatchIsReadAfterRecycle() throws Exception {
+        String table = "recycle";
+        ColumnarSplitProvider.FILES.put(table, createRecords(NUM_ROWS));
+        String[] selectedColumns = new String[]{"c_bigint", "c_string"};
+        OdpsSourceSplitReader reader = createSplitReader(selectedColumns, null, null);
+        reader.handleSplitsChanges(new SplitsAddition<>(
+                Collections.singletonList(createSplit(table, selectedColumns, 0))));
+
+        RecordsWithSplitIds<RowData> first = reader.fetch();
+        assertNotNull(first.nextSplit());
+        reader.wakeUp();
+        // the batch buffers are reused by the provider, the rows of the first batch stay valid
+        RecordsWithSplitIds<RowData> empty = reader.fetch();
+        assertNull(empty.nextSplit());
+        assertTrue(empty.finishedSplits().isEmpty());
+        List<Long> values = new ArrayList<>();
+        RowData row;
+        while ((row = first.nextRecordFromSplit()) != null) {
+            assertTrue(row instanceof ColumnarRowData);
+            values.add(row.isNullAt(0) ? null : row.getLong(0));
+        }
+        assertEquals(BATCH_SIZE, values.size());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertEquals(i % 7 == 0 ? null : i * 1000000007L, values.get(i));
+        }
+        first.recycle();
+
+        RecordsWithSplitIds<RowData> second = reader.fetch();
+        assertNotNull(second.nextSplit());
+        assertEquals(BATCH_SIZE * 1000000007L, second.nextRecordFromSplit().getLong(0));
+        second.recycle();
+        reader.close();
+    }
+
+    @Test
+    public void testNextSplitIsOpenedWhileCurrentOneIsRead() throws Exception {
+        String first = "prefetch_first";
+        String second = "prefetch_second";
+        ColumnarSplitProvider.FILES.put(first, createRecords(NUM_ROWS));
+        ColumnarSplitProvider.FILES.put(second, createRecords(NUM_ROWS));
+        String[] selectedColumns = new String[]{"c_int", "c_string"};
+        OdpsSourceSplitReader reader = createSplitReader(selectedColumns, null, null);
+        reader.handleSplitsChanges(new SplitsAddition<>(Arrays.asList(
+                createSplit(first, selectedColumns, 0),
+                createSplit(second, selectedColumns, 300))));
+
+        RecordsWithSplitIds<RowData> records = reader.fetch();
+        assertEquals(first, records.nextSplit());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!ColumnarSplitProvider.OPENED.contains(second) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(ColumnarSplitProvider.OPENED.contains(second));
+        records.recycle();
+
+        // the prefetched split still skips the rows before its restored position
+        Set<String> finished = new HashSet<>();
+        List<Object> secondValues = new ArrayList<>();
+        while (finished.size() < 2) {
+            records = reader.fetch();
+            String splitId;
+            while ((splitId = records.nextSplit()) != null) {
+                RowData row;
+                while ((row = records.nextRecordFromSplit()) != null) {
+                    if (second.equals(splitId)) {
+                        secondValues.add(row.isNullAt(0) ? null : row.getInt(0));
+                    }
+                }
+            }
+            finished.addAll(records.finishedSplits());
+            records.recycle();
+        }
+        reader.close();
+        assertEquals(NUM_ROWS - 300, secondValues.size());
+        assertEquals(302, secondValues.get(2));
+    }
+
+    @Test
+    public void testRecordFilterReadsRows() throws Exception {
+        String table = "filter";
+        ColumnarSplitProvider.FILES.put(table, createRecords(NUM_ROWS));
+        String[] selectedColumns = new String[]{"c_int", "p_string"};
+        RecordFilter recordFilter = RecordFilter.create(Collections.singletonList(
+                FilterExpression.GreaterThanOrEqual("c_int", 990)), selectedColumns);
+        OdpsSourceSplitReader reader = createSplitReader(selectedColumns, recordFilter, null);
+        reader.handleSplitsChanges(new SplitsAddition<>(
+                Collections.singletonList(createSplit(table, selectedColumns, 0))));
+        RecordsWithSplitIds<RowData> records = reader.fetch();
+        assertNotNull(records.nextSplit());
+        List<RowData> rows = new ArrayList<>();
+        RowData row;
+        while ((row = records.nextRecordFromSplit()) != null) {
+            assertTrue(row instanceof GenericRowData);
+            rows.add(row);
+        }
+        reader.close();
+        // 994 is a null row
+        assertEquals(9, rows.size());
+        assertEquals(990, rows.get(0).getInt(0));
+    }
+
+    static ArrayRecord[] createRecords(int numRows) {
+        ArrayRecord[] records = new ArrayRecord[numRows];
+        BigDecimal decimal38 = new BigDecimal("12345678901234567890.123456789012345678");
+        for (int i = 0; i < numRows; i++) {
+            ArrayRecord record = new ArrayRecord(DATA_COLUMNS);
+            if (i % 7 != 0) {
+                record.set(0, (byte) (i % 100));
+                record.set(1, (short) i);
+                record.set(2, i);
+                record.set(3, i * 1000000007L);
+                record.set(4, i * 0.5f);
+                record.set(5, i * 0.25d);
+                record.set(6, i % 2 == 0);
+                record.set(7, "s" + i + "中");
+                record.set(8, new Binary(new byte[]{(byte) i, (byte) (i + 1)}));
+                record.set(9, new BigDecimal(i).movePointLeft(2));
+                record.set(10, (i % 2 == 0 ? decimal38 : decimal38.negate()).add(BigDecimal.valueOf(i)));
+                record.set(11, java.sql.Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(i)));
+                record.set(12, new Date(1600000000000L + i * 1000L));
+                Timestamp timestamp = new Timestamp((1600000000L + i) * 1000L);
+                timestamp.setNanos(i * 1000 + 7);
+                record.set(13, timestamp);
+            }
+            records[i] = record;
+        }
+        return records;
+    }
+
+    static OdpsTableSchema createTableSchema() {
+        return new OdpsTableSchema(Arrays.asList(DATA_COLUMNS), Arrays.asList(PARTITION_COLUMNS), false);
+    }
+
+    static OdpsSourceSplit createSplit(String table, String[] selectedColumns, long readerPosition) {
+        // the split reads the selected data columns in the selected order
+        List<Attribute> readColumns = Arrays.stream(selectedColumns)
+                .map(ColumnarRowDataReadTest::getColumn)
+                .filter(column -> Arrays.asList(DATA_COLUMNS).contains(column))
+                .map(column -> new Attribute(column.getName(), column.getTypeInfo().getTypeName()))
+                .collect(Collectors.toList());
+        Map<String, String> partitionSpec = new LinkedHashMap<>();
+        partitionSpec.put("p_string", "2024");
+        partitionSpec.put("p_bigint", "7");
+        InputSplit inputSplit = new ColumnarSplit(table, toAttributes(DATA_COLUMNS),
+                toAttributes(PARTITION_COLUMNS), readColumns, partitionSpec);
+        return new OdpsSourceSplit(table, inputSplit, readerPosition);
+    }
+
+    private static List<GenericRowData> readColumnar(String[] selectedColumns,
+                                                     List<OdpsSourceSplit> splits,
+                                                     RecordFilter recordFilter,
+                                                     Long limit) throws Exception {
+        return readColumnar(createSplitReader(selectedColumns, recordFilter, limit), selectedColumns, splits);
+    }
+
+    private static List<GenericRowData> readColumnar(OdpsSourceSplitReader reader,
+                                                     String[] selectedColumns,
+                                                     List<OdpsSourceSplit> splits) throws Exception {
+        reader.handleSplitsChanges(new SplitsAddition<>(splits));
+        RowData.FieldGetter[] getters = createFieldGetters(selectedColumns);
+        Set<String> finished = new HashSet<>();
+        List<GenericRowData> rows = new ArrayList<>();
+        while (finished.size() < splits.size()) {
+            RecordsWithSplitIds<RowData> records = reader.fetch();
+            while (records.nextSplit() != null) {
+                RowData row;
+                while ((row = records.nextRecordFromSplit()) != null) {
+                    assertTrue(row instanceof ColumnarRowData);
+                    // the row is only valid until the batch is recycled
+                    GenericRowData copy = new GenericRowData(getters.length);
+                    for (int i = 0; i < getters.length; i++) {
+                        copy.setField(i, getters[i].getFieldOrNull(row));
+                    }
+                    rows.add(copy);
+                }
+            }
+            finished.addAll(records.finishedSplits());
+            records.recycle();
+        }
+        reader.close();
+        return rows;
+    }
+
+    private static List<RowData> readWithBatchIterator(OdpsSourceSplit split, String[] selectedColumns) throws Exception {
+        CupidBatchIterator<RowData> iterator = new CupidBatchIterator<>(split.toOdpsInputSplit(),
+                createTableSchema(), selectedColumns, RecordType.FLINK_ROW_DATA, BATCH_SIZE);
+        List<RowData> rows = new ArrayList<>();
+        try {
+            while (iterator.hasNext()) {
+                rows.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return rows;
+    }
+
+    private static OdpsSourceSplitReader createSplitReader(String[] selectedColumns,
+                                                           RecordFilter recordFilter,
+                                                           Long limit) {
+        return createSplitReader(selectedColumns, recordFilter, limit, new AtomicLong());
+    }
+
+    private static OdpsSourceSplitReader createSplitReader(String[] selectedColumns,
+                                                           RecordFilter recordFilter,
+                                                           Long limit,
+                                                           AtomicLong numRecordsFetched) {
+        return new OdpsSourceSplitReader(createTableSchema(),
+                selectedColumns,
+                true,
+                BATCH_SIZE,
+                recordFilter,
+                limit,
+                numRecordsFetched);
+    }
+
+    static RowData.FieldGetter[] createFieldGetters(String[] selectedColumns) {
+        RowData.FieldGetter[] getters = new RowData.FieldGetter[selectedColumns.length];
+        for (int i = 0; i < selectedColumns.length; i++) {
+            getters[i] = RowData.createFieldGetter(
+                    OdpsTypeUtil.toFlinkType(getColumn(selectedColumns[i]).getTypeInfo()).getLogicalType(), i);
+        }
+        return getters;
+    }
+
+    private static void assertFieldEquals(String message, Object expected, Object actual) {
+        if (expected instanceof byte[]) {
+            assertArrayEquals(message, (byte[]) expected, (byte[]) actual);
+        } else {
+            assertEquals(message, expected, actual);
+        }
+    }
+
+    private static OdpsTypeConverter converter(Column column) {
+        return OdpsTypeConverter.valueOf(column.getTypeInfo().getOdpsType().name());
+    }
+
+    private static Column getColumn(String name) {
+        for (Column column : DATA_COLUMNS) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        for (Column column : PARTITION_COLUMNS) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static List<Attribute> toAttributes(Column[] columns) {
+        return Arrays.stream(columns)
+                .map(column -> new Attribute(column.getName(), column.getTypeInfo().getTypeName()))
+                .collect(Collectors.toList());
+    }
+
+    private static class ColumnarSplit extends InputSplit {
+
+        private ColumnarSplit(String table,
+                              List<Attribute> dataColumns,
+                              List<Attribute> partitionColumns,
+                              List<Attribute> readDataColumns,
+                              Map<String, String> partitionSpec) {
+            super(PROJECT, table, dataColumns, partitionColumns, readDataColumns, partitionSpec);
+        }
+
+        @Override
+        public String getProvider() {
+            return ColumnarSplitProvider.NAME;
+        }
+    }
+
+    /**
+     * The memory provider cannot read column batches, this one serves the records of a table as
+     * {@link ColDataBatch}es in the layout of the cluster reader. Like a native reader it writes
+     * the fixed width values of every batch into the same buffers.
+     */
+    public static class ColumnarSplitProvider extends MemoryProvider {
+
+        static final String NAME = "memory-columnar";
+        static final Map<String, ArrayRecord[]> FILES = new ConcurrentHashMap<>();
+        // tables a column reader has been created for
+        static final Set<String> OPENED = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public String getShortName() {
+            return NAME;
+        }
+
+        @Override
+        public SplitReader<ColDataBatch> createColDataReader(InputSplit inputSplit, int batchSize) {
+            OPENED.add(inputSplit.getTable());
+            return new ColDataBatchReader(FILES.get(inputSplit.getTable()),
+                    inputSplit.getReadDataColumns(), batchSize);
+        }
+    }
+
+    private static class ColDataBatchReader implements SplitReader<ColDataBatch> {
+
+        private final ArrayRecord[] records;
+        private final String[] names;
+        private final TypeInfo[] typeInfos;
+        private final int batchSize;
+        private final byte[][] dataBufs;
+        private final byte[][] nulls;
+        private final List<Attribute> columns;
+        private int cursor;
+
+        private ColDataBatchReader(ArrayRecord[] records, List<Attribute> columns, int batchSize) {
+            this.records = records;
+            this.batchSize = batchSize;
+            this.names = new String[columns.size()];
+            this.typeInfos = new TypeInfo[columns.size()];
+            this.dataBufs = new byte[columns.size()][];
+            this.nulls = new byte[columns.size()][];
+            this.columns = columns;
+            for (int i = 0; i < columns.size(); i++) {
+                names[i] = columns.get(i).getName();
+                typeInfos[i] = TableUtils.getTypeInfoFromString(columns.get(i).getType());
+                dataBufs[i] = new byte[16 * batchSize];
+                nulls[i] = new byte[batchSize];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < records.length;
+        }
+
+        @Override
+        public ColDataBatch next() {
+            int numRows = Math.min(batchSize, records.length - cursor);
+            // vectors cache the offsets of their strings, only the buffers are reused
+            ColDataVector[] vectors = new ColDataVector[names.length];
+            for (int c = 0; c < vectors.length; c++) {
+                Arrays.fill(dataBufs[c], (byte) 0);
+                List<byte[]> deepBytes = new ArrayList<>();
+                for (int r = 0; r < numRows; r++) {
+                    Object value = records[cursor + r].get(names[c]);
+                    nulls[c][r] = (byte) (value == null ? 1 : 0);
+                    if (value != null) {
+                        byte[] bytes = write(typeInfos[c], value, dataBufs[c], r);
+                        if (bytes != null) {
+                            deepBytes.add(bytes);
+                        }
+                    }
+                }
+                byte[] deepBuf = null;
+                if (isString(typeInfos[c].getOdpsType())) {
+                    int size = deepBytes.stream().mapToInt(bytes -> bytes.length).sum();
+                    deepBuf = new byte[size];
+                    int offset = 0;
+                    for (byte[] bytes : deepBytes) {
+                        System.arraycopy(bytes, 0, deepBuf, offset, bytes.length);
+                        offset += bytes.length;
+                    }
+                }
+                vectors[c] = new ColDataVector(columns.get(c), dataBufs[c], 0, nulls[c], deepBuf);
+            }
+            ColDataBatch batch = new ColDataBatch(vectors);
+            batch.setRowCount(numRows);
+            cursor += numRows;
+            return batch;
+        }
+
+        private static byte[] write(TypeInfo typeInfo, Object value, byte[] data, int rowId) {
+            long base = Platform.BYTE_ARRAY_OFFSET;
+            switch (typeInfo.getOdpsType()) {
+                case BOOLEAN:
+                    data[rowId] = (byte) ((Boolean) value ? 1 : 0);
+                    return null;
+                case TINYINT:
+                    data[rowId] = (Byte) value;
+                    return null;
+                case SMALLINT:
+                    Platform.putShort(data, base + rowId * 2L, (Short) value);
+                    return null;
+                case INT:
+                    Platform.putInt(data, base + rowId * 4L, (Integer) value);
+                    return null;
+                case FLOAT:
+                    Platform.putFloat(data, base + rowId * 4L, (Float) value);
+                    return null;
+                case BIGINT:
+                    Platform.putLong(data, base + rowId * 8L, (Long) value);
+                    return null;
+                case DOUBLE:
+                    Platform.putDouble(data, base + rowId * 8L, (Double) value);
+                    return null;
+                case DATE:
+                    Platform.putLong(data, base + rowId * 8L, DateUtils.getDayOffset((java.sql.Date) value));
+                    return null;
+                case DATETIME:
+                    Platform.putLong(data, base + rowId * 8L, ((Date) value).getTime());
+                    return null;
+                case TIMESTAMP:
+                    Timestamp timestamp = (Timestamp) value;
+                    Platform.putLong(data, base + rowId * 12L, Math.floorDiv(timestamp.getTime(), 1000L));
+                    Platform.putInt(data, base + rowId * 12L + 8, timestamp.getNanos());
+                    return null;
+                case DECIMAL:
+                    BigInteger unscaled = ((BigDecimal) value).unscaledValue();
+                    if (unscaled.bitLength() < 64) {
+                        Platform.putLong(data, base + rowId * 8L, unscaled.longValue());
+                    } else {
+                        // little endian int128
+                        byte[] bytes = unscaled.toByteArray();
+                        for (int i = 0; i < 16; i++) {
+                            data[rowId * 16 + i] = i < bytes.length ? bytes[bytes.length - 1 - i]
+                                    : (byte) (unscaled.signum() < 0 ? -1 : 0);
+                        }
+                    }
+                    return null;
+                case STRING:
+                case BINARY:
+                    byte[] bytes = value instanceof Binary ? ((Binary) value).data()
+                            : value instanceof byte[] ? (byte[]) value
+                            : ((String) value).getBytes(StandardCharsets.UTF_8);
+                    Platform.putLong(data, base + rowId * 16L, bytes.length);
+                    return bytes;
+                default:
+                    throw new UnsupportedOperationException(typeInfo.getTypeName());
+            }
+        }
+
+        private static boolean isString(OdpsType odpsType) {
+            return odpsType == OdpsType.STRING || odpsType == OdpsType.BINARY;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public long getBytesRead() {
+            return -1;
+        }
+
+        @Override
+        public long getRowsRead() {
+            return cursor;
+        }
+    }
+}
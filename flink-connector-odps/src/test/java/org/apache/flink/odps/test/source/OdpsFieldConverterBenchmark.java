@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.SimpleStruct;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.StructTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoParser;
+import org.apache.flink.odps.util.OdpsFieldConverter;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.types.Row;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the CPU time and the allocated bytes per value of converting every supported odps
+ * type through {@link OdpsTypeConverter} and through the converters compiled by
+ * {@link OdpsFieldConverter}, reading into {@code RowData} fields and writing from row fields.
+ *
+ * <p>Usage: {@code OdpsFieldConverterBenchmark [numValues] [iterations]}
+ */
+public class OdpsFieldConverterBenchmark {
+
+    private static final String STRUCT_TYPE = "struct<id:bigint,name:string,scores:array<int>>";
+
+    // stored into so that the converted values escape
+    private static Object sink;
+
+    public static void main(String[] args) {
+        int numValues = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<Integer> scores = Arrays.asList(1, 2, 3, 4);
+        Map<Object, Object> decimals = new HashMap<>();
+        Map<Object, Object> decimalFields = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            decimals.put("k" + i, new BigDecimal(i + ".25"));
+            decimalFields.put("k" + i, new BigDecimal(i + ".25"));
+        }
+        Object[][] cases = {
+                // type, odps value, flink value
+                {"tinyint", (byte) 1, (byte) 1},
+                {"smallint", (short) 2, (short) 2},
+                {"int", 3, 3},
+                {"bigint", 4L, 4L},
+                {"float", 1.5f, 1.5f},
+                {"double", 2.5d, 2.5d},
+                {"boolean", true, true},
+                {"decimal(18,4)", new BigDecimal("12345.6789"), new BigDecimal("12345.6789")},
+                {"binary", new Binary(new byte[16]), new byte[16]},
+                {"char(8)", new Char("abcdefgh", 8), "abcdefgh"},
+                {"varchar(16)", new Varchar("abcdefgh", 16), "abcdefgh"},
+                {"string", "abcdefghijklmnop", "abcdefghijklmnop"},
+                {"datetime", new Date(1609459200123L), LocalDateTime.of(2021, 1, 1, 12, 0, 0, 123000000)},
+                {"date", java.sql.Date.valueOf("2021-01-01"), LocalDate.of(2021, 1, 1)},
+                {"timestamp", Timestamp.valueOf("2021-01-01 12:00:00.123456789"),
+                        LocalDateTime.of(2021, 1, 1, 12, 0, 0, 123456789)},
+                {"array<bigint>", Arrays.asList(1L, 2L, 3L, 4L), new Object[]{1L, 2L, 3L, 4L}},
+                {"array<timestamp>", Arrays.asList(Timestamp.valueOf("2021-01-01 00:00:00"),
+                        Timestamp.valueOf("2021-01-02 00:00:00")),
+                        new Object[]{LocalDateTime.of(2021, 1, 1, 0, 0), LocalDateTime.of(2021, 1, 2, 0, 0)}},
+                {"map<string,decimal(10,2)>", decimals, decimalFields},
+                {STRUCT_TYPE, new SimpleStruct((StructTypeInfo) TypeInfoParser.getTypeInfoFromTypeString(STRUCT_TYPE),
+                        Arrays.asList(7L, "name", scores)), Row.of(7L, "name", new Object[]{1, 2, 3, 4})},
+                {"array<array<string>>", Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d")),
+                        new Object[]{new Object[]{"a", "b"}, new Object[]{"c", "d"}}},
+        };
+
+        System.out.printf("%-50s %22s %22s %22s %22s%n", "type",
+                "read enum ns B", "read compiled ns B", "write enum ns B", "write compiled ns B");
+        for (Object[] c : cases) {
+            TypeInfo typeInfo = TypeInfoParser.getTypeInfoFromTypeString((String) c[0]);
+            ArrayRecord record = new ArrayRecord(new Column[]{new Column("c", typeInfo)});
+            record.set(0, c[1]);
+            OdpsTypeConverter typeConverter = OdpsTypeConverter.valueOf(typeInfo.getOdpsType().name());
+            OdpsFieldConverter fieldConverter = OdpsFieldConverter.create(typeInfo);
+            Object flinkValue = c[2];
+
+            double[] result = new double[8];
+            for (int i = 0; i < iterations; i++) {
+                Meter meter = new Meter(numValues);
+                for (int n = 0; n < numValues; n++) {
+                    sink = typeConverter.toFlinkDataField(record, 0, typeInfo);
+                }
+                meter.next(result, 0);
+                for (int n = 0; n < numValues; n++) {
+                    sink = fieldConverter.toFlinkDataField(record, 0);
+                }
+                meter.next(result, 2);
+                for (int n = 0; n < numValues; n++) {
+                    sink = typeConverter.toOdpsField(flinkValue, typeInfo);
+                }
+                meter.next(result, 4);
+                for (int n = 0; n < numValues; n++) {
+                    sink = fieldConverter.toOdpsField(flinkValue);
+                }
+                meter.next(result, 6);
+            }
+            System.out.printf("%-50s %12.1f %9.1f %12.1f %9.1f %12.1f %9.1f %12.1f %9.1f%n", c[0],
+                    result[0], result[1], result[2], result[3], result[4], result[5], result[6], result[7]);
+        }
+        System.out.println(sink != null);
+    }
+
+    /** CPU time and allocated bytes per value of the current thread since the last measurement. */
+    private static class Meter {
+
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+        private final int numValues;
+        private long cpu;
+        private long bytes;
+
+        private Meter(int numValues) {
+            this.numValues = numValues;
+            this.cpu = threadMXBean.getCurrentThreadCpuTime();
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+
+        private void next(double[] result, int offset) {
+            long nowCpu = threadMXBean.getCurrentThreadCpuTime();
+            long nowBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            result[offset] = (double) (nowCpu - cpu) / numValues;
+            result[offset + 1] = (double) (nowBytes - bytes) / numValues;
+            this.cpu = nowCpu;
+            // the measurement itself allocates, read the counter last
+            this.bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
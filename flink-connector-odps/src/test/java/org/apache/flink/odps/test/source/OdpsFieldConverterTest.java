@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.SimpleStruct;
+import com.aliyun.odps.data.Struct;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.StructTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoParser;
+import org.apache.flink.odps.util.OdpsFieldConverter;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.table.data.ArrayData;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.types.Row;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OdpsFieldConverterTest {
+
+    private static final String STRUCT_TYPE = "struct<id:bigint,name:string,scores:array<int>>";
+
+    @Test
+    public void testReadsLikeTypeConverter() {
+        Object[][] columns = {
+                {"tinyint", (byte) 1},
+                {"smallint", (short) 2},
+                {"int", 3},
+                {"bigint", 4L},
+                {"float", 1.5f},
+                {"double", 2.5d},
+                {"boolean", true},
+                {"decimal(10,2)", new BigDecimal("12.34")},
+                {"binary", new Binary(new byte[]{1, 2, 3})},
+                {"char(5)", new Char("ab", 5)},
+                {"varchar(10)", new Varchar("abc", 10)},
+                {"string", "hello"},
+                {"datetime", new Date(1609459200123L)},
+                {"date", java.sql.Date.valueOf("2021-01-01")},
+                {"timestamp", Timestamp.valueOf("2021-01-01 12:00:00.123456789")},
+                {STRUCT_TYPE, struct(7L, "name", Arrays.asList(1, 2))},
+                {"map<string,decimal(10,2)>", map("a", new BigDecimal("1.10"), "b", new BigDecimal("2.20"))},
+                {"array<timestamp>", Arrays.asList(Timestamp.valueOf("2021-01-01 00:00:00.5"), null)},
+                {"array<array<bigint>>", Arrays.asList(Arrays.asList(1L, 2L), Arrays.asList(3L))},
+                {"array<" + STRUCT_TYPE + ">", Arrays.asList(struct(1L, "a", Arrays.asList(3)))},
+                {"map<bigint,array<date>>", map(1L, Arrays.asList(java.sql.Date.valueOf("2021-01-02")))},
+                {"string", null},
+                {"array<string>", null},
+        };
+        Column[] cols = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            cols[i] = new Column("c" + i, TypeInfoParser.getTypeInfoFromTypeString((String) columns[i][0]));
+        }
+        ArrayRecord record = new ArrayRecord(cols);
+        for (int i = 0; i < columns.length; i++) {
+            record.set(i, columns[i][1]);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            TypeInfo typeInfo = cols[i].getTypeInfo();
+            OdpsTypeConverter expected = OdpsTypeConverter.valueOf(typeInfo.getOdpsType().name());
+            OdpsFieldConverter converter = OdpsFieldConverter.create(typeInfo);
+            String message = typeInfo.getTypeName();
+            assertSameValue(message, expected.toFlinkField(record, i, typeInfo), converter.toFlinkField(record, i));
+            assertSameValue(message, expected.toFlinkDataField(record, i, typeInfo),
+                    converter.toFlinkDataField(record, i));
+        }
+    }
+
+    @Test
+    public void testWritesLikeTypeConverter() {
+        Object[][] values = {
+                {"tinyint", (byte) 1, true, 'a', "7"},
+                {"smallint", (short) 2, false, 'b', "3", (byte) 4},
+                {"int", 3, true, 'c', "4"},
+                {"bigint", 4L, true, 'd', "5"},
+                {"float", 1.5f, true, "2.5", 'e'},
+                {"double", 2.5d, false, "3.5", 1},
+                {"boolean", true, (byte) 0, (short) 1, 2, 0L, 0f, 1.0d, 'x', "true"},
+                {"decimal(10,2)", new BigDecimal("12.34"), 5, 6L, 7.5d, "8.25"},
+                {"binary", new byte[]{1, 2}, "bytes"},
+                {"char(5)", "ab"},
+                {"varchar(10)", "abc"},
+                {"string", "s", (byte) 1, (short) 2, 3, 4L, 5f, 6d, 'c', true},
+                {"datetime", LocalDateTime.of(2021, 1, 1, 12, 30, 1, 123000000), new Date(1000L)},
+                {"date", LocalDate.of(2021, 1, 2), "2021-01-03"},
+                {"timestamp", LocalDateTime.of(2021, 1, 1, 12, 30, 1, 123456789)},
+                {STRUCT_TYPE, Row.of(7L, "name", new Object[]{1, 2})},
+                {"map<string,decimal(10,2)>", map("a", new BigDecimal("1.10"), "b", "2.20")},
+                {"array<timestamp>", new Object[]{LocalDateTime.of(2021, 1, 1, 0, 0), null}},
+                {"array<array<bigint>>", new Object[]{new Object[]{1L, "2"}, new Object[]{3L}}},
+                {"array<" + STRUCT_TYPE + ">", new Object[]{Row.of(1L, 'a', new Object[]{"3"})}},
+        };
+        for (Object[] row : values) {
+            TypeInfo typeInfo = TypeInfoParser.getTypeInfoFromTypeString((String) row[0]);
+            OdpsTypeConverter expected = OdpsTypeConverter.valueOf(typeInfo.getOdpsType().name());
+            OdpsFieldConverter converter = OdpsFieldConverter.create(typeInfo);
+            for (int i = 1; i < row.length; i++) {
+                String message = typeInfo.getTypeName() + " <- " + row[i];
+                assertSameValue(message, expected.toOdpsField(row[i], typeInfo), converter.toOdpsField(row[i]));
+            }
+            assertNull(converter.toOdpsField(null));
+        }
+    }
+
+    @Test
+    public void testNarrowingWritesAreRejected() {
+        Object[][] values = {
+                {"tinyint", (short) 1},
+                {"smallint", 1},
+                {"int", 1L},
+                {"bigint", 1.0d},
+                {"float", 1.0d},
+        };
+        for (Object[] row : values) {
+            OdpsFieldConverter converter =
+                    OdpsFieldConverter.create(TypeInfoParser.getTypeInfoFromTypeString((String) row[0]));
+            try {
+                converter.toOdpsField(row[1]);
+                fail("Expected " + row[1] + " to be rejected by " + row[0]);
+            } catch (ClassCastException e) {
+                assertTrue(e.getMessage().contains("can not be cast to"));
+            }
+        }
+    }
+
+    @Test
+    public void testFailedWritesLikeTypeConverter() {
+        Object[][] values = {
+                {"decimal(10,2)", (byte) 1},
+                {"decimal(10,2)", (short) 2},
+                {"decimal(10,2)", 1.5f},
+                {"decimal(10,2)", 'c'},
+                {"int", 1L},
+        };
+        for (Object[] row : values) {
+            TypeInfo typeInfo = TypeInfoParser.getTypeInfoFromTypeString((String) row[0]);
+            OdpsTypeConverter expected = OdpsTypeConverter.valueOf(typeInfo.getOdpsType().name());
+            OdpsFieldConverter converter = OdpsFieldConverter.create(typeInfo);
+            String message = typeInfo.getTypeName() + " <- " + row[1];
+            String expectedMessage = null;
+            try {
+                expected.toOdpsField(row[1], typeInfo);
+                fail(message);
+            } catch (ClassCastException e) {
+                expectedMessage = e.getMessage();
+            }
+            try {
+                converter.toOdpsField(row[1]);
+                fail(message);
+            } catch (ClassCastException e) {
+                assertEquals(message, expectedMessage, e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testArraysHaveTheElementClass() {
+        OdpsFieldConverter converter =
+                OdpsFieldConverter.create(TypeInfoParser.getTypeInfoFromTypeString("array<array<string>>"));
+        Object array = converter.toFlinkField(Arrays.asList(null, Arrays.asList("a", null), new ArrayList<>()));
+        assertEquals(String[][].class, array.getClass());
+        assertArrayEquals(new String[][]{null, {"a", null}, {}}, (String[][]) array);
+
+        // the first element decided the class before, a leading null failed
+        converter = OdpsFieldConverter.create(TypeInfoParser.getTypeInfoFromTypeString("array<struct<a:int>>"));
+        Object[] rows = (Object[]) converter.toFlinkField(Arrays.asList(null, struct("struct<a:int>", 1)));
+        assertEquals(Row[].class, rows.getClass());
+        assertNull(rows[0]);
+        assertEquals(Row.of(1), rows[1]);
+        ArrayData data = (ArrayData) converter.toFlinkDataField(Arrays.asList(null, struct("struct<a:int>", 1)));
+        assertTrue(data.isNullAt(0));
+        assertEquals(GenericRowData.of(1), data.getRow(1, 1));
+    }
+
+    private static Struct struct(Object... values) {
+        return struct(STRUCT_TYPE, values);
+    }
+
+    private static Struct struct(String type, Object... values) {
+        return new SimpleStruct((StructTypeInfo) TypeInfoParser.getTypeInfoFromTypeString(type), Arrays.asList(values));
+    }
+
+    private static Map<Object, Object> map(Object... keyValues) {
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static void assertSameValue(String message, Object expected, Object actual) {
+        if (expected != null && actual != null) {
+            assertEquals(message, expected.getClass(), actual.getClass());
+        }
+        assertEquals(message, normalize(expected), normalize(actual));
+    }
+
+    /** Values with content equality, the odps values and java arrays compare by identity. */
+    private static Object normalize(Object value) {
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        } else if (value instanceof Binary) {
+            return ByteBuffer.wrap(((Binary) value).data());
+        } else if (value instanceof AbstractChar) {
+            return value.getClass().getSimpleName() + ":" + ((AbstractChar) value).getValue();
+        } else if (value instanceof Struct) {
+            return normalize(((Struct) value).getFieldValues());
+        } else if (value instanceof Object[]) {
+            return normalize(Arrays.asList((Object[]) value));
+        } else if (value instanceof List) {
+            List<Object> result = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                result.add(normalize(element));
+            }
+            return result;
+        } else if (value instanceof Map) {
+            Map<Object, Object> result = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                result.put(normalize(entry.getKey()), normalize(entry.getValue()));
+            }
+            return result;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.TableReadSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterType;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriterBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSession;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.WriteSessionInfo;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.type.TypeInfoFactory;
+import demo.memory.MemoryStore;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
+import org.apache.flink.odps.source.reader.OdpsSourceSplitReader;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.table.OdpsFilterConverter;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.expressions.CallExpression;
+import org.apache.flink.table.expressions.FieldReferenceExpression;
+import org.apache.flink.table.expressions.ResolvedExpression;
+import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.apache.flink.table.functions.FunctionDefinition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class OdpsFilterPushDownTest {
+
+    private static final String PROVIDER = "memory";
+    private static final String PROJECT = "flink_filter_test";
+    private static final String TABLE = "t";
+    private static final int NUM_ROWS = 30;
+
+    private static final FieldReferenceExpression ID =
+            new FieldReferenceExpression("id", DataTypes.INT(), 0, 0);
+    private static final FieldReferenceExpression VALUE =
+            new FieldReferenceExpression("value", DataTypes.STRING(), 0, 1);
+
+    private OdpsConf odpsConf;
+    private OdpsTableSchema odpsTableSchema;
+
+    @Before
+    public void setUp() throws Exception {
+        odpsConf = new OdpsConf("accessId", "accessKey", "http://localhost", PROJECT);
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.addColumn(new Column("id", TypeInfoFactory.INT));
+        tableSchema.addColumn(new Column("value", TypeInfoFactory.STRING));
+        odpsTableSchema = new OdpsTableSchema(tableSchema.getColumns(), tableSchema.getPartitionColumns(), false);
+
+        MemoryStore.createProject(PROJECT);
+        MemoryStore.createTable(PROJECT, TABLE);
+        TableWriteSession session = new TableWriteSessionBuilder(PROVIDER, PROJECT, TABLE)
+                .tableSchema(tableSchema)
+                .build();
+        WriteSessionInfo info = session.getOrCreateSessionInfo();
+        FileWriter<ArrayRecord> writer = new FileWriterBuilder(info, 0).buildRecordWriter();
+        ArrayRecord record = new ArrayRecord(tableSchema.getColumns().toArray(new Column[0]));
+        for (int i = 0; i < NUM_ROWS; i++) {
+            record.set(0, i);
+            record.set(1, i % 3 == 0 ? null : "value" + i);
+            writer.write(record);
+        }
+        writer.close();
+        writer.commit();
+        session.commitTable();
+    }
+
+    @Test
+    public void testConvertComparisons() {
+        FilterExpression filter = convert(call(BuiltInFunctionDefinitions.GREATER_THAN, ID, literal(10)));
+        assertEquals(FilterType.GREATER_THAN, filter.getType());
+        assertEquals("id", filter.getAttribute());
+        assertEquals(10, filter.getLiteral());
+
+        // literal on the left side flips the comparison
+        filter = convert(call(BuiltInFunctionDefinitions.LESS_THAN_OR_EQUAL, literal(10), ID));
+        assertEquals(FilterType.GREATER_THAN_OR_EQUAL, filter.getType());
+
+        filter = convert(call(BuiltInFunctionDefinitions.NOT_EQUALS, ID, literal(10)));
+        assertEquals(FilterType.OR, filter.getType());
+
+        filter = convert(call(BuiltInFunctionDefinitions.IN, ID, literal(1), literal(2)));
+        assertEquals(FilterType.IN, filter.getType());
+        assertArrayEquals(new Object[]{1, 2}, (Object[]) filter.getLiteral());
+
+        filter = convert(call(BuiltInFunctionDefinitions.OR,
+                call(BuiltInFunctionDefinitions.IS_NULL, VALUE),
+                call(BuiltInFunctionDefinitions.EQUALS, VALUE, literal("value1"))));
+        assertEquals("Or(IsNull(value), EqualTo(value, value1))", filter.toString());
+    }
+
+    @Test
+    public void testUnsupportedExpressions() {
+        // not a literal
+        assertFalse(OdpsFilterConverter.convert(call(BuiltInFunctionDefinitions.EQUALS, ID, ID)).isPresent());
+        // fractional literal on an integer column
+        assertFalse(OdpsFilterConverter.convert(
+                call(BuiltInFunctionDefinitions.EQUALS, ID, literal(new java.math.BigDecimal("1.5")))).isPresent());
+        // an unsupported child makes the whole OR unsupported
+        assertFalse(OdpsFilterConverter.convert(call(BuiltInFunctionDefinitions.OR,
+                call(BuiltInFunctionDefinitions.EQUALS, ID, literal(1)),
+                call(BuiltInFunctionDefinitions.LIKE, VALUE, literal("v%")))).isPresent());
+    }
+
+    @Test
+    public void testNotEqualsKeepsNaN() {
+        FieldReferenceExpression score = new FieldReferenceExpression("score", DataTypes.DOUBLE(), 0, 2);
+        assertFalse(OdpsFilterConverter.convert(
+                call(BuiltInFunctionDefinitions.NOT_EQUALS, score, literal(1.0))).isPresent());
+        assertFalse(OdpsFilterConverter.convert(call(BuiltInFunctionDefinitions.NOT_EQUALS,
+                new FieldReferenceExpression("score", DataTypes.FLOAT(), 0, 2), literal(1.0f))).isPresent());
+
+        Column[] columns = new Column[]{new Column("id", TypeInfoFactory.INT),
+                new Column("value", TypeInfoFactory.STRING), new Column("score", TypeInfoFactory.DOUBLE)};
+        ArrayRecord record = new ArrayRecord(columns);
+        record.set(0, 5);
+        record.set(2, Double.NaN);
+        String[] names = new String[]{"id", "value", "score"};
+        // the rewrite of <> to < or > would drop the NaN row, which flink keeps
+        FilterExpression rewritten = FilterExpression.Or(
+                FilterExpression.LessThan("score", 1.0), FilterExpression.GreaterThan("score", 1.0));
+        assertFalse(RecordFilter.create(Collections.singletonList(rewritten), names).test(record));
+        // the other comparisons are false for NaN in flink as well
+        assertFalse(RecordFilter.create(
+                Collections.singletonList(convert(call(BuiltInFunctionDefinitions.EQUALS, score, literal(1.0)))),
+                names).test(record));
+
+        record.set(2, 2.0);
+        assertTrue(RecordFilter.create(Collections.singletonList(rewritten), names).test(record));
+        // <> on integer columns is still pushed down
+        assertEquals(FilterType.OR,
+                convert(call(BuiltInFunctionDefinitions.NOT_EQUALS, ID, literal(1))).getType());
+    }
+
+    @Test
+    public void testRecordFilterSemantics() {
+        Column[] columns = new Column[]{
+                new Column("id", TypeInfoFactory.INT), new Column("value", TypeInfoFactory.STRING)};
+        ArrayRecord record = new ArrayRecord(columns);
+        record.set(0, 5);
+        record.set(1, null);
+
+        assertTrue(test(FilterExpression.GreaterThan("id", 4), record));
+        assertFalse(test(FilterExpression.GreaterThan("id", 5L), record));
+        assertTrue(test(FilterExpression.In("id", new Object[]{1, 5}), record));
+        assertTrue(test(FilterExpression.IsNull("value"), record));
+        // comparisons with null are unknown, even when negated
+        assertFalse(test(FilterExpression.EqualTo("value", "a"), record));
+        assertFalse(test(FilterExpression.Not(FilterExpression.EqualTo("value", "a")), record));
+        assertTrue(test(FilterExpression.Or(FilterExpression.EqualTo("value", "a"),
+                FilterExpression.EqualTo("id", 5)), record));
+
+        record.set(1, "b");
+        assertTrue(test(FilterExpression.GreaterThan("value", "a"), record));
+        assertTrue(test(FilterExpression.StringStartsWith("value", "b"), record));
+
+        // filters on unknown columns are dropped
+        assertNull(RecordFilter.create(
+                Collections.singletonList(FilterExpression.EqualTo("other", 1)), new String[]{"id", "value"}));
+    }
+
+    @Test
+    public void testFilteredRecordsAreNotConverted() throws Exception {
+        List<FilterExpression> filters = Arrays.asList(
+                convert(call(BuiltInFunctionDefinitions.GREATER_THAN_OR_EQUAL, ID, literal(20))),
+                convert(call(BuiltInFunctionDefinitions.IS_NOT_NULL, VALUE)));
+        assertFiltered(read(Collections.emptyList(), RecordFilter.create(filters, new String[]{"id", "value"}), false));
+        assertEquals(NUM_ROWS, read(Collections.emptyList(), null, false).size());
+    }
+
+    @Test
+    public void testFiltersArePushedDown() throws Exception {
+        assertTrue(TableReadSessionBuilder.getProviderCapabilities(PROVIDER).supportPushDownFilters());
+
+        List<FilterExpression> filters = Arrays.asList(
+                convert(call(BuiltInFunctionDefinitions.GREATER_THAN_OR_EQUAL, ID, literal(20))),
+                convert(call(BuiltInFunctionDefinitions.IS_NOT_NULL, VALUE)));
+        // the provider evaluates the filters on records and on batches
+        assertFiltered(read(filters, null, false));
+        assertFiltered(read(filters, null, true));
+    }
+
+    private static void assertFiltered(List<RowData> rows) {
+        // rows 20 - 29 minus 21, 24 and 27 which have a null value
+        assertEquals(7, rows.size());
+        for (RowData row : rows) {
+            assertTrue(row.getInt(0) >= 20);
+            assertFalse(row.isNullAt(1));
+        }
+    }
+
+    private List<RowData> read(List<FilterExpression> filters,
+                               RecordFilter recordFilter,
+                               boolean useBatch) throws Exception {
+        OdpsSplitPlanner planner = new OdpsSplitPlanner(odpsConf, PROVIDER, PROJECT, TABLE,
+                Arrays.asList(new Attribute("id", "INT"), new Attribute("value", "STRING")), filters, 256);
+        List<OdpsSourceSplit> splits = new ArrayList<>();
+        for (InputSplit inputSplit : planner.planSplits(Collections.singletonList(""))) {
+            splits.add(new OdpsSourceSplit(String.valueOf(splits.size()), inputSplit));
+        }
+        OdpsSourceSplitReader reader = new OdpsSourceSplitReader(odpsTableSchema,
+                new String[]{"id", "value"},
+                useBatch,
+                8,
+                recordFilter,
+                null,
+                new AtomicLong());
+        reader.handleSplitsChanges(new SplitsAddition<>(splits));
+        Set<String> finished = new HashSet<>();
+        List<RowData> rows = new ArrayList<>();
+        while (finished.size() < splits.size()) {
+            RecordsWithSplitIds<RowData> records = reader.fetch();
+            while (records.nextSplit() != null) {
+                RowData row;
+                while ((row = records.nextRecordFromSplit()) != null) {
+                    // columnar rows are only valid until their batch is recycled
+                    rows.add(GenericRowData.of(row.getInt(0), row.isNullAt(1) ? null : row.getString(1)));
+                }
+            }
+            finished.addAll(records.finishedSplits());
+            records.recycle();
+        }
+        reader.close();
+        return rows;
+    }
+
+    private static boolean test(FilterExpression filter, ArrayRecord record) {
+        return RecordFilter.create(Collections.singletonList(filter), new String[]{"id", "value"}).test(record);
+    }
+
+    private static FilterExpression convert(ResolvedExpression expression) {
+        Optional<FilterExpression> filter = OdpsFilterConverter.convert(expression);
+        assertTrue(filter.isPresent());
+        return filter.get();
+    }
+
+    private static CallExpression call(FunctionDefinition function, ResolvedExpression... args) {
+        return new CallExpression(function, Arrays.asList(args), DataTypes.BOOLEAN());
+    }
+
+    private static ValueLiteralExpression literal(Object value) {
+        return new ValueLiteralExpression(value);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriterBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSession;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.WriteSessionInfo;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.type.TypeInfoFactory;
+import demo.memory.MemoryStore;
+import org.apache.flink.api.connector.source.ReaderInfo;
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SplitEnumeratorContext;
+import org.apache.flink.api.connector.source.SplitsAssignment;
+import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
+import org.apache.flink.connector.base.source.reader.splitreader.SplitsAddition;
+import org.apache.flink.metrics.groups.SplitEnumeratorMetricGroup;
+import org.apache.flink.odps.FlinkOdpsException;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumState;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumStateSerializer;
+import org.apache.flink.odps.source.enumerator.OdpsSourceEnumerator;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
+import org.apache.flink.odps.source.reader.OdpsSourceSplitReader;
+import org.apache.flink.odps.source.split.OdpsSourceSplit;
+import org.apache.flink.odps.source.split.OdpsSourceSplitSerializer;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.table.data.RowData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OdpsSourceTest {
+
+    private static final String PROVIDER = "memory";
+    private static final String PROJECT = "flink_source_test";
+    private static final String TABLE = "t";
+    private static final int NUM_FILES = 3;
+    private static final int ROWS_PER_FILE = 10;
+
+    private OdpsConf odpsConf;
+    private OdpsTableSchema odpsTableSchema;
+
+    @Before
+    public void setUp() throws Exception {
+        odpsConf = new OdpsConf("accessId", "accessKey", "http://localhost", PROJECT);
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.addColumn(new Column("id", TypeInfoFactory.INT));
+        tableSchema.addColumn(new Column("value", TypeInfoFactory.STRING));
+        odpsTableSchema = new OdpsTableSchema(tableSchema.getColumns(), tableSchema.getPartitionColumns(), false);
+
+        MemoryStore.createProject(PROJECT);
+        MemoryStore.createTable(PROJECT, TABLE);
+        TableWriteSession session = new TableWriteSessionBuilder(PROVIDER, PROJECT, TABLE)
+                .tableSchema(tableSchema)
+                .build();
+        WriteSessionInfo info = session.getOrCreateSessionInfo();
+        for (int i = 0; i < NUM_FILES; i++) {
+            FileWriter<ArrayRecord> writer = new FileWriterBuilder(info, i).buildRecordWriter();
+            ArrayRecord record = new ArrayRecord(tableSchema.getColumns().toArray(new Column[0]));
+            for (int j = 0; j < ROWS_PER_FILE; j++) {
+                record.set(0, i * ROWS_PER_FILE + j);
+                record.set(1, "value" + j);
+                writer.write(record);
+            }
+            writer.close();
+            writer.commit();
+        }
+        session.commitTable();
+    }
+
+    @Test
+    public void testSplitReaderReadsAllSplits() throws Exception {
+        List<OdpsSourceSplit> splits = planSplits();
+        assertEquals(NUM_FILES, splits.size());
+
+        List<RowData> rows = readAll(createSplitReader(null), splits);
+        assertEquals(NUM_FILES * ROWS_PER_FILE, rows.size());
+        Set<Integer> ids = new HashSet<>();
+        rows.forEach(row -> ids.add(row.getInt(0)));
+        assertEquals(NUM_FILES * ROWS_PER_FILE, ids.size());
+    }
+
+    @Test
+    public void testSplitReaderWithLimit() throws Exception {
+        List<RowData> rows = readAll(createSplitReader(5L), planSplits());
+        assertEquals(5, rows.size());
+    }
+
+    @Test
+    public void testSplitReaderResumesFromPosition() throws Exception {
+        OdpsSourceSplit split = planSplits().get(0).updateWithReaderPosition(4);
+        OdpsSourceSplitSerializer serializer = OdpsSourceSplitSerializer.INSTANCE;
+        OdpsSourceSplit restored = serializer.deserialize(serializer.getVersion(), serializer.serialize(split));
+        assertEquals(split, restored);
+
+        List<RowData> rows = readAll(createSplitReader(null), Collections.singletonList(restored));
+        assertEquals(ROWS_PER_FILE - 4, rows.size());
+        assertEquals(4, rows.get(0).getInt(0));
+    }
+
+    @Test
+    public void testEnumeratorDiscoversPartitionsLazily() throws Exception {
+        CountingSplitPlanner planner = new CountingSplitPlanner(odpsConf, requiredColumns());
+        TestingEnumeratorContext context = new TestingEnumeratorContext(2);
+        OdpsSourceEnumerator enumerator = new OdpsSourceEnumerator(context, planner, 1,
+                OdpsSourceEnumState.initialState(Arrays.asList("p=1", "p=2", "p=3")));
+        enumerator.start();
+        context.runAsyncTasks();
+        assertEquals(1, planner.numPlanned);
+
+        // the memory provider creates one split per file for every planned partition
+        for (int i = 0; i < NUM_FILES; i++) {
+            enumerator.handleSplitRequest(i % 2, null);
+        }
+        assertEquals(1, planner.numPlanned);
+        assertEquals(NUM_FILES, context.numAssignedSplits());
+
+        enumerator.handleSplitRequest(0, null);
+        context.runAsyncTasks();
+        assertEquals(2, planner.numPlanned);
+        assertEquals(NUM_FILES + 1, context.numAssignedSplits());
+
+        OdpsSourceEnumStateSerializer serializer = OdpsSourceEnumStateSerializer.INSTANCE;
+        OdpsSourceEnumState state = serializer.deserialize(serializer.getVersion(),
+                serializer.serialize(enumerator.snapshotState(1L)));
+        assertEquals(Collections.singletonList("p=3"), new ArrayList<>(state.getRemainingPartitions()));
+        assertEquals(NUM_FILES - 1, state.getPendingSplits().size());
+        assertEquals(NUM_FILES + 1, state.getAssignedSplitIds().size());
+
+        // a restored enumerator drains the pending splits before planning the last partition
+        TestingEnumeratorContext restoredContext = new TestingEnumeratorContext(1);
+        OdpsSourceEnumerator restored = new OdpsSourceEnumerator(restoredContext, planner, 1, state);
+        restored.start();
+        for (int i = 0; i < NUM_FILES * 2; i++) {
+            restored.handleSplitRequest(0, null);
+            restoredContext.runAsyncTasks();
+        }
+        assertEquals(3, planner.numPlanned);
+        assertEquals(NUM_FILES * 2 - 1, restoredContext.numAssignedSplits());
+        assertTrue(restoredContext.noMoreSplits.contains(0));
+    }
+
+    @Test
+    public void testEnumeratorRetriesFailedPlanning() throws Exception {
+        CountingSplitPlanner planner = new CountingSplitPlanner(odpsConf, requiredColumns());
+        planner.numFailures = 2;
+        TestingEnumeratorContext context = new TestingEnumeratorContext(1);
+        OdpsSourceEnumerator enumerator = new OdpsSourceEnumerator(context, planner, 1,
+                OdpsSourceEnumState.initialState(Arrays.asList("p=1", "p=2")), 2, Duration.ofMillis(1));
+        enumerator.start();
+        context.runAsyncTasks();
+        assertEquals(3, planner.numPlanned);
+        enumerator.handleSplitRequest(0, null);
+        assertEquals(1, context.numAssignedSplits());
+
+        // the retries start over for every batch
+        planner.numFailures = 3;
+        for (int i = 0; i < NUM_FILES; i++) {
+            enumerator.handleSplitRequest(0, null);
+        }
+        try {
+            context.runAsyncTasks();
+            fail();
+        } catch (FlinkOdpsException e) {
+            assertTrue(e.getMessage().contains("after 2 retries"));
+            assertEquals("planning failed", e.getCause().getMessage());
+        }
+        assertEquals(6, planner.numPlanned);
+    }
+
+    private List<Attribute> requiredColumns() {
+        return Arrays.asList(new Attribute("id", "INT"), new Attribute("value", "STRING"));
+    }
+
+    private List<OdpsSourceSplit> planSplits() throws IOException {
+        OdpsSplitPlanner planner = new OdpsSplitPlanner(odpsConf, PROVIDER, PROJECT, TABLE, requiredColumns(), 256);
+        List<OdpsSourceSplit> splits = new ArrayList<>();
+        for (InputSplit inputSplit : planner.planSplits(Collections.singletonList(""))) {
+            splits.add(new OdpsSourceSplit(String.valueOf(splits.size()), inputSplit));
+        }
+        return splits;
+    }
+
+    private OdpsSourceSplitReader createSplitReader(Long limit) {
+        return new OdpsSourceSplitReader(odpsTableSchema,
+                new String[]{"id", "value"},
+                false,
+                4,
+                null,
+                limit,
+                new AtomicLong());
+    }
+
+    private static List<RowData> readAll(OdpsSourceSplitReader reader, List<OdpsSourceSplit> splits) throws Exception {
+        reader.handleSplitsChanges(new SplitsAddition<>(splits));
+        Set<String> finished = new HashSet<>();
+        List<RowData> rows = new ArrayList<>();
+        while (finished.size() < splits.size()) {
+            RecordsWithSplitIds<RowData> records = reader.fetch();
+            while (records.nextSplit() != null) {
+                RowData row;
+                while ((row = records.nextRecordFromSplit()) != null) {
+                    rows.add(row);
+                }
+            }
+            finished.addAll(records.finishedSplits());
+        }
+        reader.close();
+        return rows;
+    }
+
+    private class CountingSplitPlanner extends OdpsSplitPlanner {
+
+        private int numPlanned;
+        private int numFailures;
+
+        CountingSplitPlanner(OdpsConf odpsConf, List<Attribute> requiredColumns) {
+            super(odpsConf, PROVIDER, PROJECT, TABLE, requiredColumns, 256);
+        }
+
+        @Override
+        public List<InputSplit> planSplits(List<String> partitions) throws IOException {
+            numPlanned++;
+            if (numFailures > 0) {
+                numFailures--;
+                throw new IOException("planning failed");
+            }
+            return super.planSplits(Collections.singletonList(""));
+        }
+    }
+
+    private static class TestingEnumeratorContext implements SplitEnumeratorContext<OdpsSourceSplit> {
+
+        private final Map<Integer, ReaderInfo> readers = new HashMap<>();
+        private final Map<Integer, List<OdpsSourceSplit>> assignments = new HashMap<>();
+        private final Set<Integer> noMoreSplits = new HashSet<>();
+        private final Queue<Runnable> asyncTasks = new ArrayDeque<>();
+
+        TestingEnumeratorContext(int parallelism) {
+            for (int i = 0; i < parallelism; i++) {
+                readers.put(i, new ReaderInfo(i, "localhost"));
+            }
+        }
+
+        void runAsyncTasks() {
+            while (!asyncTasks.isEmpty()) {
+                asyncTasks.poll().run();
+            }
+        }
+
+        int numAssignedSplits() {
+            return assignments.values().stream().mapToInt(List::size).sum();
+        }
+
+        @Override
+        public SplitEnumeratorMetricGroup metricGroup() {
+            return null;
+        }
+
+        @Override
+        public void sendEventToSourceReader(int subtaskId, SourceEvent event) {
+        }
+
+        @Override
+        public int currentParallelism() {
+            return readers.size();
+        }
+
+        @Override
+        public Map<Integer, ReaderInfo> registeredReaders() {
+            return readers;
+        }
+
+        @Override
+        public void assignSplits(SplitsAssignment<OdpsSourceSplit> newSplitAssignments) {
+            newSplitAssignments.assignment().forEach((subtask, splits) ->
+                    assignments.computeIfAbsent(subtask, k -> new ArrayList<>()).addAll(splits));
+        }
+
+        @Override
+        public void signalNoMoreSplits(int subtask) {
+            noMoreSplits.add(subtask);
+        }
+
+        @Override
+        public <T> void callAsync(Callable<T> callable, BiConsumer<T, Throwable> handler) {
+            asyncTasks.add(() -> {
+                try {
+                    handler.accept(callable.call(), null);
+                } catch (Exception e) {
+                    handler.accept(null, e);
+                }
+            });
+        }
+
+        @Override
+        public <T> void callAsync(Callable<T> callable, BiConsumer<T, Throwable> handler,
+                                  long initialDelay, long period) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void runInCoordinatorThread(Runnable runnable) {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.type.TypeInfoFactory;
+import org.apache.flink.odps.input.OdpsInputSplit;
+import org.apache.flink.odps.input.reader.RecordIterator;
+import org.apache.flink.odps.schema.OdpsColumn;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.OdpsUtils;
+import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares the CPU time and the allocated bytes per row of reading a split of 48 data columns
+ * and 2 partition columns into {@link RowData} of 40 projected columns, through
+ * {@link RecordIterator} with the column positions and converters resolved once, and through
+ * the former per record conversion, which copied the fields and the converted partition values
+ * into the full record by column name and looked up the fields by name again to convert them.
+ *
+ * <p>Usage: {@code RecordIteratorBenchmark [numRows] [iterations]}
+ */
+public class RecordIteratorBenchmark {
+
+    private static final String TABLE = "benchmark";
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Column[] dataColumns = new Column[48];
+        for (int i = 0; i < dataColumns.length; i++) {
+            dataColumns[i] = new Column("c" + i, i % 2 == 0 ? TypeInfoFactory.BIGINT : TypeInfoFactory.STRING);
+        }
+        Column[] partitionColumns = new Column[]{
+                new Column("p_string", TypeInfoFactory.STRING),
+                new Column("p_bigint", TypeInfoFactory.BIGINT),
+        };
+        ArrayRecord[] distinct = new ArrayRecord[1024];
+        for (int i = 0; i < distinct.length; i++) {
+            distinct[i] = RecordIteratorTest.wideRecord(dataColumns, i);
+        }
+        ArrayRecord[] records = new ArrayRecord[numRows];
+        for (int i = 0; i < numRows; i++) {
+            records[i] = distinct[i & (distinct.length - 1)];
+        }
+        RecordIteratorTest.PartitionedSplitProvider.FILES.put(TABLE, records);
+        Map<String, String> partitionSpec = new LinkedHashMap<>();
+        partitionSpec.put("p_string", "2024");
+        partitionSpec.put("p_bigint", "7");
+        InputSplit split = new RecordIteratorTest.PartitionedSplit(TABLE,
+                RecordIteratorTest.toAttributes(dataColumns),
+                RecordIteratorTest.toAttributes(partitionColumns), partitionSpec);
+        OdpsTableSchema odpsTableSchema = new OdpsTableSchema(
+                Arrays.asList(dataColumns), Arrays.asList(partitionColumns), false);
+        // data columns in reverse order, followed by the partition columns
+        String[] selectedColumns = new String[40];
+        for (int i = 0; i < selectedColumns.length - 2; i++) {
+            selectedColumns[i] = "c" + (selectedColumns.length - 3 - i);
+        }
+        selectedColumns[38] = "p_string";
+        selectedColumns[39] = "p_bigint";
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            StringBuilder result = new StringBuilder("iteration " + i + ":");
+            for (String path : new String[]{"precompiled", "by name"}) {
+                long startCpu = threadMXBean.getCurrentThreadCpuTime();
+                long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                checksum += path.equals("precompiled")
+                        ? readPrecompiled(split, odpsTableSchema, selectedColumns)
+                        : readByName(split, odpsTableSchema, selectedColumns);
+                long nanos = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+                long bytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+                result.append(String.format(" %s %.1f ns/row %.1f B/row,",
+                        path, (double) nanos / numRows, (double) bytes / numRows));
+            }
+            System.out.println(result.substring(0, result.length() - 1));
+        }
+        blackhole(checksum);
+    }
+
+    private static long readPrecompiled(InputSplit split,
+                                        OdpsTableSchema odpsTableSchema,
+                                        String[] selectedColumns) throws Exception {
+        long checksum = 0;
+        RecordIterator<RowData> iterator = new RecordIterator<>(new OdpsInputSplit(split, 0),
+                odpsTableSchema, selectedColumns, RecordType.FLINK_ROW_DATA);
+        try {
+            while (iterator.hasNext()) {
+                checksum += iterator.next().getLong(1);
+            }
+        } finally {
+            iterator.close();
+        }
+        return checksum;
+    }
+
+    private static long readByName(InputSplit split,
+                                   OdpsTableSchema odpsTableSchema,
+                                   String[] selectedColumns) throws Exception {
+        Map<String, String> partitionSpec = split.getPartitionSpec();
+        Column[] fullColumns = new Column[selectedColumns.length];
+        OdpsTypeConverter[] typeConverters = new OdpsTypeConverter[selectedColumns.length];
+        for (int i = 0; i < fullColumns.length; i++) {
+            OdpsColumn column = odpsTableSchema.getColumn(selectedColumns[i]);
+            fullColumns[i] = new Column(column.getName(), column.getTypeInfo());
+            typeConverters[i] = OdpsTypeConverter.valueOf(column.getType().name());
+        }
+        Record fullRecord = new ArrayRecord(fullColumns);
+
+        long checksum = 0;
+        SplitReader<ArrayRecord> reader = new RecordIteratorTest.PartitionedSplitProvider().createRecordReader(split);
+        try {
+            while (reader.hasNext()) {
+                ArrayRecord record = reader.next();
+                for (Column fullColumn : fullColumns) {
+                    OdpsColumn column = odpsTableSchema.getColumn(fullColumn.getName());
+                    if (column.isPartition()) {
+                        fullRecord.set(column.getName(), OdpsUtils.convertPartitionColumn(
+                                partitionSpec.get(column.getName()), column.getTypeInfo()));
+                    } else {
+                        fullRecord.set(column.getName(), record.get(column.getName()));
+                    }
+                }
+                GenericRowData row = new GenericRowData(fullColumns.length);
+                for (int i = 0; i < row.getArity(); i++) {
+                    row.setField(i, typeConverters[i].toFlinkDataField(fullRecord, fullColumns[i]));
+                }
+                checksum += row.getLong(1);
+            }
+        } finally {
+            reader.close();
+        }
+        return checksum;
+    }
+
+    private static void blackhole(long checksum) {
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+    }
+}
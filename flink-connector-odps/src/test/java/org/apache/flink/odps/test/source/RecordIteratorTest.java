@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.odps.test.source;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.RequiredSchema;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.TableReadSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriter;
+import com.aliyun.odps.cupid.table.v1.writer.FileWriterBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSession;
+import com.aliyun.odps.cupid.table.v1.writer.TableWriteSessionBuilder;
+import com.aliyun.odps.cupid.table.v1.writer.WriteSessionInfo;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoFactory;
+import demo.memory.MemoryProvider;
+import demo.memory.MemoryStore;
+import org.apache.flink.api.java.tuple.Tuple3;
+import org.apache.flink.odps.input.OdpsInputSplit;
+import org.apache.flink.odps.input.reader.RecordFilter;
+import org.apache.flink.odps.input.reader.RecordIterator;
+import org.apache.flink.odps.schema.OdpsTableSchema;
+import org.apache.flink.odps.util.OdpsTypeConverter;
+import org.apache.flink.odps.util.OdpsUtils.RecordType;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.utils.JoinedRowData;
+import org.apache.flink.types.Row;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class RecordIteratorTest {
+
+    private static final String PROJECT = "flink_record_iterator_test";
+    private static final int NUM_ROWS = 100;
+
+    private static final Column[] DATA_COLUMNS = new Column[]{
+            new Column("c_int", TypeInfoFactory.INT),
+            new Column("c_string", TypeInfoFactory.STRING),
+            new Column("c_decimal", TypeInfoFactory.getDecimalTypeInfo(10, 2)),
+    };
+    private static final Column[] PARTITION_COLUMNS = new Column[]{
+            new Column("p_string", TypeInfoFactory.STRING),
+            new Column("p_bigint", TypeInfoFactory.BIGINT),
+    };
+
+    @Test
+    public void testWideProjectedRead() throws Exception {
+        String table = "wide";
+        TableSchema tableSchema = new TableSchema();
+        for (int i = 0; i < 50; i++) {
+            tableSchema.addColumn(new Column("c" + i, i % 2 == 0 ? TypeInfoFactory.BIGINT : TypeInfoFactory.STRING));
+        }
+        Column[] columns = tableSchema.getColumns().toArray(new Column[0]);
+        writeMemoryTable(table, tableSchema, i -> wideRecord(columns, i));
+        OdpsTableSchema odpsTableSchema =
+                new OdpsTableSchema(tableSchema.getColumns(), tableSchema.getPartitionColumns(), false);
+        // projected columns in another order than the columns read by the split
+        String[] selectedColumns = new String[40];
+        for (int i = 0; i < selectedColumns.length; i++) {
+            selectedColumns[i] = "c" + (selectedColumns.length - 1 - i);
+        }
+        List<Attribute> readColumns = Arrays.stream(columns)
+                .map(column -> new Attribute(column.getName(), column.getTypeInfo().getTypeName()))
+                .collect(Collectors.toList());
+        InputSplit[] splits = new TableReadSessionBuilder("memory", PROJECT, table)
+                .tableSchema(tableSchema)
+                .readDataColumns(RequiredSchema.columns(readColumns))
+                .build()
+                .getOrCreateInputSplits(256);
+
+        List<RowData> rows = readAll(splits, odpsTableSchema, selectedColumns, RecordType.FLINK_ROW_DATA, null, null);
+        assertEquals(NUM_ROWS, rows.size());
+        Column[] selected = Arrays.stream(selectedColumns).map(tableSchema::getColumn).toArray(Column[]::new);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            GenericRowData row = (GenericRowData) rows.get(i);
+            // same values as the conversion by column name
+            ArrayRecord record = wideRecord(columns, i);
+            for (int c = 0; c < selected.length; c++) {
+                Object expected = OdpsTypeConverter.valueOf(selected[c].getTypeInfo().getOdpsType().name())
+                        .toFlinkDataField(record, selected[c]);
+                assertEquals(expected, row.getField(c));
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionSuffix() throws Exception {
+        String[] selectedColumns = new String[]{"c_decimal", "c_int", "c_string", "p_string", "p_bigint"};
+        List<RowData> rows = readPartition(selectedColumns, RecordType.FLINK_ROW_DATA, null, null);
+        assertEquals(NUM_ROWS, rows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            RowData row = rows.get(i);
+            assertTrue(row instanceof JoinedRowData);
+            assertEquals(5, row.getArity());
+            assertEquals(DecimalData.fromBigDecimal(decimal(i), 10, 2), row.getDecimal(0, 10, 2));
+            assertEquals(i, row.getInt(1));
+            assertEquals(i % 3 == 0, row.isNullAt(2));
+            if (i % 3 != 0) {
+                assertEquals(StringData.fromString("s" + i), row.getString(2));
+            }
+            assertEquals(StringData.fromString("2024"), row.getString(3));
+            assertEquals(7L, row.getLong(4));
+        }
+    }
+
+    @Test
+    public void testInterleavedPartitionColumns() throws Exception {
+        String[] selectedColumns = new String[]{"p_bigint", "c_int", "p_string", "c_string"};
+        List<RowData> rows = readPartition(selectedColumns, RecordType.FLINK_ROW_DATA, null, null);
+        assertEquals(NUM_ROWS, rows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            GenericRowData row = (GenericRowData) rows.get(i);
+            assertEquals(7L, row.getField(0));
+            assertEquals(i, row.getField(1));
+            assertEquals(StringData.fromString("2024"), row.getField(2));
+            assertEquals(i % 3 == 0 ? null : StringData.fromString("s" + i), row.getField(3));
+        }
+    }
+
+    @Test
+    public void testRowAndTuple() throws Exception {
+        String[] selectedColumns = new String[]{"c_string", "p_bigint", "c_decimal"};
+        List<Row> rows = readPartition(selectedColumns, RecordType.FLINK_ROW, null, () -> new Row(3));
+        List<Tuple3<String, Long, BigDecimal>> tuples =
+                readPartition(selectedColumns, RecordType.FLINK_TUPLE, null, Tuple3::new);
+        assertEquals(NUM_ROWS, rows.size());
+        assertEquals(NUM_ROWS, tuples.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            Row expected = Row.of(i % 3 == 0 ? null : "s" + i, 7L, decimal(i));
+            assertEquals(expected, rows.get(i));
+            assertEquals(Tuple3.of(expected.getField(0), 7L, decimal(i)), tuples.get(i));
+        }
+    }
+
+    @Test
+    public void testFilterOnPartitionAndDataColumns() throws Exception {
+        String[] selectedColumns = new String[]{"c_int", "p_string"};
+        RecordFilter recordFilter = RecordFilter.create(Arrays.asList(
+                FilterExpression.EqualTo("p_string", "2024"),
+                FilterExpression.GreaterThanOrEqual("c_int", 90)), selectedColumns);
+        List<RowData> rows = readPartition(selectedColumns, RecordType.FLINK_ROW_DATA, recordFilter, null);
+        assertEquals(10, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(90 + i, rows.get(i).getInt(0));
+            assertEquals(StringData.fromString("2024"), rows.get(i).getString(1));
+        }
+
+        recordFilter = RecordFilter.create(Collections.singletonList(
+                FilterExpression.EqualTo("p_string", "2023")), selectedColumns);
+        assertTrue(readPartition(selectedColumns, RecordType.FLINK_ROW_DATA, recordFilter, null).isEmpty());
+    }
+
+    static ArrayRecord wideRecord(Column[] columns, int i) {
+        ArrayRecord record = new ArrayRecord(columns);
+        for (int c = 0; c < columns.length; c++) {
+            record.set(c, c % 2 == 0 ? (Object) (long) (i * c) : "v" + i + "_" + c);
+        }
+        return record;
+    }
+
+    private static BigDecimal decimal(int i) {
+        return new BigDecimal(i).movePointLeft(2);
+    }
+
+    private <T> List<T> readPartition(String[] selectedColumns,
+                                      RecordType recordType,
+                                      RecordFilter recordFilter,
+                                      Supplier<T> reuseFactory) throws Exception {
+        String table = "partitioned";
+        // records of the split only contain the data columns, in the order of the table
+        ArrayRecord[] records = new ArrayRecord[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            ArrayRecord record = new ArrayRecord(DATA_COLUMNS);
+            record.set(0, i);
+            record.set(1, i % 3 == 0 ? null : "s" + i);
+            record.set(2, decimal(i));
+            records[i] = record;
+        }
+        PartitionedSplitProvider.FILES.put(table, records);
+        Map<String, String> partitionSpec = new LinkedHashMap<>();
+        partitionSpec.put("p_string", "2024");
+        partitionSpec.put("p_bigint", "7");
+        InputSplit split = new PartitionedSplit(table, toAttributes(DATA_COLUMNS),
+                toAttributes(PARTITION_COLUMNS), partitionSpec);
+        OdpsTableSchema odpsTableSchema = new OdpsTableSchema(
+                Arrays.asList(DATA_COLUMNS), Arrays.asList(PARTITION_COLUMNS), false);
+        return readAll(new InputSplit[]{split}, odpsTableSchema, selectedColumns, recordType, recordFilter,
+                reuseFactory);
+    }
+
+    private static <T> List<T> readAll(InputSplit[] splits,
+                                       OdpsTableSchema odpsTableSchema,
+                                       String[] selectedColumns,
+                                       RecordType recordType,
+                                       RecordFilter recordFilter,
+                                       Supplier<T> reuseFactory) throws Exception {
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < splits.length; i++) {
+            RecordIterator<T> iterator = new RecordIterator<>(new OdpsInputSplit(splits[i], i),
+                    odpsTableSchema, selectedColumns, recordType, recordFilter);
+            try {
+                while (iterator.hasNext()) {
+                    if (reuseFactory != null) {
+                        iterator.setReuse(reuseFactory.get());
+                    }
+                    result.add(iterator.next());
+                }
+            } finally {
+                iterator.close();
+            }
+        }
+        return result;
+    }
+
+    private static void writeMemoryTable(String table,
+                                         TableSchema tableSchema,
+                                         IntFunction<Record> records) throws Exception {
+        if (!MemoryStore.projectExists(PROJECT)) {
+            MemoryStore.createProject(PROJECT);
+        }
+        MemoryStore.createTable(PROJECT, table);
+        TableWriteSession session = new TableWriteSessionBuilder("memory", PROJECT, table)
+                .tableSchema(tableSchema)
+                .build();
+        WriteSessionInfo info = session.getOrCreateSessionInfo();
+        FileWriter<ArrayRecord> writer = new FileWriterBuilder(info, 0).buildRecordWriter();
+        for (int i = 0; i < NUM_ROWS; i++) {
+            writer.write((ArrayRecord) records.apply(i));
+        }
+        writer.close();
+        writer.commit();
+        session.commitTable();
+    }
+
+    static List<Attribute> toAttributes(Column[] columns) {
+        return Arrays.stream(columns)
+                .map(column -> new Attribute(column.getName(), column.getTypeInfo().getTypeName()))
+                .collect(Collectors.toList());
+    }
+
+    static class PartitionedSplit extends InputSplit {
+
+        PartitionedSplit(String table,
+                         List<Attribute> dataColumns,
+                         List<Attribute> partitionColumns,
+                         Map<String, String> partitionSpec) {
+            super(PROJECT, table, dataColumns, partitionColumns, dataColumns, partitionSpec);
+        }
+
+        @Override
+        public String getProvider() {
+            return PartitionedSplitProvider.NAME;
+        }
+    }
+
+    /**
+     * The memory provider only creates splits without partition values, this one reads records
+     * of a partition from memory.
+     */
+    public static class PartitionedSplitProvider extends MemoryProvider {
+
+        static final String NAME = "memory-partitioned";
+        static final Map<String, ArrayRecord[]> FILES = new ConcurrentHashMap<>();
+
+        @Override
+        public String getShortName() {
+            return NAME;
+        }
+
+        @Override
+        public SplitReader<ArrayRecord> createRecordReader(InputSplit inputSplit) {
+            ArrayRecord[] records = FILES.get(inputSplit.getTable());
+            return new SplitReader<ArrayRecord>() {
+                private int cursor;
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public long getBytesRead() {
+                    return -1;
+                }
+
+                @Override
+                public long getRowsRead() {
+                    return cursor;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < records.length;
+                }
+
+                @Override
+                public ArrayRecord next() {
+                    return records[cursor++];
+                }
+            };
+        }
+    }
+}
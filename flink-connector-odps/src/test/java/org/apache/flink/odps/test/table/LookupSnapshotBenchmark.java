@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import org.apache.flink.odps.input.lookup.HeapLookupSnapshot;
+import org.apache.flink.odps.input.lookup.LookupSnapshot;
+import org.apache.flink.odps.input.lookup.OffHeapLookupSnapshot;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.IntType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link HeapLookupSnapshot} and {@link OffHeapLookupSnapshot} of the full lookup
+ * cache: the wall time of loading the rows with several loading threads, the heap retained by
+ * the loaded snapshot, the time of a full garbage collection while it is referenced and the
+ * time per lookup of a random key.
+ *
+ * <p>Usage: {@code LookupSnapshotBenchmark [numRows] [numKeys] [loadThreads] [iterations]}
+ */
+public class LookupSnapshotBenchmark {
+
+    private static final RowType ROW_TYPE = RowType.of(
+            new IntType(), new VarCharType(VarCharType.MAX_LENGTH), new BigIntType());
+    private static final RowType KEY_TYPE = RowType.of(new IntType());
+
+    private static final int NUM_LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int numKeys = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int loadThreads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        ExecutorService executor = Executors.newFixedThreadPool(loadThreads);
+        try {
+            for (int i = 0; i < iterations; i++) {
+                run("heap", () -> new HeapLookupSnapshot(ROW_TYPE), executor, numRows, numKeys, loadThreads);
+                run("off-heap", () -> new OffHeapLookupSnapshot(ROW_TYPE, KEY_TYPE, 0, null),
+                        executor, numRows, numKeys, loadThreads);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void run(String name,
+                            Supplier<LookupSnapshot> snapshotFactory,
+                            ExecutorService executor,
+                            int numRows,
+                            int numKeys,
+                            int loadThreads) throws Exception {
+        long heapBefore = usedHeapAfterGc();
+        LookupSnapshot snapshot = snapshotFactory.get();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int part = 0; part < loadThreads; part++) {
+            int first = part;
+            futures.add(executor.submit(() -> {
+                write(snapshot, first, loadThreads, numRows, numKeys);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long loadNanos = System.nanoTime() - start;
+        if (snapshot.size() != numRows) {
+            throw new IllegalStateException("Unexpected row count " + snapshot.size());
+        }
+
+        long gcBefore = gcMillis();
+        long heapRetained = usedHeapAfterGc() - heapBefore;
+        long gcMillis = gcMillis() - gcBefore;
+
+        Random random = new Random(42);
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int n = 0; n < NUM_LOOKUPS; n++) {
+            List<RowData> rows = snapshot.get(GenericRowData.of(random.nextInt(numKeys)));
+            checksum += rows == null ? 0 : rows.get(0).getLong(2);
+        }
+        long lookupNanos = System.nanoTime() - start;
+        snapshot.close();
+        blackhole(checksum);
+
+        System.out.printf("%s: load %d ms, retained heap %.1f MB, full gc %d ms, lookup %.1f ns%n",
+                name, loadNanos / 1_000_000, heapRetained / 1024.0 / 1024.0, gcMillis,
+                (double) lookupNanos / NUM_LOOKUPS);
+    }
+
+    private static void write(LookupSnapshot snapshot, int first, int step, int numRows, int numKeys)
+            throws Exception {
+        LookupSnapshot.Writer writer = snapshot.createWriter();
+        GenericRowData reuse = new GenericRowData(3);
+        for (int i = first; i < numRows; i += step) {
+            int id = i % numKeys;
+            reuse.setField(0, id);
+            reuse.setField(1, StringData.fromString("value-" + i));
+            reuse.setField(2, (long) i);
+            writer.add(GenericRowData.of(id), reuse);
+        }
+        writer.flush();
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static void blackhole(long checksum) {
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.odps.output.stream.RowDataPartitionKeySelector;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
+import org.apache.flink.odps.table.OdpsDynamicTableSink;
+import org.apache.flink.odps.table.OdpsTablePath;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.graph.StreamGraph;
+import org.apache.flink.streaming.api.graph.StreamNode;
+import org.apache.flink.streaming.runtime.partitioner.ForwardPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.KeyGroupStreamPartitioner;
+import org.apache.flink.streaming.runtime.partitioner.RebalancePartitioner;
+import org.apache.flink.streaming.runtime.partitioner.StreamPartitioner;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.api.TableSchema;
+import org.apache.flink.table.connector.RuntimeConverter;
+import org.apache.flink.table.connector.sink.DataStreamSinkProvider;
+import org.apache.flink.table.connector.sink.DynamicTableSink;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.RowType;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OdpsDynamicTableSinkShuffleTest {
+
+    private static final TableSchema SCHEMA = TableSchema.builder()
+            .field("id", DataTypes.BIGINT())
+            .field("name", DataTypes.STRING())
+            .field("dt", DataTypes.STRING())
+            .field("hh", DataTypes.STRING())
+            .build();
+    private static final RowType ROW_TYPE = (RowType) SCHEMA.toRowDataType().getLogicalType();
+
+    @Test
+    public void testShuffleByPartition() {
+        StreamGraph graph = translate(OdpsWriteOptions.builder().setShuffleByPartition(true).build());
+        StreamNode sink = getNode(graph, "Sink");
+        StreamNode map = getNode(graph, "Map");
+        assertTrue(inputPartitioner(graph, map) instanceof KeyGroupStreamPartitioner);
+        assertTrue(inputPartitioner(graph, sink) instanceof ForwardPartitioner);
+        assertEquals(4, map.getParallelism());
+        assertEquals(4, sink.getParallelism());
+    }
+
+    @Test
+    public void testNoShuffleByDefault() {
+        StreamGraph graph = translate(OdpsWriteOptions.builder().build());
+        assertFalse(inputPartitioner(graph, getNode(graph, "Map")) instanceof KeyGroupStreamPartitioner);
+        assertTrue(inputPartitioner(graph, getNode(graph, "Sink")) instanceof RebalancePartitioner);
+    }
+
+    @Test
+    public void testPartitionKeys() throws Exception {
+        RowDataPartitionKeySelector selector =
+                new RowDataPartitionKeySelector(ROW_TYPE, Arrays.asList("dt", "hh"), "__DEFAULT__");
+        assertEquals(selector.getKey(row(1, "a", "20220301", "08")), selector.getKey(row(2, "b", "20220301", "08")));
+        assertNotEquals(selector.getKey(row(1, "a", "20220301", "08")), selector.getKey(row(1, "a", "20220301", "09")));
+        assertNotEquals(selector.getKey(row(1, "a", "2022030", "108")), selector.getKey(row(1, "a", "20220301", "08")));
+        assertEquals(selector.getKey(row(1, "a", null, "08")), selector.getKey(row(1, "a", "", "08")));
+        assertEquals(selector.getKey(row(1, "a", null, "08")), selector.getKey(row(1, "a", "__DEFAULT__", "08")));
+
+        // a static dt leaves hh as the only dynamic partition column
+        RowDataPartitionKeySelector dynamicHour =
+                new RowDataPartitionKeySelector(ROW_TYPE, Collections.singletonList("hh"), "__DEFAULT__");
+        assertEquals(dynamicHour.getKey(row(1, "a", "20220301", "08")), dynamicHour.getKey(row(1, "a", "20220302", "08")));
+    }
+
+    @Test
+    public void testBucketKeys() throws Exception {
+        RowDataPartitionKeySelector selector = new RowDataPartitionKeySelector(
+                ROW_TYPE, Collections.singletonList("dt"), "__DEFAULT__", Collections.singletonList("name"), 4);
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = selector.getKey(row(i, "name" + i, "20220301", "08"));
+            assertEquals(key, selector.getKey(row(-i, "name" + i, "20220301", "09")));
+            keys.add(key);
+        }
+        assertEquals(4, keys.size());
+        // other partitions never share a key
+        assertFalse(keys.contains(selector.getKey(row(0, "name0", "20220302", "08"))));
+
+        RowDataPartitionKeySelector notClustered = new RowDataPartitionKeySelector(
+                ROW_TYPE, Collections.singletonList("dt"), "__DEFAULT__", Collections.emptyList(), 4);
+        assertEquals(notClustered.getKey(row(0, "a", "20220301", "08")), notClustered.getKey(row(1, "b", "20220301", "08")));
+    }
+
+    private static StreamGraph translate(OdpsWriteOptions writeOptions) {
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+        env.setParallelism(2);
+        DataStream<RowData> input = env.fromCollection(
+                Collections.singletonList(row(1, "a", "20220301", "08")), InternalTypeInfo.of(ROW_TYPE));
+        OdpsDynamicTableSink sink = new OdpsDynamicTableSink(
+                new Configuration(),
+                new OdpsConf("accessId", "accessKey", "http://localhost", "project"),
+                writeOptions,
+                new OdpsTablePath("project", "table"),
+                SCHEMA,
+                Arrays.asList("dt", "hh"),
+                4);
+        DataStreamSinkProvider provider =
+                (DataStreamSinkProvider) sink.getSinkRuntimeProvider(new TestingSinkContext());
+        provider.consumeDataStream(input);
+        return env.getStreamGraph();
+    }
+
+    private static StreamNode getNode(StreamGraph graph, String name) {
+        return graph.getStreamNodes().stream()
+                .filter(node -> node.getOperatorName().startsWith(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No operator " + name));
+    }
+
+    private static StreamPartitioner<?> inputPartitioner(StreamGraph graph, StreamNode node) {
+        return node.getInEdges().get(0).getPartitioner();
+    }
+
+    private static RowData row(long id, String name, String dt, String hh) {
+        return GenericRowData.of(id, StringData.fromString(name),
+                dt == null ? null : StringData.fromString(dt), StringData.fromString(hh));
+    }
+
+    private static class TestingSinkContext implements DynamicTableSink.Context {
+
+        @Override
+        public boolean isBounded() {
+            return false;
+        }
+
+        @Override
+        public <T> TypeInformation<T> createTypeInformation(DataType consumedDataType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DynamicTableSink.DataStructureConverter createDataStructureConverter(DataType consumedDataType) {
+            return new IdentityConverter();
+        }
+    }
+
+    private static class IdentityConverter implements DynamicTableSink.DataStructureConverter {
+
+        @Override
+        public void open(RuntimeConverter.Context context) {
+        }
+
+        @Override
+        public Object toExternal(Object internalStructure) {
+            return internalStructure;
+        }
+    }
+}
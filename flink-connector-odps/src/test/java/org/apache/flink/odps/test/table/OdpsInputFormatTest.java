@@ -277,11 +277,11 @@ public class OdpsInputFormatTest {
         try {
             OdpsInputSplit[] odpsInputSplits = odpsInputFormat.createInputSplits(1);
             int recordCount = 0;
-            List<GenericRowData> actualList = new ArrayList<>();
+            List<RowData> actualList = new ArrayList<>();
             for (OdpsInputSplit odpsInputSplit : odpsInputSplits) {
                 odpsInputFormat.open(odpsInputSplit);
                 while (!odpsInputFormat.reachedEnd()) {
-                    GenericRowData next = (GenericRowData) odpsInputFormat.nextRecord(null);
+                    RowData next = odpsInputFormat.nextRecord(null);
                     actualList.add(next);
                     recordCount++;
                 }
@@ -323,11 +323,11 @@ public class OdpsInputFormatTest {
         try {
             OdpsInputSplit[] odpsInputSplits = odpsInputFormat.createInputSplits(1);
             int recordCount = 0;
-            List<GenericRowData> actualList = new ArrayList<>();
+            List<RowData> actualList = new ArrayList<>();
             for (OdpsInputSplit odpsInputSplit : odpsInputSplits) {
                 odpsInputFormat.open(odpsInputSplit);
                 while (!odpsInputFormat.reachedEnd()) {
-                    GenericRowData next = (GenericRowData)odpsInputFormat.nextRecord(null);
+                    RowData next = odpsInputFormat.nextRecord(null);
                     actualList.add(next);
                     recordCount++;
                 }
@@ -377,11 +377,11 @@ public class OdpsInputFormatTest {
             OdpsInputSplit[] odpsInputSplits = odpsInputFormat.createInputSplits(1);
 
             int recordCount = 0;
-            List<GenericRowData> actualList = new ArrayList<>();
+            List<RowData> actualList = new ArrayList<>();
             for (OdpsInputSplit odpsInputSplit : odpsInputSplits) {
                 odpsInputFormat.open(odpsInputSplit);
                 while (!odpsInputFormat.reachedEnd()) {
-                    GenericRowData next = (GenericRowData)odpsInputFormat.nextRecord(null);
+                    RowData next = odpsInputFormat.nextRecord(null);
                     actualList.add(next);
                     recordCount++;
                 }
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import org.apache.flink.odps.input.OdpsInputSplitPlanner;
+import org.apache.flink.odps.source.enumerator.OdpsSplitPlanner;
+import org.apache.flink.odps.util.Constants;
+import org.apache.flink.odps.util.OdpsConf;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class OdpsInputSplitPlannerTest {
+
+    private static final String PROJECT = "flink_split_planner_test";
+    private static final String TABLE = "t";
+
+    private OdpsConf odpsConf;
+
+    @Before
+    public void setUp() {
+        odpsConf = new OdpsConf("accessId", "accessKey", "http://localhost", PROJECT);
+        OdpsInputSplitPlanner.clearCache();
+    }
+
+    @Test
+    public void testPlanPartitionsInParallel() throws Exception {
+        List<String> partitions = partitions(20);
+        // every group waits until all four groups are planned at the same time
+        CountDownLatch allStarted = new CountDownLatch(4);
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), group -> {
+            allStarted.countDown();
+            if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("groups are not planned in parallel");
+            }
+        });
+        InputSplit[] splits = new OdpsInputSplitPlanner(planner, 4, 10000, 0).planSplits(partitions, 1L);
+
+        assertEquals(4, planner.numPlanned.get());
+        assertEquals(partitions, Arrays.stream(splits)
+                .map(split -> split.getPartitionSpec().get("pt"))
+                .map(value -> "pt=" + value)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testWholeTable() throws Exception {
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), null);
+        InputSplit[] splits = new OdpsInputSplitPlanner(planner, 4, 10000, 0)
+                .planSplits(Collections.emptyList(), 1L);
+        assertEquals(1, splits.length);
+        assertTrue(splits[0].getPartitionSpec().isEmpty());
+        assertEquals(1, planner.numPlanned.get());
+    }
+
+    @Test
+    public void testCachedPlans() throws Exception {
+        List<String> partitions = partitions(6);
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), null);
+        OdpsInputSplitPlanner splitPlanner = new OdpsInputSplitPlanner(planner, 2, 10000, 60000);
+
+        InputSplit[] splits = splitPlanner.planSplits(partitions, 100L);
+        assertEquals(2, planner.numPlanned.get());
+        assertArrayEquals(splits, splitPlanner.planSplits(partitions, 100L));
+        assertEquals(2, planner.numPlanned.get());
+
+        // a plan of another planner with the same table, partitions and columns is reused as well
+        TestingSplitPlanner samePlanner = new TestingSplitPlanner(odpsConf, columns("a"), null);
+        new OdpsInputSplitPlanner(samePlanner, 2, 10000, 60000).planSplits(partitions, 100L);
+        assertEquals(0, samePlanner.numPlanned.get());
+
+        // modified table
+        splitPlanner.planSplits(partitions, 101L);
+        assertEquals(4, planner.numPlanned.get());
+        // other partitions
+        splitPlanner.planSplits(partitions.subList(0, 3), 101L);
+        assertEquals(6, planner.numPlanned.get());
+        // other columns
+        TestingSplitPlanner otherColumns = new TestingSplitPlanner(odpsConf, columns("a", "b"), null);
+        new OdpsInputSplitPlanner(otherColumns, 2, 10000, 60000).planSplits(partitions, 101L);
+        assertEquals(2, otherColumns.numPlanned.get());
+        // unknown modified time
+        splitPlanner.planSplits(partitions, -1L);
+        splitPlanner.planSplits(partitions, -1L);
+        assertEquals(10, planner.numPlanned.get());
+    }
+
+    @Test
+    public void testNotCachedByDefault() throws Exception {
+        assertEquals(0, Constants.DEFAULT_ODPS_INPUT_SPLIT_PLAN_CACHE_TTL);
+        List<String> partitions = partitions(2);
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), null);
+        OdpsInputSplitPlanner splitPlanner = new OdpsInputSplitPlanner(planner, 1, 10000,
+                Constants.DEFAULT_ODPS_INPUT_SPLIT_PLAN_CACHE_TTL * 1000L);
+        splitPlanner.planSplits(partitions, 100L);
+        splitPlanner.planSplits(partitions, 100L);
+        assertEquals(2, planner.numPlanned.get());
+    }
+
+    @Test
+    public void testExpiredPlan() throws Exception {
+        List<String> partitions = partitions(2);
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), null);
+        OdpsInputSplitPlanner splitPlanner = new OdpsInputSplitPlanner(planner, 1, 10000, 1);
+        splitPlanner.planSplits(partitions, 100L);
+        Thread.sleep(10);
+        splitPlanner.planSplits(partitions, 100L);
+        assertEquals(2, planner.numPlanned.get());
+    }
+
+    @Test
+    public void testTimeout() {
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), group -> Thread.sleep(10000));
+        try {
+            new OdpsInputSplitPlanner(planner, 2, 50, 0).planSplits(partitions(4), 1L);
+            fail("planning should time out");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("timed out after 100 ms"));
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        TestingSplitPlanner planner = new TestingSplitPlanner(odpsConf, columns("a"), group -> {
+            if (group.contains("pt=3")) {
+                throw new IOException("failed to plan " + group);
+            }
+        });
+        try {
+            new OdpsInputSplitPlanner(planner, 4, 10000, 60000).planSplits(partitions(4), 1L);
+            fail("planning should fail");
+        } catch (IOException e) {
+            assertEquals("failed to plan [pt=3]", e.getMessage());
+        }
+        // failed plans are not cached
+        assertEquals(4, planner.numPlanned.get());
+    }
+
+    private static List<String> partitions(int numPartitions) {
+        return IntStream.range(0, numPartitions).mapToObj(i -> "pt=" + i).collect(Collectors.toList());
+    }
+
+    private static List<Attribute> columns(String... names) {
+        return Arrays.stream(names).map(name -> new Attribute(name, "string")).collect(Collectors.toList());
+    }
+
+    private interface PlanAction {
+        void run(List<String> group) throws Exception;
+    }
+
+    /**
+     * Creates one split per partition without a read session.
+     */
+    private static class TestingSplitPlanner extends OdpsSplitPlanner {
+
+        private final AtomicInteger numPlanned = new AtomicInteger();
+        private final PlanAction action;
+
+        TestingSplitPlanner(OdpsConf odpsConf, List<Attribute> requiredColumns, PlanAction action) {
+            super(odpsConf, "memory", PROJECT, TABLE, requiredColumns, 256);
+            this.action = action;
+        }
+
+        @Override
+        public List<InputSplit> planSplits(List<String> partitions) throws IOException {
+            numPlanned.incrementAndGet();
+            if (action != null) {
+                try {
+                    action.run(partitions);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+            if (partitions.isEmpty()) {
+                return Collections.singletonList(new TestingSplit(Collections.emptyMap()));
+            }
+            return partitions.stream()
+                    .map(partition -> new TestingSplit(
+                            Collections.singletonMap("pt", partition.substring("pt=".length()))))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static class TestingSplit extends InputSplit {
+
+        TestingSplit(Map<String, String> partitionSpec) {
+            super(PROJECT, TABLE, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                    partitionSpec);
+        }
+
+        @Override
+        public String getProvider() {
+            return "memory";
+        }
+    }
+}
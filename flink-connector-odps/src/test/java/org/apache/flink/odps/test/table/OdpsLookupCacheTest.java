@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import org.apache.flink.odps.input.OdpsAsyncLookupFunction;
+import org.apache.flink.odps.input.OdpsLookupFunction;
+import org.apache.flink.odps.input.OdpsLookupOptions;
+import org.apache.flink.odps.input.lookup.OdpsLookupTableReader;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.util.Collector;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the LRU cache of the lookup functions with a table reader which serves the rows of
+ * {@link OdpsLookupJoinTest} from memory.
+ */
+public class OdpsLookupCacheTest {
+
+    private static final String[] fieldNames = new String[] {"id1", "id2", "comment1", "comment2"};
+    private static final DataType[] fieldDataTypes =
+            new DataType[] {
+                    DataTypes.INT(), DataTypes.STRING(), DataTypes.STRING(), DataTypes.STRING()
+            };
+    private static final int[] lookupKeys = new int[] {0, 1};
+
+    private static final List<RowData> TABLE = Arrays.asList(
+            row(1, "1", "11-c1-v1", "11-c2-v1"),
+            row(1, "1", "11-c1-v2", "11-c2-v2"),
+            row(2, "3", null, "23-c2"),
+            row(2, "5", "25-c1", "25-c2"),
+            row(3, "8", "38-c1", "38-c2"));
+
+    @Test
+    public void testLruLookupFunction() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        OdpsLookupFunction lookupFunction = new OdpsLookupFunction(
+                null,
+                OdpsLookupOptions.builder()
+                        .setCacheType(OdpsLookupOptions.CacheType.LRU)
+                        .setCacheMaxRows(2)
+                        .build(),
+                lookupKeys,
+                buildRowType()) {
+            @Override
+            protected OdpsLookupTableReader createTableReader() {
+                return new CountingTableReader(loads);
+            }
+        };
+        ListOutputCollector collector = new ListOutputCollector();
+        lookupFunction.setCollector(collector);
+
+        lookupFunction.open(null);
+
+        lookupFunction.eval(1, StringData.fromString("1"));
+        assertEquals(1, loads.get());
+        // served from the cache
+        lookupFunction.eval(1, StringData.fromString("1"));
+        assertEquals(1, loads.get());
+        // the 2 rows of (1, 1) and the row of (2, 3) exceed max-rows, (1, 1) is evicted
+        lookupFunction.eval(2, StringData.fromString("3"));
+        assertEquals(2, loads.get());
+        lookupFunction.eval(1, StringData.fromString("1"));
+        assertEquals(3, loads.get());
+        // keys without rows are cached too
+        lookupFunction.eval(4, StringData.fromString("4"));
+        lookupFunction.eval(4, StringData.fromString("4"));
+        assertEquals(4, loads.get());
+
+        List<String> result =
+                new ArrayList<>(collector.getOutputs())
+                        .stream().map(RowData::toString).sorted().collect(Collectors.toList());
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            expected.add("+I(1,1,11-c1-v1,11-c2-v1)");
+            expected.add("+I(1,1,11-c1-v2,11-c2-v2)");
+        }
+        expected.add("+I(2,3,null,23-c2)");
+        Collections.sort(expected);
+
+        assertEquals(expected, result);
+        lookupFunction.close();
+    }
+
+    @Test
+    public void testAsyncLookupFunction() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        OdpsLookupOptions lookupOptions = OdpsLookupOptions.builder()
+                .setCacheType(OdpsLookupOptions.CacheType.LRU)
+                .setAsync(true)
+                .build();
+        OdpsAsyncLookupFunction lookupFunction = new OdpsAsyncLookupFunction(
+                null,
+                lookupOptions,
+                lookupKeys,
+                buildRowType()) {
+            @Override
+            protected OdpsLookupTableReader createTableReader() {
+                return new CountingTableReader(loads);
+            }
+        };
+        lookupFunction.open(null);
+
+        CompletableFuture<Collection<RowData>> first = new CompletableFuture<>();
+        CompletableFuture<Collection<RowData>> second = new CompletableFuture<>();
+        CompletableFuture<Collection<RowData>> third = new CompletableFuture<>();
+        lookupFunction.eval(first, 1, StringData.fromString("1"));
+        lookupFunction.eval(second, 1, StringData.fromString("1"));
+        lookupFunction.eval(third, 2, StringData.fromString("3"));
+
+        List<String> result = new ArrayList<>();
+        for (CompletableFuture<Collection<RowData>> future : Arrays.asList(first, second, third)) {
+            future.get().stream().map(RowData::toString).forEach(result::add);
+        }
+        Collections.sort(result);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("+I(1,1,11-c1-v1,11-c2-v1)");
+        expected.add("+I(1,1,11-c1-v1,11-c2-v1)");
+        expected.add("+I(1,1,11-c1-v2,11-c2-v2)");
+        expected.add("+I(1,1,11-c1-v2,11-c2-v2)");
+        expected.add("+I(2,3,null,23-c2)");
+        Collections.sort(expected);
+
+        assertEquals(expected, result);
+        // concurrent lookups of the same key share one load
+        assertEquals(2, loads.get());
+
+        // a cached key completes without a load
+        CompletableFuture<Collection<RowData>> cached = new CompletableFuture<>();
+        lookupFunction.eval(cached, 1, StringData.fromString("1"));
+        assertTrue(cached.isDone());
+        assertEquals(2, cached.get().size());
+        assertEquals(2, loads.get());
+        lookupFunction.close();
+    }
+
+    @Test
+    public void testAsyncLookupFunctionReadsMissingKeysTogether() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch firstLoad = new CountDownLatch(1);
+        CountingTableReader tableReader = new CountingTableReader(loads, firstLoad);
+        OdpsAsyncLookupFunction lookupFunction = new OdpsAsyncLookupFunction(
+                null,
+                OdpsLookupOptions.builder()
+                        .setCacheType(OdpsLookupOptions.CacheType.LRU)
+                        .setAsync(true)
+                        .setLoadThreads(1)
+                        .build(),
+                lookupKeys,
+                buildRowType()) {
+            @Override
+            protected OdpsLookupTableReader createTableReader() {
+                return tableReader;
+            }
+        };
+        lookupFunction.open(null);
+
+        CompletableFuture<Collection<RowData>> first = new CompletableFuture<>();
+        lookupFunction.eval(first, 1, StringData.fromString("1"));
+        while (loads.get() == 0) {
+            Thread.sleep(10);
+        }
+        // the only load thread is busy, the next misses wait for it
+        CompletableFuture<Collection<RowData>> second = new CompletableFuture<>();
+        CompletableFuture<Collection<RowData>> third = new CompletableFuture<>();
+        CompletableFuture<Collection<RowData>> missing = new CompletableFuture<>();
+        lookupFunction.eval(second, 2, StringData.fromString("3"));
+        lookupFunction.eval(third, 2, StringData.fromString("5"));
+        lookupFunction.eval(missing, 4, StringData.fromString("4"));
+        firstLoad.countDown();
+
+        assertEquals(2, first.get().size());
+        assertEquals("+I(2,3,null,23-c2)", second.get().iterator().next().toString());
+        assertEquals("+I(2,5,25-c1,25-c2)", third.get().iterator().next().toString());
+        assertTrue(missing.get().isEmpty());
+        assertEquals(Arrays.asList(1, 3), tableReader.batches);
+        lookupFunction.close();
+    }
+
+    @Test
+    public void testNullKeyMatchesNothing() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountingTableReader tableReader = new CountingTableReader(loads);
+        RowData nullKey = GenericRowData.of(null, StringData.fromString("1"));
+        assertTrue(tableReader.load(nullKey).isEmpty());
+
+        Map<RowData, List<RowData>> rows = tableReader.load(
+                Arrays.asList(nullKey, GenericRowData.of(1, StringData.fromString("1"))));
+        assertTrue(rows.get(nullKey).isEmpty());
+        assertEquals(2, rows.get(GenericRowData.of(1, StringData.fromString("1"))).size());
+        // only the key without null columns is read
+        assertEquals(Collections.singletonList(1), tableReader.reads);
+    }
+
+    private static RowType buildRowType() {
+        return RowType.of(
+                Arrays.stream(fieldDataTypes)
+                        .map(DataType::getLogicalType)
+                        .toArray(LogicalType[]::new),
+                fieldNames);
+    }
+
+    private static RowData row(int id1, String id2, String comment1, String comment2) {
+        return GenericRowData.of(id1,
+                StringData.fromString(id2),
+                comment1 == null ? null : StringData.fromString(comment1),
+                StringData.fromString(comment2));
+    }
+
+    /** Counts the keys loaded by the LRU cache and the keys of every read session. */
+    private static class CountingTableReader extends OdpsLookupTableReader {
+
+        private final AtomicInteger loads;
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final List<Integer> reads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstLoad;
+
+        private CountingTableReader(AtomicInteger loads) {
+            this(loads, new CountDownLatch(0));
+        }
+
+        /** The first load waits for the latch. */
+        private CountingTableReader(AtomicInteger loads, CountDownLatch firstLoad) {
+            super(buildRowType(), fieldNames, lookupKeys, 3);
+            this.loads = loads;
+            this.firstLoad = firstLoad;
+        }
+
+        @Override
+        public boolean supportsKeyFilters() {
+            return true;
+        }
+
+        @Override
+        public Map<RowData, List<RowData>> load(Collection<RowData> lookupKeys) throws IOException {
+            loads.addAndGet(lookupKeys.size());
+            batches.add(lookupKeys.size());
+            try {
+                firstLoad.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return super.load(lookupKeys);
+        }
+
+        @Override
+        protected Map<RowData, List<RowData>> read(Set<RowData> lookupKeys,
+                                                   List<FilterExpression> filters) {
+            reads.add(lookupKeys.size());
+            Map<RowData, List<RowData>> rows = new HashMap<>();
+            for (RowData row : TABLE) {
+                RowData key = extractLookupKey(row);
+                if (lookupKeys.contains(key)) {
+                    rows.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class ListOutputCollector implements Collector<RowData> {
+
+        private final List<RowData> output = new ArrayList<>();
+
+        @Override
+        public void collect(RowData row) {
+            this.output.add(row);
+        }
+
+        @Override
+        public void close() {}
+
+        public List<RowData> getOutputs() {
+            return output;
+        }
+    }
+}
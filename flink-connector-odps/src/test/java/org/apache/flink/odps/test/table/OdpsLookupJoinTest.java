@@ -218,23 +218,32 @@ public class OdpsLookupJoinTest {
     }
 
     private OdpsLookupFunction buildOdpsLookupFunction() {
-        OdpsLookupOptions lookupOptions = OdpsLookupOptions.builder().build();
-        RowType rowType =
-                RowType.of(
-                        Arrays.stream(fieldDataTypes)
-                                .map(DataType::getLogicalType)
-                                .toArray(LogicalType[]::new),
-                        fieldNames);
+        return buildOdpsLookupFunction(OdpsLookupOptions.builder().build());
+    }
+
+    private OdpsLookupFunction buildOdpsLookupFunction(OdpsLookupOptions lookupOptions) {
+        return new OdpsLookupFunction(
+                buildOdpsInputFormat(),
+                lookupOptions,
+                lookupKeys,
+                buildRowType());
+    }
+
+    private OdpsInputFormat<RowData> buildOdpsInputFormat() {
         OdpsInputFormat.OdpsInputFormatBuilder<RowData> builder =
                 new OdpsInputFormat.OdpsInputFormatBuilder<>(
                         odpsConf,
                         odpsConf.getProject(),
                         LOOKUP_TABLE);
-        return new OdpsLookupFunction(
-                builder.build(),
-                lookupOptions,
-                lookupKeys,
-                rowType);
+        return builder.build();
+    }
+
+    private RowType buildRowType() {
+        return RowType.of(
+                Arrays.stream(fieldDataTypes)
+                        .map(DataType::getLogicalType)
+                        .toArray(LogicalType[]::new),
+                fieldNames);
     }
 
     private static final class ListOutputCollector implements Collector<RowData> {
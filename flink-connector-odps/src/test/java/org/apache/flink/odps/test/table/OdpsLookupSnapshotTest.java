@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import org.apache.flink.odps.input.lookup.HeapLookupSnapshot;
+import org.apache.flink.odps.input.lookup.LookupSnapshot;
+import org.apache.flink.odps.input.lookup.OffHeapLookupSnapshot;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.IntType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class OdpsLookupSnapshotTest {
+
+    private static final RowType ROW_TYPE = RowType.of(
+            new IntType(), new VarCharType(VarCharType.MAX_LENGTH), new BigIntType());
+    private static final RowType KEY_TYPE = RowType.of(new IntType());
+
+    private static final int NUM_KEYS = 10000;
+    private static final int NUM_ROWS = 100000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOffHeapSnapshotMatchesHeapSnapshot() throws Exception {
+        HeapLookupSnapshot heapSnapshot = new HeapLookupSnapshot(ROW_TYPE);
+        OffHeapLookupSnapshot offHeapSnapshot = new OffHeapLookupSnapshot(
+                ROW_TYPE, KEY_TYPE, OffHeapLookupSnapshot.PAGE_SIZE, temporaryFolder.getRoot().getPath());
+        load(heapSnapshot);
+        load(offHeapSnapshot);
+
+        assertEquals(NUM_ROWS, heapSnapshot.size());
+        assertEquals(NUM_ROWS, offHeapSnapshot.size());
+        assertEquals(OffHeapLookupSnapshot.PAGE_SIZE, offHeapSnapshot.getOffHeapBytes());
+        assertTrue(offHeapSnapshot.getSpilledBytes() > 0);
+
+        for (int id = 0; id < NUM_KEYS; id++) {
+            RowData key = GenericRowData.of(id);
+            assertEquals(toStrings(heapSnapshot.get(key)), toStrings(offHeapSnapshot.get(key)));
+        }
+        assertNull(offHeapSnapshot.get(GenericRowData.of(NUM_KEYS)));
+
+        offHeapSnapshot.close();
+        assertNull(offHeapSnapshot.get(GenericRowData.of(0)));
+        assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testUnboundedOffHeapSnapshot() throws Exception {
+        OffHeapLookupSnapshot snapshot = new OffHeapLookupSnapshot(ROW_TYPE, KEY_TYPE, 0, null);
+        LookupSnapshot.Writer writer = snapshot.createWriter();
+        GenericRowData reuse = new GenericRowData(3);
+        // larger than a page
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < OffHeapLookupSnapshot.PAGE_SIZE; i++) {
+            large.append('a');
+        }
+        for (String value : new String[]{"small", large.toString(), "small again"}) {
+            reuse.setField(0, 1);
+            reuse.setField(1, StringData.fromString(value));
+            reuse.setField(2, 1L);
+            writer.add(GenericRowData.of(1), reuse);
+        }
+        writer.flush();
+
+        List<RowData> rows = snapshot.get(GenericRowData.of(1));
+        assertEquals(3, rows.size());
+        assertEquals("small", rows.get(0).getString(1).toString());
+        assertEquals(OffHeapLookupSnapshot.PAGE_SIZE, rows.get(1).getString(1).toBytes().length);
+        assertEquals("small again", rows.get(2).getString(1).toString());
+        assertEquals(0, snapshot.getSpilledBytes());
+        snapshot.close();
+    }
+
+    @Test
+    public void testRowsAreIndexedWhenWriterIsFlushed() throws Exception {
+        OffHeapLookupSnapshot snapshot = new OffHeapLookupSnapshot(ROW_TYPE, KEY_TYPE, 0, null);
+        LookupSnapshot.Writer first = snapshot.createWriter();
+        LookupSnapshot.Writer second = snapshot.createWriter();
+        first.add(GenericRowData.of(1), GenericRowData.of(1, StringData.fromString("a"), 1L));
+        second.add(GenericRowData.of(1), GenericRowData.of(1, StringData.fromString("b"), 2L));
+        // the writers append to their own pages
+        assertEquals(2 * OffHeapLookupSnapshot.PAGE_SIZE, snapshot.getOffHeapBytes());
+        assertNull(snapshot.get(GenericRowData.of(1)));
+        assertEquals(0, snapshot.size());
+
+        first.flush();
+        assertEquals(1, snapshot.get(GenericRowData.of(1)).size());
+        second.add(GenericRowData.of(2), GenericRowData.of(2, StringData.fromString("c"), 3L));
+        second.flush();
+        assertEquals(3, snapshot.size());
+        assertEquals(2, snapshot.get(GenericRowData.of(1)).size());
+        assertEquals(1, snapshot.get(GenericRowData.of(2)).size());
+
+        snapshot.close();
+        try {
+            first.add(GenericRowData.of(3), GenericRowData.of(3, StringData.fromString("d"), 4L));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    private static void load(LookupSnapshot snapshot) throws Exception {
+        // two loading threads, like the readers of two splits
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> write(snapshot, 0));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> write(snapshot, 1));
+        first.get();
+        second.get();
+    }
+
+    private static void write(LookupSnapshot snapshot, int part) {
+        LookupSnapshot.Writer writer = snapshot.createWriter();
+        GenericRowData reuse = new GenericRowData(3);
+        try {
+            for (int i = part; i < NUM_ROWS; i += 2) {
+                int id = i % NUM_KEYS;
+                reuse.setField(0, id);
+                reuse.setField(1, StringData.fromString("value-" + i));
+                reuse.setField(2, (long) i);
+                writer.add(GenericRowData.of(id), reuse);
+            }
+            writer.flush();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> toStrings(List<RowData> rows) {
+        List<String> result = new ArrayList<>();
+        for (RowData row : rows) {
+            result.add(row.getInt(0) + "," + row.getString(1) + "," + row.getLong(2));
+        }
+        result.sort(String::compareTo);
+        return result;
+    }
+}
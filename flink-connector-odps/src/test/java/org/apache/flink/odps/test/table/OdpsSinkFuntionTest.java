@@ -20,16 +20,22 @@ package org.apache.flink.odps.test.table;
 
 import org.apache.flink.api.java.tuple.Tuple6;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.connector.base.DeliveryGuarantee;
 import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.odps.output.OdpsSinkFunction;
+import org.apache.flink.odps.output.OdpsTransactionalSinkFunction;
 import org.apache.flink.odps.output.stream.DateTimePartitionAssigner;
 import org.apache.flink.odps.output.stream.PartitionAssigner;
+import org.apache.flink.odps.output.writer.OdpsWriteOptions;
 import org.apache.flink.odps.test.util.BookEntry;
 import org.apache.flink.odps.test.util.MockSinkContext;
 import org.apache.flink.odps.test.util.OdpsTestUtils;
 import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
 import org.apache.flink.runtime.state.StateSnapshotContextSynchronousImpl;
+import org.apache.flink.streaming.api.operators.StreamSink;
 import org.apache.flink.streaming.util.MockStreamingRuntimeContext;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
 import org.apache.flink.types.Row;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -64,6 +70,8 @@ public class OdpsSinkFuntionTest {
     private static String partitionTable3;
     private static String partitionTable4;
     private static String partitionTable5;
+    private static String transactionalTable1;
+    private static String transactionalTable2;
     private long time = 1000L;
 
     @BeforeClass
@@ -80,6 +88,8 @@ public class OdpsSinkFuntionTest {
         partitionTable3 = "book_entry_partition3";
         partitionTable4 = "book_entry_partition4";
         partitionTable5 = "book_entry_partition5";
+        transactionalTable1 = "book_entry_transactional1";
+        transactionalTable2 = "book_entry_transactional2";
     }
 
     public void initTable(String table) {
@@ -111,6 +121,16 @@ public class OdpsSinkFuntionTest {
         return builder.build();
     }
 
+    private static OdpsTransactionalSinkFunction<Row> buildTransactionalSinkFunction(String tableName) {
+        OdpsSinkFunction.OdpsSinkBuilder<Row> builder =
+                new OdpsSinkFunction.OdpsSinkBuilder<>(odpsConf, OdpsTestUtils.projectName, tableName);
+        builder.setPartition("");
+        builder.setWriteOptions(OdpsWriteOptions.builder()
+                .setDeliveryGuarantee(DeliveryGuarantee.EXACTLY_ONCE)
+                .build());
+        return builder.buildTransactional();
+    }
+
     @Test
     public void testFlushBufferWhenCheckpoint() throws Exception {
         initTable(table1);
@@ -132,6 +152,50 @@ public class OdpsSinkFuntionTest {
         odpsSinkFunction.close();
     }
 
+    @Test
+    public void testTransactionalSinkCommitOnCheckpointComplete() throws Exception {
+        initTable(transactionalTable1);
+        OdpsTransactionalSinkFunction<Row> sinkFunction = buildTransactionalSinkFunction(transactionalTable1);
+        try (OneInputStreamOperatorTestHarness<Row, Object> harness =
+                     new OneInputStreamOperatorTestHarness<>(new StreamSink<>(sinkFunction))) {
+            harness.setup();
+            harness.open();
+            harness.processElement(toRow(TEST_DATA[0]), time);
+            harness.processElement(toRow(TEST_DATA[1]), time);
+            harness.snapshot(1, time);
+            compareResult(new ArrayList<>(),
+                    QUERY_BY_ODPS_SQL(transactionalTable1, SELECT_ALL_BOOKS(transactionalTable1) + ";"));
+
+            harness.processElement(toRow(TEST_DATA[2]), time);
+            harness.notifyOfCompletedCheckpoint(1);
+            compareResult(Arrays.asList(TEST_DATA[0], TEST_DATA[1]),
+                    QUERY_BY_ODPS_SQL(transactionalTable1, SELECT_ALL_BOOKS(transactionalTable1) + ";"));
+        }
+    }
+
+    @Test
+    public void testTransactionalSinkCommitOnRestore() throws Exception {
+        initTable(transactionalTable2);
+        OperatorSubtaskState snapshot;
+        try (OneInputStreamOperatorTestHarness<Row, Object> harness = new OneInputStreamOperatorTestHarness<>(
+                new StreamSink<>(buildTransactionalSinkFunction(transactionalTable2)))) {
+            harness.setup();
+            harness.open();
+            harness.processElement(toRow(TEST_DATA[0]), time);
+            snapshot = harness.snapshot(1, time);
+            // fails before the checkpoint completes, the next rows are never committed
+            harness.processElement(toRow(TEST_DATA[1]), time);
+        }
+        try (OneInputStreamOperatorTestHarness<Row, Object> harness = new OneInputStreamOperatorTestHarness<>(
+                new StreamSink<>(buildTransactionalSinkFunction(transactionalTable2)))) {
+            harness.setup();
+            harness.initializeState(snapshot);
+            harness.open();
+            compareResult(Collections.singletonList(TEST_DATA[0]),
+                    QUERY_BY_ODPS_SQL(transactionalTable2, SELECT_ALL_BOOKS(transactionalTable2) + ";"));
+        }
+    }
+
     @Test
     public void testOdpsSinkFunction() throws Exception {
         initTable(table2);
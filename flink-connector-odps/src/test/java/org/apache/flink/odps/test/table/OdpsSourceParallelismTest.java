@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.odps.test.table;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.Partition;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.Table;
+import com.aliyun.odps.account.AliyunAccount;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.odps.table.OdpsDynamicTableSource;
+import org.apache.flink.odps.table.OdpsOptions;
+import org.apache.flink.odps.table.OdpsTablePath;
+import org.apache.flink.odps.util.Constants;
+import org.apache.flink.odps.util.OdpsConf;
+import org.apache.flink.odps.util.OdpsMetaDataProvider;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.api.TableSchema;
+import org.apache.flink.table.catalog.ObjectPath;
+import org.apache.flink.table.catalog.stats.CatalogTableStatistics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class OdpsSourceParallelismTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    private static final TableSchema SCHEMA = TableSchema.builder()
+            .field("c", DataTypes.STRING())
+            .field("dt", DataTypes.STRING())
+            .build();
+
+    @Test
+    public void testInferDisabledByDefault() {
+        assertFalse(OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM.defaultValue());
+    }
+
+    @Test
+    public void testOneTaskPerSplitSize() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider();
+        provider.addPartition("dt=1", 2 * MB);
+        provider.addPartition("dt=2", MB / 2);
+        provider.addPartition("dt=3", 0);
+
+        OdpsDynamicTableSource source = createSource(provider, 1000);
+        source.applyPartitions(partitions("1", "2"));
+        assertEquals(3, source.inferSourceParallelism());
+
+        // partitions without bytes still get one task
+        source.applyPartitions(partitions("3"));
+        assertEquals(1, source.inferSourceParallelism());
+        source.applyPartitions(Collections.emptyList());
+        assertEquals(1, source.inferSourceParallelism());
+        assertEquals(1, provider.listings);
+    }
+
+    @Test
+    public void testParallelismIsCapped() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider();
+        provider.addPartition("dt=1", 100 * MB);
+        OdpsDynamicTableSource source = createSource(provider, 4);
+        source.applyPartitions(partitions("1"));
+        assertEquals(4, source.inferSourceParallelism());
+
+        try {
+            createSource(provider, 0).inferSourceParallelism();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("cannot be less than 1"));
+        }
+    }
+
+    @Test
+    public void testUnknownSizeIsLeftToPlanner() {
+        TestingMetaDataProvider provider = new TestingMetaDataProvider();
+        provider.addPartition("dt=1", -1);
+        OdpsDynamicTableSource source = createSource(provider, 1000);
+        source.applyPartitions(partitions("1"));
+        assertEquals(-1, source.inferSourceParallelism());
+
+        provider.failListings = true;
+        source.applyPartitions(partitions("2", "3"));
+        assertEquals(-1, source.inferSourceParallelism());
+    }
+
+    private static OdpsDynamicTableSource createSource(OdpsMetaDataProvider provider, int maxParallelism) {
+        OdpsConf odpsConf = new OdpsConf("accessId", "accessKey", "http://localhost", "project");
+        odpsConf.setProperty(Constants.ODPS_INPUT_SPLIT_SIZE, "1");
+        Configuration flinkConf = new Configuration();
+        flinkConf.set(OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM, true);
+        flinkConf.set(OdpsOptions.TABLE_EXEC_ODPS_INFER_SOURCE_PARALLELISM_MAX, maxParallelism);
+        return new OdpsDynamicTableSource(flinkConf, odpsConf, null,
+                new OdpsTablePath("project", "table"), SCHEMA, Collections.singletonList("dt"), provider);
+    }
+
+    private static List<Map<String, String>> partitions(String... values) {
+        List<Map<String, String>> partitions = new ArrayList<>();
+        for (String value : values) {
+            partitions.add(Collections.singletonMap("dt", value));
+        }
+        return partitions;
+    }
+
+    /** Serves the partitions of a table with the given raw data sizes. */
+    private static class TestingMetaDataProvider extends OdpsMetaDataProvider {
+
+        private static final Odps ODPS = createOdps();
+
+        private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+        private volatile int listings;
+        private volatile boolean failListings;
+
+        private TestingMetaDataProvider() {
+            super(ODPS);
+        }
+
+        private static Odps createOdps() {
+            Odps odps = new Odps(new AliyunAccount("accessId", "accessKey"));
+            odps.setEndpoint("http://localhost");
+            odps.setDefaultProject("project");
+            return odps;
+        }
+
+        private void addPartition(String partitionSpec, long rawDataSize) {
+            sizes.put(new PartitionSpec(partitionSpec).toString(), rawDataSize);
+        }
+
+        @Override
+        protected Table loadTable(ObjectPath tablePath) throws OdpsException {
+            return ODPS.tables().get(tablePath.getDatabaseName(), tablePath.getObjectName());
+        }
+
+        @Override
+        protected List<Partition> listPartitions(Table table) {
+            listings++;
+            if (failListings) {
+                throw new RuntimeException("listing failed");
+            }
+            List<Partition> result = new ArrayList<>();
+            for (String partition : sizes.keySet()) {
+                result.add(table.getPartition(new PartitionSpec(partition)));
+            }
+            return result;
+        }
+
+        @Override
+        protected CatalogTableStatistics getStatistics(Partition partition, boolean extended) {
+            return new CatalogTableStatistics(-1, 1, 0, sizes.get(partition.getPartitionSpec().toString()));
+        }
+    }
+}
@@ -23,7 +23,7 @@ import org.apache.flink.odps.FlinkOdpsException;
 import org.apache.flink.table.api.Table;
 import org.apache.flink.table.api.TableEnvironment;
 import org.apache.flink.table.api.TableSchema;
-import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.data.StringData;
 import org.apache.flink.types.Row;
 import org.apache.flink.util.CloseableIterator;
@@ -416,7 +416,7 @@ public class BookTableUtils {
         Assert.assertTrue(isSetEqual(flinkResultSet, odpsResultSet));
     }
 
-    public static void compareRowDataResult(List<GenericRowData> flinkRows, List<BookEntry> odpsResult, String[] fullColumns) {
+    public static void compareRowDataResult(List<? extends RowData> flinkRows, List<BookEntry> odpsResult, String[] fullColumns) {
         Set<BookEntry> flinkResultSet = flinkRows.stream().map(row -> {
             try {
                 return fillBookEntry(fullColumns, row);
@@ -429,13 +429,29 @@ public class BookTableUtils {
         Assert.assertTrue(isSetEqual(flinkResultSet, odpsResultSet));
     }
 
-    public static BookEntry fillBookEntry(String[] fullColumns, GenericRowData result) throws Exception {
+    public static BookEntry fillBookEntry(String[] fullColumns, RowData result) throws Exception {
         BookEntry bookEntry = new BookEntry();
         Object[] objects = new Object[result.getArity()];
         for(int i = 0; i < result.getArity();i++){
-            objects[i] = result.getField(i);
+            objects[i] = getBookField(result, i, fullColumns[i]);
         }
         fillBookEntry(bookEntry, fullColumns, objects);
         return bookEntry;
     }
+
+    private static Object getBookField(RowData row, int pos, String column) {
+        // partition values may be joined to the row, read them by the type of the book column
+        if (row.isNullAt(pos)) {
+            return null;
+        }
+        switch (column) {
+            case "id":
+            case "qty":
+                return row.getInt(pos);
+            case "price":
+                return row.getDouble(pos);
+            default:
+                return row.getString(pos);
+        }
+    }
 }
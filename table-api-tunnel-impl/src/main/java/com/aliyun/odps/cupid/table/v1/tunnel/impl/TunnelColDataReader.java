@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.BatchFilter;
+import com.aliyun.odps.cupid.table.v1.util.Validator;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatchBuilder;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a {@link TunnelInputSplit} into batches of column vectors. The records are
+ * read into one reused record and copied into the buffers of a {@link ColDataBatchBuilder}, which
+ * are reused by the next batch: a batch is valid until {@link #next()} is called again.
+ *
+ * <p>The filters of the split are evaluated on the rows of each batch by a {@link BatchFilter},
+ * the rows for which they are not true are dropped before the batch is returned. Batches are
+ * filled up to batchSize rows, the last one may be empty.
+ *
+ * <p>The data layout is the one read by {@link ColDataVector}. Complex types are not supported.
+ */
+public class TunnelColDataReader implements SplitReader<ColDataBatch> {
+
+    private final TunnelInputSplit inputSplit;
+    private final TunnelRecordRangeReader reader;
+    private final ColDataBatchBuilder builder;
+    private final BatchFilter filter;
+    private final int[] selection;
+    private final Record reuse;
+    private long rowsRead = 0;
+    private boolean endOfData;
+    private boolean isClosed;
+
+    TunnelColDataReader(TunnelInputSplit inputSplit, int batchSize) {
+        Validator.checkInteger(batchSize, 1, "batchSize");
+        this.inputSplit = inputSplit;
+        List<Attribute> readDataColumns = inputSplit.getReadDataColumns();
+        this.builder = new ColDataBatchBuilder(readDataColumns, batchSize);
+        this.filter = BatchFilter.create(inputSplit.getFilterExpressions(), readDataColumns);
+        this.selection = filter == null ? null : new int[batchSize];
+        try {
+            this.reader = TunnelRecordRangeReader.open(inputSplit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.reuse = new ArrayRecord(reader.getReadColumns().toArray(new Column[0]));
+        this.isClosed = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        reader.close();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return reader.getBytesRead();
+    }
+
+    /**
+     * The number of rows read from the split, including the rows dropped by the filters.
+     */
+    @Override
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !endOfData && rowsRead < inputSplit.getNumRecord();
+    }
+
+    /**
+     * Returns the next batch of at most batchSize rows, the failure to read it is thrown as an
+     * {@link UncheckedIOException}.
+     */
+    @Override
+    public ColDataBatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        builder.reset();
+        try {
+            while (!builder.isFull() && hasNext()) {
+                int start = builder.getRowCount();
+                while (!builder.isFull() && rowsRead < inputSplit.getNumRecord()) {
+                    Record record = reader.read(reuse);
+                    if (record == null) {
+                        endOfData = true;
+                        break;
+                    }
+                    builder.append(record);
+                    rowsRead++;
+                }
+                if (filter == null) {
+                    break;
+                }
+                select(start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Drops the rows appended from start on for which the filters are not true.
+     */
+    private void select(int start) {
+        int size = builder.getRowCount() - start;
+        for (int i = 0; i < size; i++) {
+            selection[i] = start + i;
+        }
+        int selected = filter.filter(builder.build(), selection, size);
+        if (selected == size) {
+            return;
+        }
+        System.arraycopy(selection, 0, selection, start, selected);
+        for (int i = 0; i < start; i++) {
+            selection[i] = i;
+        }
+        builder.select(selection, start + selected);
+    }
+}
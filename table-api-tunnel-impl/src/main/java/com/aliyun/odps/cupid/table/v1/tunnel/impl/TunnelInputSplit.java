@@ -21,8 +21,10 @@ package com.aliyun.odps.cupid.table.v1.tunnel.impl;
 
 import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import com.aliyun.odps.cupid.table.v1.util.Options;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -32,6 +34,7 @@ public class TunnelInputSplit extends InputSplit {
     private long startIndex;
     private long numRecord;
     private Options options;
+    private List<FilterExpression> filterExpressions = Collections.emptyList();
 
     protected TunnelInputSplit(String project,
                                String table,
@@ -71,6 +74,15 @@ public class TunnelInputSplit extends InputSplit {
         return options;
     }
 
+    /**
+     * The filters applied by the readers of the split, see
+     * {@link com.aliyun.odps.cupid.table.v1.reader.filter.BatchFilter}.
+     */
+    @Override
+    public List<FilterExpression> getFilterExpressions() {
+        return filterExpressions;
+    }
+
     public void setDownloadId(String downloadId) {
         this.downloadId = downloadId;
     }
@@ -86,4 +98,8 @@ public class TunnelInputSplit extends InputSplit {
     public void setOptions(Options options) {
         this.options = options;
     }
+
+    public void setFilterExpressions(List<FilterExpression> filterExpressions) {
+        this.filterExpressions = filterExpressions;
+    }
 }
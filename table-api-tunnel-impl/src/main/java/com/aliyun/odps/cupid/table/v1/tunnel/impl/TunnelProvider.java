@@ -43,7 +43,7 @@ public class TunnelProvider implements TableProvider {
 
     @Override
     public ReadCapabilities getReadCapabilities() {
-        return new ReadCapabilities(false, false, false);
+        return new ReadCapabilities(false, true, false);
     }
 
     @Override
@@ -63,7 +63,7 @@ public class TunnelProvider implements TableProvider {
 
     @Override
     public SplitReader<ColDataBatch> createColDataReader(InputSplit inputSplit, int batchSize) {
-        throw new UnsupportedOperationException();
+        return new TunnelColDataReader((TunnelInputSplit) inputSplit, batchSize);
     }
 
     @Override
@@ -27,6 +27,7 @@ import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
 import com.aliyun.odps.cupid.table.v1.reader.RequiredSchema;
 import com.aliyun.odps.cupid.table.v1.reader.TableReadSession;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
 import com.aliyun.odps.cupid.table.v1.util.Options;
 import com.aliyun.odps.cupid.table.v1.util.Validator;
 import com.aliyun.odps.tunnel.TableTunnel;
@@ -34,21 +35,44 @@ import com.aliyun.odps.utils.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class TunnelReadSession extends TableReadSession {
 
-    private final static long DEFAULT_AVERAGE_RECORD_SIZE = 1024;
     private final static long MIN_AVERAGE_RECORD_SIZE = 256;
+    private final static int MAX_CACHED_SESSIONS = 10000;
+
+    private static final ConcurrentHashMap<String, DownloadSessionInfo> SESSION_CACHE = new ConcurrentHashMap<>();
+    private static final ThreadFactory SESSION_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "tunnel-download-session-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
 
     private InputSplit[] inputSplits = null;
     private List<Attribute> dataColumns;
     private List<Attribute> partitionColumns;
     private List<Attribute> requiredColumns;
     private Odps odps;
+    private List<FilterExpression> filterExpressions = Collections.emptyList();
 
     TunnelReadSession(String project,
                       String table,
@@ -70,11 +94,27 @@ public class TunnelReadSession extends TableReadSession {
         return this.tableSchema;
     }
 
+    /**
+     * The filters are applied by the readers of the splits, rows for which a filter is not true
+     * are not returned.
+     */
+    @Override
+    protected void setFilterExpressions(List<FilterExpression> filterExpressions) {
+        this.filterExpressions = filterExpressions;
+    }
+
+    /**
+     * With a split parallelism the records are divided into that many splits of roughly equal
+     * bytes, see {@link TunnelSplitPlanner#planByParallelism}. Otherwise into splits of
+     * splitSizeInMB.
+     */
     @Override
     public InputSplit[] getOrCreateInputSplits() throws IOException {
         if (this.splitParallelism > 0) {
-            throw new UnsupportedOperationException(
-                    "split by parallelism is not supported by tunnel provider");
+            if (inputSplits == null) {
+                inputSplits = planInputSplits(0, this.splitParallelism);
+            }
+            return inputSplits;
         } else {
             return getOrCreateInputSplits(this.splitSizeInMB);
         }
@@ -82,8 +122,8 @@ public class TunnelReadSession extends TableReadSession {
 
     /**
      * Since split table by record count is more convenient when reading a table with tunnel, here
-     * we estimate the average size of a record and the record count per split would be
-     * splitSizeInMB divided by the average size. Then we split the table by the record count.
+     * we estimate the average size of a record and divide the records of each partition into
+     * ranges of about splitSizeInMB.
      *
      * @param splitSizeInMB size of each split
      * @return an array of {@link InputSplit}
@@ -94,12 +134,13 @@ public class TunnelReadSession extends TableReadSession {
         if (splitSizeInMB <= 0) {
             throw new IllegalArgumentException("Expect positive split size, got: " + splitSizeInMB);
         }
-
-        if (inputSplits != null) {
-            return inputSplits;
+        if (inputSplits == null) {
+            inputSplits = planInputSplits(splitSizeInMB, 0);
         }
+        return inputSplits;
+    }
 
-        List<InputSplit> splits = new ArrayList<>();
+    private InputSplit[] planInputSplits(int splitSizeInMB, int splitParallelism) throws IOException {
         TableTunnel tunnel = new TableTunnel(odps);
         if (!StringUtils.isNullOrEmpty(this.options.getOdpsConf().getTunnelEndpoint())) {
             tunnel.setEndpoint(this.options.getOdpsConf().getTunnelEndpoint());
@@ -107,29 +148,154 @@ public class TunnelReadSession extends TableReadSession {
 
         init();
 
-        if (partitionSpecs == null || partitionSpecs.isEmpty()) {
-            long size = odps.tables().get(project, table).getSize();
-            TableTunnel.DownloadSession session = Util.createDownloadSession(project, table, null, tunnel);
-            splits.addAll(
-                    getInputSplitsInternal(session, size, splitSizeInMB, null));
-        } else {
-            for (Map<String, String> partitionSpec : partitionSpecs) {
-                PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
-                long size = odps.tables().get(project, table).getPartition(odpsPartitionSpec).getSize();
-                TableTunnel.DownloadSession session = Util.createDownloadSession(
-                        project,
-                        table,
-                        odpsPartitionSpec,
-                        tunnel);
-                splits.addAll(
-                        getInputSplitsInternal(session, size, splitSizeInMB, partitionSpec));
+        List<Map<String, String>> specs = partitionSpecs == null || partitionSpecs.isEmpty() ?
+                Collections.singletonList(null) : partitionSpecs;
+        List<DownloadSessionInfo> sessions = getOrCreateDownloadSessions(tunnel, specs);
+        long[] recordCounts = new long[sessions.size()];
+        long[] sizes = new long[sessions.size()];
+        for (int i = 0; i < sessions.size(); i++) {
+            recordCounts[i] = sessions.get(i).recordCount;
+            sizes[i] = estimateSize(sessions.get(i));
+        }
+        List<TunnelSplitPlanner.Range> ranges = splitParallelism > 0 ?
+                TunnelSplitPlanner.planByParallelism(recordCounts, sizes, splitParallelism) :
+                TunnelSplitPlanner.planBySize(recordCounts, sizes, splitSizeInMB * 1024L * 1024L);
+
+        InputSplit[] splits = new InputSplit[ranges.size()];
+        for (int i = 0; i < splits.length; i++) {
+            TunnelSplitPlanner.Range range = ranges.get(i);
+            splits[i] = new TunnelInputSplit(project, table, dataColumns, partitionColumns,
+                    requiredColumns, specs.get(range.session), sessions.get(range.session).downloadId,
+                    range.startIndex, range.numRecord, options);
+            ((TunnelInputSplit) splits[i]).setFilterExpressions(filterExpressions);
+        }
+        return splits;
+    }
+
+    /**
+     * The size of the session, or of its records at {@link #MIN_AVERAGE_RECORD_SIZE} if the
+     * size is not known.
+     */
+    private static long estimateSize(DownloadSessionInfo session) {
+        if (session.recordCount == 0) {
+            return 0;
+        }
+        long averageRecordSize = session.size / session.recordCount;
+        if (averageRecordSize == 0) {
+            averageRecordSize = MIN_AVERAGE_RECORD_SIZE;
+        }
+        return averageRecordSize * session.recordCount;
+    }
+
+    /**
+     * Creates the download sessions of the partitions, at most
+     * {@link Util#READER_SESSION_CONCURRENCY} at a time, or takes them from the cache of the
+     * sessions created in the last {@link Util#READER_SESSION_CACHE_TTL_MS} if it is set. A
+     * download session reads any of the columns, so the sessions are shared by the reads of
+     * different columns. A cached session does not see the data written after it was created.
+     */
+    private List<DownloadSessionInfo> getOrCreateDownloadSessions(TableTunnel tunnel,
+                                                                  List<Map<String, String>> specs)
+            throws IOException {
+        int concurrency = Math.min(specs.size(),
+                options.getOrDefault(Util.READER_SESSION_CONCURRENCY, Util.DEFAULT_READER_SESSION_CONCURRENCY));
+        if (concurrency <= 1) {
+            List<DownloadSessionInfo> sessions = new ArrayList<>(specs.size());
+            for (Map<String, String> spec : specs) {
+                sessions.add(getOrCreateDownloadSession(tunnel, spec));
             }
+            return sessions;
         }
 
-        // Cache the result
-        inputSplits = splits.toArray(new InputSplit[0]);
+        long timeoutMillis = options.getOrDefault(Util.READER_SESSION_TIMEOUT_MS,
+                Util.DEFAULT_READER_SESSION_TIMEOUT_MS);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, SESSION_THREAD_FACTORY);
+        try {
+            List<Future<DownloadSessionInfo>> futures = new ArrayList<>(specs.size());
+            for (Map<String, String> spec : specs) {
+                futures.add(executor.submit(() -> getOrCreateDownloadSession(tunnel, spec)));
+            }
+            List<DownloadSessionInfo> sessions = new ArrayList<>(specs.size());
+            for (Future<DownloadSessionInfo> future : futures) {
+                try {
+                    sessions.add(future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS));
+                } catch (TimeoutException e) {
+                    throw new IOException("Timed out after " + timeoutMillis
+                            + " ms creating the download sessions of " + specs.size() + " partitions", e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while creating download sessions", e);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ?
+                            (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+            return sessions;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        return inputSplits;
+    private DownloadSessionInfo getOrCreateDownloadSession(TableTunnel tunnel,
+                                                           Map<String, String> partitionSpec)
+            throws IOException {
+        long ttl = options.getOrDefault(Util.READER_SESSION_CACHE_TTL_MS,
+                Util.DEFAULT_READER_SESSION_CACHE_TTL_MS);
+        String cacheKey = ttl > 0 ? getCacheKey(partitionSpec) : null;
+        if (cacheKey != null) {
+            DownloadSessionInfo cached = SESSION_CACHE.get(cacheKey);
+            if (cached != null && cached.expireTime > System.currentTimeMillis()) {
+                return cached;
+            }
+        }
+
+        PartitionSpec odpsPartitionSpec = partitionSpec == null ? null : Util.toOdpsPartitionSpec(partitionSpec);
+        TableTunnel.DownloadSession session = Util.createDownloadSession(project, table, odpsPartitionSpec,
+                tunnel, options.getOrDefault(Util.READER_SESSION_RETRIES, Util.DEFAULT_READER_SESSION_RETRIES));
+        long recordCount = session.getRecordCount();
+        // the size is only needed to split the records
+        long size = recordCount == 0 ? 0 : getSize(odpsPartitionSpec);
+        DownloadSessionInfo info = new DownloadSessionInfo(session.getId(), recordCount, size,
+                System.currentTimeMillis() + ttl);
+        if (cacheKey != null) {
+            if (SESSION_CACHE.size() >= MAX_CACHED_SESSIONS) {
+                long now = System.currentTimeMillis();
+                SESSION_CACHE.values().removeIf(cached -> cached.expireTime <= now);
+            }
+            SESSION_CACHE.put(cacheKey, info);
+        }
+        return info;
+    }
+
+    /**
+     * Returns the size in bytes of the table or of the partition if given.
+     */
+    protected long getSize(PartitionSpec partitionSpec) {
+        if (partitionSpec == null) {
+            return odps.tables().get(project, table).getSize();
+        }
+        return odps.tables().get(project, table).getPartition(partitionSpec).getSize();
+    }
+
+    private String getCacheKey(Map<String, String> partitionSpec) {
+        StringBuilder key = new StringBuilder()
+                .append(options.getOdpsConf().getAccessId()).append('@')
+                .append(odps.getEndpoint()).append('|')
+                .append(options.getOdpsConf().getTunnelEndpoint()).append('/')
+                .append(project).append('.').append(table).append('/');
+        if (partitionSpec != null) {
+            key.append(Util.toOdpsPartitionSpec(partitionSpec));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Drops the cached download sessions, e.g. after the data of a table was overwritten.
+     */
+    public static void clearDownloadSessionCache() {
+        SESSION_CACHE.clear();
     }
 
     /**
@@ -165,47 +331,20 @@ public class TunnelReadSession extends TableReadSession {
         }
     }
 
-    private List<InputSplit> getInputSplitsInternal(TableTunnel.DownloadSession session,
-                                                    long size,
-                                                    int splitSizeInMB,
-                                                    Map<String, String> partitionSpec) {
-        List<InputSplit> splits = new ArrayList<>();
-        String downloadId = session.getId();
-        long recordCount = session.getRecordCount();
-
-        long averageRecordSize;
-        if (recordCount == 0) {
-            averageRecordSize = DEFAULT_AVERAGE_RECORD_SIZE;
-        } else {
-            averageRecordSize = size / recordCount;
-        }
-        if (averageRecordSize == 0) {
-            averageRecordSize = MIN_AVERAGE_RECORD_SIZE;
-        }
-        long numRecordPerSplit = splitSizeInMB * 1024 * 1024 / averageRecordSize;
-        if (numRecordPerSplit == 0) {
-            throw new IllegalArgumentException("Expect larger split size, got: " + splitSizeInMB);
-        }
+    /** The id and the size of a download session, enough to plan the splits. */
+    private static final class DownloadSessionInfo {
 
-        long numSplits = recordCount / numRecordPerSplit;
-        long remainder = recordCount % numRecordPerSplit;
-        for (long i = 0; i < numSplits; i++) {
-            long startIndex = i * numRecordPerSplit;
-            TunnelInputSplit split = new TunnelInputSplit(project, table, dataColumns,
-                    partitionColumns, requiredColumns, partitionSpec, downloadId, startIndex,
-                    numRecordPerSplit, options);
-            splits.add(split);
-        }
+        private final String downloadId;
+        private final long recordCount;
+        private final long size;
+        private final long expireTime;
 
-        if (remainder != 0) {
-            long startIndex = numSplits * numRecordPerSplit;
-            TunnelInputSplit lastSplit = new TunnelInputSplit(project, table, dataColumns,
-                    partitionColumns, requiredColumns, partitionSpec, downloadId, startIndex,
-                    remainder, options);
-            splits.add(lastSplit);
+        private DownloadSessionInfo(String downloadId, long recordCount, long size, long expireTime) {
+            this.downloadId = downloadId;
+            this.recordCount = recordCount;
+            this.size = size;
+            this.expireTime = expireTime;
         }
-
-        return splits;
     }
 
     private void initOdps() {
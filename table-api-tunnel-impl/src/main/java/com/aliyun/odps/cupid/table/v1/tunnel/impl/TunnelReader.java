@@ -19,84 +19,73 @@
 
 package com.aliyun.odps.cupid.table.v1.tunnel.impl;
 
-import com.aliyun.odps.Column;
-import com.aliyun.odps.PartitionSpec;
-import com.aliyun.odps.cupid.table.v1.Attribute;
 import com.aliyun.odps.cupid.table.v1.reader.SplitReader;
+import com.aliyun.odps.cupid.table.v1.reader.filter.RecordBatchFilter;
 import com.aliyun.odps.data.ArrayRecord;
-import com.aliyun.odps.data.Record;
-import com.aliyun.odps.tunnel.TableTunnel;
-import com.aliyun.odps.tunnel.TunnelException;
-import com.aliyun.odps.tunnel.io.TunnelRecordReader;
-import com.aliyun.odps.type.TypeInfoParser;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
 
+/**
+ * Reads the records of a {@link TunnelInputSplit}. The download session and the record reader
+ * are opened when the reader is created, a failure to open them is thrown as an
+ * {@link UncheckedIOException}. The download sessions are shared by the splits of the JVM.
+ *
+ * <p>The filters of the split are evaluated on {@link #FILTER_BATCH_SIZE} records at a time by a
+ * {@link RecordBatchFilter}, the records for which they are not true are skipped.
+ */
 public class TunnelReader implements SplitReader<ArrayRecord> {
 
+    static final int FILTER_BATCH_SIZE = 1024;
+
     private final TunnelInputSplit inputSplit;
-    private TunnelRecordReader reader;
-    private Record currentRecord = null;
+    private final TunnelRecordRangeReader reader;
+    private final RecordBatchFilter filter;
+    private ArrayRecord[] records;
+    private int[] selection;
+    private int position;
+    private int selected;
     private long rowsRead = 0;
+    private boolean endOfData;
     private boolean isClosed;
 
     TunnelReader(TunnelInputSplit inputSplit) {
         this.inputSplit = inputSplit;
+        this.filter = RecordBatchFilter.create(inputSplit.getFilterExpressions(),
+                inputSplit.getReadDataColumns(), FILTER_BATCH_SIZE);
+        if (filter != null) {
+            this.records = new ArrayRecord[FILTER_BATCH_SIZE];
+            this.selection = new int[FILTER_BATCH_SIZE];
+        }
         try {
-            init();
+            this.reader = TunnelRecordRangeReader.open(inputSplit);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
+        this.isClosed = false;
     }
 
-    private void init() throws IOException {
-        String project = inputSplit.getProject();
-        String table = inputSplit.getTable();
-        Map<String, String> partitionSpec = inputSplit.getPartitionSpec();
-        String downloadId = inputSplit.getDownloadId();
-        long startIndex = inputSplit.getStartIndex();
-        long numRecord = inputSplit.getNumRecord();
-        List<Attribute> requiredColumns = inputSplit.getReadDataColumns();
-
-        TableTunnel tunnel = Util.getTableTunnel(inputSplit.getOptions());
-        TableTunnel.DownloadSession session;
-        if (partitionSpec == null || partitionSpec.isEmpty()) {
-            try {
-                session = tunnel.getDownloadSession(project, table, downloadId);
-            } catch (TunnelException e) {
-                throw new IOException(e);
-            }
-        } else {
-            try {
-                PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
-                session = tunnel.getDownloadSession(project, table, odpsPartitionSpec, downloadId);
-            } catch (TunnelException e) {
-                throw new IOException(e);
-            }
-        }
+    /**
+     * The number of splits opened by the readers of the JVM.
+     */
+    public static long getSplitsOpened() {
+        return TunnelRecordRangeReader.SPLITS_OPENED.get();
+    }
 
-        List<Column> readDataColumns = new ArrayList<>();
-        for (Attribute c : requiredColumns) {
-            readDataColumns.add(new Column(c.getName(), TypeInfoParser.getTypeInfoFromTypeString(c.getType())));
-        }
-        if (requiredColumns.isEmpty()) {
-            List<Attribute> dataColumns = inputSplit.getDataColumns();
-            if (!dataColumns.isEmpty()) {
-                readDataColumns.add(new Column(dataColumns.get(0).getName(),TypeInfoParser.getTypeInfoFromTypeString(dataColumns.get(0).getType())));
-            } else {
-                throw new RuntimeException("Empty column is not supported by tunnel table provider");
-            }
-        }
-        try {
-            reader = session.openRecordReader(
-                    startIndex, numRecord, true, readDataColumns);
-        } catch (TunnelException e) {
-            throw new IOException(e);
-        }
-        this.isClosed = false;
+    /**
+     * The number of download sessions opened by the readers of the JVM, at most one per session
+     * while it is cached.
+     */
+    public static long getSessionsOpened() {
+        return TunnelRecordRangeReader.SESSIONS_OPENED.get();
+    }
+
+    /**
+     * Drops the cached download sessions.
+     */
+    public static void clearDownloadSessionCache() {
+        TunnelRecordRangeReader.clearDownloadSessionCache();
     }
 
     @Override
@@ -104,15 +93,18 @@ public class TunnelReader implements SplitReader<ArrayRecord> {
         if (isClosed) {
             return;
         }
-        reader.close();
         isClosed = true;
+        reader.close();
     }
 
     @Override
     public long getBytesRead() {
-        return reader.getTotalBytes();
+        return reader.getBytesRead();
     }
 
+    /**
+     * The number of records read from the split, including the records skipped by the filters.
+     */
     @Override
     public long getRowsRead() {
         return rowsRead;
@@ -120,17 +112,51 @@ public class TunnelReader implements SplitReader<ArrayRecord> {
 
     @Override
     public boolean hasNext() {
-        return rowsRead < inputSplit.getNumRecord();
+        if (filter == null) {
+            return rowsRead < inputSplit.getNumRecord();
+        }
+        try {
+            while (position == selected && !endOfData && rowsRead < inputSplit.getNumRecord()) {
+                readFiltered();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return position < selected;
     }
 
+    /**
+     * Returns the next record, the failure to read it is thrown as an {@link UncheckedIOException}.
+     */
     @Override
     public ArrayRecord next() {
+        if (filter != null) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return records[selection[position++]];
+        }
         try {
-            currentRecord = reader.read();
+            ArrayRecord record = (ArrayRecord) reader.read(null);
+            rowsRead += 1;
+            return record;
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readFiltered() throws IOException {
+        int size = 0;
+        while (size < records.length && rowsRead < inputSplit.getNumRecord()) {
+            ArrayRecord record = (ArrayRecord) reader.read(null);
+            if (record == null) {
+                endOfData = true;
+                break;
+            }
+            records[size++] = record;
+            rowsRead++;
         }
-        rowsRead += 1;
-        return (ArrayRecord) currentRecord;
+        selected = filter.filter(records, 0, size, selection);
+        position = 0;
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Options;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.TunnelRecordReader;
+import com.aliyun.odps.type.TypeInfoParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the record range of a {@link TunnelInputSplit}. A failed read reopens the range at the
+ * first record not read yet, up to {@link Util#READER_RETRIES} times in a row. The download
+ * sessions are shared by the splits of the JVM for {@link Util#READER_SHARED_SESSION_TTL_MS}
+ * after they were loaded, well within the 24 hours a download session lives on the server.
+ */
+final class TunnelRecordRangeReader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TunnelRecordRangeReader.class);
+    private final static int MAX_CACHED_SESSIONS = 1024;
+
+    private static final Map<String, SharedSession> SESSION_CACHE =
+            new LinkedHashMap<String, SharedSession>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SharedSession> eldest) {
+                    return size() > MAX_CACHED_SESSIONS;
+                }
+            };
+    static final AtomicLong SPLITS_OPENED = new AtomicLong();
+    static final AtomicLong SESSIONS_OPENED = new AtomicLong();
+
+    private final TunnelInputSplit inputSplit;
+    private final List<Column> readColumns;
+    private final int maxRetries;
+    private final long retryIntervalMillis;
+    private final TableTunnel.DownloadSession session;
+    private TunnelRecordReader reader;
+    private long recordsRead;
+    private long bytesOfClosedReaders;
+
+    private TunnelRecordRangeReader(TunnelInputSplit inputSplit) throws IOException {
+        this.inputSplit = inputSplit;
+        this.readColumns = getReadColumns(inputSplit);
+        Options options = inputSplit.getOptions();
+        this.maxRetries = options.getOrDefault(Util.READER_RETRIES, Util.DEFAULT_READER_RETRIES);
+        this.retryIntervalMillis = options.getOrDefault(Util.READER_RETRY_INTERVAL_MS,
+                Util.DEFAULT_READER_RETRY_INTERVAL_MS);
+        this.session = getOrOpenDownloadSession(inputSplit);
+        this.reader = openReader();
+    }
+
+    /**
+     * Opens the download session and the record reader of the split.
+     */
+    static TunnelRecordRangeReader open(TunnelInputSplit inputSplit) throws IOException {
+        SPLITS_OPENED.incrementAndGet();
+        return new TunnelRecordRangeReader(inputSplit);
+    }
+
+    /**
+     * Returns the next record, in {@code reuse} if given, or null at the end of the range.
+     */
+    Record read(Record reuse) throws IOException {
+        int failures = 0;
+        while (true) {
+            try {
+                if (reader == null) {
+                    reader = openReader();
+                }
+                Record record = reuse == null ? reader.read() : reader.read(reuse);
+                if (record != null) {
+                    recordsRead++;
+                }
+                return record;
+            } catch (IOException e) {
+                if (++failures > maxRetries) {
+                    throw e;
+                }
+                LOG.warn("Failed to read download session {} at record {}, retry {} of {}",
+                        inputSplit.getDownloadId(), inputSplit.getStartIndex() + recordsRead,
+                        failures, maxRetries, e);
+                closeReader();
+                try {
+                    Thread.sleep(retryIntervalMillis * failures);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    long getRecordsRead() {
+        return recordsRead;
+    }
+
+    long getBytesRead() {
+        return bytesOfClosedReaders + (reader == null ? 0 : reader.getTotalBytes());
+    }
+
+    /**
+     * The columns read by the record reader, the first data column if no column is required.
+     */
+    List<Column> getReadColumns() {
+        return readColumns;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            bytesOfClosedReaders += reader.getTotalBytes();
+            reader.close();
+            reader = null;
+        }
+    }
+
+    private void closeReader() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close tunnel record reader", e);
+        }
+    }
+
+    private TunnelRecordReader openReader() throws IOException {
+        try {
+            return session.openRecordReader(inputSplit.getStartIndex() + recordsRead,
+                    inputSplit.getNumRecord() - recordsRead, true, readColumns);
+        } catch (TunnelException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<Column> getReadColumns(TunnelInputSplit inputSplit) {
+        List<Attribute> requiredColumns = inputSplit.getReadDataColumns();
+        List<Column> readDataColumns = new ArrayList<>();
+        for (Attribute c : requiredColumns) {
+            readDataColumns.add(new Column(c.getName(), TypeInfoParser.getTypeInfoFromTypeString(c.getType())));
+        }
+        if (requiredColumns.isEmpty()) {
+            List<Attribute> dataColumns = inputSplit.getDataColumns();
+            if (!dataColumns.isEmpty()) {
+                readDataColumns.add(new Column(dataColumns.get(0).getName(),TypeInfoParser.getTypeInfoFromTypeString(dataColumns.get(0).getType())));
+            } else {
+                throw new RuntimeException("Empty column is not supported by tunnel table provider");
+            }
+        }
+        return readDataColumns;
+    }
+
+    private static TableTunnel.DownloadSession getOrOpenDownloadSession(TunnelInputSplit inputSplit)
+            throws IOException {
+        String project = inputSplit.getProject();
+        String table = inputSplit.getTable();
+        Map<String, String> partitionSpec = inputSplit.getPartitionSpec();
+        String downloadId = inputSplit.getDownloadId();
+        Options options = inputSplit.getOptions();
+        String cacheKey = options.getOdpsConf().getAccessId() + '@' + options.getOdpsConf().getEndpoint()
+                + '|' + options.getOdpsConf().getTunnelEndpoint() + '/' + project + '.' + table + '/' + downloadId;
+
+        long now = System.currentTimeMillis();
+        SharedSession shared;
+        synchronized (SESSION_CACHE) {
+            shared = SESSION_CACHE.get(cacheKey);
+        }
+        if (shared != null && shared.expireTime > now) {
+            return shared.session;
+        }
+
+        TableTunnel.DownloadSession session;
+
+        TableTunnel tunnel = Util.getTableTunnel(options);
+        try {
+            if (partitionSpec == null || partitionSpec.isEmpty()) {
+                session = tunnel.getDownloadSession(project, table, downloadId);
+            } else {
+                PartitionSpec odpsPartitionSpec = Util.toOdpsPartitionSpec(partitionSpec);
+                session = tunnel.getDownloadSession(project, table, odpsPartitionSpec, downloadId);
+            }
+        } catch (TunnelException e) {
+            throw new IOException(e);
+        }
+        SESSIONS_OPENED.incrementAndGet();
+        long ttl = options.getOrDefault(Util.READER_SHARED_SESSION_TTL_MS,
+                Util.DEFAULT_READER_SHARED_SESSION_TTL_MS);
+        if (ttl > 0) {
+            synchronized (SESSION_CACHE) {
+                SESSION_CACHE.put(cacheKey, new SharedSession(session, now + ttl));
+            }
+        }
+        return session;
+    }
+
+    static void clearDownloadSessionCache() {
+        synchronized (SESSION_CACHE) {
+            SESSION_CACHE.clear();
+        }
+    }
+
+    private static final class SharedSession {
+
+        private final TableTunnel.DownloadSession session;
+        private final long expireTime;
+
+        private SharedSession(TableTunnel.DownloadSession session, long expireTime) {
+            this.session = session;
+            this.expireTime = expireTime;
+        }
+    }
+}
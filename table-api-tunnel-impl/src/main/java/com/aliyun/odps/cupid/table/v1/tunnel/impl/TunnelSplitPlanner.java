@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Divides the records of the download sessions into record ranges of roughly equal bytes, either
+ * of a target size or into a target number of splits.
+ *
+ * <p>A split reads one download session, so a partition is never merged with another one. With
+ * a target number of splits every non-empty partition gets one split and the remaining splits go
+ * to the partitions with the most bytes per split, which minimizes the largest split and so the
+ * slowest reader when the partitions are skewed.
+ */
+final class TunnelSplitPlanner {
+
+    private TunnelSplitPlanner() {
+    }
+
+    /** A range of records of one download session. */
+    static final class Range {
+
+        final int session;
+        final long startIndex;
+        final long numRecord;
+
+        Range(int session, long startIndex, long numRecord) {
+            this.session = session;
+            this.startIndex = startIndex;
+            this.numRecord = numRecord;
+        }
+    }
+
+    /**
+     * Divides every session into ranges of about {@code splitSizeInBytes} bytes.
+     *
+     * @param recordCounts the number of records of each session
+     * @param sizes the estimated bytes of each session
+     */
+    static List<Range> planBySize(long[] recordCounts, long[] sizes, long splitSizeInBytes) {
+        if (splitSizeInBytes <= 0) {
+            throw new IllegalArgumentException("Expect positive split size, got: " + splitSizeInBytes);
+        }
+        long[] numSplits = new long[recordCounts.length];
+        for (int i = 0; i < recordCounts.length; i++) {
+            if (recordCounts[i] > 0) {
+                long splits = (sizes[i] + splitSizeInBytes - 1) / splitSizeInBytes;
+                numSplits[i] = Math.min(Math.max(splits, 1), recordCounts[i]);
+            }
+        }
+        return toRanges(recordCounts, numSplits);
+    }
+
+    /**
+     * Divides the sessions into about {@code splitParallelism} ranges, at least one per non-empty
+     * session, so that the largest range has as few bytes as possible.
+     *
+     * @param recordCounts the number of records of each session
+     * @param sizes the estimated bytes of each session
+     */
+    static List<Range> planByParallelism(long[] recordCounts, long[] sizes, int splitParallelism) {
+        if (splitParallelism <= 0) {
+            throw new IllegalArgumentException("Expect positive split parallelism, got: " + splitParallelism);
+        }
+        long[] numSplits = new long[recordCounts.length];
+        // the session with the most bytes per split comes first
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, recordCounts.length),
+                (a, b) -> Double.compare((double) sizes[b] / numSplits[b], (double) sizes[a] / numSplits[a]));
+        int remaining = splitParallelism;
+        for (int i = 0; i < recordCounts.length; i++) {
+            if (recordCounts[i] > 0) {
+                numSplits[i] = 1;
+                remaining--;
+                if (recordCounts[i] > 1) {
+                    queue.add(i);
+                }
+            }
+        }
+        while (remaining > 0 && !queue.isEmpty()) {
+            int session = queue.poll();
+            numSplits[session]++;
+            remaining--;
+            if (numSplits[session] < recordCounts[session]) {
+                queue.add(session);
+            }
+        }
+        return toRanges(recordCounts, numSplits);
+    }
+
+    private static List<Range> toRanges(long[] recordCounts, long[] numSplits) {
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i < recordCounts.length; i++) {
+            if (numSplits[i] == 0) {
+                continue;
+            }
+            long numRecordPerSplit = recordCounts[i] / numSplits[i];
+            long remainder = recordCounts[i] % numSplits[i];
+            long startIndex = 0;
+            for (long j = 0; j < numSplits[i]; j++) {
+                long numRecord = numRecordPerSplit + (j < remainder ? 1 : 0);
+                ranges.add(new Range(i, startIndex, numRecord));
+                startIndex += numRecord;
+            }
+        }
+        return ranges;
+    }
+}
@@ -42,6 +42,23 @@ public class Util {
     public static final String WRITER_BUFFER_SHARES = "odps.cupid.writer.buffer.shares";
     public static final String WRITER_BUFFER_SIZE = "odps.cupid.writer.buffer.size";
     public static final int DEFAULT_WRITER_BUFFER_SIZE = 67108864;
+    public static final String READER_SESSION_CONCURRENCY = "odps.cupid.reader.session.concurrency";
+    public static final int DEFAULT_READER_SESSION_CONCURRENCY = 16;
+    public static final String READER_SESSION_TIMEOUT_MS = "odps.cupid.reader.session.timeout.ms";
+    public static final int DEFAULT_READER_SESSION_TIMEOUT_MS = 10 * 60 * 1000;
+    public static final String READER_SESSION_RETRIES = "odps.cupid.reader.session.retries";
+    public static final int DEFAULT_READER_SESSION_RETRIES = 5;
+    // a download session is a snapshot of its partition, a cached one misses the data written
+    // after it was created, so the cache is off unless planning speed matters more than freshness
+    public static final String READER_SESSION_CACHE_TTL_MS = "odps.cupid.reader.session.cache.ttl.ms";
+    public static final int DEFAULT_READER_SESSION_CACHE_TTL_MS = 0;
+    // the download sessions loaded by the readers are shared for this long, below their 24 hours
+    public static final String READER_SHARED_SESSION_TTL_MS = "odps.cupid.reader.shared.session.ttl.ms";
+    public static final int DEFAULT_READER_SHARED_SESSION_TTL_MS = 60 * 60 * 1000;
+    public static final String READER_RETRIES = "odps.cupid.reader.retries";
+    public static final int DEFAULT_READER_RETRIES = 3;
+    public static final String READER_RETRY_INTERVAL_MS = "odps.cupid.reader.retry.interval.ms";
+    public static final int DEFAULT_READER_RETRY_INTERVAL_MS = 1000;
 
 
     public static PartitionSpec toOdpsPartitionSpec(Map<String, String> partitionSpec) {
@@ -121,6 +138,14 @@ public class Util {
                                                                     String table,
                                                                     PartitionSpec partitionSpec,
                                                                     TableTunnel tunnel) throws IOException {
+        return createDownloadSession(project, table, partitionSpec, tunnel, 5);
+    }
+
+    public static TableTunnel.DownloadSession createDownloadSession(String project,
+                                                                    String table,
+                                                                    PartitionSpec partitionSpec,
+                                                                    TableTunnel tunnel,
+                                                                    int maxRetries) throws IOException {
         int retry = 0;
         long sleep = 2000;
         TableTunnel.DownloadSession downloadSession;
@@ -137,13 +162,14 @@ public class Util {
                 break;
             } catch (TunnelException e) {
                 retry++;
-                if (retry > 5) {
+                if (retry > maxRetries) {
                     throw new IOException(e);
                 }
                 try {
                     Thread.sleep(sleep + ThreadLocalRandom.current().nextLong(3000));
                 } catch (InterruptedException ex) {
-                    ex.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
                 }
                 sleep = sleep * 2;
             }
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.commons.proto.ProtobufRecordStreamWriter;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.util.Options;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.tunnel.io.CompressOption;
+import com.aliyun.odps.type.TypeInfoParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the records of a local tunnel endpoint into batches, which fails some of the downloads
+ * half way.
+ */
+public class TunnelColDataReaderTest {
+    private static final String project = "test_project";
+    private static final String table = "test_table";
+    private static final int recordCount = 1000;
+    private static final List<Attribute> columns = Arrays.asList(
+            new Attribute("c_bigint", "bigint"),
+            new Attribute("c_string", "string"),
+            new Attribute("c_double", "double"),
+            new Attribute("c_boolean", "boolean"),
+            new Attribute("c_int", "int"),
+            new Attribute("c_decimal", "decimal(10,2)"),
+            new Attribute("c_small_decimal", "decimal(5,2)"),
+            new Attribute("c_datetime", "datetime"),
+            new Attribute("c_timestamp", "timestamp"));
+
+    private HttpServer server;
+    private final List<Long> rangeStarts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failingDownloads = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        TunnelReader.clearDownloadSessionCache();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        TunnelReader.clearDownloadSessionCache();
+    }
+
+    @Test
+    public void testReadBatches() throws IOException {
+        TunnelColDataReader reader = new TunnelColDataReader(createSplit(columns, 100, 800), 128);
+        int row = 100;
+        int numBatches = 0;
+        while (reader.hasNext()) {
+            ColDataBatch batch = reader.next();
+            numBatches++;
+            Assert.assertEquals(columns.size(), batch.getColumnCount());
+            for (int i = 0; i < batch.getRowCount(); i++) {
+                assertRow(batch, i, row++);
+            }
+        }
+        Assert.assertEquals(900, row);
+        Assert.assertEquals(7, numBatches);
+        Assert.assertEquals(800, reader.getRowsRead());
+        Assert.assertTrue(reader.getBytesRead() > 0);
+        Assert.assertEquals(Collections.singletonList(100L), rangeStarts);
+        reader.close();
+    }
+
+    @Test
+    public void testReadColumnSubset() throws IOException {
+        List<Attribute> readColumns = Arrays.asList(columns.get(1), columns.get(0));
+        TunnelColDataReader reader = new TunnelColDataReader(createSplit(readColumns, 0, recordCount), 4096);
+        ColDataBatch batch = reader.next();
+        Assert.assertFalse(reader.hasNext());
+        Assert.assertEquals(recordCount, batch.getRowCount());
+        ColDataVector bigints = batch.getVectors()[1];
+        ColDataVector strings = batch.getVectors()[0];
+        for (int i = 0; i < recordCount; i++) {
+            Assert.assertEquals(i, bigints.getLong(i));
+            Assert.assertEquals(i % 7 == 0, strings.isNullAt(i));
+            if (i % 7 != 0) {
+                Assert.assertEquals("value_" + i, strings.getString(i));
+            }
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testRetryFromLastRow() throws IOException {
+        failingDownloads.set(2);
+        TunnelColDataReader reader = new TunnelColDataReader(createSplit(columns, 0, recordCount), 256);
+        int row = 0;
+        while (reader.hasNext()) {
+            ColDataBatch batch = reader.next();
+            for (int i = 0; i < batch.getRowCount(); i++) {
+                assertRow(batch, i, row++);
+            }
+        }
+        Assert.assertEquals(recordCount, row);
+        Assert.assertEquals(3, rangeStarts.size());
+        Assert.assertEquals(0L, (long) rangeStarts.get(0));
+        // the records read before a failure are not read again
+        Assert.assertTrue(rangeStarts.get(1) > 0);
+        Assert.assertTrue(rangeStarts.get(2) > rangeStarts.get(1));
+        reader.close();
+    }
+
+    @Test
+    public void testFailuresArePropagated() throws IOException {
+        failingDownloads.set(Integer.MAX_VALUE);
+        TunnelColDataReader reader = new TunnelColDataReader(createSplit(columns, 0, recordCount), 256);
+        int downloads = 0;
+        try {
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            // 1 download and 2 retries, each retried by the tunnel record reader itself
+            downloads = rangeStarts.size();
+            Assert.assertTrue(downloads >= 3);
+        }
+        reader.close();
+
+        rangeStarts.clear();
+        TunnelReader recordReader = new TunnelReader(createSplit(columns, 0, recordCount));
+        try {
+            while (recordReader.hasNext()) {
+                recordReader.next();
+            }
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals(downloads, rangeStarts.size());
+        }
+        recordReader.close();
+    }
+
+    @Test
+    public void testRecordReaderRetries() throws IOException {
+        failingDownloads.set(1);
+        TunnelReader reader = new TunnelReader(createSplit(columns, 0, recordCount));
+        long row = 0;
+        while (reader.hasNext()) {
+            ArrayRecord record = reader.next();
+            Assert.assertEquals(row++, (long) record.getBigint(0));
+        }
+        Assert.assertEquals(recordCount, row);
+        Assert.assertEquals(2, rangeStarts.size());
+        reader.close();
+    }
+
+    @Test
+    public void testReadFilteredBatches() throws IOException {
+        TunnelInputSplit split = createSplit(columns, 100, 800);
+        split.setFilterExpressions(Arrays.asList(
+                FilterExpression.Or(FilterExpression.LessThan("c_bigint", 200),
+                        FilterExpression.StringStartsWith("c_string", "value_8")),
+                FilterExpression.IsNotNull("c_int"),
+                // a filter on a column which is not read is not applied
+                FilterExpression.EqualTo("c_missing", 1)));
+        TunnelColDataReader reader = new TunnelColDataReader(split, 64);
+        List<Integer> rows = new ArrayList<>();
+        while (reader.hasNext()) {
+            ColDataBatch batch = reader.next();
+            Assert.assertTrue(batch.getRowCount() == 64 || !reader.hasNext());
+            for (int i = 0; i < batch.getRowCount(); i++) {
+                int row = (int) batch.getVectors()[0].getLong(i);
+                assertRow(batch, i, row);
+                rows.add(row);
+            }
+        }
+        Assert.assertEquals(expectedRows(100, 900), rows);
+        Assert.assertEquals(800, reader.getRowsRead());
+        reader.close();
+    }
+
+    @Test
+    public void testReadFilteredRecords() throws IOException {
+        failingDownloads.set(1);
+        TunnelInputSplit split = createSplit(columns, 0, recordCount);
+        split.setFilterExpressions(Arrays.asList(
+                FilterExpression.Or(FilterExpression.LessThan("c_bigint", 200),
+                        FilterExpression.StringStartsWith("c_string", "value_8")),
+                FilterExpression.IsNotNull("c_int")));
+        TunnelReader reader = new TunnelReader(split);
+        List<Integer> rows = new ArrayList<>();
+        while (reader.hasNext()) {
+            rows.add((int) (long) reader.next().getBigint(0));
+        }
+        Assert.assertEquals(expectedRows(0, recordCount), rows);
+        Assert.assertEquals(recordCount, reader.getRowsRead());
+        reader.close();
+    }
+
+    private static List<Integer> expectedRows(int start, int end) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = start; row < end; row++) {
+            boolean matches = row < 200 || row % 7 != 0 && ("value_" + row).startsWith("value_8");
+            if (matches && row % 5 != 0) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static void assertRow(ColDataBatch batch, int i, int row) {
+        ColDataVector[] vectors = batch.getVectors();
+        Assert.assertEquals(row, vectors[0].getLong(i));
+        Assert.assertEquals(row % 7 == 0, vectors[1].isNullAt(i));
+        if (row % 7 != 0) {
+            Assert.assertEquals("value_" + row, vectors[1].getString(i));
+        }
+        Assert.assertEquals(row * 0.5, vectors[2].getDouble(i), 0);
+        Assert.assertEquals(row % 2 == 0, vectors[3].getBoolean(i));
+        Assert.assertEquals(row % 5 == 0, vectors[4].isNullAt(i));
+        if (row % 5 != 0) {
+            Assert.assertEquals(-row, vectors[4].getInt(i));
+        }
+        Assert.assertEquals(new BigDecimal(row + ".25"), vectors[5].getDecimal(i));
+        Assert.assertEquals(new BigDecimal(row % 1000 + ".50").negate(), vectors[6].getDecimal(i));
+        Assert.assertEquals(new Date(row * 1000L), vectors[7].getDateTime(i));
+        Assert.assertEquals(createTimestamp(row), vectors[8].getTimestamp(i));
+    }
+
+    private static Timestamp createTimestamp(int row) {
+        Timestamp timestamp = new Timestamp(row * 1000L - 500_000L);
+        timestamp.setNanos(row * 1000 + 7);
+        return timestamp;
+    }
+
+    private static ArrayRecord createRecord(Column[] recordColumns, int row) {
+        ArrayRecord record = new ArrayRecord(recordColumns);
+        for (int i = 0; i < recordColumns.length; i++) {
+            String name = recordColumns[i].getName();
+            switch (name) {
+                case "c_bigint":
+                    record.set(i, (long) row);
+                    break;
+                case "c_string":
+                    record.set(i, row % 7 == 0 ? null : "value_" + row);
+                    break;
+                case "c_double":
+                    record.set(i, row * 0.5);
+                    break;
+                case "c_boolean":
+                    record.set(i, row % 2 == 0);
+                    break;
+                case "c_int":
+                    record.set(i, row % 5 == 0 ? null : -row);
+                    break;
+                case "c_decimal":
+                    record.set(i, new BigDecimal(row + ".25"));
+                    break;
+                case "c_small_decimal":
+                    record.set(i, new BigDecimal(row % 1000 + ".5").negate());
+                    break;
+                case "c_datetime":
+                    record.set(i, new Date(row * 1000L));
+                    break;
+                case "c_timestamp":
+                    record.set(i, createTimestamp(row));
+                    break;
+                default:
+                    throw new IllegalArgumentException(name);
+            }
+        }
+        return record;
+    }
+
+    private TunnelInputSplit createSplit(List<Attribute> readColumns, long startIndex, long numRecord) {
+        Options options = new Options.OptionsBuilder()
+                .accessId("accessId")
+                .accessKey("accessKey")
+                .project(project)
+                .endpoint("http://localhost:" + server.getAddress().getPort() + "/api")
+                .tunnelEndpoint("http://localhost:" + server.getAddress().getPort())
+                .option(Util.READER_RETRIES, "2")
+                .option(Util.READER_RETRY_INTERVAL_MS, "10")
+                .build();
+        return new TunnelInputSplit(project, table, columns, Collections.emptyList(), readColumns,
+                Collections.emptyMap(), "download", startIndex, numRecord, options);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> params = new ConcurrentHashMap<>();
+            for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+                int index = param.indexOf('=');
+                params.put(index < 0 ? param : param.substring(0, index),
+                        index < 0 ? "" : URLDecoder.decode(param.substring(index + 1), "UTF-8"));
+            }
+            if (params.containsKey("data")) {
+                sendRecords(exchange, params);
+            } else {
+                StringBuilder response = new StringBuilder("{\"DownloadID\":\"download\",\"Status\":\"normal\","
+                        + "\"RecordCount\":" + recordCount + ",\"Schema\":{\"columns\":[");
+                for (int i = 0; i < columns.size(); i++) {
+                    response.append(i == 0 ? "" : ",").append("{\"name\":\"").append(columns.get(i).getName())
+                            .append("\",\"type\":\"").append(columns.get(i).getType()).append("\"}");
+                }
+                response.append("],\"partitionKeys\":[]}}");
+                byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendRecords(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String[] range = params.get("rowrange").replaceAll("[()]", "").split(",");
+        long start = Long.parseLong(range[0].trim());
+        long count = Long.parseLong(range[1].trim());
+        rangeStarts.add(start);
+
+        List<Column> readColumns = new ArrayList<>();
+        for (String name : params.get("columns").split(",")) {
+            for (Attribute column : columns) {
+                if (column.getName().equals(name)) {
+                    readColumns.add(new Column(name, TypeInfoParser.getTypeInfoFromTypeString(column.getType())));
+                }
+            }
+        }
+        TableSchema schema = new TableSchema();
+        schema.setColumns(readColumns);
+        Column[] recordColumns = readColumns.toArray(new Column[0]);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        // the readers ask for deflated data
+        boolean deflate = "deflate".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        ProtobufRecordStreamWriter writer = new ProtobufRecordStreamWriter(schema, data,
+                new CompressOption(deflate ? CompressOption.CompressAlgorithm.ODPS_ZLIB :
+                        CompressOption.CompressAlgorithm.ODPS_RAW, 1, 0));
+        for (long row = start; row < start + count; row++) {
+            writer.write(createRecord(recordColumns, (int) row));
+        }
+        writer.close();
+
+        byte[] bytes = data.toByteArray();
+        int length = failingDownloads.getAndDecrement() > 0 ? bytes.length / 3 : bytes.length;
+        if (deflate) {
+            exchange.getResponseHeaders().add("Content-Encoding", "deflate");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes, 0, length);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.reader.filter.BatchFilter;
+import com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression;
+import com.aliyun.odps.cupid.table.v1.reader.filter.RecordBatchFilter;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatch;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataBatchBuilder;
+import com.aliyun.odps.cupid.table.v1.vectorized.ColDataVector;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.type.TypeInfoParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.aliyun.odps.cupid.table.v1.reader.filter.FilterExpression.*;
+
+/**
+ * Evaluates the filters applied by the tunnel readers on batches of a few rows with nulls.
+ */
+public class TunnelFilterTest {
+
+    private static final List<Attribute> columns = Arrays.asList(
+            new Attribute("c_int", "int"),
+            new Attribute("c_string", "string"),
+            new Attribute("c_double", "double"),
+            new Attribute("c_decimal", "decimal(10,2)"));
+
+    private static final Object[][] rows = {
+            {1, "apple", 1.0, new BigDecimal("1.50")},
+            {2, null, Double.NaN, null},
+            {null, "banana", 2.5, new BigDecimal("-3.00")},
+            {4, "apricot", null, new BigDecimal("10.25")},
+            {5, "", -1.0, new BigDecimal("0.00")}};
+
+    @Test
+    public void testComparisons() {
+        assertSelected(GreaterThan("c_int", 1), 1, 3, 4);
+        assertSelected(LessThanOrEqual("c_int", 4L), 0, 1, 3);
+        assertSelected(EqualTo("c_int", 2.0), 1);
+        assertSelected(GreaterThanOrEqual("c_double", 1L), 0, 2);
+        assertSelected(LessThan("c_string", "b"), 0, 3, 4);
+        assertSelected(EqualTo("c_string", ""), 4);
+        assertSelected(GreaterThan("c_decimal", new BigDecimal("1.5")), 3);
+        assertSelected(LessThan("c_decimal", 0), 2);
+    }
+
+    @Test
+    public void testNullSemantics() {
+        // a comparison with null is unknown, and so is its negation
+        assertSelected(Not(GreaterThan("c_int", 1)), 0);
+        assertSelected(EqualTo("c_int", null));
+        assertSelected(Not(EqualTo("c_int", null)));
+        assertSelected(IsNull("c_string"), 1);
+        assertSelected(IsNotNull("c_string"), 0, 2, 3, 4);
+        assertSelected(Not(IsNull("c_string")), 0, 2, 3, 4);
+
+        // the null safe equality is never unknown
+        assertSelected(EqualNullSafe("c_int", null), 2);
+        assertSelected(Not(EqualNullSafe("c_int", 2)), 0, 2, 3, 4);
+
+        // comparisons with NaN are unknown
+        assertSelected(EqualTo("c_double", Double.NaN));
+        assertSelected(Not(EqualTo("c_double", Double.NaN)));
+        assertSelected(Not(GreaterThan("c_double", 0)), 4);
+    }
+
+    @Test
+    public void testIn() {
+        assertSelected(In("c_int", new Object[]{1, 4}), 0, 3);
+        assertSelected(Not(In("c_int", new Object[]{1, 4})), 1, 4);
+        // not in a list with null is never true
+        assertSelected(In("c_int", new Object[]{1, null}), 0);
+        assertSelected(Not(In("c_int", new Object[]{1, null})));
+        assertSelected(In("c_string", new Object[]{"apple", "banana", "cherry"}), 0, 2);
+        assertSelected(In("c_double", new Object[]{1, 2.5}), 0, 2);
+        assertSelected(Not(In("c_double", new Object[]{1, 2.5})), 4);
+    }
+
+    @Test
+    public void testConnectives() {
+        assertSelected(Or(GreaterThan("c_int", 3), StringStartsWith("c_string", "ap")), 0, 3, 4);
+        // false or unknown is unknown
+        assertSelected(Not(Or(GreaterThan("c_int", 1), IsNull("c_string"))), 0);
+        // true and unknown is unknown, false and unknown is false
+        assertSelected(And(GreaterThan("c_double", 0), LessThan("c_int", 5)), 0);
+        assertSelected(Not(And(GreaterThan("c_double", 0), LessThan("c_int", 5))), 4);
+        assertSelected(And(new FilterExpression[]{
+                IsNotNull("c_int"), IsNotNull("c_string"), Not(EqualTo("c_string", ""))}), 0, 3);
+        assertSelected(Or(new FilterExpression[]{
+                EqualTo("c_int", 1), EqualTo("c_int", 4), IsNull("c_int")}), 0, 2, 3);
+        assertSelected(Not(Not(LessThan("c_int", 3))), 0, 1);
+    }
+
+    @Test
+    public void testStringMatches() {
+        assertSelected(StringStartsWith("c_string", "ap"), 0, 3);
+        assertSelected(Not(StringStartsWith("c_string", "ap")), 2, 4);
+        assertSelected(StringEndsWith("c_string", "na"), 2);
+        assertSelected(StringContains("c_string", "pr"), 3);
+        assertSelected(StringContains("c_string", "applesauce"));
+    }
+
+    @Test
+    public void testFiltersWhichDoNotApply() {
+        Assert.assertNull(BatchFilter.create(Collections.singletonList(EqualTo("missing", 1)), columns));
+        // a string is not compared with an int column
+        Assert.assertNull(BatchFilter.create(Collections.singletonList(EqualTo("c_int", "1")), columns));
+        Assert.assertNull(BatchFilter.create(Collections.emptyList(), columns));
+
+        // a conjunct referencing a missing column is dropped as a whole
+        BatchFilter filter = BatchFilter.create(Arrays.asList(
+                Or(EqualTo("c_int", 1), EqualTo("missing", 1)),
+                IsNotNull("c_string")), columns);
+        Assert.assertEquals(1, filter.getFilters().size());
+        Assert.assertEquals(Collections.singletonList(columns.get(1)), filter.getColumns());
+        int[] selection = new int[rows.length];
+        Assert.assertEquals(4, filter.filter(buildBatch(), selection));
+    }
+
+    @Test
+    public void testSelectRows() {
+        ColDataBatchBuilder builder = new ColDataBatchBuilder(columns, 8);
+        for (Object[] row : rows) {
+            builder.append(createRecord(row));
+        }
+        BatchFilter filter = BatchFilter.create(
+                Collections.singletonList(Not(StringStartsWith("c_string", "ap"))), columns);
+        int[] selection = new int[8];
+        builder.select(selection, filter.filter(builder.build(), selection));
+
+        ColDataBatch batch = builder.build();
+        Assert.assertEquals(2, batch.getRowCount());
+        ColDataVector[] vectors = batch.getVectors();
+        Assert.assertTrue(vectors[0].isNullAt(0));
+        Assert.assertEquals("banana", vectors[1].getString(0));
+        Assert.assertEquals(new BigDecimal("-3.00"), vectors[3].getDecimal(0));
+        Assert.assertEquals(5, vectors[0].getInt(1));
+        Assert.assertEquals("", vectors[1].getString(1));
+        Assert.assertEquals(-1.0, vectors[2].getDouble(1), 0);
+
+        // rows appended after a selection follow the selected ones
+        builder.append(createRecord(rows[0]));
+        batch = builder.build();
+        Assert.assertEquals(3, batch.getRowCount());
+        Assert.assertEquals("apple", batch.getVectors()[1].getString(2));
+        Assert.assertEquals("banana", batch.getVectors()[1].getString(0));
+    }
+
+    @Test
+    public void testRecordBatchFilter() {
+        ArrayRecord[] records = new ArrayRecord[rows.length * 2];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = createRecord(rows[i % rows.length]);
+        }
+        RecordBatchFilter filter = RecordBatchFilter.create(
+                Collections.singletonList(StringStartsWith("c_string", "ap")), columns, 4);
+        // only the referenced column is copied
+        Assert.assertEquals(Collections.singletonList(columns.get(1)), filter.getFilter().getColumns());
+
+        int[] selection = new int[4];
+        Assert.assertEquals(2, filter.filter(records, 0, 4, selection));
+        Assert.assertArrayEquals(new int[]{0, 3}, Arrays.copyOf(selection, 2));
+        Assert.assertEquals(2, filter.filter(records, 5, 4, selection));
+        Assert.assertArrayEquals(new int[]{5, 8}, Arrays.copyOf(selection, 2));
+    }
+
+    private static void assertSelected(FilterExpression expression, int... expected) {
+        BatchFilter filter = BatchFilter.create(Collections.singletonList(expression), columns);
+        Assert.assertNotNull(filter);
+        int[] selection = new int[rows.length];
+        int size = filter.filter(buildBatch(), selection);
+        Assert.assertArrayEquals(expected, Arrays.copyOf(selection, size));
+
+        // a narrowed selection gives the same rows among the selected ones
+        selection = new int[]{1, 2, 3};
+        size = filter.filter(buildBatch(), selection, 3);
+        int[] narrowed = Arrays.stream(expected).filter(row -> row >= 1 && row <= 3).toArray();
+        Assert.assertArrayEquals(narrowed, Arrays.copyOf(selection, size));
+    }
+
+    private static ColDataBatch buildBatch() {
+        ColDataBatchBuilder builder = new ColDataBatchBuilder(columns, rows.length);
+        for (Object[] row : rows) {
+            builder.append(createRecord(row));
+        }
+        return builder.build();
+    }
+
+    private static ArrayRecord createRecord(Object[] values) {
+        Column[] recordColumns = new Column[columns.size()];
+        for (int i = 0; i < recordColumns.length; i++) {
+            recordColumns[i] = new Column(columns.get(i).getName(),
+                    TypeInfoParser.getTypeInfoFromTypeString(columns.get(i).getType()));
+        }
+        ArrayRecord record = new ArrayRecord(recordColumns);
+        for (int i = 0; i < values.length; i++) {
+            record.set(i, values[i]);
+        }
+        return record;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.cupid.table.v1.reader.InputSplit;
+import com.aliyun.odps.cupid.table.v1.reader.RequiredSchema;
+import com.aliyun.odps.cupid.table.v1.util.Options;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plans the splits of a partitioned table against a local tunnel endpoint which answers the
+ * download session requests.
+ */
+public class TunnelReadSessionTest {
+    private static final String project = "test_project";
+    private static final String table = "test_table";
+    private static final String partitionName = "pcol1";
+    private static final int numPartitions = 12;
+    private static final long recordCount = 1000;
+
+    private HttpServer server;
+    private final AtomicInteger sessionRequests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger sizeRequests = new AtomicInteger();
+    private volatile long latencyMillis = 100;
+
+    @Before
+    public void setUp() throws IOException {
+        TunnelReadSession.clearDownloadSessionCache();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::createDownloadSession);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        TunnelReadSession.clearDownloadSessionCache();
+    }
+
+    @Test
+    public void testSessionsAreCreatedConcurrently() throws IOException {
+        InputSplit[] splits = createReadSession(4, 0).getOrCreateInputSplits(1);
+
+        Assert.assertEquals(numPartitions, sessionRequests.get());
+        Assert.assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+        Assert.assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 4);
+        // the first partition is empty, the others are split in two
+        Assert.assertEquals(2 * (numPartitions - 1), splits.length);
+        Assert.assertEquals(numPartitions - 1, sizeRequests.get());
+        for (int i = 0; i < splits.length; i++) {
+            TunnelInputSplit split = (TunnelInputSplit) splits[i];
+            String partitionValue = "p" + (i / 2 + 1);
+            Assert.assertEquals(partitionValue, split.getPartitionSpec().get(partitionName));
+            Assert.assertEquals("download_" + partitionValue, split.getDownloadId());
+            Assert.assertEquals(i % 2 == 0 ? 0 : recordCount / 2, split.getStartIndex());
+            Assert.assertEquals(recordCount / 2, split.getNumRecord());
+        }
+    }
+
+    @Test
+    public void testSessionsAreCached() throws IOException {
+        InputSplit[] splits = createReadSession(4, 60_000).getOrCreateInputSplits(1);
+        Assert.assertEquals(numPartitions, sessionRequests.get());
+
+        InputSplit[] cachedSplits = createReadSession(4, 60_000).getOrCreateInputSplits(1);
+        Assert.assertEquals(numPartitions, sessionRequests.get());
+        Assert.assertEquals(numPartitions - 1, sizeRequests.get());
+        Assert.assertEquals(splits.length, cachedSplits.length);
+        for (int i = 0; i < splits.length; i++) {
+            Assert.assertEquals(((TunnelInputSplit) splits[i]).getDownloadId(),
+                    ((TunnelInputSplit) cachedSplits[i]).getDownloadId());
+        }
+
+        TunnelReadSession.clearDownloadSessionCache();
+        createReadSession(4, 60_000).getOrCreateInputSplits(1);
+        Assert.assertEquals(2 * numPartitions, sessionRequests.get());
+    }
+
+    @Test
+    public void testSplitByParallelism() throws IOException {
+        TestingReadSession readSession = new TestingReadSession(optionsBuilder(4, 0).build(), 30);
+        InputSplit[] splits = readSession.getOrCreateInputSplits();
+
+        Assert.assertEquals(30, splits.length);
+        long[] records = new long[numPartitions];
+        for (InputSplit split : splits) {
+            TunnelInputSplit tunnelSplit = (TunnelInputSplit) split;
+            int partition = Integer.parseInt(tunnelSplit.getPartitionSpec().get(partitionName).substring(1));
+            Assert.assertEquals(records[partition], tunnelSplit.getStartIndex());
+            // 2 or 3 splits per non-empty partition
+            Assert.assertTrue(tunnelSplit.getNumRecord() >= recordCount / 3);
+            Assert.assertTrue(tunnelSplit.getNumRecord() <= recordCount / 2);
+            records[partition] += tunnelSplit.getNumRecord();
+        }
+        Assert.assertEquals(0, records[0]);
+        for (int i = 1; i < numPartitions; i++) {
+            Assert.assertEquals(recordCount, records[i]);
+        }
+    }
+
+    @Test
+    public void testCacheDisabled() throws IOException {
+        latencyMillis = 0;
+        createReadSession(1, -1).getOrCreateInputSplits(1);
+        createReadSession(1, -1).getOrCreateInputSplits(1);
+        Assert.assertEquals(2 * numPartitions, sessionRequests.get());
+        Assert.assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    public void testNotCachedByDefault() throws IOException {
+        latencyMillis = 0;
+        createReadSession(1, 0).getOrCreateInputSplits(1);
+        createReadSession(1, 0).getOrCreateInputSplits(1);
+        Assert.assertEquals(2 * numPartitions, sessionRequests.get());
+        Assert.assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    public void testTimeout() {
+        latencyMillis = 2000;
+        Options.OptionsBuilder builder = optionsBuilder(4, 0)
+                .option(Util.READER_SESSION_TIMEOUT_MS, "500");
+        try {
+            new TestingReadSession(builder.build()).getOrCreateInputSplits(1);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Timed out"));
+        }
+    }
+
+    private TunnelReadSession createReadSession(int concurrency, int cacheTtlMillis) {
+        return new TestingReadSession(optionsBuilder(concurrency, cacheTtlMillis).build());
+    }
+
+    private Options.OptionsBuilder optionsBuilder(int concurrency, int cacheTtlMillis) {
+        Options.OptionsBuilder builder = new Options.OptionsBuilder()
+                .accessId("accessId")
+                .accessKey("accessKey")
+                .project(project)
+                .endpoint("http://localhost:" + server.getAddress().getPort() + "/api")
+                .tunnelEndpoint("http://localhost:" + server.getAddress().getPort())
+                .option(Util.READER_SESSION_CONCURRENCY, String.valueOf(concurrency));
+        if (cacheTtlMillis != 0) {
+            builder.option(Util.READER_SESSION_CACHE_TTL_MS, String.valueOf(cacheTtlMillis));
+        }
+        return builder;
+    }
+
+    private void createDownloadSession(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            sessionRequests.incrementAndGet();
+            Thread.sleep(latencyMillis);
+            String partitionValue = getPartitionValue(exchange.getRequestURI().getRawQuery());
+            long count = "p0".equals(partitionValue) ? 0 : recordCount;
+            String response = "{\"DownloadID\":\"download_" + partitionValue + "\","
+                    + "\"Status\":\"normal\",\"RecordCount\":" + count + ","
+                    + "\"Schema\":{\"columns\":[{\"name\":\"col1\",\"type\":\"string\"}],"
+                    + "\"partitionKeys\":[{\"name\":\"" + partitionName + "\",\"type\":\"string\"}]}}";
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static String getPartitionValue(String query) throws IOException {
+        for (String param : query.split("&")) {
+            if (param.startsWith("partition=")) {
+                String spec = URLDecoder.decode(param.substring("partition=".length()), "UTF-8");
+                return new PartitionSpec(spec).get(partitionName);
+            }
+        }
+        return null;
+    }
+
+    /** Reads a table of 1000 records of 2KB per partition, the sizes are counted. */
+    private class TestingReadSession extends TunnelReadSession {
+
+        TestingReadSession(Options options) {
+            this(options, 0);
+        }
+
+        TestingReadSession(Options options, int splitParallelism) {
+            super(TunnelReadSessionTest.project, TunnelReadSessionTest.table, createSchema(), RequiredSchema.all(), createPartitionSpecs(), options);
+            setSplitByParallelism(splitParallelism);
+        }
+
+        @Override
+        protected long getSize(PartitionSpec partitionSpec) {
+            sizeRequests.incrementAndGet();
+            return recordCount * 2000;
+        }
+    }
+
+    private static TableSchema createSchema() {
+        TableSchema schema = new TableSchema();
+        schema.addColumn(new Column("col1", OdpsType.STRING));
+        schema.addPartitionColumn(new Column(partitionName, OdpsType.STRING));
+        return schema;
+    }
+
+    private static List<Map<String, String>> createPartitionSpecs() {
+        List<Map<String, String>> partitionSpecs = new ArrayList<>();
+        for (int i = 0; i < numPartitions; i++) {
+            Map<String, String> partitionSpec = new HashMap<>();
+            partitionSpec.put(partitionName, "p" + i);
+            partitionSpecs.add(Collections.unmodifiableMap(partitionSpec));
+        }
+        return partitionSpecs;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import com.aliyun.odps.cupid.table.v1.Attribute;
+import com.aliyun.odps.cupid.table.v1.util.Options;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens readers of the splits of a download session against a local tunnel endpoint.
+ */
+public class TunnelReaderTest {
+    private static final String project = "test_project";
+    private static final String table = "test_table";
+    private static final List<Attribute> columns = Collections.singletonList(new Attribute("col1", "string"));
+
+    private HttpServer server;
+    private final AtomicInteger sessionRequests = new AtomicInteger();
+    private final AtomicInteger dataRequests = new AtomicInteger();
+    private volatile long dataLatencyMillis = 0;
+    private volatile boolean failSessions;
+
+    @Before
+    public void setUp() throws IOException {
+        TunnelReader.clearDownloadSessionCache();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        TunnelReader.clearDownloadSessionCache();
+    }
+
+    @Test
+    public void testSessionsAreShared() throws IOException {
+        long splitsOpened = TunnelReader.getSplitsOpened();
+        long sessionsOpened = TunnelReader.getSessionsOpened();
+        Options options = optionsBuilder().build();
+        for (int i = 0; i < 20; i++) {
+            String downloadId = i < 10 ? "download_1" : "download_2";
+            TunnelReader reader = new TunnelReader(createSplit(downloadId, i * 100, options));
+            Assert.assertEquals(0, reader.getBytesRead());
+            reader.close();
+        }
+        Assert.assertEquals(2, sessionRequests.get());
+        Assert.assertEquals(20, dataRequests.get());
+        Assert.assertEquals(20, TunnelReader.getSplitsOpened() - splitsOpened);
+        Assert.assertEquals(2, TunnelReader.getSessionsOpened() - sessionsOpened);
+    }
+
+    @Test
+    public void testOpenedOnCreation() throws IOException {
+        dataLatencyMillis = 200;
+        long start = System.currentTimeMillis();
+        TunnelReader reader = new TunnelReader(createSplit("download_1", 0, optionsBuilder().build()));
+        Assert.assertTrue(System.currentTimeMillis() - start >= dataLatencyMillis);
+        reader.close();
+    }
+
+    @Test
+    public void testOpenFailureIsThrownOnCreation() {
+        failSessions = true;
+        Options options = optionsBuilder().build();
+        try {
+            new TunnelReader(createSplit("download_1", 0, options));
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+        try {
+            new TunnelColDataReader(createSplit("download_1", 0, options), 16);
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+        Assert.assertEquals(0, dataRequests.get());
+    }
+
+    @Test
+    public void testSharedSessionsExpire() throws Exception {
+        Options options = optionsBuilder()
+                .option(Util.READER_SHARED_SESSION_TTL_MS, "100")
+                .build();
+        new TunnelReader(createSplit("download_1", 0, options)).close();
+        new TunnelReader(createSplit("download_1", 100, options)).close();
+        Assert.assertEquals(1, sessionRequests.get());
+
+        Thread.sleep(200);
+        new TunnelReader(createSplit("download_1", 200, options)).close();
+        Assert.assertEquals(2, sessionRequests.get());
+        Assert.assertEquals(3, dataRequests.get());
+    }
+
+    private TunnelInputSplit createSplit(String downloadId, long startIndex, Options options) {
+        return new TunnelInputSplit(project, table, columns, Collections.emptyList(), columns,
+                Collections.emptyMap(), downloadId, startIndex, 100, options);
+    }
+
+    private Options.OptionsBuilder optionsBuilder() {
+        return new Options.OptionsBuilder()
+                .accessId("accessId")
+                .accessKey("accessKey")
+                .project(project)
+                .endpoint("http://localhost:" + server.getAddress().getPort() + "/api")
+                .tunnelEndpoint("http://localhost:" + server.getAddress().getPort());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String query = exchange.getRequestURI().getRawQuery();
+            byte[] bytes;
+            int status = 200;
+            if (failSessions) {
+                sessionRequests.incrementAndGet();
+                status = 404;
+                bytes = "{\"Code\":\"NoSuchDownload\",\"Message\":\"download not found\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+            } else if (query.contains("data")) {
+                dataRequests.incrementAndGet();
+                Thread.sleep(dataLatencyMillis);
+                bytes = new byte[0];
+            } else {
+                sessionRequests.incrementAndGet();
+                String response = "{\"DownloadID\":\"download\",\"Status\":\"normal\",\"RecordCount\":1000,"
+                        + "\"Schema\":{\"columns\":[{\"name\":\"col1\",\"type\":\"string\"}],\"partitionKeys\":[]}}";
+                bytes = response.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+            }
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
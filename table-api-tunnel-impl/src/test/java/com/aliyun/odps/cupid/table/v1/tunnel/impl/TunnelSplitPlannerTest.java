@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.cupid.table.v1.tunnel.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class TunnelSplitPlannerTest {
+    private static final long recordSize = 1024;
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testPlanBySize() {
+        long[] recordCounts = {0, 1000, 10, 3};
+        long[] sizes = {0, 1000 * recordSize, 10 * recordSize, 3 * MB};
+        List<TunnelSplitPlanner.Range> ranges = TunnelSplitPlanner.planBySize(recordCounts, sizes, 300 * recordSize);
+
+        // 4 equal ranges of the first partition, the records of the last one are not divided
+        Assert.assertEquals(4 + 1 + 3, ranges.size());
+        assertCovered(recordCounts, ranges);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(1, ranges.get(i).session);
+            Assert.assertEquals(250, ranges.get(i).numRecord);
+        }
+    }
+
+    @Test
+    public void testPlanByParallelism() {
+        long[] recordCounts = {1000, 1000, 1};
+        long[] sizes = {1000 * recordSize, 1000 * recordSize, recordSize};
+        List<TunnelSplitPlanner.Range> ranges = TunnelSplitPlanner.planByParallelism(recordCounts, sizes, 8);
+        Assert.assertEquals(8, ranges.size());
+        assertCovered(recordCounts, ranges);
+        // 4 and 3 splits of the large partitions
+        Assert.assertEquals(334 * recordSize, maxSplitBytes(recordCounts, sizes, ranges));
+
+        // every non-empty partition is read, even with more partitions than splits
+        ranges = TunnelSplitPlanner.planByParallelism(recordCounts, sizes, 2);
+        Assert.assertEquals(3, ranges.size());
+        assertCovered(recordCounts, ranges);
+
+        // a record is not divided
+        ranges = TunnelSplitPlanner.planByParallelism(new long[]{2, 0}, new long[]{MB, 0}, 10);
+        Assert.assertEquals(2, ranges.size());
+    }
+
+    /**
+     * One large partition and many small ones, read by 16 slots. One split per partition, or
+     * splits of the default 256MB, leave the large partition to a few slots while the others are
+     * done early. Planned for the parallelism the large partition is spread over the free slots.
+     */
+    @Test
+    public void testSkewedPartitionsTailLatency() {
+        int slots = 16;
+        long[] recordCounts = new long[10];
+        long[] sizes = new long[10];
+        recordCounts[0] = 1000 * 1024;
+        for (int i = 1; i < recordCounts.length; i++) {
+            recordCounts[i] = 10 * 1024;
+        }
+        for (int i = 0; i < recordCounts.length; i++) {
+            sizes[i] = recordCounts[i] * recordSize;
+        }
+
+        long bySize = makespan(recordCounts, sizes,
+                TunnelSplitPlanner.planBySize(recordCounts, sizes, 256 * MB), slots);
+        List<TunnelSplitPlanner.Range> ranges = TunnelSplitPlanner.planByParallelism(recordCounts, sizes, slots);
+        long byParallelism = makespan(recordCounts, sizes, ranges, slots);
+
+        Assert.assertEquals(slots, ranges.size());
+        assertCovered(recordCounts, ranges);
+        // the 9 small partitions take a slot each, the large one is divided over the other 7
+        Assert.assertEquals((sizes[0] + 6 * recordSize) / 7 / recordSize * recordSize, byParallelism);
+        Assert.assertTrue(bySize + " <= " + byParallelism, byParallelism * 3 / 2 < bySize);
+    }
+
+    private static void assertCovered(long[] recordCounts, List<TunnelSplitPlanner.Range> ranges) {
+        long[] next = new long[recordCounts.length];
+        for (TunnelSplitPlanner.Range range : ranges) {
+            Assert.assertEquals(next[range.session], range.startIndex);
+            Assert.assertTrue(range.numRecord > 0);
+            next[range.session] += range.numRecord;
+        }
+        Assert.assertArrayEquals(recordCounts, next);
+    }
+
+    private static long splitBytes(long[] recordCounts, long[] sizes, TunnelSplitPlanner.Range range) {
+        return sizes[range.session] / recordCounts[range.session] * range.numRecord;
+    }
+
+    private static long maxSplitBytes(long[] recordCounts, long[] sizes, List<TunnelSplitPlanner.Range> ranges) {
+        long max = 0;
+        for (TunnelSplitPlanner.Range range : ranges) {
+            max = Math.max(max, splitBytes(recordCounts, sizes, range));
+        }
+        return max;
+    }
+
+    /** The bytes read by the busiest slot, the splits are taken in order by the first free slot. */
+    private static long makespan(long[] recordCounts, long[] sizes, List<TunnelSplitPlanner.Range> ranges, int slots) {
+        PriorityQueue<Long> finishTimes = new PriorityQueue<>();
+        for (int i = 0; i < slots; i++) {
+            finishTimes.add(0L);
+        }
+        long makespan = 0;
+        for (TunnelSplitPlanner.Range range : ranges) {
+            long finishTime = finishTimes.poll() + splitBytes(recordCounts, sizes, range);
+            finishTimes.add(finishTime);
+            makespan = Math.max(makespan, finishTime);
+        }
+        return makespan;
+    }
+}